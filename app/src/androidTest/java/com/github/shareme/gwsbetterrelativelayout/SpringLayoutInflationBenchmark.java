@@ -0,0 +1,107 @@
+package com.github.shareme.gwsbetterrelativelayout;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.github.shareme.gwsbetterrelativelayout.library.SpringLayout;
+import com.github.shareme.gwsbetterrelativelayout.springlayouts.SpringLayouts;
+
+import java.util.Arrays;
+
+/**
+ * Compares layouts built by the generated SpringLayout builders with the
+ * ones inflated by LayoutInflater, and logs the time both take. Timings are
+ * only reported, they depend too much on the device to be asserted.
+ */
+public class SpringLayoutInflationBenchmark extends InstrumentationTestCase {
+    private static final String TAG = "InflationBenchmark";
+    private static final int WARMUP_ITERATIONS = 100;
+    private static final int ITERATIONS = 1000;
+    private static final int[] LAYOUTS = new int[] { R.layout.readme_example_springs, R.layout.spring_test,
+            R.layout.alignment_test };
+
+    private Context mContext;
+    private ViewGroup mParent;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = getInstrumentation().getTargetContext();
+        mParent = new FrameLayout(mContext);
+    }
+
+    public void testBuildersMatchInflatedLayouts() {
+        final LayoutInflater inflater = LayoutInflater.from(mContext);
+        for (int layout : LAYOUTS) {
+            assertSameHierarchy(inflater.inflate(layout, mParent, false), SpringLayouts.inflate(mContext, layout, mParent, false));
+        }
+    }
+
+    public void testInflationTime() {
+        final LayoutInflater inflater = LayoutInflater.from(mContext);
+        for (int layout : LAYOUTS) {
+            final String name = mContext.getResources().getResourceEntryName(layout);
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                inflater.inflate(layout, mParent, false);
+                SpringLayouts.inflate(mContext, layout, mParent, false);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                inflater.inflate(layout, mParent, false);
+            }
+            final long inflateNanos = (System.nanoTime() - start) / ITERATIONS;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                SpringLayouts.inflate(mContext, layout, mParent, false);
+            }
+            final long buildNanos = (System.nanoTime() - start) / ITERATIONS;
+            Log.i(TAG, name + ": LayoutInflater " + inflateNanos / 1000 + " us, builder " + buildNanos / 1000 + " us, "
+                    + (100 * buildNanos / inflateNanos) + "%");
+        }
+    }
+
+    private static void assertSameHierarchy(View expected, View actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getVisibility(), actual.getVisibility());
+        assertEquals(expected.getPaddingLeft(), actual.getPaddingLeft());
+        assertEquals(expected.getPaddingTop(), actual.getPaddingTop());
+        assertEquals(expected.getPaddingRight(), actual.getPaddingRight());
+        assertEquals(expected.getPaddingBottom(), actual.getPaddingBottom());
+        assertSameLayoutParams(expected.getLayoutParams(), actual.getLayoutParams());
+        if (expected instanceof ViewGroup) {
+            final ViewGroup expectedGroup = (ViewGroup) expected, actualGroup = (ViewGroup) actual;
+            assertEquals(expectedGroup.getChildCount(), actualGroup.getChildCount());
+            for (int i = 0; i < expectedGroup.getChildCount(); i++) {
+                assertSameHierarchy(expectedGroup.getChildAt(i), actualGroup.getChildAt(i));
+            }
+        }
+    }
+
+    private static void assertSameLayoutParams(ViewGroup.LayoutParams expected, ViewGroup.LayoutParams actual) {
+        assertEquals(expected.width, actual.width);
+        assertEquals(expected.height, actual.height);
+        if (expected instanceof ViewGroup.MarginLayoutParams) {
+            final ViewGroup.MarginLayoutParams expectedMargins = (ViewGroup.MarginLayoutParams) expected;
+            final ViewGroup.MarginLayoutParams actualMargins = (ViewGroup.MarginLayoutParams) actual;
+            assertEquals(expectedMargins.leftMargin, actualMargins.leftMargin);
+            assertEquals(expectedMargins.topMargin, actualMargins.topMargin);
+            assertEquals(expectedMargins.rightMargin, actualMargins.rightMargin);
+            assertEquals(expectedMargins.bottomMargin, actualMargins.bottomMargin);
+        }
+        if (expected instanceof SpringLayout.LayoutParams) {
+            final SpringLayout.LayoutParams expectedSpring = (SpringLayout.LayoutParams) expected;
+            final SpringLayout.LayoutParams actualSpring = (SpringLayout.LayoutParams) actual;
+            assertTrue(Arrays.equals(expectedSpring.getRelations(), actualSpring.getRelations()));
+            assertEquals(expectedSpring.getRelativeWidth(), actualSpring.getRelativeWidth());
+            assertEquals(expectedSpring.getRelativeHeight(), actualSpring.getRelativeHeight());
+            assertEquals(expectedSpring.getWidthWeight(), actualSpring.getWidthWeight());
+            assertEquals(expectedSpring.getHeightWeight(), actualSpring.getHeightWeight());
+        }
+    }
+}
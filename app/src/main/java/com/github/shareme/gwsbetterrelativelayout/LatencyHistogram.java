@@ -0,0 +1,98 @@
+package com.github.shareme.gwsbetterrelativelayout;
+
+/**
+ * Fixed-memory histogram of latencies with logarithmic buckets.
+ *
+ * Every power of two is split into {@link #SUB_BUCKET_COUNT} linear buckets,
+ * so reported percentiles are within 12.5% of the recorded value. Recording
+ * never allocates.
+ */
+@SuppressWarnings("unused")
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final long[] mCounts = new long[BUCKET_COUNT];
+    private long mTotalCount;
+    private long mTotal;
+    private long mMax;
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mCounts[bucketIndex(value)]++;
+        mTotalCount++;
+        mTotal += value;
+        if (value > mMax) {
+            mMax = value;
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts[i] = 0;
+        }
+        mTotalCount = mTotal = mMax = 0;
+    }
+
+    public long getCount() {
+        return mTotalCount;
+    }
+
+    public long getTotal() {
+        return mTotal;
+    }
+
+    public long getMax() {
+        return mMax;
+    }
+
+    public long getMean() {
+        return mTotalCount == 0 ? 0 : mTotal / mTotalCount;
+    }
+
+    /**
+     * @param percentile
+     *            Percentile in range (0, 100].
+     * @return Upper bound of the bucket holding given percentile, 0 when
+     *         nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (mTotalCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * mTotalCount);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), mMax);
+            }
+        }
+        return mMax;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int mantissa = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + mantissa;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final int mantissa = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + mantissa + 1) << shift) - 1;
+    }
+}
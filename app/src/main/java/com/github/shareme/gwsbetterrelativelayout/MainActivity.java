@@ -48,6 +48,9 @@ public class MainActivity extends Activity {
         case R.id.test_performance:
             startActivity(new Intent(this, TestPerformanceActivity.class));
             return true;
+        case R.id.test_stress:
+            startActivity(new Intent(this, TestStressActivity.class));
+            return true;
         case R.id.open_github:
             startActivity(new Intent(Intent.ACTION_VIEW).setData(Uri.parse("https://github.com/sulewicz/springlayout")));
             return true;
@@ -12,4 +12,24 @@ public interface MeasurableLayout {
     long getTotalLayoutsTime();
 
     long getAverageLayoutTime();
+
+    /**
+     * @return CPU time of every onMeasure() pass, in nanoseconds.
+     */
+    LatencyHistogram getMeasureHistogram();
+
+    /**
+     * @return CPU time of onMeasure() passes that followed a hierarchy change, in nanoseconds.
+     */
+    LatencyHistogram getRebuildMeasureHistogram();
+
+    /**
+     * @return CPU time of onMeasure() passes without hierarchy change, in nanoseconds.
+     */
+    LatencyHistogram getSizeOnlyMeasureHistogram();
+
+    /**
+     * @return CPU time of every onLayout() pass, in nanoseconds.
+     */
+    LatencyHistogram getLayoutHistogram();
 }
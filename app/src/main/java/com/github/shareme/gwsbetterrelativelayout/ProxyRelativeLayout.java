@@ -3,12 +3,19 @@ package com.github.shareme.gwsbetterrelativelayout;
 import android.content.Context;
 import android.os.Debug;
 import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
 import android.widget.RelativeLayout;
 
 @SuppressWarnings("unused")
 public class ProxyRelativeLayout extends RelativeLayout implements MeasurableLayout {
     private int mMeasuresCount, mLayoutsCount;
     private long mTotalMeasuresTime, mTotalLayoutsTime;
+    private final LatencyHistogram mMeasureHistogram = new LatencyHistogram();
+    private final LatencyHistogram mRebuildMeasureHistogram = new LatencyHistogram();
+    private final LatencyHistogram mSizeOnlyMeasureHistogram = new LatencyHistogram();
+    private final LatencyHistogram mLayoutHistogram = new LatencyHistogram();
+    private boolean mHierarchyChanged = true;
 
     public ProxyRelativeLayout(Context context) {
         super(context);
@@ -22,20 +29,54 @@ public class ProxyRelativeLayout extends RelativeLayout implements MeasurableLay
         super(context, attrs, defStyle);
     }
 
+    @Override
+    public void addView(View child, int index, ViewGroup.LayoutParams params) {
+        mHierarchyChanged = true;
+        super.addView(child, index, params);
+    }
+
+    @Override
+    public void removeView(View view) {
+        mHierarchyChanged = true;
+        super.removeView(view);
+    }
+
+    @Override
+    public void removeViewAt(int index) {
+        mHierarchyChanged = true;
+        super.removeViewAt(index);
+    }
+
+    @Override
+    public void removeViews(int start, int count) {
+        mHierarchyChanged = true;
+        super.removeViews(start, count);
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         final long start = Debug.threadCpuTimeNanos();
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        mTotalMeasuresTime += (Debug.threadCpuTimeNanos() - start);
+        final long time = Debug.threadCpuTimeNanos() - start;
+        mTotalMeasuresTime += time;
         mMeasuresCount++;
+        mMeasureHistogram.record(time);
+        if (mHierarchyChanged) {
+            mHierarchyChanged = false;
+            mRebuildMeasureHistogram.record(time);
+        } else {
+            mSizeOnlyMeasureHistogram.record(time);
+        }
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
         final long start = Debug.threadCpuTimeNanos();
         super.onLayout(changed, l, t, r, b);
-        mTotalLayoutsTime += (Debug.threadCpuTimeNanos() - start);
+        final long time = Debug.threadCpuTimeNanos() - start;
+        mTotalLayoutsTime += time;
         mLayoutsCount++;
+        mLayoutHistogram.record(time);
     }
 
     @Override
@@ -50,7 +91,7 @@ public class ProxyRelativeLayout extends RelativeLayout implements MeasurableLay
 
     @Override
     public long getAverageMeasureTime() {
-        return getTotalMeasuresTime() / getMeasuresCount();
+        return mMeasuresCount == 0 ? 0 : getTotalMeasuresTime() / mMeasuresCount;
     }
 
     @Override
@@ -65,6 +106,26 @@ public class ProxyRelativeLayout extends RelativeLayout implements MeasurableLay
 
     @Override
     public long getAverageLayoutTime() {
-        return getTotalLayoutsTime() / getLayoutsCount();
+        return mLayoutsCount == 0 ? 0 : getTotalLayoutsTime() / mLayoutsCount;
+    }
+
+    @Override
+    public LatencyHistogram getMeasureHistogram() {
+        return mMeasureHistogram;
+    }
+
+    @Override
+    public LatencyHistogram getRebuildMeasureHistogram() {
+        return mRebuildMeasureHistogram;
+    }
+
+    @Override
+    public LatencyHistogram getSizeOnlyMeasureHistogram() {
+        return mSizeOnlyMeasureHistogram;
+    }
+
+    @Override
+    public LatencyHistogram getLayoutHistogram() {
+        return mLayoutHistogram;
     }
 }
@@ -10,6 +10,10 @@ import com.github.shareme.gwsbetterrelativelayout.library.SpringLayout;
 public class ProxySpringLayout extends SpringLayout implements MeasurableLayout {
     private int mMeasuresCount, mLayoutsCount;
     private long mTotalMeasuresTime, mTotalLayoutsTime;
+    private final LatencyHistogram mMeasureHistogram = new LatencyHistogram();
+    private final LatencyHistogram mRebuildMeasureHistogram = new LatencyHistogram();
+    private final LatencyHistogram mSizeOnlyMeasureHistogram = new LatencyHistogram();
+    private final LatencyHistogram mLayoutHistogram = new LatencyHistogram();
 
     public ProxySpringLayout(Context context) {
         super(context);
@@ -25,18 +29,28 @@ public class ProxySpringLayout extends SpringLayout implements MeasurableLayout
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int generation = getHierarchyGeneration();
         final long start = Debug.threadCpuTimeNanos();
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        mTotalMeasuresTime += (Debug.threadCpuTimeNanos() - start);
+        final long time = Debug.threadCpuTimeNanos() - start;
+        mTotalMeasuresTime += time;
         mMeasuresCount++;
+        mMeasureHistogram.record(time);
+        if (getHierarchyGeneration() != generation) {
+            mRebuildMeasureHistogram.record(time);
+        } else {
+            mSizeOnlyMeasureHistogram.record(time);
+        }
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
         final long start = Debug.threadCpuTimeNanos();
         super.onLayout(changed, l, t, r, b);
-        mTotalLayoutsTime += (Debug.threadCpuTimeNanos() - start);
+        final long time = Debug.threadCpuTimeNanos() - start;
+        mTotalLayoutsTime += time;
         mLayoutsCount++;
+        mLayoutHistogram.record(time);
     }
 
     @Override
@@ -51,7 +65,7 @@ public class ProxySpringLayout extends SpringLayout implements MeasurableLayout
 
     @Override
     public long getAverageMeasureTime() {
-        return getTotalMeasuresTime() / getMeasuresCount();
+        return mMeasuresCount == 0 ? 0 : getTotalMeasuresTime() / mMeasuresCount;
     }
 
     @Override
@@ -66,6 +80,26 @@ public class ProxySpringLayout extends SpringLayout implements MeasurableLayout
 
     @Override
     public long getAverageLayoutTime() {
-        return getTotalLayoutsTime() / getLayoutsCount();
+        return mLayoutsCount == 0 ? 0 : getTotalLayoutsTime() / mLayoutsCount;
+    }
+
+    @Override
+    public LatencyHistogram getMeasureHistogram() {
+        return mMeasureHistogram;
+    }
+
+    @Override
+    public LatencyHistogram getRebuildMeasureHistogram() {
+        return mRebuildMeasureHistogram;
+    }
+
+    @Override
+    public LatencyHistogram getSizeOnlyMeasureHistogram() {
+        return mSizeOnlyMeasureHistogram;
+    }
+
+    @Override
+    public LatencyHistogram getLayoutHistogram() {
+        return mLayoutHistogram;
     }
 }
@@ -0,0 +1,357 @@
+package com.github.shareme.gwsbetterrelativelayout;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.RelativeLayout;
+import android.widget.TextView;
+
+import com.github.shareme.gwsbetterrelativelayout.library.SpringLayout;
+
+/**
+ * Builds equivalent SpringLayout and RelativeLayout hierarchies of a given
+ * shape and size, used by {@link TestStressActivity} to compare how both
+ * layouts scale.
+ *
+ * RelativeLayout has no springs nor relative sizes, so spring toolbars are
+ * built from weighted horizontal LinearLayouts and percentage children get
+ * their width precomputed from the parent width, the way it would be done by
+ * hand.
+ */
+public class StressLayoutGenerator {
+    public static final int SHAPE_HORIZONTAL_CHAIN = 0;
+    public static final int SHAPE_VERTICAL_CHAIN = 1;
+    public static final int SHAPE_FAN_OUT = 2;
+    public static final int SHAPE_GRID = 3;
+    public static final int SHAPE_SPRING_TOOLBARS = 4;
+    public static final int SHAPE_PERCENTAGE = 5;
+    public static final int SHAPE_MIXED_ROWS = 6;
+    public static final int SHAPE_COUNT = 7;
+
+    public static final int[] CHILD_COUNTS = new int[] { 10, 100, 500, 2000 };
+
+    private static final String[] SHAPE_NAMES = new String[] { "horizontal chain", "vertical chain", "fan-out", "grid",
+            "spring toolbars", "percentage", "mixed rows" };
+
+    // Relation pairs used by the fan-out shape, indices into SPRING_RELATIONS
+    // and RELATIVE_RELATIONS.
+    private static final int[][] FAN_OUT_RELATIONS = new int[][] { { 3, 4 }, { 2, 7 }, { 1, 6 }, { 0, 5 } };
+    private static final int[] SPRING_RELATIONS = new int[] { SpringLayout.LEFT_OF, SpringLayout.RIGHT_OF, SpringLayout.ABOVE,
+            SpringLayout.BELOW, SpringLayout.ALIGN_LEFT, SpringLayout.ALIGN_TOP, SpringLayout.ALIGN_BOTTOM,
+            SpringLayout.ALIGN_RIGHT };
+    private static final int[] RELATIVE_RELATIONS = new int[] { RelativeLayout.LEFT_OF, RelativeLayout.RIGHT_OF,
+            RelativeLayout.ABOVE, RelativeLayout.BELOW, RelativeLayout.ALIGN_LEFT, RelativeLayout.ALIGN_TOP,
+            RelativeLayout.ALIGN_BOTTOM, RelativeLayout.ALIGN_RIGHT };
+
+    private static final int TOOLBAR_CHILDREN = 5;
+    private static final int MIXED_ROW_CHILDREN = 4;
+    private static final int FIRST_ID = 1;
+
+    private final Context mContext;
+    private final int mCellSize;
+    private final int mItemSize;
+
+    public StressLayoutGenerator(Context context) {
+        mContext = context;
+        final float density = context.getResources().getDisplayMetrics().density;
+        mCellSize = Math.max(1, (int) (8 * density));
+        mItemSize = Math.max(1, (int) (40 * density));
+    }
+
+    public static String getShapeName(int shape) {
+        return SHAPE_NAMES[shape];
+    }
+
+    /**
+     * @param parentWidth
+     *            Width the layout will be measured with, used only by the
+     *            RelativeLayout variant of the percentage shape.
+     */
+    public ViewGroup createSpringLayout(int shape, int childCount, int parentWidth) {
+        final ProxySpringLayout layout = new ProxySpringLayout(mContext);
+        switch (shape) {
+        case SHAPE_HORIZONTAL_CHAIN:
+            for (int i = 0; i < childCount; i++) {
+                final SpringLayout.LayoutParams params = new SpringLayout.LayoutParams(mCellSize, mCellSize);
+                if (i > 0) {
+                    params.addRelation(SpringLayout.RIGHT_OF, id(i - 1));
+                }
+                layout.addView(createView(i), params);
+            }
+            break;
+        case SHAPE_VERTICAL_CHAIN:
+            for (int i = 0; i < childCount; i++) {
+                final SpringLayout.LayoutParams params = new SpringLayout.LayoutParams(mCellSize, mCellSize);
+                if (i > 0) {
+                    params.addRelation(SpringLayout.BELOW, id(i - 1));
+                }
+                layout.addView(createView(i), params);
+            }
+            break;
+        case SHAPE_FAN_OUT:
+            for (int i = 0; i < childCount; i++) {
+                final SpringLayout.LayoutParams params = new SpringLayout.LayoutParams(mCellSize, mCellSize);
+                if (i == 0) {
+                    params.addRelation(SpringLayout.CENTER_IN_PARENT, SpringLayout.TRUE);
+                } else {
+                    final int[] relations = FAN_OUT_RELATIONS[i % FAN_OUT_RELATIONS.length];
+                    params.addRelation(SPRING_RELATIONS[relations[0]], id(0));
+                    params.addRelation(SPRING_RELATIONS[relations[1]], id(0));
+                }
+                layout.addView(createView(i), params);
+            }
+            break;
+        case SHAPE_GRID: {
+            final int columns = getGridColumns(childCount);
+            for (int i = 0; i < childCount; i++) {
+                final SpringLayout.LayoutParams params = new SpringLayout.LayoutParams(mCellSize, mCellSize);
+                if (i % columns > 0) {
+                    params.addRelation(SpringLayout.RIGHT_OF, id(i - 1));
+                }
+                if (i >= columns) {
+                    params.addRelation(SpringLayout.BELOW, id(i - columns));
+                }
+                layout.addView(createView(i), params);
+            }
+            break;
+        }
+        case SHAPE_SPRING_TOOLBARS:
+            for (int i = 0; i < childCount; i++) {
+                final int column = i % TOOLBAR_CHILDREN, rowStart = i - column;
+                final boolean spring = (column & 1) == 0;
+                final SpringLayout.LayoutParams params = spring ? new SpringLayout.LayoutParams(
+                        SpringLayout.LayoutParams.WRAP_CONTENT, SpringLayout.LayoutParams.WRAP_CONTENT)
+                        : new SpringLayout.LayoutParams(mItemSize, mItemSize);
+                if (spring) {
+                    params.setWidthWeight(column == 2 ? 2 : 1);
+                }
+                if (column == 0) {
+                    params.addRelation(SpringLayout.ALIGN_LEFT, SpringLayout.PARENT);
+                } else {
+                    params.addRelation(SpringLayout.RIGHT_OF, id(i - 1));
+                }
+                // Rows are stacked by their first item, springs must not be
+                // part of a vertical chain.
+                if (column != 1) {
+                    params.addRelation(SpringLayout.ALIGN_TOP, id(rowStart + 1));
+                } else if (rowStart > 0) {
+                    params.addRelation(SpringLayout.BELOW, id(rowStart - TOOLBAR_CHILDREN + 1));
+                }
+                if (column == TOOLBAR_CHILDREN - 1 || i == childCount - 1) {
+                    params.addRelation(SpringLayout.ALIGN_RIGHT, SpringLayout.PARENT);
+                }
+                layout.addView(createView(i), params);
+            }
+            break;
+        case SHAPE_PERCENTAGE:
+            for (int i = 0; i < childCount; i++) {
+                final SpringLayout.LayoutParams params = new SpringLayout.LayoutParams(SpringLayout.LayoutParams.WRAP_CONTENT,
+                        mCellSize);
+                params.setRelativeWidth(getPercentage(i));
+                if (i > 0) {
+                    params.addRelation(SpringLayout.BELOW, id(i - 1));
+                }
+                if ((i & 1) == 1) {
+                    params.addRelation(SpringLayout.ALIGN_RIGHT, SpringLayout.PARENT);
+                }
+                layout.addView(createView(i), params);
+            }
+            break;
+        case SHAPE_MIXED_ROWS:
+            for (int i = 0; i < childCount; i++) {
+                final int column = i % MIXED_ROW_CHILDREN, rowStart = i - column;
+                final SpringLayout.LayoutParams params;
+                switch (column) {
+                case 0:
+                    params = new SpringLayout.LayoutParams(mItemSize, mItemSize);
+                    params.setMargins(mCellSize, mCellSize, mCellSize, mCellSize);
+                    if (rowStart > 0) {
+                        params.addRelation(SpringLayout.BELOW, id(rowStart - MIXED_ROW_CHILDREN));
+                    }
+                    break;
+                case 1:
+                    params = new SpringLayout.LayoutParams(SpringLayout.LayoutParams.WRAP_CONTENT,
+                            SpringLayout.LayoutParams.WRAP_CONTENT);
+                    params.addRelation(SpringLayout.RIGHT_OF, id(rowStart));
+                    params.addRelation(SpringLayout.ALIGN_TOP, id(rowStart));
+                    break;
+                case 2:
+                    params = new SpringLayout.LayoutParams(SpringLayout.LayoutParams.WRAP_CONTENT,
+                            SpringLayout.LayoutParams.WRAP_CONTENT);
+                    params.addRelation(SpringLayout.BELOW, id(rowStart + 1));
+                    params.addRelation(SpringLayout.ALIGN_LEFT, id(rowStart + 1));
+                    break;
+                default:
+                    params = new SpringLayout.LayoutParams(mItemSize, mItemSize);
+                    params.addRelation(SpringLayout.ALIGN_RIGHT, SpringLayout.PARENT);
+                    params.addRelation(SpringLayout.ALIGN_TOP, id(rowStart));
+                    break;
+                }
+                layout.addView(column == 1 || column == 2 ? createTextView(i) : createView(i), params);
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        return layout;
+    }
+
+    /**
+     * @param parentWidth
+     *            Width the layout will be measured with, used to precompute
+     *            widths of the percentage shape.
+     */
+    public ViewGroup createRelativeLayout(int shape, int childCount, int parentWidth) {
+        final ProxyRelativeLayout layout = new ProxyRelativeLayout(mContext);
+        switch (shape) {
+        case SHAPE_HORIZONTAL_CHAIN:
+            for (int i = 0; i < childCount; i++) {
+                final RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(mCellSize, mCellSize);
+                if (i > 0) {
+                    params.addRule(RelativeLayout.RIGHT_OF, id(i - 1));
+                }
+                layout.addView(createView(i), params);
+            }
+            break;
+        case SHAPE_VERTICAL_CHAIN:
+            for (int i = 0; i < childCount; i++) {
+                final RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(mCellSize, mCellSize);
+                if (i > 0) {
+                    params.addRule(RelativeLayout.BELOW, id(i - 1));
+                }
+                layout.addView(createView(i), params);
+            }
+            break;
+        case SHAPE_FAN_OUT:
+            for (int i = 0; i < childCount; i++) {
+                final RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(mCellSize, mCellSize);
+                if (i == 0) {
+                    params.addRule(RelativeLayout.CENTER_IN_PARENT);
+                } else {
+                    final int[] relations = FAN_OUT_RELATIONS[i % FAN_OUT_RELATIONS.length];
+                    params.addRule(RELATIVE_RELATIONS[relations[0]], id(0));
+                    params.addRule(RELATIVE_RELATIONS[relations[1]], id(0));
+                }
+                layout.addView(createView(i), params);
+            }
+            break;
+        case SHAPE_GRID: {
+            final int columns = getGridColumns(childCount);
+            for (int i = 0; i < childCount; i++) {
+                final RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(mCellSize, mCellSize);
+                if (i % columns > 0) {
+                    params.addRule(RelativeLayout.RIGHT_OF, id(i - 1));
+                }
+                if (i >= columns) {
+                    params.addRule(RelativeLayout.BELOW, id(i - columns));
+                }
+                layout.addView(createView(i), params);
+            }
+            break;
+        }
+        case SHAPE_SPRING_TOOLBARS: {
+            LinearLayout row = null;
+            int rowId = 0;
+            for (int i = 0; i < childCount; i++) {
+                final int column = i % TOOLBAR_CHILDREN;
+                if (column == 0) {
+                    final RelativeLayout.LayoutParams rowParams = new RelativeLayout.LayoutParams(
+                            RelativeLayout.LayoutParams.MATCH_PARENT, RelativeLayout.LayoutParams.WRAP_CONTENT);
+                    if (row != null) {
+                        rowParams.addRule(RelativeLayout.BELOW, rowId);
+                    }
+                    row = new LinearLayout(mContext);
+                    row.setOrientation(LinearLayout.HORIZONTAL);
+                    rowId = id(i);
+                    row.setId(rowId);
+                    layout.addView(row, rowParams);
+                }
+                final LinearLayout.LayoutParams params;
+                if ((column & 1) == 0) {
+                    params = new LinearLayout.LayoutParams(0, mItemSize, column == 2 ? 2 : 1);
+                } else {
+                    params = new LinearLayout.LayoutParams(mItemSize, mItemSize);
+                }
+                row.addView(new View(mContext), params);
+            }
+            break;
+        }
+        case SHAPE_PERCENTAGE:
+            for (int i = 0; i < childCount; i++) {
+                final RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(parentWidth * getPercentage(i) / 100,
+                        mCellSize);
+                if (i > 0) {
+                    params.addRule(RelativeLayout.BELOW, id(i - 1));
+                }
+                if ((i & 1) == 1) {
+                    params.addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
+                }
+                layout.addView(createView(i), params);
+            }
+            break;
+        case SHAPE_MIXED_ROWS:
+            for (int i = 0; i < childCount; i++) {
+                final int column = i % MIXED_ROW_CHILDREN, rowStart = i - column;
+                final RelativeLayout.LayoutParams params;
+                switch (column) {
+                case 0:
+                    params = new RelativeLayout.LayoutParams(mItemSize, mItemSize);
+                    params.setMargins(mCellSize, mCellSize, mCellSize, mCellSize);
+                    if (rowStart > 0) {
+                        params.addRule(RelativeLayout.BELOW, id(rowStart - MIXED_ROW_CHILDREN));
+                    }
+                    break;
+                case 1:
+                    params = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.WRAP_CONTENT,
+                            RelativeLayout.LayoutParams.WRAP_CONTENT);
+                    params.addRule(RelativeLayout.RIGHT_OF, id(rowStart));
+                    params.addRule(RelativeLayout.ALIGN_TOP, id(rowStart));
+                    break;
+                case 2:
+                    params = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.WRAP_CONTENT,
+                            RelativeLayout.LayoutParams.WRAP_CONTENT);
+                    params.addRule(RelativeLayout.BELOW, id(rowStart + 1));
+                    params.addRule(RelativeLayout.ALIGN_LEFT, id(rowStart + 1));
+                    break;
+                default:
+                    params = new RelativeLayout.LayoutParams(mItemSize, mItemSize);
+                    params.addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
+                    params.addRule(RelativeLayout.ALIGN_TOP, id(rowStart));
+                    break;
+                }
+                layout.addView(column == 1 || column == 2 ? createTextView(i) : createView(i), params);
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        return layout;
+    }
+
+    private static int getGridColumns(int childCount) {
+        return Math.max(1, (int) Math.ceil(Math.sqrt(childCount)));
+    }
+
+    private static int getPercentage(int index) {
+        return 10 + (index * 10) % 90;
+    }
+
+    private static int id(int index) {
+        return FIRST_ID + index;
+    }
+
+    private View createView(int index) {
+        final View view = new View(mContext);
+        view.setId(id(index));
+        return view;
+    }
+
+    private View createTextView(int index) {
+        final TextView view = new TextView(mContext);
+        view.setId(id(index));
+        view.setSingleLine(true);
+        view.setText(mContext.getString(R.string.sample_text));
+        return view;
+    }
+}
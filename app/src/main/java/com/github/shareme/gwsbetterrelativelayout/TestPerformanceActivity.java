@@ -63,9 +63,31 @@ public class TestPerformanceActivity extends Activity implements OnClickListener
     }
 
     private void refreshStats() {
-        mPerformanceStatsTextView.setText(getString(R.string.performance_stats_text, 
-                100 * mSpringLayout.getAverageMeasureTime() / mRelativeLayout.getAverageMeasureTime(),
-                100 * mSpringLayout.getAverageLayoutTime() / mRelativeLayout.getAverageLayoutTime()));
+        final long relativeMeasureTime = mRelativeLayout.getAverageMeasureTime();
+        final long relativeLayoutTime = mRelativeLayout.getAverageLayoutTime();
+        if (relativeMeasureTime == 0 || relativeLayoutTime == 0) {
+            return;
+        }
+        StringBuilder stats = new StringBuilder(getString(R.string.performance_stats_text,
+                100 * mSpringLayout.getAverageMeasureTime() / relativeMeasureTime,
+                100 * mSpringLayout.getAverageLayoutTime() / relativeLayoutTime));
+        appendPercentiles(stats, R.string.spring_layout, mSpringLayout);
+        appendPercentiles(stats, R.string.relative_layout, mRelativeLayout);
+        mPerformanceStatsTextView.setText(stats);
+    }
+
+    private void appendPercentiles(StringBuilder stats, int titleResId, MeasurableLayout layout) {
+        stats.append("\n\n").append(getString(titleResId));
+        appendPercentiles(stats, R.string.performance_measure, layout.getMeasureHistogram());
+        appendPercentiles(stats, R.string.performance_rebuild_measure, layout.getRebuildMeasureHistogram());
+        appendPercentiles(stats, R.string.performance_size_only_measure, layout.getSizeOnlyMeasureHistogram());
+        appendPercentiles(stats, R.string.performance_layout, layout.getLayoutHistogram());
+    }
+
+    private void appendPercentiles(StringBuilder stats, int titleResId, LatencyHistogram histogram) {
+        stats.append('\n').append(getString(R.string.performance_percentiles_text, getString(titleResId), histogram.getCount(),
+                histogram.getPercentile(50) / 1000, histogram.getPercentile(90) / 1000, histogram.getPercentile(99) / 1000,
+                histogram.getMax() / 1000));
     }
 
     @Override
@@ -0,0 +1,108 @@
+package com.github.shareme.gwsbetterrelativelayout;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+/**
+ * Measures generated layouts of every {@link StressLayoutGenerator} shape and
+ * size with both SpringLayout and RelativeLayout. Each case runs on its own
+ * message so the UI stays responsive, results are shown as they come and
+ * logged as CSV lines tagged {@link #TAG} for plotting the cost curves.
+ */
+public class TestStressActivity extends Activity {
+    private static final String TAG = "StressLayout";
+    private static final String CSV_HEADER = "shape,children,springRebuildUs,relativeRebuildUs,springMeasureP50Us,"
+            + "relativeMeasureP50Us,springLayoutP50Us,relativeLayoutP50Us";
+    private static final int ITERATIONS = 20;
+
+    private TextView mResultsTextView;
+    private StressLayoutGenerator mGenerator;
+    private Handler mHandler;
+    private int mWidth;
+    private int mCase;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.test_stress);
+        mResultsTextView = (TextView) findViewById(R.id.stress_results);
+        mGenerator = new StressLayoutGenerator(this);
+        mWidth = getResources().getDisplayMetrics().widthPixels;
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mHandler = new Handler();
+        mCase = 0;
+        mResultsTextView.setText(R.string.stress_running);
+        Log.i(TAG, CSV_HEADER);
+        mHandler.post(mCaseRunner);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mHandler.removeCallbacks(mCaseRunner);
+        mHandler = null;
+    }
+
+    private void runCase(int shape, int childCount) {
+        final MeasurableLayout spring = run(mGenerator.createSpringLayout(shape, childCount, mWidth));
+        final MeasurableLayout relative = run(mGenerator.createRelativeLayout(shape, childCount, mWidth));
+        final long springRebuild = spring.getRebuildMeasureHistogram().getMean() / 1000;
+        final long relativeRebuild = relative.getRebuildMeasureHistogram().getMean() / 1000;
+        final long springMeasure = spring.getSizeOnlyMeasureHistogram().getPercentile(50) / 1000;
+        final long relativeMeasure = relative.getSizeOnlyMeasureHistogram().getPercentile(50) / 1000;
+        final long springLayout = spring.getLayoutHistogram().getPercentile(50) / 1000;
+        final long relativeLayout = relative.getLayoutHistogram().getPercentile(50) / 1000;
+
+        final String shapeName = StressLayoutGenerator.getShapeName(shape);
+        Log.i(TAG, shapeName + "," + childCount + "," + springRebuild + "," + relativeRebuild + "," + springMeasure + ","
+                + relativeMeasure + "," + springLayout + "," + relativeLayout);
+        final CharSequence previous = mCase == 1 ? "" : mResultsTextView.getText() + "\n\n";
+        mResultsTextView.setText(previous + getString(R.string.stress_result_text, shapeName, childCount, springRebuild,
+                relativeRebuild, springMeasure, relativeMeasure, percent(springMeasure, relativeMeasure), springLayout,
+                relativeLayout, percent(springLayout, relativeLayout)));
+    }
+
+    /**
+     * Runs one measure and layout pass that builds the hierarchy, followed by
+     * passes that only change the width by a pixel.
+     */
+    private MeasurableLayout run(ViewGroup layout) {
+        final int heightMeasureSpec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        for (int i = 0; i <= ITERATIONS; i++) {
+            layout.requestLayout();
+            layout.measure(MeasureSpec.makeMeasureSpec(mWidth - (i & 1), MeasureSpec.EXACTLY), heightMeasureSpec);
+            layout.layout(0, 0, layout.getMeasuredWidth(), layout.getMeasuredHeight());
+        }
+        return (MeasurableLayout) layout;
+    }
+
+    private static long percent(long value, long reference) {
+        return reference == 0 ? 0 : 100 * value / reference;
+    }
+
+    private final Runnable mCaseRunner = new Runnable() {
+        @Override
+        public void run() {
+            final int sizes = StressLayoutGenerator.CHILD_COUNTS.length;
+            if (mCase >= StressLayoutGenerator.SHAPE_COUNT * sizes) {
+                return;
+            }
+            final int shape = mCase / sizes;
+            final int childCount = StressLayoutGenerator.CHILD_COUNTS[mCase % sizes];
+            mCase++;
+            runCase(shape, childCount);
+            if (mHandler != null) {
+                mHandler.post(mCaseRunner);
+            }
+        }
+    };
+}
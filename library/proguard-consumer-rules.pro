@@ -0,0 +1,8 @@
+# ProGuard rules applied to apps using the library, see consumerProguardFiles
+# in build.gradle.
+
+# SpringLayoutManager extends RecyclerView.LayoutManager, but recyclerview-v7
+# is a provided dependency only. Apps that do not use the manager do not
+# ship RecyclerView, and the unresolved superclass must not fail ProGuard.
+-dontwarn com.github.shareme.gwsbetterrelativelayout.library.SpringLayoutManager*
+-dontwarn android.support.v7.widget.RecyclerView*
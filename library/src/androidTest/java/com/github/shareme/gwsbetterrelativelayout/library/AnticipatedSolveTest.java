@@ -0,0 +1,74 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Checks that an anticipated spec is solved measuring only the children it
+ * affects, that their measured size is restored and that the next measure
+ * pass with the spec uses the kept frames.
+ */
+public class AnticipatedSolveTest extends InstrumentationTestCase {
+    private static final int WIDTH = 400;
+    private static final int ANTICIPATED_WIDTH = 600;
+    private static final int HEIGHT = 800;
+
+    private SpringLayout mLayout;
+    private CountingView mFixed, mStretched;
+    private int mFixedMeasures, mStretchedMeasures;
+    private int mRestoredWidth;
+    private int mEvaluations;
+    private int mFixedLeft, mStretchedWidth;
+
+    public void testPresolvedSpecIsUsed() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final Context context = getInstrumentation().getTargetContext();
+                mLayout = new SpringLayout(context);
+                mFixed = new CountingView(context);
+                mFixed.setId(1);
+                final SpringLayout.LayoutParams fixedParams = new SpringLayout.LayoutParams(100, 50);
+                fixedParams.addRelation(SpringLayout.ALIGN_PARENT_RIGHT, SpringLayout.TRUE);
+                mLayout.addView(mFixed, fixedParams);
+                mStretched = new CountingView(context);
+                mStretched.setId(2);
+                final SpringLayout.LayoutParams stretchedParams = new SpringLayout.LayoutParams(
+                        ViewGroup.LayoutParams.MATCH_PARENT, 50);
+                stretchedParams.addRelation(SpringLayout.BELOW, 1);
+                mLayout.addView(mStretched, stretchedParams);
+                mLayout.addAnticipatedMeasureSpecs(View.MeasureSpec.makeMeasureSpec(ANTICIPATED_WIDTH,
+                        View.MeasureSpec.EXACTLY), View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+                mLayout.setStatsEnabled(true);
+                measureAndLayout(WIDTH);
+
+                mFixed.mMeasureCount = mStretched.mMeasureCount = 0;
+                mLayout.solveAnticipatedMeasureSpecs();
+                mFixedMeasures = mFixed.mMeasureCount;
+                mStretchedMeasures = mStretched.mMeasureCount;
+                mRestoredWidth = mStretched.getMeasuredWidth();
+
+                mLayout.resetLayoutStats();
+                mLayout.requestLayout();
+                measureAndLayout(ANTICIPATED_WIDTH);
+                mEvaluations = mLayout.getLayoutStats().getEvaluationCount();
+                mFixedLeft = mFixed.getLeft();
+                mStretchedWidth = mStretched.getWidth();
+            }
+        });
+        assertEquals(0, mFixedMeasures);
+        assertTrue(mStretchedMeasures > 0);
+        assertEquals(WIDTH, mRestoredWidth);
+        assertEquals(0, mEvaluations);
+        assertEquals(ANTICIPATED_WIDTH - 100, mFixedLeft);
+        assertEquals(ANTICIPATED_WIDTH, mStretchedWidth);
+    }
+
+    private void measureAndLayout(int width) {
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mLayout.layout(0, 0, width, HEIGHT);
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.Arrays;
+
+/**
+ * Checks that a layout sharing the graph structure of an identical layout
+ * ends up with the same adapted layout parameters as the one that built it,
+ * and that layouts differing only in weight values share one structure.
+ */
+public class ConstraintGraphTemplateParamsTest extends InstrumentationTestCase {
+    private SpringLayout mBuilt, mShared;
+    private int mTemplateCount;
+
+    public void testSharedStructureAdaptsParameters() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ConstraintGraphTemplates.clear();
+                final Context context = getInstrumentation().getTargetContext();
+                mBuilt = createLayout(context);
+                measure(mBuilt);
+                mShared = createLayout(context);
+                measure(mShared);
+            }
+        });
+        assertEquals(mBuilt.getChildCount(), mShared.getChildCount());
+        for (int i = 0; i < mBuilt.getChildCount(); i++) {
+            final SpringLayout.LayoutParams built = (SpringLayout.LayoutParams) mBuilt.getChildAt(i).getLayoutParams();
+            final SpringLayout.LayoutParams shared = (SpringLayout.LayoutParams) mShared.getChildAt(i).getLayoutParams();
+            assertTrue("Child " + i, Arrays.equals(built.getRelations(), shared.getRelations()));
+            assertEquals("Child " + i, built.width, shared.width);
+            assertEquals("Child " + i, built.height, shared.height);
+        }
+        assertEquals(ViewGroup.LayoutParams.MATCH_PARENT, mShared.getChildAt(0).getLayoutParams().width);
+    }
+
+    public void testWeightValuesShareStructure() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ConstraintGraphTemplates.clear();
+                final Context context = getInstrumentation().getTargetContext();
+                mBuilt = createSpringLayout(context, 1);
+                measure(mBuilt);
+                mShared = createSpringLayout(context, 3);
+                measure(mShared);
+                mTemplateCount = ConstraintGraphTemplates.size();
+            }
+        });
+        assertEquals(1, mTemplateCount);
+        assertEquals(mBuilt.getChildAt(0).getMeasuredWidth(), mBuilt.getChildAt(1).getMeasuredWidth());
+        assertTrue(mShared.getChildAt(1).getMeasuredWidth() > mShared.getChildAt(0).getMeasuredWidth());
+    }
+
+    /**
+     * @return Two springs filling the width, the second with given weight.
+     */
+    private static SpringLayout createSpringLayout(Context context, int secondWeight) {
+        final SpringLayout layout = new SpringLayout(context);
+        final SpringLayout.LayoutParams first = new SpringLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, 50);
+        first.addRelation(SpringLayout.ALIGN_LEFT, SpringLayout.PARENT);
+        first.setWidthWeight(1);
+        addChild(layout, 1, first);
+        final SpringLayout.LayoutParams second = new SpringLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, 50);
+        second.addRelation(SpringLayout.RIGHT_OF, 1);
+        second.addRelation(SpringLayout.ALIGN_RIGHT, SpringLayout.PARENT);
+        second.setWidthWeight(secondWeight);
+        addChild(layout, 2, second);
+        return layout;
+    }
+
+    private static SpringLayout createLayout(Context context) {
+        final SpringLayout layout = new SpringLayout(context);
+        final SpringLayout.LayoutParams stretched = new SpringLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, 50);
+        stretched.addRelation(SpringLayout.ALIGN_PARENT_LEFT, SpringLayout.TRUE);
+        stretched.addRelation(SpringLayout.ALIGN_PARENT_RIGHT, SpringLayout.TRUE);
+        addChild(layout, 1, stretched);
+        final SpringLayout.LayoutParams centered = new SpringLayout.LayoutParams(100, 50);
+        centered.addRelation(SpringLayout.CENTER_IN_PARENT, SpringLayout.TRUE);
+        addChild(layout, 2, centered);
+        return layout;
+    }
+
+    private static void addChild(SpringLayout layout, int id, SpringLayout.LayoutParams params) {
+        final View child = new View(layout.getContext());
+        child.setId(id);
+        layout.addView(child, params);
+    }
+
+    private static void measure(SpringLayout layout) {
+        layout.measure(View.MeasureSpec.makeMeasureSpec(400, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(400, View.MeasureSpec.EXACTLY));
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.content.Context;
+import android.view.View;
+
+/**
+ * View counting how often it is measured.
+ */
+final class CountingView extends View {
+    int mMeasureCount;
+
+    CountingView(Context context) {
+        super(context);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        mMeasureCount++;
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+}
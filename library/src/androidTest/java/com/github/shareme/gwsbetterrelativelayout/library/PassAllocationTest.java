@@ -0,0 +1,88 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.content.Context;
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Verifies that whole measure and layout passes of a SpringLayout without
+ * hierarchy change allocate nothing, on top of the solver-only check of
+ * SteadyStateAllocationTest. Passes resize a child, so children are
+ * measured and the constraints are solved on every pass.
+ */
+public class PassAllocationTest extends InstrumentationTestCase {
+    private static final int WIDTH = 720;
+    private static final int ROWS = 10;
+    private static final int WARMUP_PASSES = 200;
+    private static final int PASSES = 200;
+
+    private SpringLayout mLayout;
+    private SpringLayout.LayoutParams mResizedParams;
+    private int mAllocations;
+
+    @SuppressWarnings("deprecation")
+    public void testPassesDoNotAllocate() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                createLayout(getInstrumentation().getTargetContext());
+                for (int i = 0; i < WARMUP_PASSES; i++) {
+                    pass(i);
+                }
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                for (int i = 0; i < PASSES; i++) {
+                    pass(i);
+                }
+                Debug.stopAllocCounting();
+                mAllocations = Debug.getThreadAllocCount();
+            }
+        });
+        assertEquals("Allocations in " + PASSES + " passes", 0, mAllocations);
+    }
+
+    /**
+     * Rows of a label, a spring and a value, below each other.
+     */
+    private void createLayout(Context context) {
+        mLayout = new SpringLayout(context);
+        int previousId = 0;
+        for (int row = 0; row < ROWS; row++) {
+            final int labelId = 1 + row * 3, springId = labelId + 1, valueId = labelId + 2;
+            final SpringLayout.LayoutParams label = new SpringLayout.LayoutParams(100, 40);
+            if (previousId != 0) {
+                label.addRelation(SpringLayout.BELOW, previousId);
+            }
+            addChild(context, labelId, label);
+            final SpringLayout.LayoutParams spring = new SpringLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, 40);
+            spring.addRelation(SpringLayout.RIGHT_OF, labelId);
+            spring.addRelation(SpringLayout.ALIGN_TOP, labelId);
+            spring.setWidthWeight(1);
+            addChild(context, springId, spring);
+            final SpringLayout.LayoutParams value = new SpringLayout.LayoutParams(120, 40);
+            value.addRelation(SpringLayout.RIGHT_OF, springId);
+            value.addRelation(SpringLayout.ALIGN_TOP, labelId);
+            value.addRelation(SpringLayout.ALIGN_PARENT_RIGHT, SpringLayout.TRUE);
+            addChild(context, valueId, value);
+            previousId = labelId;
+        }
+        mResizedParams = (SpringLayout.LayoutParams) mLayout.getChildAt(0).getLayoutParams();
+    }
+
+    private void addChild(Context context, int id, SpringLayout.LayoutParams params) {
+        final View child = new View(context);
+        child.setId(id);
+        mLayout.addView(child, params);
+    }
+
+    private void pass(int pass) {
+        // A fixed width change keeps the graph, only the solver inputs change.
+        mResizedParams.setWidth((pass & 1) == 0 ? 100 : 110);
+        mLayout.requestLayout();
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        mLayout.layout(0, 0, mLayout.getMeasuredWidth(), mLayout.getMeasuredHeight());
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Checks that a width change of a SpringLayout neither solves its vertical
+ * axis nor measures its fixed size children again.
+ */
+public class PerAxisLayoutTest extends InstrumentationTestCase {
+    private static final int HEIGHT = 800;
+
+    private SpringLayout mLayout;
+    private CountingView mFixed, mStretched;
+    private int mSkippedBefore, mSkippedAfter;
+    private int mFixedMeasures, mStretchedMeasures;
+    private int mFixedLeft, mStretchedWidth;
+
+    public void testWidthChangeSkipsVerticalAxis() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final Context context = getInstrumentation().getTargetContext();
+                mLayout = new SpringLayout(context);
+                mFixed = new CountingView(context);
+                mFixed.setId(1);
+                final SpringLayout.LayoutParams fixedParams = new SpringLayout.LayoutParams(100, 50);
+                fixedParams.addRelation(SpringLayout.ALIGN_PARENT_RIGHT, SpringLayout.TRUE);
+                mLayout.addView(mFixed, fixedParams);
+                mStretched = new CountingView(context);
+                mStretched.setId(2);
+                final SpringLayout.LayoutParams stretchedParams = new SpringLayout.LayoutParams(
+                        ViewGroup.LayoutParams.MATCH_PARENT, 50);
+                stretchedParams.addRelation(SpringLayout.BELOW, 1);
+                mLayout.addView(mStretched, stretchedParams);
+                measureAndLayout(400);
+
+                mSkippedBefore = mLayout.getSkippedAxisCount();
+                mFixed.mMeasureCount = mStretched.mMeasureCount = 0;
+                mLayout.requestLayout();
+                measureAndLayout(600);
+                mSkippedAfter = mLayout.getSkippedAxisCount();
+                mFixedMeasures = mFixed.mMeasureCount;
+                mStretchedMeasures = mStretched.mMeasureCount;
+                mFixedLeft = mFixed.getLeft();
+                mStretchedWidth = mStretched.getWidth();
+            }
+        });
+        assertEquals(mSkippedBefore + 1, mSkippedAfter);
+        assertEquals(0, mFixedMeasures);
+        assertTrue(mStretchedMeasures > 0);
+        assertEquals(500, mFixedLeft);
+        assertEquals(600, mStretchedWidth);
+    }
+
+    private void measureAndLayout(int width) {
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mLayout.layout(0, 0, width, HEIGHT);
+    }
+}
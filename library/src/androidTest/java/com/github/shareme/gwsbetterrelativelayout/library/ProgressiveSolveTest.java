@@ -0,0 +1,74 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.test.InstrumentationTestCase;
+import android.view.View;
+
+/**
+ * Drives a progressive solve to the end and checks that its frames are laid
+ * out.
+ */
+public class ProgressiveSolveTest extends InstrumentationTestCase {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 800;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private SpringLayout mLayout;
+    private View mChild;
+    private volatile boolean mPending;
+    private int mLeftBeforePublish;
+    private boolean mLayoutRequested;
+
+    public void testFinishedSolveIsLaidOut() throws Exception {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mLayout = new SpringLayout(getInstrumentation().getTargetContext());
+                mLayout.setProgressiveSolving(true);
+                mChild = new View(getInstrumentation().getTargetContext());
+                mChild.setId(1);
+                final SpringLayout.LayoutParams params = new SpringLayout.LayoutParams(100, 50);
+                params.addRelation(SpringLayout.ALIGN_PARENT_RIGHT, SpringLayout.TRUE);
+                mLayout.addView(mChild, params);
+                // The first pass solves at once.
+                measureAndLayout();
+
+                ((SpringLayout.LayoutParams) mChild.getLayoutParams()).setWidth(200);
+                mLayout.requestLayout();
+                measureAndLayout();
+                mPending = mLayout.isProgressiveSolvePending();
+                mLeftBeforePublish = mChild.getLeft();
+            }
+        });
+        assertTrue(mPending);
+        assertEquals(WIDTH - 100, mLeftBeforePublish);
+
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (mPending && System.currentTimeMillis() < deadline) {
+            Thread.sleep(16);
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    mPending = mLayout.isProgressiveSolvePending();
+                }
+            });
+        }
+        assertFalse(mPending);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mLayoutRequested = mLayout.isLayoutRequested();
+                measureAndLayout();
+            }
+        });
+        assertTrue(mLayoutRequested);
+        assertEquals(WIDTH - 200, mChild.getLeft());
+        assertEquals(200, mChild.getWidth());
+    }
+
+    private void measureAndLayout() {
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mLayout.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Checks that SpringLayoutManager solves on data changes but not while
+ * scrolling, and rejects constraints it cannot honor.
+ */
+public class SpringLayoutManagerTest extends InstrumentationTestCase {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 800;
+    private static final int ITEM_WIDTH = 200;
+    private static final int ITEM_HEIGHT = 100;
+
+    private RecyclerView mRecyclerView;
+    private SpringLayoutManager mLayoutManager;
+    private ItemAdapter mAdapter;
+    private int mSolvesAfterLayout, mSolvesAfterScroll, mSolvesAfterInsert;
+    private int mFirstVisibleTop;
+
+    public void testScrollingDoesNotSolve() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final Context context = getInstrumentation().getTargetContext();
+                mRecyclerView = new RecyclerView(context);
+                mLayoutManager = new SpringLayoutManager();
+                mAdapter = new ItemAdapter(50);
+                mRecyclerView.setLayoutManager(mLayoutManager);
+                mRecyclerView.setAdapter(mAdapter);
+                measureAndLayout();
+                mSolvesAfterLayout = mLayoutManager.getSolveCount();
+
+                mRecyclerView.scrollBy(0, 3 * ITEM_HEIGHT + ITEM_HEIGHT / 2);
+                mSolvesAfterScroll = mLayoutManager.getSolveCount();
+                mFirstVisibleTop = mLayoutManager.findViewByPosition(4).getTop();
+
+                mAdapter.mItemCount++;
+                mAdapter.notifyItemInserted(mAdapter.mItemCount - 1);
+                measureAndLayout();
+                mSolvesAfterInsert = mLayoutManager.getSolveCount();
+            }
+        });
+        assertTrue(mSolvesAfterLayout > 0);
+        assertEquals(mSolvesAfterLayout, mSolvesAfterScroll);
+        assertEquals(ITEM_HEIGHT / 2, mFirstVisibleTop);
+        assertTrue(mSolvesAfterInsert > mSolvesAfterScroll);
+    }
+
+    public void testAdapterWithoutConstraintSourceIsRejected() {
+        try {
+            new SpringLayoutManager().onAdapterChanged(null, new RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+                @Override
+                public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+                    return null;
+                }
+
+                @Override
+                public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+                }
+
+                @Override
+                public int getItemCount() {
+                    return 0;
+                }
+            });
+            fail("Adapter without ConstraintSource accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    public void testVerticalParentConstraintsAreRejected() {
+        final int[] relations = new int[] { SpringLayout.ALIGN_PARENT_BOTTOM, SpringLayout.CENTER_VERTICAL,
+                SpringLayout.CENTER_IN_PARENT };
+        for (int relation : relations) {
+            final SpringLayout.LayoutParams params = new SpringLayout.LayoutParams(ITEM_WIDTH, ITEM_HEIGHT);
+            params.addRelation(relation, SpringLayout.TRUE);
+            assertRejected(params);
+        }
+        final SpringLayout.LayoutParams bottom = new SpringLayout.LayoutParams(ITEM_WIDTH, ITEM_HEIGHT);
+        bottom.addRelation(SpringLayout.ALIGN_BOTTOM, SpringLayout.PARENT);
+        assertRejected(bottom);
+        assertRejected(new SpringLayout.LayoutParams(ITEM_WIDTH, ViewGroup.LayoutParams.MATCH_PARENT));
+        final SpringLayout.LayoutParams spring = new SpringLayout.LayoutParams(ITEM_WIDTH, ViewGroup.LayoutParams.WRAP_CONTENT);
+        spring.setHeightWeight(1);
+        assertRejected(spring);
+        final SpringLayout.LayoutParams relative = new SpringLayout.LayoutParams(ITEM_WIDTH, ITEM_HEIGHT);
+        relative.setRelativeHeight(50);
+        assertRejected(relative);
+
+        final SpringLayout.LayoutParams below = new SpringLayout.LayoutParams(ITEM_WIDTH, ITEM_HEIGHT);
+        below.addRelation(SpringLayout.BELOW, 1);
+        below.addRelation(SpringLayout.ALIGN_PARENT_RIGHT, SpringLayout.TRUE);
+        SpringLayoutManager.checkConstraints(0, below);
+    }
+
+    private static void assertRejected(SpringLayout.LayoutParams params) {
+        try {
+            SpringLayoutManager.checkConstraints(0, params);
+            fail("Vertical parent constraint accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    private void measureAndLayout() {
+        mRecyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mRecyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Items of fixed size stacked below each other.
+     */
+    private static final class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> implements
+            SpringLayoutManager.ConstraintSource {
+        int mItemCount;
+
+        ItemAdapter(int itemCount) {
+            mItemCount = itemCount;
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            final View view = new View(parent.getContext());
+            view.setLayoutParams(new RecyclerView.LayoutParams(ITEM_WIDTH, ITEM_HEIGHT));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItemCount;
+        }
+
+        @Override
+        public int getConstraintId(int position) {
+            return position + 1;
+        }
+
+        @Override
+        public void getConstraints(int position, SpringLayout.LayoutParams outParams) {
+            outParams.width = ITEM_WIDTH;
+            outParams.height = ITEM_HEIGHT;
+            if (position > 0) {
+                outParams.addRelation(SpringLayout.BELOW, position);
+            }
+        }
+    }
+}
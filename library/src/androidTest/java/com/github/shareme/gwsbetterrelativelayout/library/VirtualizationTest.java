@@ -0,0 +1,145 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Checks that children outside the viewport of a virtualized layout keep
+ * their visibility but are neither laid out, focusable nor hit by touch,
+ * and come back once virtualization is off.
+ */
+public class VirtualizationTest extends InstrumentationTestCase {
+    private static final int WIDTH = 400;
+    private static final int CHILD_COUNT = 3;
+
+    private final View[] mChildren = new View[CHILD_COUNT];
+    private final boolean[] mTouched = new boolean[CHILD_COUNT];
+    private final int[] mVisibility = new int[CHILD_COUNT];
+    private SpringLayout mLayout;
+    private int mChildHeight;
+    private int mHiddenWidth;
+    private boolean mHiddenFocusable;
+
+    public void testChildrenOutsideViewportAreSkipped() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final Context context = getInstrumentation().getTargetContext();
+                // Not attached, the viewport is assumed to be the screen height.
+                mChildHeight = context.getResources().getDisplayMetrics().heightPixels;
+                mLayout = new SpringLayout(context);
+                for (int i = 0; i < CHILD_COUNT; i++) {
+                    final int index = i;
+                    mChildren[i] = new View(context);
+                    mChildren[i].setId(i + 1);
+                    mChildren[i].setFocusable(true);
+                    mChildren[i].setFocusableInTouchMode(true);
+                    mChildren[i].setOnTouchListener(new View.OnTouchListener() {
+                        @Override
+                        public boolean onTouch(View v, MotionEvent event) {
+                            mTouched[index] = true;
+                            return true;
+                        }
+                    });
+                    final SpringLayout.LayoutParams params = new SpringLayout.LayoutParams(WIDTH, mChildHeight);
+                    if (i > 0) {
+                        params.addRelation(SpringLayout.BELOW, i);
+                    }
+                    mLayout.addView(mChildren[i], params);
+                }
+                mLayout.setVirtualizationEnabled(true, 0);
+                measureAndLayout();
+
+                final View hidden = mChildren[CHILD_COUNT - 1];
+                for (int i = 0; i < CHILD_COUNT; i++) {
+                    mVisibility[i] = mChildren[i].getVisibility();
+                }
+                mHiddenWidth = hidden.getWidth();
+                mHiddenFocusable = mLayout.getFocusables(View.FOCUS_DOWN).contains(hidden);
+                touch(WIDTH / 2, mChildHeight * (CHILD_COUNT - 1) + mChildHeight / 2);
+            }
+        });
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            assertEquals(View.VISIBLE, mVisibility[i]);
+        }
+        assertEquals(0, mHiddenWidth);
+        assertFalse(mHiddenFocusable);
+        assertFalse(mTouched[CHILD_COUNT - 1]);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mLayout.setVirtualizationEnabled(false, 0);
+                measureAndLayout();
+                for (int i = 0; i < CHILD_COUNT; i++) {
+                    mVisibility[i] = mChildren[i].getVisibility();
+                }
+                mHiddenWidth = mChildren[CHILD_COUNT - 1].getWidth();
+                mHiddenFocusable = mLayout.getFocusables(View.FOCUS_DOWN).contains(mChildren[CHILD_COUNT - 1]);
+                touch(WIDTH / 2, mChildHeight * (CHILD_COUNT - 1) + mChildHeight / 2);
+            }
+        });
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            assertEquals(View.VISIBLE, mVisibility[i]);
+        }
+        assertEquals(WIDTH, mHiddenWidth);
+        assertTrue(mHiddenFocusable);
+        assertTrue(mTouched[CHILD_COUNT - 1]);
+    }
+
+    public void testFirstPassMeasuresOnlyViewport() {
+        final int[] measureCounts = new int[10];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final Context context = getInstrumentation().getTargetContext();
+                mChildHeight = (context.getResources().getDisplayMetrics().heightPixels + 1) / 2;
+                mLayout = new SpringLayout(context);
+                for (int i = 0; i < measureCounts.length; i++) {
+                    final int index = i;
+                    final View child = new View(context) {
+                        @Override
+                        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+                            measureCounts[index]++;
+                            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+                        }
+                    };
+                    child.setId(i + 1);
+                    child.setMinimumHeight(mChildHeight);
+                    final SpringLayout.LayoutParams params = new SpringLayout.LayoutParams(WIDTH,
+                            SpringLayout.LayoutParams.WRAP_CONTENT);
+                    if (i > 0) {
+                        params.addRelation(SpringLayout.BELOW, i);
+                    }
+                    mLayout.addView(child, params);
+                }
+                mLayout.setVirtualizationEnabled(true, 0);
+                measureAndLayout();
+            }
+        });
+        // Wrapped children are unknown until measured, only the two filling
+        // the screen are, the others are estimated below it.
+        assertTrue(measureCounts[0] > 0);
+        assertTrue(measureCounts[1] > 0);
+        for (int i = 2; i < measureCounts.length; i++) {
+            assertEquals("Child " + i, 0, measureCounts[i]);
+        }
+        assertEquals(measureCounts.length * mChildHeight, mLayout.getMeasuredHeight());
+    }
+
+    private void measureAndLayout() {
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        mLayout.layout(0, 0, mLayout.getMeasuredWidth(), mLayout.getMeasuredHeight());
+    }
+
+    private void touch(float x, float y) {
+        final long now = SystemClock.uptimeMillis();
+        final MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y, 0);
+        mLayout.dispatchTouchEvent(down);
+        down.recycle();
+    }
+}
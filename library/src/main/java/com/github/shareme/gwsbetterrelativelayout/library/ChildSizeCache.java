@@ -0,0 +1,99 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import java.util.Arrays;
+
+/**
+ * Sizes of children that are only measured while inside a viewport, used by
+ * virtualized layouts and {@link SpringLayoutManager}. Children that were
+ * never measured are estimated from their fixed size or the average size of
+ * the measured ones.
+ *
+ * @author sulewicz
+ */
+final class ChildSizeCache {
+    // Last measured width and height of every child, -1 if never measured.
+    private int[] mSizes = new int[0];
+    private long mMeasuredWidthSum, mMeasuredHeightSum;
+    private int mMeasuredCount;
+    private long[] mOrderKeys = new long[0];
+    private int[] mOrder = new int[0];
+
+    /**
+     * Makes room for given number of children, added ones are not measured.
+     */
+    void ensureCapacity(int count) {
+        if (mSizes.length < count * 2) {
+            final int oldLength = mSizes.length;
+            mSizes = Arrays.copyOf(mSizes, count * 2);
+            Arrays.fill(mSizes, oldLength, mSizes.length, -1);
+        }
+    }
+
+    /**
+     * Forgets all measured sizes, e.g. when children no longer match their
+     * indices.
+     */
+    void clear() {
+        Arrays.fill(mSizes, -1);
+        mMeasuredWidthSum = mMeasuredHeightSum = mMeasuredCount = 0;
+    }
+
+    void put(int index, int width, int height) {
+        if (mSizes[2 * index] < 0) {
+            mMeasuredCount++;
+        } else {
+            mMeasuredWidthSum -= mSizes[2 * index];
+            mMeasuredHeightSum -= mSizes[2 * index + 1];
+        }
+        mSizes[2 * index] = width;
+        mSizes[2 * index + 1] = height;
+        mMeasuredWidthSum += width;
+        mMeasuredHeightSum += height;
+    }
+
+    /**
+     * @param fixedSize
+     *            Size from the layout params, negative if not fixed.
+     * @return Last measured size, fixed size or average of measured
+     *         children, 0 if none was measured.
+     */
+    int get(int index, boolean horizontal, int fixedSize) {
+        final int cached = mSizes[2 * index + (horizontal ? 0 : 1)];
+        if (cached >= 0) {
+            return cached;
+        }
+        if (fixedSize >= 0) {
+            return fixedSize;
+        }
+        if (mMeasuredCount == 0) {
+            return 0;
+        }
+        return (int) ((horizontal ? mMeasuredWidthSum : mMeasuredHeightSum) / mMeasuredCount);
+    }
+
+    boolean isEmpty() {
+        return mMeasuredCount == 0;
+    }
+
+    /**
+     * Orders children from top to bottom, so that the first viewport can be
+     * filled without measuring every child.
+     *
+     * @return Indices of the first count children sorted by the top of their
+     *         frames, reused by the next call.
+     */
+    int[] sortByTop(int[] frames, int count) {
+        if (mOrder.length < count) {
+            mOrderKeys = new long[count];
+            mOrder = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            mOrderKeys[i] = ((long) frames[i * ConstraintSolver.FRAME_STRIDE + 1] << 32) | i;
+        }
+        Arrays.sort(mOrderKeys, 0, count);
+        for (int i = 0; i < count; i++) {
+            mOrder[i] = (int) mOrderKeys[i];
+        }
+        return mOrder;
+    }
+}
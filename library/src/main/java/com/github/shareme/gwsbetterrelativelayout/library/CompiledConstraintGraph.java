@@ -0,0 +1,177 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * Structure of a SpringLayout compiled at build time by the
+ * ConstraintGraphCompiler or SpringLayoutBuilderGenerator tools, or captured at runtime by {@link ConstraintGraphTemplates}: normalized
+ * relations resolved to child indices, weights and the children whose size
+ * becomes match_parent. Margins, relative sizes and visibility are still read
+ * from the children when the graph is used.
+ *
+ * Binary format, big endian: magic, version, child count, then for every
+ * child a flags byte, width and height weight as shorts and
+ * {@link ConstraintGraph#RELATION_SLOTS} anchors as shorts.
+ *
+ * @author sulewicz
+ */
+final class CompiledConstraintGraph {
+    static final int MAGIC = 0x53504752;
+    static final int VERSION = 1;
+    static final int FLAG_MATCH_PARENT_WIDTH = 1;
+    static final int FLAG_MATCH_PARENT_HEIGHT = 2;
+
+    // Assets are immutable, every path is loaded once per process.
+    private static final HashMap<String, CompiledConstraintGraph> sLoaded = new HashMap<>();
+    // Generated builders pass the same constant array on every inflation.
+    private static final WeakHashMap<byte[], CompiledConstraintGraph> sRead = new WeakHashMap<>();
+
+    final int mChildCount;
+    final byte[] mFlags;
+    final int[] mWidthWeights;
+    final int[] mHeightWeights;
+    final int[] mAnchors;
+
+    private CompiledConstraintGraph(int childCount) {
+        this(childCount, new byte[childCount], new int[childCount], new int[childCount],
+                new int[childCount * ConstraintGraph.RELATION_SLOTS]);
+    }
+
+    private CompiledConstraintGraph(int childCount, byte[] flags, int[] widthWeights, int[] heightWeights, int[] anchors) {
+        mChildCount = childCount;
+        mFlags = flags;
+        mWidthWeights = widthWeights;
+        mHeightWeights = heightWeights;
+        mAnchors = anchors;
+    }
+
+    /**
+     * @param flags
+     *            FLAG_* bits of every child.
+     * @return Structure of the graph, sharing its arrays.
+     */
+    static CompiledConstraintGraph from(ConstraintGraph graph, byte[] flags) {
+        return new CompiledConstraintGraph(graph.mChildCount, flags, graph.mWidthWeights, graph.mHeightWeights, graph.mAnchors);
+    }
+
+    /**
+     * Loads a compiled graph from assets, memory-mapped if the asset is
+     * stored uncompressed.
+     *
+     * @throws IOException
+     *             If the asset is missing or not a compiled graph.
+     */
+    static CompiledConstraintGraph load(AssetManager assets, String path) throws IOException {
+        synchronized (sLoaded) {
+            CompiledConstraintGraph graph = sLoaded.get(path);
+            if (graph == null) {
+                graph = read(map(assets, path));
+                sLoaded.put(path, graph);
+            }
+            return graph;
+        }
+    }
+
+    private static ByteBuffer map(AssetManager assets, String path) throws IOException {
+        AssetFileDescriptor descriptor = null;
+        try {
+            descriptor = assets.openFd(path);
+        } catch (IOException e) {
+            // Compressed asset, can only be streamed.
+        }
+        if (descriptor != null) {
+            final FileInputStream in = descriptor.createInputStream();
+            try {
+                return in.getChannel().map(FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(),
+                        descriptor.getDeclaredLength());
+            } finally {
+                in.close();
+            }
+        }
+        final InputStream in = assets.open(path);
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a compiled graph embedded in code, cached by array identity.
+     *
+     * @throws IOException
+     *             If the array is not a compiled graph.
+     */
+    static CompiledConstraintGraph read(byte[] bytes) throws IOException {
+        synchronized (sRead) {
+            CompiledConstraintGraph graph = sRead.get(bytes);
+            if (graph == null) {
+                graph = read(ByteBuffer.wrap(bytes));
+                sRead.put(bytes, graph);
+            }
+            return graph;
+        }
+    }
+
+    static CompiledConstraintGraph read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a compiled constraint graph");
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported compiled constraint graph version " + version);
+        }
+        final int childCount = buffer.getInt();
+        if (childCount < 0 || buffer.remaining() != childCount * (5 + 2 * ConstraintGraph.RELATION_SLOTS)) {
+            throw new IOException("Truncated compiled constraint graph");
+        }
+        final CompiledConstraintGraph graph = new CompiledConstraintGraph(childCount);
+        for (int i = 0; i < childCount; i++) {
+            graph.mFlags[i] = buffer.get();
+            graph.mWidthWeights[i] = buffer.getShort();
+            graph.mHeightWeights[i] = buffer.getShort();
+            for (int relation = 0; relation < ConstraintGraph.RELATION_SLOTS; relation++) {
+                graph.mAnchors[i * ConstraintGraph.RELATION_SLOTS + relation] = buffer.getShort();
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * @param flags
+     *            FLAG_* bits of every child.
+     */
+    static void write(ConstraintGraph graph, byte[] flags, OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(graph.mChildCount);
+        for (int i = 0; i < graph.mChildCount; i++) {
+            data.writeByte(flags[i]);
+            data.writeShort(graph.mWidthWeights[i]);
+            data.writeShort(graph.mHeightWeights[i]);
+            for (int relation = 0; relation < ConstraintGraph.RELATION_SLOTS; relation++) {
+                data.writeShort(graph.mAnchors[i * ConstraintGraph.RELATION_SLOTS + relation]);
+            }
+        }
+        data.flush();
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Solves many constraint graphs in parallel on an {@link ExecutorService},
+ * with no views involved. Meant for precomputing positions of layout
+ * variants on a plain JVM, e.g. for screenshot tests.
+ *
+ * Every worker thread solves with its own solver and {@link LayoutMath} pool
+ * (see {@link ConstraintPresolver}). Jobs are split into contiguous ranges,
+ * so keeping jobs of the same graph next to each other lets workers reuse
+ * built constraints instead of rebuilding them for every job. The calling
+ * thread solves the first range itself.
+ *
+ * The executor belongs to the caller, who shuts it down when done.
+ *
+ * @author sulewicz
+ */
+public final class ConstraintBatchSolver {
+    // Jobs solved by a single range at least.
+    private static final int MIN_JOBS_PER_TASK = 16;
+
+    private final ExecutorService mExecutor;
+    private final int mParallelism;
+
+    /**
+     * Single solve request, child sizes are not copied.
+     */
+    public static final class Job {
+        final ConstraintGraph mGraph;
+        final int[] mChildSizes;
+        final int mWidthMeasureSpec, mHeightMeasureSpec;
+
+        /**
+         * @see ConstraintPresolver#solve(ConstraintGraph, int[], int, int)
+         */
+        public Job(ConstraintGraph graph, int[] childSizes, int widthMeasureSpec, int heightMeasureSpec) {
+            mGraph = graph;
+            mChildSizes = childSizes;
+            mWidthMeasureSpec = widthMeasureSpec;
+            mHeightMeasureSpec = heightMeasureSpec;
+        }
+    }
+
+    /**
+     * Receives results as soon as they are solved. Called concurrently from
+     * worker threads, in no particular order.
+     */
+    public interface Listener {
+        void onSolved(int jobIndex, FrameTable frames);
+
+        void onFailed(int jobIndex, RuntimeException e);
+    }
+
+    /**
+     * @param executor
+     *            Runs all ranges but the first, not shut down by the solver.
+     * @param parallelism
+     *            Maximum number of ranges solved at the same time, usually
+     *            the number of threads of the executor plus one.
+     */
+    public ConstraintBatchSolver(ExecutorService executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        mExecutor = executor;
+        mParallelism = parallelism;
+    }
+
+    /**
+     * Solves all jobs and blocks until the last result is delivered.
+     *
+     * @throws IllegalStateException
+     *             If the calling thread is interrupted while waiting.
+     */
+    public void solve(List<Job> jobs, Listener listener) {
+        final int count = jobs.size();
+        final int ranges = Math.max(1, Math.min(mParallelism, count / MIN_JOBS_PER_TASK));
+        final Future<?>[] futures = new Future<?>[ranges - 1];
+        try {
+            for (int i = 1; i < ranges; i++) {
+                futures[i - 1] = mExecutor.submit(new SolveTask(jobs, i * count / ranges, (i + 1) * count / ranges,
+                        listener));
+            }
+            new SolveTask(jobs, 0, count / ranges, listener).run();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving", e);
+        } catch (ExecutionException e) {
+            // Thrown by the listener.
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        } finally {
+            for (Future<?> future : futures) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves all jobs and blocks until done.
+     *
+     * @return Frame tables in job order.
+     * @throws IllegalStateException
+     *             First failure, if any job could not be solved.
+     */
+    public FrameTable[] solveAll(List<Job> jobs) {
+        final FrameTable[] results = new FrameTable[jobs.size()];
+        final RuntimeException[] failure = new RuntimeException[1];
+        solve(jobs, new Listener() {
+            @Override
+            public void onSolved(int jobIndex, FrameTable frames) {
+                results[jobIndex] = frames;
+            }
+
+            @Override
+            public void onFailed(int jobIndex, RuntimeException e) {
+                synchronized (failure) {
+                    if (failure[0] == null) {
+                        failure[0] = new IllegalStateException("Job " + jobIndex + " failed", e);
+                    }
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return results;
+    }
+
+    private static class SolveTask implements Runnable {
+        private final List<Job> mJobs;
+        private final int mStart, mEnd;
+        private final Listener mListener;
+
+        SolveTask(List<Job> jobs, int start, int end, Listener listener) {
+            mJobs = jobs;
+            mStart = start;
+            mEnd = end;
+            mListener = listener;
+        }
+
+        @Override
+        public void run() {
+            for (int i = mStart; i < mEnd; i++) {
+                final Job job = mJobs.get(i);
+                final FrameTable frames;
+                try {
+                    frames = ConstraintPresolver.solve(job.mGraph, job.mChildSizes, job.mWidthMeasureSpec,
+                            job.mHeightMeasureSpec);
+                } catch (RuntimeException e) {
+                    mListener.onFailed(i, e);
+                    continue;
+                }
+                mListener.onSolved(i, frames);
+            }
+        }
+    }
+}
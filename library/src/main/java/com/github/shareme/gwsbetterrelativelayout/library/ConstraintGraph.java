@@ -0,0 +1,288 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_CENTER_VERTICALLY;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.PARENT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.VALID_RELATIONS;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.VERB_COUNT;
+
+/**
+ * View-free snapshot of the constraints of a SpringLayout.
+ *
+ * Relations are normalized the same way SpringLayout does it (parent
+ * alignment, centering and default anchors) and anchors are resolved to child
+ * indices, so the graph can be solved without a view hierarchy. Instances are
+ * immutable; obtain one with {@link SpringLayout#captureConstraintGraph()} or
+ * build one with {@link Builder}.
+ *
+ * @author sulewicz
+ */
+@SuppressWarnings("unused")
+public final class ConstraintGraph {
+    /**
+     * Anchor index meaning that relation points at the parent layout.
+     */
+    public static final int PARENT_INDEX = -1;
+    /**
+     * Anchor index meaning that relation is not set.
+     */
+    public static final int NO_ANCHOR = -2;
+
+    static final int RELATION_SLOTS = ALIGN_CENTER_VERTICALLY + 1;
+    static final int MARGIN_LEFT = 0;
+    static final int MARGIN_TOP = 1;
+    static final int MARGIN_RIGHT = 2;
+    static final int MARGIN_BOTTOM = 3;
+
+    final int mChildCount;
+    final int[] mIds;
+    final int[] mAnchors;
+    final int[] mWidthWeights;
+    final int[] mHeightWeights;
+    final int[] mRelativeWidths;
+    final int[] mRelativeHeights;
+    final int[] mMargins;
+    final boolean[] mGone;
+    final int mMinWidth, mMinHeight;
+    final int mPaddingLeft, mPaddingTop, mPaddingRight, mPaddingBottom;
+
+    ConstraintGraph(int childCount, int[] ids, int[] anchors, int[] widthWeights, int[] heightWeights, int[] relativeWidths,
+            int[] relativeHeights, int[] margins, boolean[] gone, int minWidth, int minHeight, int paddingLeft, int paddingTop,
+            int paddingRight, int paddingBottom) {
+        mChildCount = childCount;
+        mIds = ids;
+        mAnchors = anchors;
+        mWidthWeights = widthWeights;
+        mHeightWeights = heightWeights;
+        mRelativeWidths = relativeWidths;
+        mRelativeHeights = relativeHeights;
+        mMargins = margins;
+        mGone = gone;
+        mMinWidth = minWidth;
+        mMinHeight = minHeight;
+        mPaddingLeft = paddingLeft;
+        mPaddingTop = paddingTop;
+        mPaddingRight = paddingRight;
+        mPaddingBottom = paddingBottom;
+    }
+
+    public int getChildCount() {
+        return mChildCount;
+    }
+
+    /**
+     * @return View id of the child, {@link android.view.View#NO_ID} if it had
+     *         none.
+     */
+    public int getId(int child) {
+        return mIds[child];
+    }
+
+    /**
+     * @param child
+     *            Child index.
+     * @param relation
+     *            One of the relations between {@link SpringLayout#LEFT_OF} and
+     *            {@link SpringLayout#ALIGN_CENTER_VERTICALLY}.
+     * @return Index of the anchor child, {@link #PARENT_INDEX} or
+     *         {@link #NO_ANCHOR}.
+     */
+    public int getAnchor(int child, int relation) {
+        return mAnchors[child * RELATION_SLOTS + relation];
+    }
+
+    public int getWidthWeight(int child) {
+        return mWidthWeights[child];
+    }
+
+    public int getHeightWeight(int child) {
+        return mHeightWeights[child];
+    }
+
+    public int getRelativeWidth(int child) {
+        return mRelativeWidths[child];
+    }
+
+    public int getRelativeHeight(int child) {
+        return mRelativeHeights[child];
+    }
+
+    public boolean isGone(int child) {
+        return mGone[child];
+    }
+
+    public int getMinWidth() {
+        return mMinWidth;
+    }
+
+    public int getMinHeight() {
+        return mMinHeight;
+    }
+
+    /**
+     * @return True if other graph has the same child ids, relations and
+     *         springs. Weight values, margins, relative sizes, visibility,
+     *         padding and minimum size can change between measure passes and
+     *         are not compared, only whether a child has a weight.
+     */
+    public boolean hasSameStructure(ConstraintGraph other) {
+        return other == this || (other != null && mChildCount == other.mChildCount && Arrays.equals(mIds, other.mIds)
+                && Arrays.equals(mAnchors, other.mAnchors) && haveSameSprings(mWidthWeights, other.mWidthWeights)
+                && haveSameSprings(mHeightWeights, other.mHeightWeights));
+    }
+
+    private static boolean haveSameSprings(int[] weights, int[] otherWeights) {
+        if (weights.length != otherWeights.length) {
+            return false;
+        }
+        for (int i = 0; i < weights.length; i++) {
+            if ((weights[i] > 0) != (otherWeights[i] > 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mutable description of children used to create a ConstraintGraph
+     * without views. Relations use view ids, {@link SpringLayout#PARENT} and
+     * {@link SpringLayout#TRUE} exactly like
+     * {@link SpringLayout.LayoutParams#addRelation(int, int)}.
+     */
+    public static class Builder {
+        private int mChildCount;
+        private int[] mIds = new int[16];
+        private int[][] mRelations = new int[16][];
+        private int[] mWidths = new int[16];
+        private int[] mHeights = new int[16];
+        private int[] mWidthWeights = new int[16];
+        private int[] mHeightWeights = new int[16];
+        private int[] mRelativeWidths = new int[16];
+        private int[] mRelativeHeights = new int[16];
+        private int[] mMargins = new int[16 * 4];
+        private boolean[] mGone = new boolean[16];
+        private int mMinWidth, mMinHeight;
+        private int mPaddingLeft, mPaddingTop, mPaddingRight, mPaddingBottom;
+
+        /**
+         * @param id
+         *            View id of the child, used to resolve relations.
+         * @param width
+         *            Layout width: MATCH_PARENT, WRAP_CONTENT or size in
+         *            pixels.
+         * @param height
+         *            Layout height: MATCH_PARENT, WRAP_CONTENT or size in
+         *            pixels.
+         * @return Index of the added child.
+         */
+        public int addChild(int id, int width, int height) {
+            if (mChildCount == mIds.length) {
+                final int newLen = mChildCount * 2;
+                mIds = Arrays.copyOf(mIds, newLen);
+                mRelations = Arrays.copyOf(mRelations, newLen);
+                mWidths = Arrays.copyOf(mWidths, newLen);
+                mHeights = Arrays.copyOf(mHeights, newLen);
+                mWidthWeights = Arrays.copyOf(mWidthWeights, newLen);
+                mHeightWeights = Arrays.copyOf(mHeightWeights, newLen);
+                mRelativeWidths = Arrays.copyOf(mRelativeWidths, newLen);
+                mRelativeHeights = Arrays.copyOf(mRelativeHeights, newLen);
+                mMargins = Arrays.copyOf(mMargins, newLen * 4);
+                mGone = Arrays.copyOf(mGone, newLen);
+            }
+            final int index = mChildCount++;
+            mIds[index] = id;
+            mRelations[index] = new int[VERB_COUNT];
+            mWidths[index] = width;
+            mHeights[index] = height;
+            return index;
+        }
+
+        public Builder addRelation(int child, int relation, int anchor) {
+            mRelations[child][relation] = anchor;
+            return this;
+        }
+
+        public Builder setWeights(int child, int widthWeight, int heightWeight) {
+            mWidthWeights[child] = widthWeight;
+            mHeightWeights[child] = heightWeight;
+            return this;
+        }
+
+        /**
+         * @param relativeWidth
+         *            Width in percents of the parent, 0 if not relative.
+         * @param relativeHeight
+         *            Height in percents of the parent, 0 if not relative.
+         */
+        public Builder setRelativeSize(int child, int relativeWidth, int relativeHeight) {
+            mRelativeWidths[child] = relativeWidth;
+            mRelativeHeights[child] = relativeHeight;
+            return this;
+        }
+
+        public Builder setMargins(int child, int left, int top, int right, int bottom) {
+            final int offset = child * 4;
+            mMargins[offset + MARGIN_LEFT] = left;
+            mMargins[offset + MARGIN_TOP] = top;
+            mMargins[offset + MARGIN_RIGHT] = right;
+            mMargins[offset + MARGIN_BOTTOM] = bottom;
+            return this;
+        }
+
+        public Builder setGone(int child, boolean gone) {
+            mGone[child] = gone;
+            return this;
+        }
+
+        public Builder setMinimumSize(int minWidth, int minHeight) {
+            mMinWidth = minWidth;
+            mMinHeight = minHeight;
+            return this;
+        }
+
+        public Builder setPadding(int left, int top, int right, int bottom) {
+            mPaddingLeft = left;
+            mPaddingTop = top;
+            mPaddingRight = right;
+            mPaddingBottom = bottom;
+            return this;
+        }
+
+        public ConstraintGraph build() {
+            final int count = mChildCount;
+            final HashMap<Integer, Integer> idToIndex = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                idToIndex.put(mIds[i], i);
+            }
+            final int[] anchors = new int[count * RELATION_SLOTS];
+            for (int i = 0; i < count; i++) {
+                final int[] relations = mRelations[i].clone();
+                if (mWidthWeights[i] > 0 && mWidths[i] != SpringLayout.LayoutParams.WRAP_CONTENT) {
+                    throw new IllegalArgumentException("widthWeight > 0 not supported for layout_width != WRAP_CONTENT in child " + i);
+                }
+                if (mHeightWeights[i] > 0 && mHeights[i] != SpringLayout.LayoutParams.WRAP_CONTENT) {
+                    throw new IllegalArgumentException("heightWeight > 0 not supported for layout_height != WRAP_CONTENT in child " + i);
+                }
+                SpringLayout.adaptHeight(relations, mHeights[i]);
+                SpringLayout.adaptWidth(relations, mWidths[i]);
+                SpringLayout.adaptRelations(relations);
+
+                Arrays.fill(anchors, i * RELATION_SLOTS, (i + 1) * RELATION_SLOTS, NO_ANCHOR);
+                for (int relation : VALID_RELATIONS) {
+                    final int target = relations[relation];
+                    if (target == PARENT) {
+                        anchors[i * RELATION_SLOTS + relation] = PARENT_INDEX;
+                    } else if (target > 0 && idToIndex.containsKey(target)) {
+                        anchors[i * RELATION_SLOTS + relation] = idToIndex.get(target);
+                    }
+                }
+            }
+            return new ConstraintGraph(count, Arrays.copyOf(mIds, count), anchors, Arrays.copyOf(mWidthWeights, count),
+                    Arrays.copyOf(mHeightWeights, count), Arrays.copyOf(mRelativeWidths, count), Arrays.copyOf(mRelativeHeights,
+                            count), Arrays.copyOf(mMargins, count * 4), Arrays.copyOf(mGone, count), mMinWidth, mMinHeight,
+                    mPaddingLeft, mPaddingTop, mPaddingRight, mPaddingBottom);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.BinaryOperationValue;
+import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.Value;
+import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.ValueWrapper;
+import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.Variable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Writes the solved constraint expressions of a {@link ConstraintSolver} as
+ * Graphviz DOT or JSON.
+ *
+ * Every node carries its cached value, evaluation count since the last
+ * counters reset, depth (longest path to a constant) and the id of the view
+ * owning it. Evaluations are counted only while the LayoutMath counters are
+ * enabled. Shared sub-expressions are reported once, under the first view
+ * that reaches them. Values are read from cache, exporting does not evaluate
+ * anything.
+ *
+ * @author sulewicz
+ */
+final class ConstraintGraphExporter {
+    private static final String[] ATTRIBUTE_NAMES = new String[] { "left", "right", "top", "bottom", "width", "height",
+            "leftMargin", "topMargin", "rightMargin", "bottomMargin", "innerLeft", "innerRight", "innerTop", "innerBottom" };
+
+    private final ArrayList<Node> mNodes = new ArrayList<>();
+    private final IdentityHashMap<Value, Node> mNodeByValue = new IdentityHashMap<>();
+    private final LayoutMath mLayoutMath;
+
+    private static class Node {
+        int id;
+        Value value;
+        String name;
+        int viewId;
+        int childIndex;
+        int depth = -1;
+        Node[] inputs;
+    }
+
+    ConstraintGraphExporter(ConstraintSolver solver, int layoutId) {
+        if (solver.getGraph() == null) {
+            throw new IllegalStateException("Constraint graph not built yet, layout has to be measured first");
+        }
+        mLayoutMath = solver.getLayoutMath();
+        addConstraints(solver.getRootConstraints(), layoutId);
+        final ConstraintGraph graph = solver.getGraph();
+        for (int i = 0; i < solver.getChildCount(); i++) {
+            addConstraints(solver.getViewConstraints(i), graph.getId(i));
+        }
+        for (int i = 0; i < mNodes.size(); i++) {
+            computeDepth(mNodes.get(i));
+        }
+    }
+
+    private void addConstraints(ViewConstraints constraints, int viewId) {
+        final Value[] attributes = new Value[] { constraints.left, constraints.right, constraints.top, constraints.bottom,
+                constraints.width, constraints.height, constraints.leftMargin, constraints.topMargin, constraints.rightMargin,
+                constraints.bottomMargin, constraints.innerLeft, constraints.innerRight, constraints.innerTop,
+                constraints.innerBottom };
+        for (int i = 0; i < attributes.length; i++) {
+            final Node node = addNode(attributes[i], viewId, constraints.getIndex());
+            if (node.name == null) {
+                node.name = ATTRIBUTE_NAMES[i];
+            }
+        }
+    }
+
+    private Node addNode(Value value, int viewId, int childIndex) {
+        Node node = mNodeByValue.get(value);
+        if (node != null) {
+            return node;
+        }
+        node = new Node();
+        node.id = mNodes.size();
+        node.value = value;
+        node.viewId = viewId;
+        node.childIndex = childIndex;
+        mNodes.add(node);
+        mNodeByValue.put(value, node);
+        if (value instanceof ValueWrapper) {
+            node.inputs = new Node[] { addNode(((ValueWrapper) value).getValueObject(), viewId, childIndex) };
+        } else if (value instanceof BinaryOperationValue) {
+            final BinaryOperationValue operation = (BinaryOperationValue) value;
+            node.inputs = new Node[] { addNode(operation.mV1, viewId, childIndex), addNode(operation.mV2, viewId, childIndex) };
+        } else {
+            node.inputs = new Node[0];
+        }
+        return node;
+    }
+
+    private static int computeDepth(Node node) {
+        if (node.depth < 0) {
+            int depth = 0;
+            for (Node input : node.inputs) {
+                depth = Math.max(depth, computeDepth(input) + 1);
+            }
+            node.depth = depth;
+        }
+        return node.depth;
+    }
+
+    private static String getKind(Value value) {
+        if (value instanceof Variable) {
+            return "variable";
+        } else if (value instanceof ValueWrapper) {
+            return "wrapper";
+        } else if (value instanceof BinaryOperationValue) {
+            return "operation";
+        } else {
+            return "unknown";
+        }
+    }
+
+    private String getOperation(Value value) {
+        if (value instanceof Variable) {
+            return String.valueOf(value.getValueImpl());
+        } else if (value instanceof BinaryOperationValue) {
+            final char op = ((BinaryOperationValue) value).mOp;
+            return op == 'm' ? "min" : op == 'M' ? "max" : String.valueOf(op);
+        } else if (value == mLayoutMath.unknown()) {
+            return "?";
+        }
+        return "";
+    }
+
+    void writeDot(Writer writer) throws IOException {
+        writer.write("digraph SpringLayout {\n  rankdir=BT;\n  node [shape=box, fontname=monospace];\n");
+        for (Node node : mNodes) {
+            final int cached = node.value.getCachedValue();
+            writer.write("  n" + node.id + " [label=\"");
+            if (node.name != null) {
+                writer.write("#" + node.viewId + " " + node.name + "\\n");
+            }
+            final String operation = getOperation(node.value);
+            writer.write((operation.isEmpty() ? "" : operation + " ") + "= "
+                    + (cached == node.value.INVALID ? "?" : String.valueOf(cached)) + "\\nevals "
+                    + node.value.getNodeEvaluationCount() + ", depth " + node.depth + "\"");
+            if (node.name == null) {
+                writer.write(", style=dashed");
+            }
+            writer.write("];\n");
+            for (Node input : node.inputs) {
+                writer.write("  n" + node.id + " -> n" + input.id + ";\n");
+            }
+        }
+        writer.write("}\n");
+        writer.flush();
+    }
+
+    void writeJson(Writer writer) throws IOException {
+        writer.write("{\"evaluationCount\":" + mLayoutMath.getEvaluationCount() + ",\"nodes\":[");
+        for (int i = 0; i < mNodes.size(); i++) {
+            final Node node = mNodes.get(i);
+            final int cached = node.value.getCachedValue();
+            writer.write(i == 0 ? "\n" : ",\n");
+            writer.write("{\"id\":" + node.id + ",\"kind\":\"" + getKind(node.value) + "\",\"op\":\"" + getOperation(node.value)
+                    + "\",\"name\":" + (node.name == null ? "null" : "\"" + node.name + "\"") + ",\"viewId\":" + node.viewId
+                    + ",\"childIndex\":" + node.childIndex + ",\"value\":"
+                    + (cached == node.value.INVALID ? "null" : String.valueOf(cached)) + ",\"evaluations\":"
+                    + node.value.getNodeEvaluationCount() + ",\"depth\":" + node.depth + ",\"inputs\":[");
+            for (int j = 0; j < node.inputs.length; j++) {
+                if (j > 0) {
+                    writer.write(',');
+                }
+                writer.write(String.valueOf(node.inputs[j].id));
+            }
+            writer.write("]}");
+        }
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+}
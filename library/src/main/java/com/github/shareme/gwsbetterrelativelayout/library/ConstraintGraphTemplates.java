@@ -0,0 +1,84 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of graph structures shared by SpringLayouts whose
+ * children have the same ids, sizes, relations and weights, e.g. every row
+ * inflated from one layout resource. A hit skips id resolution and anchor
+ * tables, the shared structure is immutable and instances only allocate
+ * their own constraint values. Layout parameters are still normalized, so
+ * they read back the same as after a miss.
+ *
+ * A view cannot tell which resource it was inflated from, so the key is the
+ * complete signature of the children and lookups compare it in full. The
+ * least recently used structures are evicted.
+ *
+ * @author sulewicz
+ */
+final class ConstraintGraphTemplates {
+    static final int MAX_TEMPLATES = 64;
+
+    private static final LinkedHashMap<Signature, CompiledConstraintGraph> sTemplates = new LinkedHashMap<Signature, CompiledConstraintGraph>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Signature, CompiledConstraintGraph> eldest) {
+            return size() > MAX_TEMPLATES;
+        }
+    };
+
+    private ConstraintGraphTemplates() {
+    }
+
+    /**
+     * @param signature
+     *            Key created by {@link SpringLayout}, must not be modified
+     *            afterwards.
+     * @return Shared structure or null.
+     */
+    static CompiledConstraintGraph get(int[] signature) {
+        synchronized (sTemplates) {
+            return sTemplates.get(new Signature(signature));
+        }
+    }
+
+    static void put(int[] signature, CompiledConstraintGraph graph) {
+        synchronized (sTemplates) {
+            sTemplates.put(new Signature(signature), graph);
+        }
+    }
+
+    static int size() {
+        synchronized (sTemplates) {
+            return sTemplates.size();
+        }
+    }
+
+    static void clear() {
+        synchronized (sTemplates) {
+            sTemplates.clear();
+        }
+    }
+
+    private static final class Signature {
+        final int[] mValues;
+        final int mHash;
+
+        Signature(int[] values) {
+            mValues = values;
+            mHash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Signature && mHash == ((Signature) o).mHash && Arrays.equals(mValues, ((Signature) o).mValues);
+        }
+    }
+}
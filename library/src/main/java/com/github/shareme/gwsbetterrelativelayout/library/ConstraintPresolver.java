@@ -0,0 +1,86 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+/**
+ * Solves constraint graphs away from the UI thread.
+ *
+ * Every calling thread gets its own solver and {@link LayoutMath}, reused for
+ * consecutive calls with the same graph. A typical use is RecyclerView
+ * prefetch: capture the graph of a row once with
+ * {@link SpringLayout#captureConstraintGraph()}, solve incoming rows on a
+ * worker and pass the results to
+ * {@link SpringLayout#setPresolvedFrames(FrameTable)} before they are
+ * measured.
+ */
+public final class ConstraintPresolver {
+    private static final ThreadLocal<ConstraintSolver> sSolvers = new ThreadLocal<ConstraintSolver>() {
+        @Override
+        protected ConstraintSolver initialValue() {
+            return new ConstraintSolver(new LayoutMath(), null);
+        }
+    };
+
+    private ConstraintPresolver() {
+    }
+
+    /**
+     * @param graph
+     *            Graph captured from the layout that will use the result.
+     * @param childSizes
+     *            Measured width and height of every child, 2 ints per child,
+     *            excluding margins.
+     * @param widthMeasureSpec
+     *            Width measure spec the layout is expected to be measured
+     *            with.
+     * @param heightMeasureSpec
+     *            Height measure spec the layout is expected to be measured
+     *            with.
+     * @throws IllegalStateException
+     *             If the constraints cannot be solved, same as
+     *             {@link SpringLayout#onMeasure(int, int)}.
+     */
+    public static FrameTable solve(ConstraintGraph graph, int[] childSizes, int widthMeasureSpec, int heightMeasureSpec) {
+        if (childSizes.length < graph.getChildCount() * 2) {
+            throw new IllegalArgumentException("Expected " + graph.getChildCount() * 2 + " child sizes, got "
+                    + childSizes.length);
+        }
+        final ConstraintSolver solver = sSolvers.get();
+        final int[] frames = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE];
+        try {
+            solver.solve(graph, childSizes, widthMeasureSpec, heightMeasureSpec, frames);
+        } catch (RuntimeException e) {
+            // Constraints may be half built, next call starts from scratch.
+            sSolvers.remove();
+            throw e;
+        }
+        return solver.createFrameTable(widthMeasureSpec, heightMeasureSpec, frames);
+    }
+
+    /**
+     * Solves for the current inputs of a layout's solver rather than the
+     * values its graph was captured with, so the result matches the layout
+     * when none of them change. Used for frames solved ahead on the thread
+     * of the layout.
+     *
+     * @param source
+     *            Solver of the layout, it is not modified.
+     * @param childSizes
+     *            Measured width and height of every child, 2 ints per child,
+     *            excluding margins.
+     * @see #solve(ConstraintGraph, int[], int, int)
+     */
+    static FrameTable solve(ConstraintSolver source, int[] childSizes, int widthMeasureSpec, int heightMeasureSpec) {
+        final int count = source.getChildCount();
+        if (childSizes.length < count * 2) {
+            throw new IllegalArgumentException("Expected " + count * 2 + " child sizes, got " + childSizes.length);
+        }
+        final ConstraintSolver solver = sSolvers.get();
+        final int[] frames = new int[count * ConstraintSolver.FRAME_STRIDE];
+        try {
+            solver.solve(source, childSizes, widthMeasureSpec, heightMeasureSpec, frames);
+        } catch (RuntimeException e) {
+            sSolvers.remove();
+            throw e;
+        }
+        return solver.createFrameTable(widthMeasureSpec, heightMeasureSpec, frames);
+    }
+}
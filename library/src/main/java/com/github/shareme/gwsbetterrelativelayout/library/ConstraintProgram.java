@@ -0,0 +1,364 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.view.View;
+
+import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.BinaryOperationValue;
+import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.Value;
+import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.ValueWrapper;
+import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.Variable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Constraints of a {@link ConstraintGraph} compiled into a flat list of
+ * instructions over registers, evaluated for many instances of the same
+ * layout at once, e.g. all visible and prefetched RecyclerView rows.
+ *
+ * Only measured child sizes differ between instances. Margins, relative
+ * sizes, visibility, padding and minimum size are taken from the graph and
+ * measure specs are fixed at compile time. Every instruction runs over all
+ * instances in a tight loop over contiguous ints, so arrays are
+ * column-major: row k holds value k of every instance.
+ *
+ * The horizontal and vertical constraints are independent and compiled into
+ * separate instruction streams. {@link #evaluateAxis} of each axis may run
+ * on its own thread at the same time, otherwise the program is not
+ * thread-safe as registers are reused between calls.
+ *
+ * @author sulewicz
+ */
+public final class ConstraintProgram {
+    private final ConstraintGraph mGraph;
+    private final int mWidthMeasureSpec, mHeightMeasureSpec;
+    private final int mRegisterCount;
+    private final int[] mConstantRegisters;
+    private final int[] mConstantValues;
+    private final AxisProgram mHorizontal, mVertical;
+
+    /**
+     * Instructions of one axis with their own registers.
+     */
+    private static class AxisProgram {
+        // Rows of childSizes copied to registers before running.
+        int[] mInputRows, mInputRegisters;
+        char[] mOps;
+        int[] mTargets, mOperands1, mOperands2;
+        // Rows of frames copied from registers after running.
+        int[] mOutputRows, mOutputRegisters;
+        int mSizeRegister;
+        int[] mRegisters = new int[0];
+    }
+
+    private ConstraintProgram(Compiler compiler, ConstraintGraph graph, int widthMeasureSpec, int heightMeasureSpec) {
+        mGraph = graph;
+        mWidthMeasureSpec = widthMeasureSpec;
+        mHeightMeasureSpec = heightMeasureSpec;
+        mRegisterCount = compiler.mRegisterCount;
+        mConstantRegisters = toArray(compiler.mConstantRegisters);
+        mConstantValues = toArray(compiler.mConstantValues);
+        mHorizontal = compiler.mAxes[0];
+        mVertical = compiler.mAxes[1];
+    }
+
+    /**
+     * Compiles constraints of the graph for given measure specs.
+     *
+     * @throws IllegalStateException
+     *             If the constraints cannot be solved, same as
+     *             {@link SpringLayout#onMeasure(int, int)}.
+     */
+    public static ConstraintProgram compile(ConstraintGraph graph, int widthMeasureSpec, int heightMeasureSpec) {
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        final int count = graph.getChildCount();
+        // Structure of the constraints does not depend on child sizes, any will do.
+        solver.solve(graph, new int[count * 2], widthMeasureSpec, heightMeasureSpec,
+                new int[count * ConstraintSolver.FRAME_STRIDE]);
+        final Compiler compiler = new Compiler(solver, widthMeasureSpec, heightMeasureSpec);
+        return new ConstraintProgram(compiler, graph, widthMeasureSpec, heightMeasureSpec);
+    }
+
+    public ConstraintGraph getGraph() {
+        return mGraph;
+    }
+
+    public int getChildCount() {
+        return mGraph.getChildCount();
+    }
+
+    public int getWidthMeasureSpec() {
+        return mWidthMeasureSpec;
+    }
+
+    public int getHeightMeasureSpec() {
+        return mHeightMeasureSpec;
+    }
+
+    public int getInstructionCount() {
+        return mHorizontal.mOps.length + mVertical.mOps.length;
+    }
+
+    /**
+     * Solves instanceCount layouts.
+     *
+     * @param childSizes
+     *            Measured sizes, row 2 * child holds widths and row 2 * child
+     *            + 1 heights of that child in all instances.
+     * @param frames
+     *            Receives child positions, row 4 * child + k holds left (k =
+     *            0), top, right and bottom (k = 3) of that child in all
+     *            instances.
+     * @param measuredSizes
+     *            Receives layout width in row 0 and height in row 1, may be
+     *            null.
+     */
+    public void evaluate(int[] childSizes, int[] frames, int[] measuredSizes, int instanceCount) {
+        evaluateAxis(true, childSizes, frames, measuredSizes, instanceCount);
+        evaluateAxis(false, childSizes, frames, measuredSizes, instanceCount);
+    }
+
+    /**
+     * Same as {@link #evaluate(int[], int[], int[], int)} for one axis only:
+     * reads child widths and writes left, right and layout width when
+     * horizontal, heights, top, bottom and layout height otherwise.
+     */
+    public void evaluateAxis(boolean horizontal, int[] childSizes, int[] frames, int[] measuredSizes, int instanceCount) {
+        final AxisProgram axis = horizontal ? mHorizontal : mVertical;
+        final int n = instanceCount;
+        if (axis.mRegisters.length < mRegisterCount * n) {
+            axis.mRegisters = new int[mRegisterCount * n];
+        }
+        final int[] r = axis.mRegisters;
+        for (int i = 0; i < mConstantRegisters.length; i++) {
+            final int offset = mConstantRegisters[i] * n;
+            Arrays.fill(r, offset, offset + n, mConstantValues[i]);
+        }
+        for (int i = 0; i < axis.mInputRows.length; i++) {
+            System.arraycopy(childSizes, axis.mInputRows[i] * n, r, axis.mInputRegisters[i] * n, n);
+        }
+        final char[] ops = axis.mOps;
+        final int[] targets = axis.mTargets, operands1 = axis.mOperands1, operands2 = axis.mOperands2;
+        for (int k = 0; k < ops.length; k++) {
+            final int t = targets[k] * n, a = operands1[k] * n, b = operands2[k] * n;
+            switch (ops[k]) {
+                case '+':
+                    for (int j = 0; j < n; j++) {
+                        r[t + j] = r[a + j] + r[b + j];
+                    }
+                    break;
+                case '-':
+                    for (int j = 0; j < n; j++) {
+                        r[t + j] = r[a + j] - r[b + j];
+                    }
+                    break;
+                case '*':
+                    for (int j = 0; j < n; j++) {
+                        r[t + j] = r[a + j] * r[b + j];
+                    }
+                    break;
+                case '/':
+                    for (int j = 0; j < n; j++) {
+                        r[t + j] = r[a + j] / r[b + j];
+                    }
+                    break;
+                case 'm':
+                    for (int j = 0; j < n; j++) {
+                        r[t + j] = Math.min(r[a + j], r[b + j]);
+                    }
+                    break;
+                case 'M':
+                    for (int j = 0; j < n; j++) {
+                        r[t + j] = Math.max(r[a + j], r[b + j]);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operation: " + ops[k]);
+            }
+        }
+        for (int i = 0; i < axis.mOutputRows.length; i++) {
+            System.arraycopy(r, axis.mOutputRegisters[i] * n, frames, axis.mOutputRows[i] * n, n);
+        }
+        if (measuredSizes != null) {
+            System.arraycopy(r, axis.mSizeRegister * n, measuredSizes, horizontal ? 0 : n, n);
+        }
+    }
+
+    private static int[] toArray(ArrayList<Integer> list) {
+        final int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Walks the solved expressions of each axis, children before parents,
+     * assigning every value one register. Values reachable from both axes are
+     * compiled into both, so that the axes never share computed registers.
+     */
+    private static class Compiler {
+        private final ConstraintSolver mSolver;
+        private final boolean mWrapContentWidth, mWrapContentHeight;
+        private final IdentityHashMap<Value, Integer> mInputRows = new IdentityHashMap<>();
+        private final HashMap<Integer, Integer> mRegisterByConstant = new HashMap<>();
+        private IdentityHashMap<Value, Integer> mRegisterByValue;
+        private IdentityHashMap<Value, Boolean> mDependsOnRoot;
+        private final ArrayList<Integer> mInputRowList = new ArrayList<>();
+        private final ArrayList<Integer> mInputRegisterList = new ArrayList<>();
+        private final StringBuilder mOps = new StringBuilder();
+        private final ArrayList<Integer> mTargets = new ArrayList<>();
+        private final ArrayList<Integer> mOperands1 = new ArrayList<>();
+        private final ArrayList<Integer> mOperands2 = new ArrayList<>();
+
+        int mRegisterCount;
+        final ArrayList<Integer> mConstantRegisters = new ArrayList<>();
+        final ArrayList<Integer> mConstantValues = new ArrayList<>();
+        final AxisProgram[] mAxes = new AxisProgram[2];
+
+        Compiler(ConstraintSolver solver, int widthMeasureSpec, int heightMeasureSpec) {
+            mSolver = solver;
+            mWrapContentWidth = (widthMeasureSpec & View.MeasureSpec.EXACTLY) == 0;
+            mWrapContentHeight = (heightMeasureSpec & View.MeasureSpec.EXACTLY) == 0;
+            final int count = solver.getChildCount();
+            for (int i = 0; i < count; i++) {
+                final ViewConstraints constraints = solver.getViewConstraints(i);
+                if (solver.isMeasuredWidthInput(i)) {
+                    mInputRows.put(constraints.contentWidth, 2 * i);
+                }
+                if (solver.isMeasuredHeightInput(i)) {
+                    mInputRows.put(constraints.contentHeight, 2 * i + 1);
+                }
+            }
+            mAxes[0] = compileAxis(true);
+            mAxes[1] = compileAxis(false);
+        }
+
+        private AxisProgram compileAxis(boolean horizontal) {
+            mRegisterByValue = new IdentityHashMap<>();
+            mDependsOnRoot = new IdentityHashMap<>();
+            final int count = mSolver.getChildCount();
+            final int[] outputRows = new int[count * 2];
+            final int[] outputRegisters = new int[count * 2];
+            for (int i = 0; i < count; i++) {
+                final ViewConstraints constraints = mSolver.getViewConstraints(i);
+                final int row = i * ConstraintSolver.FRAME_STRIDE + (horizontal ? 0 : 1);
+                outputRows[2 * i] = row;
+                outputRegisters[2 * i] = compile(horizontal ? constraints.innerLeft : constraints.innerTop);
+                outputRows[2 * i + 1] = row + 2;
+                outputRegisters[2 * i + 1] = compile(horizontal ? constraints.innerRight : constraints.innerBottom);
+            }
+            final AxisProgram axis = new AxisProgram();
+            axis.mSizeRegister = compile(horizontal ? mSolver.getRootWidth() : mSolver.getRootHeight());
+            axis.mOutputRows = outputRows;
+            axis.mOutputRegisters = outputRegisters;
+            axis.mInputRows = toArray(mInputRowList);
+            axis.mInputRegisters = toArray(mInputRegisterList);
+            axis.mOps = new char[mOps.length()];
+            mOps.getChars(0, axis.mOps.length, axis.mOps, 0);
+            axis.mTargets = toArray(mTargets);
+            axis.mOperands1 = toArray(mOperands1);
+            axis.mOperands2 = toArray(mOperands2);
+            mInputRowList.clear();
+            mInputRegisterList.clear();
+            mOps.setLength(0);
+            mTargets.clear();
+            mOperands1.clear();
+            mOperands2.clear();
+            return axis;
+        }
+
+        private int constant(int value) {
+            Integer register = mRegisterByConstant.get(value);
+            if (register == null) {
+                register = mRegisterCount++;
+                mRegisterByConstant.put(value, register);
+                mConstantRegisters.add(register);
+                mConstantValues.add(value);
+            }
+            return register;
+        }
+
+        private int operation(char op, int operand1, int operand2) {
+            final int register = mRegisterCount++;
+            mOps.append(op);
+            mTargets.add(register);
+            mOperands1.add(operand1);
+            mOperands2.add(operand2);
+            return register;
+        }
+
+        private int compile(Value value) {
+            final Integer known = mRegisterByValue.get(value);
+            if (known != null) {
+                return known;
+            }
+            final Integer inputRow = mInputRows.get(value);
+            final int register;
+            if (inputRow != null) {
+                register = mRegisterCount++;
+                mInputRowList.add(inputRow);
+                mInputRegisterList.add(register);
+            } else if (value instanceof ValueWrapper) {
+                register = compile(((ValueWrapper) value).getValueObject());
+            } else if (value instanceof BinaryOperationValue) {
+                final BinaryOperationValue operation = (BinaryOperationValue) value;
+                final int operand1 = compile(operation.mV1);
+                final int operand2 = compile(operation.mV2);
+                register = operation(operation.mOp, operand1, operand2);
+            } else if (value == mSolver.getRootWidth() && mWrapContentWidth) {
+                register = compileWrapContentSize(true);
+            } else if (value == mSolver.getRootHeight() && mWrapContentHeight) {
+                register = compileWrapContentSize(false);
+            } else if (value instanceof Variable) {
+                register = constant(value.getValueImpl());
+            } else {
+                throw new IllegalStateException("Constraints of " + mSolver.getGraph() + " depend on an unknown value");
+            }
+            mRegisterByValue.put(value, register);
+            return register;
+        }
+
+        /**
+         * Same as the wrap content pass of the solver: the largest right
+         * (bottom) edge of children not depending on the layout size, plus
+         * padding.
+         */
+        private int compileWrapContentSize(boolean horizontal) {
+            final ConstraintGraph graph = mSolver.getGraph();
+            final int minSize = horizontal ? graph.mMinWidth : graph.mMinHeight;
+            final Variable root = horizontal ? mSolver.getRootWidth() : mSolver.getRootHeight();
+            final ViewConstraints rootConstraints = mSolver.getRootConstraints();
+            final int padding = (horizontal ? rootConstraints.rightMargin : rootConstraints.bottomMargin).getValueImpl();
+            int register = constant(minSize > 0 ? minSize : -1);
+            for (int i = 0; i < mSolver.getChildCount(); i++) {
+                final ViewConstraints constraints = mSolver.getViewConstraints(i);
+                final Value edge = horizontal ? constraints.right : constraints.bottom;
+                if (!dependsOn(edge, root, mDependsOnRoot)) {
+                    register = operation('M', register, operation('+', compile(edge), constant(padding)));
+                }
+            }
+            return register;
+        }
+
+        private static boolean dependsOn(Value value, Value root, IdentityHashMap<Value, Boolean> cache) {
+            if (value == root) {
+                return true;
+            }
+            final Boolean known = cache.get(value);
+            if (known != null) {
+                return known;
+            }
+            boolean result = false;
+            if (value instanceof ValueWrapper) {
+                result = dependsOn(((ValueWrapper) value).getValueObject(), root, cache);
+            } else if (value instanceof BinaryOperationValue) {
+                final BinaryOperationValue operation = (BinaryOperationValue) value;
+                result = dependsOn(operation.mV1, root, cache) || dependsOn(operation.mV2, root, cache);
+            }
+            cache.put(value, result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,880 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.Value;
+import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.ValueWrapper;
+import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.Variable;
+
+import java.util.Arrays;
+import java.util.Stack;
+
+import static com.github.shareme.gwsbetterrelativelayout.library.ConstraintGraph.MARGIN_BOTTOM;
+import static com.github.shareme.gwsbetterrelativelayout.library.ConstraintGraph.MARGIN_LEFT;
+import static com.github.shareme.gwsbetterrelativelayout.library.ConstraintGraph.MARGIN_RIGHT;
+import static com.github.shareme.gwsbetterrelativelayout.library.ConstraintGraph.MARGIN_TOP;
+import static com.github.shareme.gwsbetterrelativelayout.library.ConstraintGraph.NO_ANCHOR;
+import static com.github.shareme.gwsbetterrelativelayout.library.ConstraintGraph.PARENT_INDEX;
+import static com.github.shareme.gwsbetterrelativelayout.library.ConstraintGraph.RELATION_SLOTS;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.VALID_RELATIONS;
+
+/**
+ * Solves a {@link ConstraintGraph} with {@link LayoutMath}, without touching
+ * views. SpringLayout feeds it measured children on the UI thread, headless
+ * callers feed it child sizes directly.
+ *
+ * Not thread-safe, every thread needs its own instance.
+ *
+ * @author sulewicz
+ */
+class ConstraintSolver {
+    static final int RELATIVE_SIZE_DENOMINATOR = 100;
+
+    /**
+     * Number of ints describing a child in the frame table: left, top, right
+     * and bottom.
+     */
+    static final int FRAME_STRIDE = 4;
+
+    // Per-child input layout
+    private static final int INPUT_WIDTH = 0;
+    private static final int INPUT_HEIGHT = 1;
+    private static final int INPUT_MARGIN = 2;
+    private static final int INPUT_RELATIVE_WIDTH = 6;
+    private static final int INPUT_RELATIVE_HEIGHT = 7;
+    private static final int INPUT_WIDTH_WEIGHT = 8;
+    private static final int INPUT_HEIGHT_WEIGHT = 9;
+    private static final int INPUT_STRIDE = 10;
+
+    // What the size expression of a child was built from, it is rebuilt only
+    // when this changes.
+    private static final byte SIZE_SOURCE_NONE = 0;
+    private static final byte SIZE_SOURCE_MEASURED = 1;
+    private static final byte SIZE_SOURCE_RELATIVE = 2;
+
+    // Constants for error reporting purpose
+    private static final int TOP = 0;
+    private static final int BOTTOM = 1;
+    private static final int LEFT = 2;
+    private static final int RIGHT = 3;
+    private static final String[] ANCHOR_NAMES = new String[] { "top", "bottom", "left", "right" };
+
+    private static final String TRACE_CREATE_VIEW_METRICS = "SpringLayout#createViewMetrics";
+    private static final String TRACE_HANDLE_SPRINGS = "SpringLayout#handleSprings";
+    private static final String TRACE_INVALIDATE_MATH_CACHE = "SpringLayout#invalidateMathCache";
+    private static final String TRACE_UPDATE_CHILDREN_SIZE = "SpringLayout#updateChildrenSize";
+    private static final String TRACE_UPDATE_LAYOUT_SIZE = "SpringLayout#updateLayoutSize";
+    private static final String TRACE_CACHE_LAYOUT_POSITIONS = "SpringLayout#cacheLayoutPositions";
+
+    private static final int MODE_MASK = View.MeasureSpec.EXACTLY | View.MeasureSpec.AT_MOST;
+
+    private final LayoutMath mLayoutMath;
+    private final ViewGroup mOwner;
+    private LayoutTracer mTracer;
+
+    private ConstraintGraph mGraph;
+    private boolean mWrapContentWidth, mWrapContentHeight;
+    private int mChildCount;
+    private ViewConstraints mRootConstraints;
+    private ViewConstraints[] mViewConstraints = new ViewConstraints[0];
+    private final Stack<ViewConstraints> mSpringMetrics = new Stack<>();
+    private final SimpleIdentitySet<ViewConstraints> mHorizontalChains = new SimpleIdentitySet<>();
+    private final SimpleIdentitySet<ViewConstraints> mVerticalChains = new SimpleIdentitySet<>();
+
+    private int[] mInputs = new int[0];
+    private boolean[] mGone = new boolean[0];
+    private byte[] mWidthSources = new byte[0];
+    private byte[] mHeightSources = new byte[0];
+    // Retained by the solver for its whole life, only their values change.
+    private final Variable mRootWidth;
+    private final Variable mRootHeight;
+    private final Variable mRelativeSizeDenominator;
+    private int mPaddingLeft, mPaddingTop, mPaddingRight, mPaddingBottom;
+    private int mMinWidth, mMinHeight;
+
+    // Inputs of the last successful solve. An axis whose inputs did not change
+    // keeps its cached values and is not evaluated again.
+    private boolean mSolvedValid;
+    private int[] mSolvedInputs = new int[0];
+    private boolean[] mSolvedGone = new boolean[0];
+    private boolean mSolvedWrapContentWidth, mSolvedWrapContentHeight;
+    private int mSolvedWidth, mSolvedHeight;
+    private int mSolvedPaddingLeft, mSolvedPaddingTop, mSolvedPaddingRight, mSolvedPaddingBottom;
+    private int mSolvedMinWidth, mSolvedMinHeight;
+    private int mSkippedAxisCount;
+    private boolean mPreparedWrapContentWidth, mPreparedWrapContentHeight;
+    private int mPreparedWidth, mPreparedHeight;
+
+    /**
+     * @param layoutMath
+     *            Math used for the constraints, must be confined to the thread
+     *            using this solver.
+     * @param owner
+     *            Layout whose children are solved, only used for error
+     *            messages. May be null.
+     */
+    ConstraintSolver(LayoutMath layoutMath, ViewGroup owner) {
+        mLayoutMath = layoutMath;
+        mOwner = owner;
+        mRootWidth = layoutMath.variable().retain();
+        mRootHeight = layoutMath.variable().retain();
+        mRelativeSizeDenominator = layoutMath.variable(RELATIVE_SIZE_DENOMINATOR).retain();
+    }
+
+    LayoutMath getLayoutMath() {
+        return mLayoutMath;
+    }
+
+    ConstraintGraph getGraph() {
+        return mGraph;
+    }
+
+    int getChildCount() {
+        return mChildCount;
+    }
+
+    ViewConstraints getRootConstraints() {
+        return mRootConstraints;
+    }
+
+    ViewConstraints getViewConstraints(int index) {
+        return mViewConstraints[index];
+    }
+
+    Variable getRootWidth() {
+        return mRootWidth;
+    }
+
+    Variable getRootHeight() {
+        return mRootHeight;
+    }
+
+    /**
+     * @return True if content width of the child is its measured width, not
+     *         a relative size or 0 of a gone child. Valid after a solve.
+     */
+    boolean isMeasuredWidthInput(int index) {
+        return !mGone[index] && mWidthSources[index] == SIZE_SOURCE_MEASURED;
+    }
+
+    boolean isMeasuredHeightInput(int index) {
+        return !mGone[index] && mHeightSources[index] == SIZE_SOURCE_MEASURED;
+    }
+
+    void setTracer(LayoutTracer tracer) {
+        mTracer = tracer;
+    }
+
+    private void beginSection(String name) {
+        if (mTracer != null) {
+            mTracer.beginSection(name);
+        }
+    }
+
+    private void endSection() {
+        if (mTracer != null) {
+            mTracer.endSection();
+        }
+    }
+
+    /**
+     * @return True if given graph and wrap content modes need a
+     *         {@link #build(ConstraintGraph, boolean, boolean)} call.
+     */
+    boolean needsBuild(ConstraintGraph graph, boolean isWrapContentWidth, boolean isWrapContentHeight) {
+        return mGraph != graph || mWrapContentWidth != isWrapContentWidth || mWrapContentHeight != isWrapContentHeight;
+    }
+
+    /**
+     * Creates the constraints for given graph. Child inputs are reset to the
+     * values stored in the graph.
+     */
+    void build(ConstraintGraph graph, boolean isWrapContentWidth, boolean isWrapContentHeight) {
+        mGraph = graph;
+        mWrapContentWidth = isWrapContentWidth;
+        mWrapContentHeight = isWrapContentHeight;
+        beginSection(TRACE_CREATE_VIEW_METRICS);
+        try {
+            createViewMetrics(mSpringMetrics);
+        } finally {
+            endSection();
+        }
+        beginSection(TRACE_HANDLE_SPRINGS);
+        try {
+            handleSprings(mSpringMetrics, isWrapContentWidth, isWrapContentHeight);
+        } finally {
+            endSection();
+        }
+        loadInputsFromGraph();
+    }
+
+    private void createViewMetrics(Stack<ViewConstraints> springMetrics) {
+        final ConstraintGraph graph = mGraph;
+        final int count = graph.mChildCount;
+        springMetrics.clear();
+
+        if (mRootConstraints != null) {
+            mRootConstraints.release();
+            for (ViewConstraints viewConstraints : mViewConstraints) {
+                if (viewConstraints != null) {
+                    viewConstraints.release();
+                }
+            }
+            mRootConstraints.reset(mOwner, PARENT_INDEX);
+        } else {
+            mRootConstraints = new ViewConstraints(mOwner, PARENT_INDEX, mLayoutMath);
+        }
+        if (mViewConstraints.length < count) {
+            ViewConstraints[] oldConstraints = mViewConstraints;
+            mViewConstraints = new ViewConstraints[count];
+            System.arraycopy(oldConstraints, 0, mViewConstraints, 0, oldConstraints.length);
+        }
+        if (mInputs.length < count * INPUT_STRIDE) {
+            mInputs = new int[count * INPUT_STRIDE];
+            mGone = new boolean[count];
+            mWidthSources = new byte[count];
+            mHeightSources = new byte[count];
+            mSolvedInputs = new int[count * INPUT_STRIDE];
+            mSolvedGone = new boolean[count];
+        }
+        Arrays.fill(mWidthSources, SIZE_SOURCE_NONE);
+        Arrays.fill(mHeightSources, SIZE_SOURCE_NONE);
+        mSolvedValid = false;
+        mChildCount = count;
+
+        mRootConstraints.left.setValueObject(mLayoutMath.variable(0));
+        mRootConstraints.top.setValueObject(mLayoutMath.variable(0));
+
+        for (int i = 0; i < count; i++) {
+            final View v = mOwner != null ? mOwner.getChildAt(i) : null;
+            if (mViewConstraints[i] == null) {
+                mViewConstraints[i] = new ViewConstraints(v, i, mLayoutMath);
+            } else {
+                mViewConstraints[i].reset(v, i);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            final ViewConstraints viewConstraints = mViewConstraints[i];
+
+            if (graph.mWidthWeights[i] > 0) {
+                viewConstraints.markAsHorizontalSpring();
+            }
+
+            if (graph.mHeightWeights[i] > 0) {
+                viewConstraints.markAsVerticalSpring();
+            }
+
+            for (int relation : VALID_RELATIONS) {
+                final ViewConstraints metrics = getViewMetrics(graph.mAnchors[i * RELATION_SLOTS + relation]);
+                if (metrics != null) {
+                    metrics.updateRelation(viewConstraints, relation);
+                }
+            }
+            if (viewConstraints.isHorizontalSpring() || viewConstraints.isVerticalSpring()) {
+                springMetrics.add(viewConstraints);
+            }
+        }
+    }
+
+    private ViewConstraints getViewMetrics(int anchor) {
+        if (anchor == PARENT_INDEX) {
+            return mRootConstraints;
+        } else if (anchor != NO_ANCHOR) {
+            return mViewConstraints[anchor];
+        }
+        return null;
+    }
+
+    private void handleSprings(final Stack<ViewConstraints> springMetrics, final boolean isWrapContentWidth,
+            final boolean isWrapContentHeight) {
+        if (!springMetrics.isEmpty()) {
+            mHorizontalChains.clear();
+            mVerticalChains.clear();
+            while (!springMetrics.isEmpty()) {
+                final ViewConstraints spring = springMetrics.pop();
+                final ViewConstraints chainHeadX = getChainHorizontalHead(spring);
+                final ViewConstraints chainHeadY = getChainVerticalHead(spring);
+                if (chainHeadX != null) {
+                    if (isWrapContentWidth && mGraph.mMinWidth <= 0) {
+                        throw new IllegalStateException("Horizontal springs not supported when layout width is wrap_content");
+                    }
+                    mHorizontalChains.add(chainHeadX);
+                }
+                if (chainHeadY != null) {
+                    if (isWrapContentHeight && mGraph.mMinHeight <= 0) {
+                        throw new IllegalStateException(
+                                "Vertical springs not supported when layout height is wrap_content and minHeight is not defined");
+                    }
+                    mVerticalChains.add(chainHeadY);
+                }
+            }
+
+            for (int i = 0; i < mHorizontalChains.size(); i++) {
+                final ViewConstraints chainHead = mHorizontalChains.get(i);
+                Value totalWeight = mLayoutMath.variable(0);
+                Value contentWidth = mLayoutMath.variable(0);
+                final ValueWrapper totalWeightWrapper = mLayoutMath.wrap();
+                final ValueWrapper chainWidthWrapper = mLayoutMath.wrap();
+                ViewConstraints chainElem = chainHead, prevElem = null;
+                Value start = chainElem.left, end;
+                while (chainElem != null) {
+                    if (chainElem.isHorizontalSpring()) {
+                        chainElem.markHorizontalSpringUsed();
+                        totalWeight = totalWeight.add(chainElem.widthWeight);
+                        final Value width = chainWidthWrapper.multiply(chainElem.widthWeight).divide(totalWeightWrapper)
+                                .max(mLayoutMath.variable(0)).retain();
+                        chainElem.setWidth(width);
+                        width.release();
+                    } else {
+                        contentWidth = contentWidth.add(chainElem.getWidth());
+                    }
+                    prevElem = chainElem;
+                    chainElem = chainElem.nextX;
+                }
+                end = prevElem.right;
+                totalWeightWrapper.setValueObject(totalWeight);
+                chainWidthWrapper.setValueObject(end.subtract(start).subtract(contentWidth));
+            }
+
+            for (int i = 0; i < mVerticalChains.size(); i++) {
+                final ViewConstraints chainHead = mVerticalChains.get(i);
+                Value totalWeight = mLayoutMath.variable(0);
+                Value contentHeight = mLayoutMath.variable(0);
+                final ValueWrapper totalWeightWrapper = mLayoutMath.wrap();
+                final ValueWrapper chainWidthWrapper = mLayoutMath.wrap();
+                ViewConstraints chainElem = chainHead, prevElem = null;
+                Value start = chainElem.top, end;
+                while (chainElem != null) {
+                    if (chainElem.isVerticalSpring()) {
+                        chainElem.markVerticalSpringUsed();
+                        totalWeight = totalWeight.add(chainElem.heightWeight);
+                        final Value height = chainWidthWrapper.multiply(chainElem.heightWeight).divide(totalWeightWrapper)
+                                .max(mLayoutMath.variable(0)).retain();
+                        chainElem.setHeight(height);
+                        height.release();
+                    } else {
+                        contentHeight = contentHeight.add(chainElem.getHeight());
+                    }
+                    prevElem = chainElem;
+                    chainElem = chainElem.nextY;
+                }
+                end = prevElem.bottom;
+                totalWeightWrapper.setValueObject(totalWeight);
+                chainWidthWrapper.setValueObject(end.subtract(start).subtract(contentHeight));
+            }
+        }
+    }
+
+    private ViewConstraints getChainVerticalHead(ViewConstraints spring) {
+        if (spring.nextY == null && spring.prevY == null) {
+            return null;
+        } else {
+            while (spring.prevY != null) {
+                spring = spring.prevY;
+            }
+            return spring;
+        }
+    }
+
+    private ViewConstraints getChainHorizontalHead(ViewConstraints spring) {
+        if (spring.nextX == null && spring.prevX == null) {
+            return null;
+        } else {
+            while (spring.prevX != null) {
+                spring = spring.prevX;
+            }
+            return spring;
+        }
+    }
+
+    private void loadInputsFromGraph() {
+        final ConstraintGraph graph = mGraph;
+        for (int i = 0; i < mChildCount; i++) {
+            final int m = i * 4;
+            setChildInput(i, 0, 0, graph.mMargins[m + MARGIN_LEFT], graph.mMargins[m + MARGIN_TOP],
+                    graph.mMargins[m + MARGIN_RIGHT], graph.mMargins[m + MARGIN_BOTTOM], graph.mRelativeWidths[i],
+                    graph.mRelativeHeights[i], graph.mWidthWeights[i], graph.mHeightWeights[i], graph.mGone[i]);
+        }
+        setPadding(graph.mPaddingLeft, graph.mPaddingTop, graph.mPaddingRight, graph.mPaddingBottom);
+        setMinimumSize(graph.mMinWidth, graph.mMinHeight);
+    }
+
+    /**
+     * Sets values of a child that may change without rebuilding the graph.
+     * Weights only take effect for children that were springs when the
+     * graph was built, and must stay positive for them.
+     */
+    void setChildInput(int index, int measuredWidth, int measuredHeight, int leftMargin, int topMargin, int rightMargin,
+            int bottomMargin, int relativeWidth, int relativeHeight, int widthWeight, int heightWeight, boolean gone) {
+        final int[] inputs = mInputs;
+        final int offset = index * INPUT_STRIDE;
+        inputs[offset + INPUT_WIDTH] = measuredWidth;
+        inputs[offset + INPUT_HEIGHT] = measuredHeight;
+        inputs[offset + INPUT_MARGIN + MARGIN_LEFT] = leftMargin;
+        inputs[offset + INPUT_MARGIN + MARGIN_TOP] = topMargin;
+        inputs[offset + INPUT_MARGIN + MARGIN_RIGHT] = rightMargin;
+        inputs[offset + INPUT_MARGIN + MARGIN_BOTTOM] = bottomMargin;
+        inputs[offset + INPUT_RELATIVE_WIDTH] = relativeWidth;
+        inputs[offset + INPUT_RELATIVE_HEIGHT] = relativeHeight;
+        inputs[offset + INPUT_WIDTH_WEIGHT] = widthWeight;
+        inputs[offset + INPUT_HEIGHT_WEIGHT] = heightWeight;
+        mGone[index] = gone;
+    }
+
+    int getMeasuredWidthInput(int index) {
+        return mInputs[index * INPUT_STRIDE + INPUT_WIDTH];
+    }
+
+    int getMeasuredHeightInput(int index) {
+        return mInputs[index * INPUT_STRIDE + INPUT_HEIGHT];
+    }
+
+    void setChildSize(int index, int measuredWidth, int measuredHeight) {
+        final int offset = index * INPUT_STRIDE;
+        mInputs[offset + INPUT_WIDTH] = measuredWidth;
+        mInputs[offset + INPUT_HEIGHT] = measuredHeight;
+    }
+
+    void setPadding(int left, int top, int right, int bottom) {
+        mPaddingLeft = left;
+        mPaddingTop = top;
+        mPaddingRight = right;
+        mPaddingBottom = bottom;
+    }
+
+    void setMinimumSize(int minWidth, int minHeight) {
+        mMinWidth = minWidth;
+        mMinHeight = minHeight;
+    }
+
+    /**
+     * Solves the graph for given child sizes and measure specs, building it
+     * first if needed.
+     *
+     * @param childSizes
+     *            Measured width and height of every child, 2 ints per child.
+     * @param frames
+     *            Receives left, top, right and bottom of every child.
+     */
+    void solve(ConstraintGraph graph, int[] childSizes, int widthMeasureSpec, int heightMeasureSpec, int[] frames) {
+        final boolean isWrapContentWidth = (widthMeasureSpec & MODE_MASK) != View.MeasureSpec.EXACTLY;
+        final boolean isWrapContentHeight = (heightMeasureSpec & MODE_MASK) != View.MeasureSpec.EXACTLY;
+        if (needsBuild(graph, isWrapContentWidth, isWrapContentHeight)) {
+            build(graph, isWrapContentWidth, isWrapContentHeight);
+        } else {
+            // A solve for another solver's inputs may have changed them.
+            loadInputsFromGraph();
+        }
+        solveForSizes(childSizes, widthMeasureSpec, heightMeasureSpec, frames);
+    }
+
+    /**
+     * Solves the graph of another solver for its current inputs, building it
+     * first if needed. Unlike the graph, these include margins, weights,
+     * visibility and padding changed since the graph was captured.
+     *
+     * @param source
+     *            Solver whose graph and inputs are used, it is not modified.
+     *            Must be confined to the calling thread.
+     * @param childSizes
+     *            Measured width and height of every child, 2 ints per child,
+     *            replacing the measured sizes of the source.
+     * @param frames
+     *            Receives left, top, right and bottom of every child.
+     */
+    void solve(ConstraintSolver source, int[] childSizes, int widthMeasureSpec, int heightMeasureSpec, int[] frames) {
+        final boolean isWrapContentWidth = (widthMeasureSpec & MODE_MASK) != View.MeasureSpec.EXACTLY;
+        final boolean isWrapContentHeight = (heightMeasureSpec & MODE_MASK) != View.MeasureSpec.EXACTLY;
+        if (needsBuild(source.mGraph, isWrapContentWidth, isWrapContentHeight)) {
+            build(source.mGraph, isWrapContentWidth, isWrapContentHeight);
+        }
+        System.arraycopy(source.mInputs, 0, mInputs, 0, mChildCount * INPUT_STRIDE);
+        System.arraycopy(source.mGone, 0, mGone, 0, mChildCount);
+        setPadding(source.mPaddingLeft, source.mPaddingTop, source.mPaddingRight, source.mPaddingBottom);
+        setMinimumSize(source.mMinWidth, source.mMinHeight);
+        solveForSizes(childSizes, widthMeasureSpec, heightMeasureSpec, frames);
+    }
+
+    private void solveForSizes(int[] childSizes, int widthMeasureSpec, int heightMeasureSpec, int[] frames) {
+        final boolean isWrapContentWidth = (widthMeasureSpec & MODE_MASK) != View.MeasureSpec.EXACTLY;
+        final boolean isWrapContentHeight = (heightMeasureSpec & MODE_MASK) != View.MeasureSpec.EXACTLY;
+        for (int i = 0; i < mChildCount; i++) {
+            setChildSize(i, childSizes[2 * i], childSizes[2 * i + 1]);
+        }
+        solve(isWrapContentWidth, isWrapContentWidth ? 0 : widthMeasureSpec & ~MODE_MASK, isWrapContentHeight,
+                isWrapContentHeight ? 0 : heightMeasureSpec & ~MODE_MASK, frames);
+    }
+
+    /**
+     * Solves the built graph using current child inputs.
+     *
+     * @param frames
+     *            Receives left, top, right and bottom of every child.
+     */
+    void solve(boolean isWrapContentWidth, int width, boolean isWrapContentHeight, int height, int[] frames) {
+        prepareSolve(isWrapContentWidth, width, isWrapContentHeight, height);
+        beginSection(TRACE_CACHE_LAYOUT_POSITIONS);
+        try {
+            cacheLayoutPositions(frames);
+        } finally {
+            endSection();
+        }
+        finishSolve();
+    }
+
+    /**
+     * Solves the built graph again for the layout size of the last
+     * successful solve, using current child inputs.
+     *
+     * @throws IllegalStateException
+     *             If there was no successful solve since the last build.
+     */
+    void solveForLastSize(int[] frames) {
+        if (!mSolvedValid) {
+            throw new IllegalStateException("Not solved yet");
+        }
+        solve(mSolvedWrapContentWidth, mSolvedWidth, mSolvedWrapContentHeight, mSolvedHeight, frames);
+    }
+
+    /**
+     * First step of a solve split into parts: updates the constraints from
+     * the current inputs and computes the layout size. Has to be followed by
+     * {@link #solveChild(int, int[])} of every child and
+     * {@link #finishSolve()}, with no input changes in between.
+     */
+    void prepareSolve(boolean isWrapContentWidth, int width, boolean isWrapContentHeight, int height) {
+        final boolean horizontal = isHorizontalDirty(isWrapContentWidth, width);
+        final boolean vertical = isVerticalDirty(isWrapContentHeight, height);
+        if (!horizontal) {
+            mSkippedAxisCount++;
+        }
+        if (!vertical) {
+            mSkippedAxisCount++;
+        }
+        // A failed solve may leave any value half computed.
+        mSolvedValid = false;
+        beginSection(TRACE_INVALIDATE_MATH_CACHE);
+        try {
+            invalidateMathCache(horizontal, vertical);
+        } finally {
+            endSection();
+        }
+        beginSection(TRACE_UPDATE_CHILDREN_SIZE);
+        try {
+            updateChildrenSize(horizontal, vertical);
+        } finally {
+            endSection();
+        }
+        beginSection(TRACE_UPDATE_LAYOUT_SIZE);
+        try {
+            if (horizontal) {
+                updateLayoutWidth(isWrapContentWidth, width);
+            }
+            if (vertical) {
+                updateLayoutHeight(isWrapContentHeight, height);
+            }
+        } finally {
+            endSection();
+        }
+        mPreparedWrapContentWidth = isWrapContentWidth;
+        mPreparedWrapContentHeight = isWrapContentHeight;
+        mPreparedWidth = width;
+        mPreparedHeight = height;
+    }
+
+    /**
+     * Last step of a solve split into parts, the solved inputs become the
+     * reference for skipping unchanged axes.
+     */
+    void finishSolve() {
+        storeSolvedInputs(mPreparedWrapContentWidth, mPreparedWidth, mPreparedWrapContentHeight, mPreparedHeight);
+    }
+
+    /**
+     * @return Number of axes left unevaluated because their inputs did not
+     *         change since the previous solve.
+     */
+    int getSkippedAxisCount() {
+        return mSkippedAxisCount;
+    }
+
+    private boolean isHorizontalDirty(boolean isWrapContentWidth, int width) {
+        if (!mSolvedValid || isWrapContentWidth != mSolvedWrapContentWidth || width != mSolvedWidth
+                || mPaddingLeft != mSolvedPaddingLeft || mPaddingRight != mSolvedPaddingRight || mMinWidth != mSolvedMinWidth) {
+            return true;
+        }
+        final int[] inputs = mInputs, solved = mSolvedInputs;
+        for (int i = 0; i < mChildCount; i++) {
+            final int offset = i * INPUT_STRIDE;
+            if (mGone[i] != mSolvedGone[i] || inputs[offset + INPUT_WIDTH] != solved[offset + INPUT_WIDTH]
+                    || inputs[offset + INPUT_MARGIN + MARGIN_LEFT] != solved[offset + INPUT_MARGIN + MARGIN_LEFT]
+                    || inputs[offset + INPUT_MARGIN + MARGIN_RIGHT] != solved[offset + INPUT_MARGIN + MARGIN_RIGHT]
+                    || inputs[offset + INPUT_RELATIVE_WIDTH] != solved[offset + INPUT_RELATIVE_WIDTH]
+                    || inputs[offset + INPUT_WIDTH_WEIGHT] != solved[offset + INPUT_WIDTH_WEIGHT]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isVerticalDirty(boolean isWrapContentHeight, int height) {
+        if (!mSolvedValid || isWrapContentHeight != mSolvedWrapContentHeight || height != mSolvedHeight
+                || mPaddingTop != mSolvedPaddingTop || mPaddingBottom != mSolvedPaddingBottom || mMinHeight != mSolvedMinHeight) {
+            return true;
+        }
+        final int[] inputs = mInputs, solved = mSolvedInputs;
+        for (int i = 0; i < mChildCount; i++) {
+            final int offset = i * INPUT_STRIDE;
+            if (mGone[i] != mSolvedGone[i] || inputs[offset + INPUT_HEIGHT] != solved[offset + INPUT_HEIGHT]
+                    || inputs[offset + INPUT_MARGIN + MARGIN_TOP] != solved[offset + INPUT_MARGIN + MARGIN_TOP]
+                    || inputs[offset + INPUT_MARGIN + MARGIN_BOTTOM] != solved[offset + INPUT_MARGIN + MARGIN_BOTTOM]
+                    || inputs[offset + INPUT_RELATIVE_HEIGHT] != solved[offset + INPUT_RELATIVE_HEIGHT]
+                    || inputs[offset + INPUT_HEIGHT_WEIGHT] != solved[offset + INPUT_HEIGHT_WEIGHT]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void storeSolvedInputs(boolean isWrapContentWidth, int width, boolean isWrapContentHeight, int height) {
+        System.arraycopy(mInputs, 0, mSolvedInputs, 0, mChildCount * INPUT_STRIDE);
+        System.arraycopy(mGone, 0, mSolvedGone, 0, mChildCount);
+        mSolvedWrapContentWidth = isWrapContentWidth;
+        mSolvedWrapContentHeight = isWrapContentHeight;
+        mSolvedWidth = width;
+        mSolvedHeight = height;
+        mSolvedPaddingLeft = mPaddingLeft;
+        mSolvedPaddingTop = mPaddingTop;
+        mSolvedPaddingRight = mPaddingRight;
+        mSolvedPaddingBottom = mPaddingBottom;
+        mSolvedMinWidth = mMinWidth;
+        mSolvedMinHeight = mMinHeight;
+        mSolvedValid = true;
+    }
+
+    /**
+     * @return Table of given frames, solved from the current inputs. Frames
+     *         are not copied.
+     */
+    FrameTable createFrameTable(int widthMeasureSpec, int heightMeasureSpec, int[] frames) {
+        return new FrameTable(mGraph, widthMeasureSpec, heightMeasureSpec, Arrays.copyOf(mInputs, mChildCount * INPUT_STRIDE),
+                Arrays.copyOf(mGone, mChildCount), mPaddingLeft, mPaddingTop, mPaddingRight, mPaddingBottom, mMinWidth,
+                mMinHeight, frames, getMeasuredWidth(), getMeasuredHeight());
+    }
+
+    /**
+     * @return True if the table was solved for a graph of the same structure
+     *         and exactly the current inputs.
+     */
+    boolean matchesInputs(FrameTable table) {
+        if (table.mGraph != mGraph && !table.mGraph.hasSameStructure(mGraph)) {
+            return false;
+        }
+        if (table.mPaddingLeft != mPaddingLeft || table.mPaddingTop != mPaddingTop || table.mPaddingRight != mPaddingRight
+                || table.mPaddingBottom != mPaddingBottom || table.mMinWidth != mMinWidth || table.mMinHeight != mMinHeight) {
+            return false;
+        }
+        final int[] inputs = table.mInputs;
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputs[i] != mInputs[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < mChildCount; i++) {
+            if (table.mGone[i] != mGone[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int getMeasuredWidth() {
+        return mRootConstraints.right.getValue();
+    }
+
+    int getMeasuredHeight() {
+        return mRootConstraints.bottom.getValue();
+    }
+
+    private void invalidateMathCache(boolean horizontal, boolean vertical) {
+        if (horizontal) {
+            mRootConstraints.invalidateHorizontal();
+            for (int i = 0; i < mChildCount; i++) {
+                mViewConstraints[i].invalidateHorizontal();
+            }
+        }
+        if (vertical) {
+            mRootConstraints.invalidateVertical();
+            for (int i = 0; i < mChildCount; i++) {
+                mViewConstraints[i].invalidateVertical();
+            }
+        }
+    }
+
+    private void updateChildrenSize(boolean horizontal, boolean vertical) {
+        final int[] inputs = mInputs;
+        for (int i = 0; i < mChildCount; i++) {
+            final ViewConstraints viewConstraints = mViewConstraints[i];
+            final int offset = i * INPUT_STRIDE;
+            final int relativeWidth = inputs[offset + INPUT_RELATIVE_WIDTH];
+            final int relativeHeight = inputs[offset + INPUT_RELATIVE_HEIGHT];
+
+            if (horizontal && viewConstraints.isHorizontalSpring()) {
+                viewConstraints.widthWeight.setValue(inputs[offset + INPUT_WIDTH_WEIGHT]);
+            } else if (horizontal) {
+                final byte source = mGone[i] || relativeWidth <= 0 ? SIZE_SOURCE_MEASURED : SIZE_SOURCE_RELATIVE;
+                viewConstraints.contentWidth.setValue(mGone[i] ? 0 : source == SIZE_SOURCE_RELATIVE ? relativeWidth
+                        : inputs[offset + INPUT_WIDTH]);
+                viewConstraints.leftMargin.setValue(inputs[offset + INPUT_MARGIN + MARGIN_LEFT]);
+                viewConstraints.rightMargin.setValue(inputs[offset + INPUT_MARGIN + MARGIN_RIGHT]);
+                if (mWidthSources[i] != source) {
+                    mWidthSources[i] = source;
+                    Value childWidth = viewConstraints.contentWidth;
+                    if (source == SIZE_SOURCE_RELATIVE) {
+                        childWidth = mRootConstraints.innerRight.subtract(mRootConstraints.innerLeft).multiply(childWidth)
+                                .divide(mRelativeSizeDenominator);
+                    }
+                    final Value outerWidth = childWidth.add(viewConstraints.leftMargin).add(viewConstraints.rightMargin)
+                            .retain();
+                    viewConstraints.setWidth(outerWidth);
+                    outerWidth.release();
+                }
+            }
+
+            if (vertical && viewConstraints.isVerticalSpring()) {
+                viewConstraints.heightWeight.setValue(inputs[offset + INPUT_HEIGHT_WEIGHT]);
+            } else if (vertical) {
+                final byte source = mGone[i] || relativeHeight <= 0 ? SIZE_SOURCE_MEASURED : SIZE_SOURCE_RELATIVE;
+                viewConstraints.contentHeight.setValue(mGone[i] ? 0 : source == SIZE_SOURCE_RELATIVE ? relativeHeight
+                        : inputs[offset + INPUT_HEIGHT]);
+                viewConstraints.topMargin.setValue(inputs[offset + INPUT_MARGIN + MARGIN_TOP]);
+                viewConstraints.bottomMargin.setValue(inputs[offset + INPUT_MARGIN + MARGIN_BOTTOM]);
+                if (mHeightSources[i] != source) {
+                    mHeightSources[i] = source;
+                    Value childHeight = viewConstraints.contentHeight;
+                    if (source == SIZE_SOURCE_RELATIVE) {
+                        childHeight = mRootConstraints.innerBottom.subtract(mRootConstraints.innerTop).multiply(childHeight)
+                                .divide(mRelativeSizeDenominator);
+                    }
+                    final Value outerHeight = childHeight.add(viewConstraints.topMargin).add(viewConstraints.bottomMargin)
+                            .retain();
+                    viewConstraints.setHeight(outerHeight);
+                    outerHeight.release();
+                }
+            }
+        }
+    }
+
+    private void updateLayoutWidth(final boolean isWrapContentWidth, int width) {
+        final int pR = mPaddingRight;
+        mRootConstraints.leftMargin.setValue(mPaddingLeft);
+        mRootConstraints.rightMargin.setValue(pR);
+
+        if (isWrapContentWidth) {
+            // Children depending on parent width must not contribute.
+            mRootConstraints.right.setValueObject(mLayoutMath.unknown());
+            int maxSize = mMinWidth > 0 ? mMinWidth : -1;
+            for (int i = 0; i < mChildCount; i++) {
+                final ViewConstraints viewConstraints = mViewConstraints[i];
+                try {
+                    maxSize = Math.max(maxSize, viewConstraints.right.getValue() + pR);
+                    viewConstraints.right.invalidate();
+                } catch (IllegalStateException e) {
+                }
+            }
+            if (maxSize < 0) {
+                throw new IllegalStateException(
+                        "Parent layout_width == wrap_content is not supported if width of all children depends on parent width.");
+            }
+            mRootWidth.setValue(maxSize);
+        } else {
+            mRootWidth.setValue(width);
+        }
+        if (mRootConstraints.right.getValueObject() != mRootWidth) {
+            mRootConstraints.right.setValueObject(mRootWidth);
+        }
+    }
+
+    private void updateLayoutHeight(final boolean isWrapContentHeight, int height) {
+        final int pB = mPaddingBottom;
+        mRootConstraints.topMargin.setValue(mPaddingTop);
+        mRootConstraints.bottomMargin.setValue(pB);
+
+        if (isWrapContentHeight) {
+            mRootConstraints.bottom.setValueObject(mLayoutMath.unknown());
+            int maxSize = mMinHeight > 0 ? mMinHeight : -1;
+            for (int i = 0; i < mChildCount; i++) {
+                final ViewConstraints viewConstraints = mViewConstraints[i];
+                try {
+                    maxSize = Math.max(maxSize, viewConstraints.bottom.getValue() + pB);
+                    viewConstraints.bottom.invalidate();
+                } catch (IllegalStateException e) {
+                }
+            }
+            if (maxSize < 0) {
+                throw new IllegalStateException(
+                        "Parent layout_height == wrap_content is not supported if height of all children depends on parent height.");
+            }
+            mRootHeight.setValue(maxSize);
+        } else {
+            mRootHeight.setValue(height);
+        }
+        if (mRootConstraints.bottom.getValueObject() != mRootHeight) {
+            mRootConstraints.bottom.setValueObject(mRootHeight);
+        }
+    }
+
+    private void cacheLayoutPositions(int[] frames) {
+        for (int i = 0; i < mChildCount; i++) {
+            solveChild(i, frames);
+        }
+    }
+
+    /**
+     * Writes the frame of one child, evaluating only what it depends on and
+     * was not evaluated since {@link #prepareSolve}.
+     */
+    void solveChild(int i, int[] frames) {
+        final ViewConstraints viewConstraints = mViewConstraints[i];
+        if (viewConstraints.isHorizontalSpring() && !viewConstraints.isHorizontalSpringUsed()) {
+            throw new IllegalStateException(
+                    "Horizontal weight defined but never used, please review your layout. Remember that the chain of views cannot divert when using springs: Problematic view (please also check other dependant views): "
+                            + describeChild(i) + ", problematic layout: " + describeLayout());
+        } else if (viewConstraints.isVerticalSpring() && !viewConstraints.isVerticalSpringUsed()) {
+            throw new IllegalStateException(
+                    "Vertical weight defined but never used, please review your layout. Remember that the chain of views cannot divert when using springs: Problematic view (please also check other dependant views): "
+                            + describeChild(i) + ", problematic layout: " + describeLayout());
+        } else {
+            int anchor = 0;
+            final int offset = i * FRAME_STRIDE;
+            try {
+                anchor = LEFT;
+                frames[offset] = viewConstraints.innerLeft.getValue();
+                anchor = TOP;
+                frames[offset + 1] = viewConstraints.innerTop.getValue();
+                anchor = RIGHT;
+                frames[offset + 2] = viewConstraints.innerRight.getValue();
+                anchor = BOTTOM;
+                frames[offset + 3] = viewConstraints.innerBottom.getValue();
+            } catch (IllegalStateException e) {
+                throw new IllegalStateException("View " + ANCHOR_NAMES[anchor] + " position could not be calculated, please review your layout. Remember that A.above = B and B.below = A are not equivalent in terms of calculation order, please refer to documentation. Problematic view (please also check other dependant views): "
+                                + describeChild(i) + ", problematic layout: " + describeLayout(), e);
+            } catch (StackOverflowError e) {
+                throw new IllegalStateException(
+                        "Constraints of a view could not be resolved (circular dependency), please review your layout. Problematic view (please also check other dependant views): "
+                                + describeChild(i) + ", problematic layout: " + describeLayout());
+            }
+        }
+    }
+
+    private String describeChild(int index) {
+        final View view = mViewConstraints[index].getView();
+        return view != null ? view.toString() : "child #" + index + " (id " + mGraph.mIds[index] + ")";
+    }
+
+    private String describeLayout() {
+        return mOwner != null ? mOwner.toString() : mGraph.toString();
+    }
+}
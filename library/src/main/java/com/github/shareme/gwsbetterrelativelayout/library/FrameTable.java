@@ -0,0 +1,80 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+/**
+ * Immutable result of solving a {@link ConstraintGraph}: positions of every
+ * child together with the inputs they were solved for.
+ *
+ * Created by {@link ConstraintPresolver} on any thread and handed to
+ * {@link SpringLayout#setPresolvedFrames(FrameTable)}, which uses it instead
+ * of solving when its next measure pass has the same inputs.
+ */
+@SuppressWarnings("unused")
+public final class FrameTable {
+    final ConstraintGraph mGraph;
+    final int mWidthMeasureSpec, mHeightMeasureSpec;
+    final int[] mInputs;
+    final boolean[] mGone;
+    final int mPaddingLeft, mPaddingTop, mPaddingRight, mPaddingBottom;
+    final int mMinWidth, mMinHeight;
+    final int[] mFrames;
+    final int mMeasuredWidth, mMeasuredHeight;
+
+    FrameTable(ConstraintGraph graph, int widthMeasureSpec, int heightMeasureSpec, int[] inputs, boolean[] gone,
+            int paddingLeft, int paddingTop, int paddingRight, int paddingBottom, int minWidth, int minHeight, int[] frames,
+            int measuredWidth, int measuredHeight) {
+        mGraph = graph;
+        mWidthMeasureSpec = widthMeasureSpec;
+        mHeightMeasureSpec = heightMeasureSpec;
+        mInputs = inputs;
+        mGone = gone;
+        mPaddingLeft = paddingLeft;
+        mPaddingTop = paddingTop;
+        mPaddingRight = paddingRight;
+        mPaddingBottom = paddingBottom;
+        mMinWidth = minWidth;
+        mMinHeight = minHeight;
+        mFrames = frames;
+        mMeasuredWidth = measuredWidth;
+        mMeasuredHeight = measuredHeight;
+    }
+
+    public ConstraintGraph getGraph() {
+        return mGraph;
+    }
+
+    public int getChildCount() {
+        return mGraph.getChildCount();
+    }
+
+    public int getWidthMeasureSpec() {
+        return mWidthMeasureSpec;
+    }
+
+    public int getHeightMeasureSpec() {
+        return mHeightMeasureSpec;
+    }
+
+    public int getLeft(int child) {
+        return mFrames[child * ConstraintSolver.FRAME_STRIDE];
+    }
+
+    public int getTop(int child) {
+        return mFrames[child * ConstraintSolver.FRAME_STRIDE + 1];
+    }
+
+    public int getRight(int child) {
+        return mFrames[child * ConstraintSolver.FRAME_STRIDE + 2];
+    }
+
+    public int getBottom(int child) {
+        return mFrames[child * ConstraintSolver.FRAME_STRIDE + 3];
+    }
+
+    public int getMeasuredWidth() {
+        return mMeasuredWidth;
+    }
+
+    public int getMeasuredHeight() {
+        return mMeasuredHeight;
+    }
+}
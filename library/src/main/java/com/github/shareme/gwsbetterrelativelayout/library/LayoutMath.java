@@ -9,11 +9,26 @@ package com.github.shareme.gwsbetterrelativelayout.library;
 @SuppressWarnings("unused")
 public class LayoutMath {
     final UnknownValue UNKNOWN_VALUE = new UnknownValue();
+    // Preallocated, wrap_content layouts hit unknown values on every pass.
+    final IllegalStateException mUnknownValueException = new UnknownValueException();
 
     Variable mVariablePool;
     ValueWrapper mValueWrapperPool;
     BinaryOperationValue mBinaryOperationPool;
 
+    // Plain counters, only touched while enabled. Read by SpringLayout stats.
+    boolean mCountersEnabled;
+    int mEvaluationCount;
+    int mCacheHitCount;
+    int mPoolHitCount;
+    int mPoolMissCount;
+    // Bumped on reset so that per-node counters restart lazily.
+    int mCounterEpoch;
+    // Objects ever allocated by this instance, never reset. Pools never hold more.
+    int mVariableCount;
+    int mValueWrapperCount;
+    int mBinaryOperationCount;
+
     public int getVariablePoolSize() {
         int size = 0;
         for (Variable v = mVariablePool; v != null; v = v.mPoolNext) {
@@ -38,6 +53,89 @@ public class LayoutMath {
         return size;
     }
 
+    public int getVariableCount() {
+        return mVariableCount;
+    }
+
+    public int getValueWrapperCount() {
+        return mValueWrapperCount;
+    }
+
+    public int getBinaryOperationCount() {
+        return mBinaryOperationCount;
+    }
+
+    /**
+     * Allocates pooled objects up front, until this instance has allocated
+     * the given numbers of objects of every kind.
+     *
+     * @return Number of allocated objects.
+     */
+    public int preallocate(int variables, int valueWrappers, int binaryOperations) {
+        final int start = mVariableCount + mValueWrapperCount + mBinaryOperationCount;
+        for (; mVariableCount < variables; mVariableCount++) {
+            new Variable().addToPool();
+        }
+        for (; mValueWrapperCount < valueWrappers; mValueWrapperCount++) {
+            new ValueWrapper().addToPool();
+        }
+        for (; mBinaryOperationCount < binaryOperations; mBinaryOperationCount++) {
+            new BinaryOperationValue('+', UNKNOWN_VALUE, UNKNOWN_VALUE).addToPool();
+        }
+        return mVariableCount + mValueWrapperCount + mBinaryOperationCount - start;
+    }
+
+    /**
+     * @return Number of values computed since the last counters reset.
+     */
+    public int getEvaluationCount() {
+        return mEvaluationCount;
+    }
+
+    /**
+     * @return Number of value reads served from cache since the last counters reset.
+     */
+    public int getCacheHitCount() {
+        return mCacheHitCount;
+    }
+
+    /**
+     * @return Number of objects taken from pools since the last counters reset.
+     */
+    public int getPoolHitCount() {
+        return mPoolHitCount;
+    }
+
+    /**
+     * @return Number of objects allocated because pools were empty since the last counters reset.
+     */
+    public int getPoolMissCount() {
+        return mPoolMissCount;
+    }
+
+    /**
+     * Enables the evaluation, cache and pool counters. They stay at their
+     * last values while disabled, per-node counters restart on enabling.
+     */
+    public void setCountersEnabled(boolean enabled) {
+        if (enabled && !mCountersEnabled) {
+            mCounterEpoch++;
+        }
+        mCountersEnabled = enabled;
+    }
+
+    public boolean isCountersEnabled() {
+        return mCountersEnabled;
+    }
+
+    public void resetCounters() {
+        mEvaluationCount = 0;
+        mCacheHitCount = 0;
+        mPoolHitCount = 0;
+        mPoolMissCount = 0;
+        mCounterEpoch++;
+    }
+
     /**
      * @return Empty ValueWrapper.
      */
@@ -55,8 +153,16 @@ public class LayoutMath {
         if (mValueWrapperPool != null) {
             ret = mValueWrapperPool;
             mValueWrapperPool = mValueWrapperPool.mPoolNext;
+            if (mCountersEnabled) {
+                ret.resetNodeCounters();
+                mPoolHitCount++;
+            }
         } else {
             ret = new ValueWrapper();
+            mValueWrapperCount++;
+            if (mCountersEnabled) {
+                mPoolMissCount++;
+            }
         }
         ret.setValueObject(value);
         return ret;
@@ -87,8 +193,16 @@ public class LayoutMath {
             ret = mVariablePool;
             ret.mValue = value;
             mVariablePool = mVariablePool.mPoolNext;
+            if (mCountersEnabled) {
+                ret.resetNodeCounters();
+                mPoolHitCount++;
+            }
         } else {
             ret = new Variable(value);
+            mVariableCount++;
+            if (mCountersEnabled) {
+                mPoolMissCount++;
+            }
         }
         return ret;
     }
@@ -99,8 +213,16 @@ public class LayoutMath {
             ret = mBinaryOperationPool;
             mBinaryOperationPool.setOperation(op, v1, v2);
             mBinaryOperationPool = mBinaryOperationPool.mPoolNext;
+            if (mCountersEnabled) {
+                ret.resetNodeCounters();
+                mPoolHitCount++;
+            }
         } else {
             ret = new BinaryOperationValue(op, v1, v2);
+            mBinaryOperationCount++;
+            if (mCountersEnabled) {
+                mPoolMissCount++;
+            }
         }
         return ret;
     }
@@ -109,9 +231,46 @@ public class LayoutMath {
         public final int INVALID = Integer.MIN_VALUE;
         protected int mValueCache = INVALID;
         public int mRetainCount;
+        int mNodeEvaluationCount;
+        int mNodeCounterEpoch;
 
         final int getValue() {
-            return (mValueCache == INVALID) ? (mValueCache = getValueImpl()) : mValueCache;
+            if (mValueCache == INVALID) {
+                if (mCountersEnabled) {
+                    mEvaluationCount++;
+                    if (mNodeCounterEpoch != mCounterEpoch) {
+                        mNodeCounterEpoch = mCounterEpoch;
+                        mNodeEvaluationCount = 0;
+                    }
+                    mNodeEvaluationCount++;
+                }
+                return (mValueCache = getValueImpl());
+            }
+            if (mCountersEnabled) {
+                mCacheHitCount++;
+            }
+            return mValueCache;
+        }
+
+        /**
+         * @return Number of times this node was computed since the last
+         *         counters reset or since it was taken from the pool.
+         */
+        int getNodeEvaluationCount() {
+            return mNodeCounterEpoch == mCounterEpoch ? mNodeEvaluationCount : 0;
+        }
+
+        /**
+         * @return Cached value or {@link #INVALID}, does not trigger
+         *         evaluation.
+         */
+        int getCachedValue() {
+            return mValueCache;
+        }
+
+        void resetNodeCounters() {
+            mNodeCounterEpoch = mCounterEpoch;
+            mNodeEvaluationCount = 0;
         }
 
         public abstract Value retain();
@@ -284,7 +443,7 @@ public class LayoutMath {
 
         @Override
         int getValueImpl() {
-            throw new IllegalStateException("Exact value not known");
+            throw mUnknownValueException;
         }
 
         @Override
@@ -379,4 +538,15 @@ public class LayoutMath {
             mBinaryOperationPool = this;
         }
     }
+
+    static class UnknownValueException extends IllegalStateException {
+        UnknownValueException() {
+            super("Exact value not known");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
 }
@@ -0,0 +1,122 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.util.AttributeSet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of SpringLayout attributes parsed by
+ * {@link SpringLayout.LayoutParams#LayoutParams(android.content.Context, AttributeSet)}.
+ *
+ * Layout params cannot tell which resource and element they are inflated
+ * from, so the key is the raw text of the SpringLayout attributes of the
+ * element, which is the same on every inflation of that element. Elements
+ * with a style or a theme dependent value are not cached, their values may
+ * differ between inflations. The least recently used entries are evicted.
+ *
+ * @author sulewicz
+ */
+final class LayoutParamsCache {
+    static final int MAX_ENTRIES = 512;
+
+    private static final LinkedHashMap<String, Snapshot> sSnapshots = new LinkedHashMap<String, Snapshot>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private LayoutParamsCache() {
+    }
+
+    /**
+     * @return Key of the SpringLayout attributes of the element, empty if
+     *         it has none, null if they cannot be cached.
+     */
+    static String getKey(AttributeSet attrs) {
+        if (attrs.getStyleAttribute() != 0) {
+            return null;
+        }
+        final int[] styleable = R.styleable.SpringLayout_Layout;
+        StringBuilder key = null;
+        final int count = attrs.getAttributeCount();
+        for (int i = 0; i < count; i++) {
+            final int name = attrs.getAttributeNameResource(i);
+            int index = 0;
+            while (index < styleable.length && styleable[index] != name) {
+                index++;
+            }
+            if (index == styleable.length) {
+                continue;
+            }
+            final String value = attrs.getAttributeValue(i);
+            // Resources other than ids may differ between configurations.
+            if (value == null || value.startsWith("?") || (value.startsWith("@") && !isIdAttribute(index))) {
+                return null;
+            }
+            if (key == null) {
+                key = new StringBuilder();
+            }
+            key.append(index).append('=').append(value).append(';');
+        }
+        return key != null ? key.toString() : "";
+    }
+
+    private static boolean isIdAttribute(int index) {
+        return index == R.styleable.SpringLayout_Layout_layout_toLeftOf || index == R.styleable.SpringLayout_Layout_layout_toRightOf
+                || index == R.styleable.SpringLayout_Layout_layout_above || index == R.styleable.SpringLayout_Layout_layout_below
+                || index == R.styleable.SpringLayout_Layout_layout_alignLeft || index == R.styleable.SpringLayout_Layout_layout_alignTop
+                || index == R.styleable.SpringLayout_Layout_layout_alignRight
+                || index == R.styleable.SpringLayout_Layout_layout_alignBottom
+                || index == R.styleable.SpringLayout_Layout_layout_alignCenter
+                || index == R.styleable.SpringLayout_Layout_layout_alignCenterHorizontally
+                || index == R.styleable.SpringLayout_Layout_layout_alignCenterVertically;
+    }
+
+    /**
+     * @return True if params were filled from the cache.
+     */
+    static boolean restore(String key, SpringLayout.LayoutParams params) {
+        final Snapshot snapshot;
+        synchronized (sSnapshots) {
+            snapshot = sSnapshots.get(key);
+        }
+        if (snapshot == null) {
+            return false;
+        }
+        System.arraycopy(snapshot.mRelations, 0, params.relations, 0, snapshot.mRelations.length);
+        params.relativeWidth = snapshot.mRelativeWidth;
+        params.relativeHeight = snapshot.mRelativeHeight;
+        params.widthWeight = snapshot.mWidthWeight;
+        params.heightWeight = snapshot.mHeightWeight;
+        return true;
+    }
+
+    static void store(String key, SpringLayout.LayoutParams params) {
+        final Snapshot snapshot = new Snapshot(params);
+        synchronized (sSnapshots) {
+            sSnapshots.put(key, snapshot);
+        }
+    }
+
+    static void clear() {
+        synchronized (sSnapshots) {
+            sSnapshots.clear();
+        }
+    }
+
+    private static final class Snapshot {
+        final int[] mRelations;
+        final int mRelativeWidth, mRelativeHeight;
+        final int mWidthWeight, mHeightWeight;
+
+        Snapshot(SpringLayout.LayoutParams params) {
+            mRelations = params.relations.clone();
+            mRelativeWidth = params.relativeWidth;
+            mRelativeHeight = params.relativeHeight;
+            mWidthWeight = params.widthWeight;
+            mHeightWeight = params.heightWeight;
+        }
+    }
+}
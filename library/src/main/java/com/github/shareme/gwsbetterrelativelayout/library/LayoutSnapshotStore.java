@@ -0,0 +1,408 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.DisplayMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists the last frames solved by SpringLayouts, so that the first
+ * measure pass after a process restart can use them instead of solving, see
+ * {@link SpringLayout#setSnapshotStore(LayoutSnapshotStore, int)}.
+ *
+ * Every snapshot is a file named by its key, usually the layout resource id.
+ * Its header holds the format version, the version given to the store (pass
+ * the app version code, resource ids change between builds) and the display
+ * width, height, density and font scale. Snapshots whose header does not
+ * match are discarded without reading further. The rest is a
+ * {@link FrameTable}, used only if the graph structure and all child sizes
+ * match, like presolved frames are.
+ *
+ * Snapshots are read and written on a background thread: a layout only uses
+ * a snapshot preloaded before its first measure pass, see
+ * {@link #preload(Context, int...)}. Writes happen at most once per
+ * {@link #WRITE_DELAY_MILLIS} and only the last one of every key is written.
+ *
+ * @author sulewicz
+ */
+public final class LayoutSnapshotStore {
+    static final int MAGIC = 0x53504c53;
+    static final int FORMAT_VERSION = 2;
+    static final int CONFIG_WIDTH = 0;
+    static final int CONFIG_HEIGHT = 1;
+    static final int CONFIG_DENSITY = 2;
+    static final int CONFIG_FONT_SCALE = 3;
+    static final int CONFIG_SIZE = 4;
+    static final long WRITE_DELAY_MILLIS = 1000;
+    // Guards against allocating for corrupted lengths.
+    private static final int MAX_VALUES = 1 << 20;
+
+    private static final String DIRECTORY = "spring_layout_snapshots";
+    private static final String SUFFIX = ".snapshot";
+
+    private static ScheduledExecutorService sExecutor;
+
+    private final File mDirectory;
+    private final int mVersion;
+    private final Object mLock = new Object();
+    private final Object mWriteLock = new Object();
+    // Last snapshot of every key read or stored, snapshots without a table mark missing files.
+    private final HashMap<Integer, Snapshot> mSnapshots = new HashMap<>();
+    private final HashMap<Integer, Snapshot> mPending = new HashMap<>();
+    private boolean mWriteScheduled;
+
+    /**
+     * Stores snapshots in the app's files directory.
+     *
+     * @param version
+     *            Version of the snapshots, snapshots written with another
+     *            version are discarded. Usually the app version code.
+     */
+    public LayoutSnapshotStore(Context context, int version) {
+        this(new File(context.getFilesDir(), DIRECTORY), version);
+    }
+
+    public LayoutSnapshotStore(File directory, int version) {
+        mDirectory = directory;
+        mVersion = version;
+    }
+
+    /**
+     * @return Configuration snapshots are keyed by: display width and height,
+     *         density and font scale.
+     */
+    static int[] getConfiguration(Resources res) {
+        final DisplayMetrics metrics = res.getDisplayMetrics();
+        final int[] config = new int[CONFIG_SIZE];
+        config[CONFIG_WIDTH] = metrics.widthPixels;
+        config[CONFIG_HEIGHT] = metrics.heightPixels;
+        config[CONFIG_DENSITY] = metrics.densityDpi;
+        config[CONFIG_FONT_SCALE] = Float.floatToIntBits(res.getConfiguration().fontScale);
+        return config;
+    }
+
+    /**
+     * Reads the snapshots of the keys for the current configuration on a
+     * background thread. Call it as early as possible, e.g. before inflating
+     * the layouts. Layouts preload their own key once the store is set.
+     */
+    public void preload(Context context, int... keys) {
+        final int[] config = getConfiguration(context.getResources());
+        for (int key : keys) {
+            preload(key, config);
+        }
+    }
+
+    Future<FrameTable> preload(final int key, final int[] config) {
+        return getExecutor().submit(new Callable<FrameTable>() {
+            @Override
+            public FrameTable call() {
+                return load(key, config);
+            }
+        });
+    }
+
+    /**
+     * Never touches the disk, so it is safe on the UI thread.
+     *
+     * @return Snapshot preloaded or stored for the key and configuration,
+     *         null if there is none or it is not loaded yet.
+     */
+    FrameTable get(int key, int[] config) {
+        synchronized (mLock) {
+            final Snapshot snapshot = mSnapshots.get(key);
+            return snapshot != null && Arrays.equals(snapshot.mConfig, config) ? snapshot.mTable : null;
+        }
+    }
+
+    /**
+     * Reads the snapshot unless it was read or stored already, on the
+     * calling thread.
+     *
+     * @return Snapshot stored for the key and configuration, null if there
+     *         is none.
+     */
+    FrameTable load(int key, int[] config) {
+        synchronized (mLock) {
+            final Snapshot snapshot = mSnapshots.get(key);
+            if (snapshot != null && Arrays.equals(snapshot.mConfig, config)) {
+                return snapshot.mTable;
+            }
+        }
+        FrameTable table;
+        try {
+            table = readFile(key, config);
+        } catch (IOException e) {
+            table = null;
+        }
+        synchronized (mLock) {
+            // A snapshot stored meanwhile is newer.
+            final Snapshot stored = mSnapshots.get(key);
+            if (stored == null || !Arrays.equals(stored.mConfig, config)) {
+                mSnapshots.put(key, new Snapshot(config, table));
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Schedules the table to be written unless it equals the stored one.
+     */
+    void put(int key, int[] config, FrameTable table) {
+        final Snapshot snapshot = new Snapshot(config, table);
+        synchronized (mLock) {
+            final Snapshot stored = mSnapshots.get(key);
+            if (stored != null && stored.equals(snapshot)) {
+                return;
+            }
+            mSnapshots.put(key, snapshot);
+            mPending.put(key, snapshot);
+            if (!mWriteScheduled) {
+                mWriteScheduled = true;
+                getExecutor().schedule(mWriteTask, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Writes pending snapshots on the calling thread.
+     */
+    public void flush() {
+        // Held while writing, so that an older snapshot never replaces a newer one.
+        synchronized (mWriteLock) {
+            final HashMap<Integer, Snapshot> pending;
+            synchronized (mLock) {
+                pending = new HashMap<>(mPending);
+                mPending.clear();
+            }
+            for (Integer key : pending.keySet()) {
+                try {
+                    writeFile(key, pending.get(key));
+                } catch (IOException e) {
+                    // Snapshots are an optimization, next launch solves instead.
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes all snapshots of this store.
+     */
+    public void clear() {
+        synchronized (mLock) {
+            mSnapshots.clear();
+            mPending.clear();
+        }
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(SUFFIX)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private final Runnable mWriteTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (mLock) {
+                mWriteScheduled = false;
+            }
+            flush();
+        }
+    };
+
+    private static synchronized ScheduledExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "SpringLayoutSnapshots");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    private File getFile(int key) {
+        return new File(mDirectory, Integer.toHexString(key) + SUFFIX);
+    }
+
+    private FrameTable readFile(int key, int[] config) throws IOException {
+        final DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(getFile(key))));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            return read(in, mVersion, config);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void writeFile(int key, Snapshot snapshot) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Cannot create " + mDirectory);
+        }
+        // Renamed once complete, readers never see a partial snapshot.
+        final File file = getFile(key);
+        final File temporary = new File(mDirectory, file.getName() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            write(out, mVersion, snapshot.mConfig, snapshot.mTable);
+        } finally {
+            out.close();
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Cannot rename " + temporary);
+        }
+    }
+
+    static void write(DataOutputStream out, int version, int[] config, FrameTable table) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(version);
+        for (int value : config) {
+            out.writeInt(value);
+        }
+        final ConstraintGraph graph = table.mGraph;
+        final int count = graph.mChildCount;
+        out.writeInt(count);
+        writeInts(out, graph.mIds, count);
+        writeInts(out, graph.mAnchors, count * ConstraintGraph.RELATION_SLOTS);
+        writeInts(out, graph.mWidthWeights, count);
+        writeInts(out, graph.mHeightWeights, count);
+        out.writeInt(table.mWidthMeasureSpec);
+        out.writeInt(table.mHeightMeasureSpec);
+        out.writeInt(table.mInputs.length);
+        writeInts(out, table.mInputs, table.mInputs.length);
+        for (int i = 0; i < count; i++) {
+            out.writeBoolean(table.mGone[i]);
+        }
+        out.writeInt(table.mPaddingLeft);
+        out.writeInt(table.mPaddingTop);
+        out.writeInt(table.mPaddingRight);
+        out.writeInt(table.mPaddingBottom);
+        out.writeInt(table.mMinWidth);
+        out.writeInt(table.mMinHeight);
+        writeInts(out, table.mFrames, count * ConstraintSolver.FRAME_STRIDE);
+        out.writeInt(table.mMeasuredWidth);
+        out.writeInt(table.mMeasuredHeight);
+    }
+
+    /**
+     * @return Table, null if the snapshot was written by another version or
+     *         for another configuration.
+     * @throws IOException
+     *             If the snapshot is corrupted.
+     */
+    static FrameTable read(DataInputStream in, int version, int[] config) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != version) {
+            return null;
+        }
+        for (int value : config) {
+            if (in.readInt() != value) {
+                return null;
+            }
+        }
+        final int count = in.readInt();
+        if (count < 0 || count > Short.MAX_VALUE) {
+            throw new IOException("Corrupted snapshot");
+        }
+        final int[] ids = readInts(in, count);
+        final int[] anchors = readInts(in, count * ConstraintGraph.RELATION_SLOTS);
+        final int[] widthWeights = readInts(in, count);
+        final int[] heightWeights = readInts(in, count);
+        final int widthMeasureSpec = in.readInt();
+        final int heightMeasureSpec = in.readInt();
+        final int[] inputs = readInts(in, in.readInt());
+        final boolean[] gone = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            gone[i] = in.readBoolean();
+        }
+        final int paddingLeft = in.readInt(), paddingTop = in.readInt(), paddingRight = in.readInt(), paddingBottom = in.readInt();
+        final int minWidth = in.readInt(), minHeight = in.readInt();
+        final int[] frames = readInts(in, count * ConstraintSolver.FRAME_STRIDE);
+        final int measuredWidth = in.readInt(), measuredHeight = in.readInt();
+        // Only the structure is compared when the table is used.
+        final ConstraintGraph graph = new ConstraintGraph(count, ids, anchors, widthWeights, heightWeights, new int[count],
+                new int[count], new int[count * 4], gone, minWidth, minHeight, paddingLeft, paddingTop, paddingRight, paddingBottom);
+        return new FrameTable(graph, widthMeasureSpec, heightMeasureSpec, inputs, gone, paddingLeft, paddingTop, paddingRight,
+                paddingBottom, minWidth, minHeight, frames, measuredWidth, measuredHeight);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        if (count < 0 || count > MAX_VALUES) {
+            throw new IOException("Corrupted snapshot");
+        }
+        final int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static final class Snapshot {
+        final int[] mConfig;
+        final FrameTable mTable;
+
+        Snapshot(int[] config, FrameTable table) {
+            mConfig = config;
+            mTable = table;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Snapshot)) {
+                return false;
+            }
+            final Snapshot other = (Snapshot) o;
+            final FrameTable table = other.mTable;
+            if (mTable == null || table == null) {
+                return mTable == table && Arrays.equals(mConfig, other.mConfig);
+            }
+            return Arrays.equals(mConfig, other.mConfig) && mTable.mGraph.hasSameStructure(table.mGraph)
+                    && mTable.mWidthMeasureSpec == table.mWidthMeasureSpec && mTable.mHeightMeasureSpec == table.mHeightMeasureSpec
+                    && Arrays.equals(mTable.mInputs, table.mInputs) && Arrays.equals(mTable.mGone, table.mGone)
+                    && Arrays.equals(mTable.mFrames, table.mFrames) && mTable.mPaddingLeft == table.mPaddingLeft
+                    && mTable.mPaddingTop == table.mPaddingTop && mTable.mPaddingRight == table.mPaddingRight
+                    && mTable.mPaddingBottom == table.mPaddingBottom && mTable.mMinWidth == table.mMinWidth
+                    && mTable.mMinHeight == table.mMinHeight;
+        }
+
+        @Override
+        public int hashCode() {
+            return mTable != null ? Arrays.hashCode(mTable.mFrames) : Arrays.hashCode(mConfig);
+        }
+    }
+}
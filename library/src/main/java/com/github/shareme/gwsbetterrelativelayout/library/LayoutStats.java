@@ -0,0 +1,135 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+/**
+ * Snapshot of SpringLayout counters.
+ *
+ * Obtained through {@link SpringLayout#getLayoutStats()}, or refilled in
+ * place through {@link SpringLayout#getLayoutStats(LayoutStats)} by callers
+ * that sample on every pass. Times are in
+ * nanoseconds. All counters are only collected while stats are enabled, pool
+ * and evaluation counters come straight from the layout's {@link LayoutMath}.
+ * Measure passes deferred while the layout is hidden are counted as measure
+ * passes too, they only report the last solved size.
+ */
+@SuppressWarnings("unused")
+public final class LayoutStats {
+    private int mMeasureCount;
+    private int mLayoutCount;
+    private long mMeasureTimeNanos;
+    private long mLayoutTimeNanos;
+    private int mHierarchyRebuildCount;
+    private long mHierarchyRebuildTimeNanos;
+    private int mEvaluationCount;
+    private int mCacheHitCount;
+    private int mPoolHitCount;
+    private int mPoolMissCount;
+
+    /**
+     * Creates empty stats, to be filled by
+     * {@link SpringLayout#getLayoutStats(LayoutStats)}.
+     */
+    public LayoutStats() {
+    }
+
+    void set(int measureCount, int layoutCount, long measureTimeNanos, long layoutTimeNanos, int hierarchyRebuildCount,
+            long hierarchyRebuildTimeNanos, int evaluationCount, int cacheHitCount, int poolHitCount, int poolMissCount) {
+        mMeasureCount = measureCount;
+        mLayoutCount = layoutCount;
+        mMeasureTimeNanos = measureTimeNanos;
+        mLayoutTimeNanos = layoutTimeNanos;
+        mHierarchyRebuildCount = hierarchyRebuildCount;
+        mHierarchyRebuildTimeNanos = hierarchyRebuildTimeNanos;
+        mEvaluationCount = evaluationCount;
+        mCacheHitCount = cacheHitCount;
+        mPoolHitCount = poolHitCount;
+        mPoolMissCount = poolMissCount;
+    }
+
+    public int getMeasureCount() {
+        return mMeasureCount;
+    }
+
+    public int getLayoutCount() {
+        return mLayoutCount;
+    }
+
+    public long getMeasureTimeNanos() {
+        return mMeasureTimeNanos;
+    }
+
+    public long getLayoutTimeNanos() {
+        return mLayoutTimeNanos;
+    }
+
+    /**
+     * @return Time spent rebuilding the constraint graph, already included in
+     *         the measure time.
+     */
+    public long getHierarchyRebuildTimeNanos() {
+        return mHierarchyRebuildTimeNanos;
+    }
+
+    public int getHierarchyRebuildCount() {
+        return mHierarchyRebuildCount;
+    }
+
+    /**
+     * @return Number of constraint nodes whose value had to be computed.
+     */
+    public int getEvaluationCount() {
+        return mEvaluationCount;
+    }
+
+    /**
+     * @return Number of constraint node reads served from the value cache.
+     */
+    public int getCacheHitCount() {
+        return mCacheHitCount;
+    }
+
+    /**
+     * @return Share of node reads served from cache, 0 when nothing was read.
+     */
+    public float getCacheHitRatio() {
+        final int reads = mEvaluationCount + mCacheHitCount;
+        return reads == 0 ? 0f : (float) mCacheHitCount / reads;
+    }
+
+    public int getPoolHitCount() {
+        return mPoolHitCount;
+    }
+
+    /**
+     * @return Number of LayoutMath objects allocated because the pools were
+     *         empty.
+     */
+    public int getPoolMissCount() {
+        return mPoolMissCount;
+    }
+
+    /**
+     * @return Average number of LayoutMath pool misses per measure pass, 0
+     *         before the first pass. Other allocations, e.g. of arrays,
+     *         frame tables or by children, are not counted.
+     */
+    public float getAllocationsPerPass() {
+        return mMeasureCount == 0 ? 0f : (float) mPoolMissCount / mMeasureCount;
+    }
+
+    public long getAverageMeasureTimeNanos() {
+        return mMeasureCount == 0 ? 0 : mMeasureTimeNanos / mMeasureCount;
+    }
+
+    public long getAverageLayoutTimeNanos() {
+        return mLayoutCount == 0 ? 0 : mLayoutTimeNanos / mLayoutCount;
+    }
+
+    @Override
+    public String toString() {
+        return "LayoutStats{measures=" + mMeasureCount + ", layouts=" + mLayoutCount + ", measureTimeNs=" + mMeasureTimeNanos
+                + ", layoutTimeNs=" + mLayoutTimeNanos + ", rebuilds=" + mHierarchyRebuildCount + ", rebuildTimeNs="
+                + mHierarchyRebuildTimeNanos + ", evaluations=" + mEvaluationCount + ", cacheHitRatio=" + getCacheHitRatio()
+                + ", poolHits=" + mPoolHitCount + ", poolMisses=" + mPoolMissCount + ", allocationsPerPass="
+                + getAllocationsPerPass() + "}";
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+/**
+ * Receives begin/end notifications for SpringLayout phases.
+ *
+ * Sections are always properly nested and are begun and ended on the same
+ * thread.
+ *
+ * @see SpringLayout#setTracer(LayoutTracer)
+ * @see SpringLayout#setDefaultTracer(LayoutTracer)
+ */
+public interface LayoutTracer {
+    void beginSection(String name);
+
+    void endSection();
+}
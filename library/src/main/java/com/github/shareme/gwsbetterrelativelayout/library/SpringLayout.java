@@ -1,21 +1,31 @@
 package com.github.shareme.gwsbetterrelativelayout.library;
 
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.SparseIntArray;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.ViewDebug;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 
-import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.Value;
-import com.github.shareme.gwsbetterrelativelayout.library.LayoutMath.ValueWrapper;
-
-import java.util.Stack;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Future;
 
 @SuppressWarnings("unused")
 public class SpringLayout extends ViewGroup {
-    private static int RELATIVE_SIZE_DENOMINATOR = 100;
+    private static final int RELATIVE_SIZE_DENOMINATOR = ConstraintSolver.RELATIVE_SIZE_DENOMINATOR;
 
     public static final int PARENT = -2;
     public static final int TRUE = -1;
@@ -69,22 +79,22 @@ public class SpringLayout extends ViewGroup {
      * Rule that aligns the child's left edge with its SpringLayout parent's
      * left edge.
      */
-    private static final int ALIGN_PARENT_LEFT = 11;
+    static final int ALIGN_PARENT_LEFT = 11;
     /**
      * Rule that aligns the child's top edge with its SpringLayout parent's top
      * edge.
      */
-    private static final int ALIGN_PARENT_TOP = 12;
+    static final int ALIGN_PARENT_TOP = 12;
     /**
      * Rule that aligns the child's right edge with its SpringLayout parent's
      * right edge.
      */
-    private static final int ALIGN_PARENT_RIGHT = 13;
+    static final int ALIGN_PARENT_RIGHT = 13;
     /**
      * Rule that aligns the child's bottom edge with its SpringLayout parent's
      * bottom edge.
      */
-    private static final int ALIGN_PARENT_BOTTOM = 14;
+    static final int ALIGN_PARENT_BOTTOM = 14;
 
     /**
      * Rule that centers the child with respect to the bounds of its
@@ -102,32 +112,84 @@ public class SpringLayout extends ViewGroup {
      */
     public static final int CENTER_VERTICAL = 17;
 
-    private static final int VERB_COUNT = 18;
+    static final int VERB_COUNT = 18;
 
-    private static int[] VALID_RELATIONS = new int[] { LEFT_OF, RIGHT_OF, ALIGN_LEFT, ALIGN_RIGHT, ABOVE, BELOW, ALIGN_TOP, ALIGN_BOTTOM,
+    static final int[] VALID_RELATIONS = new int[] { LEFT_OF, RIGHT_OF, ALIGN_LEFT, ALIGN_RIGHT, ABOVE, BELOW, ALIGN_TOP, ALIGN_BOTTOM,
             ALIGN_CENTER_HORIZONTALLY, ALIGN_CENTER_VERTICALLY };
     
-    // Constants for error reporting purpose
-    private static final int TOP = 0;
-    private static final int BOTTOM = 1;
-    private static final int LEFT = 2;
-    private static final int RIGHT = 3;
-    private static final String[] ANCHOR_NAMES = new String[] { "top", "bottom", "left", "right" };
-
-    private ViewConstraints mRootConstraints;
-    private final SparseIntArray mIdToViewConstraints = new SparseIntArray();
-    private ViewConstraints[] mViewConstraints;
-    private final Stack<ViewConstraints> mSpringMetrics = new Stack<>();
-    private final SimpleIdentitySet<ViewConstraints> mHorizontalChains = new SimpleIdentitySet<>();
-    private final SimpleIdentitySet<ViewConstraints> mVerticalChains = new SimpleIdentitySet<>();
-
-    private LayoutMath mLayoutMath = new LayoutMath();
+    // Trace section names
+    private static final String TRACE_MEASURE = "SpringLayout#onMeasure";
+    private static final String TRACE_LAYOUT = "SpringLayout#onLayout";
+    private static final String TRACE_REBUILD_HIERARCHY = "SpringLayout#rebuildHierarchy";
+    private static final String TRACE_ADAPT_LAYOUT_PARAMETERS = "SpringLayout#adaptLayoutParameters";
+    private static final String TRACE_MEASURE_CHILDREN = "SpringLayout#measureChildren";
+    private static final String TRACE_APPLY_FRAMES = "SpringLayout#applyFrames";
+    private static final String TRACE_PROGRESSIVE_SOLVE = "SpringLayout#progressiveSolve";
+    private static final String TRACE_ANTICIPATED_SOLVE = "SpringLayout#anticipatedSolve";
+    private static final String TRACE_RELAYOUT_CHILD = "SpringLayout#relayoutChild";
+
+    private static final long DEFAULT_PROGRESSIVE_FRAME_BUDGET_NANOS = 4000000;
+    // Solves repeated in one measure pass for children that moved into the
+    // viewport with estimated sizes.
+    private static final int MAX_VIRTUALIZATION_CORRECTIONS = 4;
+    // Quiet time after a solve before anticipated specs are presolved.
+    private static final long ANTICIPATION_DELAY_MILLIS = 500;
+    private static final String POOL_PROFILE_FILE = "spring_layout_pools";
+
+    private static final int[] LAYOUT_SIZE_ATTRS = new int[] { android.R.attr.layout_width, android.R.attr.layout_height };
+
+    private static LayoutTracer sDefaultTracer;
+
+    private final SparseIntArray mIdToChildIndex = new SparseIntArray();
+
+    private final int mPoolProfileSlot = SpringLayoutPrewarmer.claimSlot();
+    private LayoutMath mLayoutMath = SpringLayoutPrewarmer.obtainLayoutMath(mPoolProfileSlot);
+    private final ConstraintSolver mSolver = new ConstraintSolver(mLayoutMath, this);
+    // Measure solves into the back buffer, layout swaps it to the front and
+    // applies it. The front always holds the frames currently laid out.
+    private int[] mFrontFrames = new int[0];
+    private int[] mBackFrames = new int[0];
+    private boolean mBackFramesPending;
+    private boolean mFramesChanged;
+    // False until frames of the current hierarchy were solved at least once.
+    private boolean mFramesValid;
+
+    private ProgressiveSolve mProgressiveSolve;
+    private Virtualization mVirtualization;
+    private AnticipatedSolve mAnticipatedSolve;
+    private long mProgressiveFrameBudgetNanos = DEFAULT_PROGRESSIVE_FRAME_BUDGET_NANOS;
+    private int mSolvedWidth, mSolvedHeight;
+    private int mLastWidthMeasureSpec, mLastHeightMeasureSpec;
+    private FrameTable mPresolvedFrames;
+    private LayoutSnapshotStore mSnapshotStore;
+    private int mSnapshotKey;
+    private int[] mSnapshotConfig;
+    // Set by builds and configuration changes, the next full solve is persisted.
+    private boolean mSnapshotDue;
+    private boolean mDeferSolveWhenHidden;
+    // Measured while hidden, children were neither measured nor solved.
+    private boolean mSolveDeferred;
 
     private boolean mDirtyHierarchy = true;
     private boolean mDirtySize = true;
 
+    private boolean mPrebuildGraph;
+    private boolean mPrebuilt;
+    private String mCompiledGraphPath;
+    // Structure of the inflated children, dropped once used or when children change.
+    private CompiledConstraintGraph mCompiledGraph;
+    private int mInflatedWidth = LayoutParams.MATCH_PARENT, mInflatedHeight = LayoutParams.MATCH_PARENT;
+
     private int mMinWidth = 0, mMinHeight = 0;
 
+    private LayoutTracer mTracer = sDefaultTracer;
+
+    private boolean mStatsEnabled;
+    private int mMeasureCount, mLayoutCount, mHierarchyRebuildCount;
+    private long mMeasureTimeNanos, mLayoutTimeNanos, mHierarchyRebuildTimeNanos;
+    // Counted with stats disabled too, never reset.
+    private int mHierarchyGeneration;
+
     public SpringLayout(Context context) {
         super(context);
     }
@@ -146,36 +208,258 @@ public class SpringLayout extends ViewGroup {
         TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.SpringLayout);
         setMinimumWidth(a.getDimensionPixelSize(R.styleable.SpringLayout_minWidth, 0));
         setMinimumHeight(a.getDimensionPixelSize(R.styleable.SpringLayout_minHeight, 0));
+        mPrebuildGraph = a.getBoolean(R.styleable.SpringLayout_prebuildGraph, false);
+        mCompiledGraphPath = a.getString(R.styleable.SpringLayout_compiledGraph);
         a.recycle();
+
+        if (mPrebuildGraph) {
+            // Layout params are assigned by the parent only after inflation finishes.
+            a = context.obtainStyledAttributes(attrs, LAYOUT_SIZE_ATTRS);
+            mInflatedWidth = a.getLayoutDimension(0, LayoutParams.MATCH_PARENT);
+            mInflatedHeight = a.getLayoutDimension(1, LayoutParams.MATCH_PARENT);
+            a.recycle();
+        }
+    }
+
+    @Override
+    protected void onFinishInflate() {
+        super.onFinishInflate();
+        if (mCompiledGraphPath != null) {
+            try {
+                useCompiledGraph(CompiledConstraintGraph.load(getContext().getAssets(), mCompiledGraphPath));
+            } catch (IOException e) {
+                // Not compiled in this build, constraints are built from children.
+                mCompiledGraph = null;
+            }
+        }
+        if (mPrebuildGraph) {
+            prebuildConstraintGraph();
+        }
+    }
+
+    /**
+     * Uses a graph compiled by SpringLayoutBuilderGenerator for the current
+     * children on the next hierarchy rebuild, instead of resolving ids and
+     * building anchor tables. Ignored if children are added, removed or their
+     * relations change before that.
+     *
+     * @throws IllegalArgumentException
+     *             If the graph is not a compiled constraint graph.
+     */
+    public void setCompiledConstraintGraph(byte[] compiledGraph) {
+        try {
+            useCompiledGraph(CompiledConstraintGraph.read(compiledGraph));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        mDirtyHierarchy = true;
+    }
+
+    private void useCompiledGraph(CompiledConstraintGraph compiledGraph) {
+        mCompiledGraph = compiledGraph;
+        // Current relations are in the compiled graph, changes made from now
+        // on mark their params dirty again.
+        for (int i = 0; i < getChildCount(); i++) {
+            ((LayoutParams) getChildAt(i).getLayoutParams()).dirty = false;
+        }
+    }
+
+    /**
+     * If enabled, constraints are built and validated in
+     * {@link #onFinishInflate()}, on the inflating thread, instead of in the
+     * first measure pass. Same as the prebuildGraph attribute.
+     */
+    public void setPrebuildGraph(boolean prebuildGraph) {
+        mPrebuildGraph = prebuildGraph;
+    }
+
+    public boolean isPrebuildGraph() {
+        return mPrebuildGraph;
+    }
+
+    /**
+     * Resolves ids, normalizes relations and detects spring chains of the
+     * current children, so that the next measure pass only evaluates. May be
+     * called on a background thread, e.g. by AsyncLayoutInflater, as long as
+     * the layout is not attached to a window yet.
+     *
+     * Wrap content modes are taken from the layout size attributes. If the
+     * first measure pass disagrees, the constraints are rebuilt from the same
+     * graph.
+     *
+     * @throws IllegalArgumentException
+     *             If layout parameters are invalid, same as
+     *             {@link #onMeasure(int, int)}.
+     */
+    public void prebuildConstraintGraph() {
+        final ViewGroup.LayoutParams params = getLayoutParams();
+        final int width = params != null ? params.width : mInflatedWidth;
+        final int height = params != null ? params.height : mInflatedHeight;
+        rebuildHierarchy(width == LayoutParams.WRAP_CONTENT, height == LayoutParams.WRAP_CONTENT);
+        mPrebuilt = true;
+    }
+
+    /**
+     * Sets the tracer used by SpringLayouts created afterwards, null disables
+     * tracing.
+     */
+    public static void setDefaultTracer(LayoutTracer tracer) {
+        sDefaultTracer = tracer;
+    }
+
+    /**
+     * Prepares SpringLayouts for the first frames, call it early in
+     * Application#onCreate(). On a background thread, preallocates the
+     * LayoutMath pools of the first SpringLayouts to the sizes they needed in
+     * the last session and runs synthetic solves, so that the solver is
+     * compiled before the first real frame. Pool sizes of this session are
+     * recorded in the app's files directory for the next one, layouts are
+     * not profiled before this is called.
+     *
+     * @return Number of preallocated pool objects, once done. Fails with the
+     *         exception of a synthetic solve, if any.
+     */
+    public static Future<Integer> prewarm(Context context) {
+        return SpringLayoutPrewarmer.prewarm(new File(context.getFilesDir(), POOL_PROFILE_FILE));
+    }
+
+    /**
+     * Sets the tracer receiving a section for every measure/layout phase and
+     * hierarchy rebuild of this layout, null disables tracing.
+     */
+    public void setTracer(LayoutTracer tracer) {
+        mTracer = tracer;
+    }
+
+    public LayoutTracer getTracer() {
+        return mTracer;
+    }
+
+    private void beginSection(String name) {
+        if (mTracer != null) {
+            mTracer.beginSection(name);
+        }
+    }
+
+    private void endSection() {
+        if (mTracer != null) {
+            mTracer.endSection();
+        }
+    }
+
+    /**
+     * Enables collection of layout statistics. Enabling resets all counters.
+     *
+     * @see #getLayoutStats()
+     */
+    public void setStatsEnabled(boolean enabled) {
+        if (enabled && !mStatsEnabled) {
+            resetLayoutStats();
+        }
+        mStatsEnabled = enabled;
+        mLayoutMath.setCountersEnabled(enabled);
+    }
+
+    public boolean isStatsEnabled() {
+        return mStatsEnabled;
+    }
+
+    /**
+     * @return Snapshot of the counters collected since stats were enabled or
+     *         last reset.
+     */
+    public LayoutStats getLayoutStats() {
+        return getLayoutStats(new LayoutStats());
+    }
+
+    /**
+     * Same as {@link #getLayoutStats()}, but fills the given instance instead
+     * of allocating one.
+     *
+     * @return The given stats.
+     */
+    public LayoutStats getLayoutStats(LayoutStats outStats) {
+        outStats.set(mMeasureCount, mLayoutCount, mMeasureTimeNanos, mLayoutTimeNanos, mHierarchyRebuildCount,
+                mHierarchyRebuildTimeNanos, mLayoutMath.getEvaluationCount(), mLayoutMath.getCacheHitCount(),
+                mLayoutMath.getPoolHitCount(), mLayoutMath.getPoolMissCount());
+        return outStats;
+    }
+
+    /**
+     * @return Number of times the constraint graph was rebuilt since the
+     *         layout was created. Unlike the stats it is always counted and
+     *         never reset, so comparing it around a measure pass tells
+     *         whether the pass rebuilt the graph without enabling stats.
+     */
+    public int getHierarchyGeneration() {
+        return mHierarchyGeneration;
+    }
+
+    public void resetLayoutStats() {
+        mMeasureCount = mLayoutCount = mHierarchyRebuildCount = 0;
+        mMeasureTimeNanos = mLayoutTimeNanos = mHierarchyRebuildTimeNanos = 0;
+        mLayoutMath.resetCounters();
+    }
+
+    /**
+     * Writes the constraint expressions of the last measure pass as a Graphviz
+     * DOT graph. Each node shows its value, evaluation count since the last
+     * {@link #resetLayoutStats()} (zero unless stats are enabled), depth and
+     * owning view id.
+     *
+     * @throws IllegalStateException
+     *             If the layout was not measured yet.
+     */
+    public void exportConstraintGraphDot(Writer writer) throws IOException {
+        new ConstraintGraphExporter(mSolver, getId()).writeDot(writer);
+    }
+
+    /**
+     * Same as {@link #exportConstraintGraphDot(Writer)}, but writes JSON with
+     * a "nodes" array whose elements reference their inputs by node id.
+     */
+    public void exportConstraintGraphJson(Writer writer) throws IOException {
+        new ConstraintGraphExporter(mSolver, getId()).writeJson(writer);
     }
 
     @Override
     public void addView(View child, int index, ViewGroup.LayoutParams params) {
         mDirtyHierarchy = true;
+        mCompiledGraph = null;
         super.addView(child, index, params);
     }
 
     @Override
     public void removeView(View view) {
         mDirtyHierarchy = true;
+        mCompiledGraph = null;
         super.removeView(view);
     }
 
     @Override
     public void removeViewAt(int index) {
         mDirtyHierarchy = true;
+        mCompiledGraph = null;
         super.removeViewAt(index);
     }
 
     @Override
     public void removeViews(int start, int count) {
         mDirtyHierarchy = true;
+        mCompiledGraph = null;
         super.removeViews(start, count);
     }
 
     @Override
     public void requestLayout() {
         super.requestLayout();
+        if (mProgressiveSolve != null) {
+            if (mProgressiveSolve.mPublishing) {
+                return;
+            }
+            // Inputs may have changed, a finished solve is stale.
+            mProgressiveSolve.dropResult();
+        }
         mDirtySize = true;
 
         if (!mDirtyHierarchy) {
@@ -190,78 +474,210 @@ public class SpringLayout extends ViewGroup {
         }
     }
 
-    private void resizeViewConstraintsArray(int newLen) {
-        if (mViewConstraints.length < newLen) {
-            ViewConstraints[] oldConstraints = mViewConstraints;
-            mViewConstraints = new ViewConstraints[newLen];
-            System.arraycopy(oldConstraints, 0, mViewConstraints, 0, oldConstraints.length);
+    /**
+     * Captures the current constraints of this layout as a view-free graph.
+     * Layout parameters are normalized first, exactly as in a measure pass.
+     */
+    public ConstraintGraph captureConstraintGraph() {
+        adaptLayoutParameters();
+        return createConstraintGraph();
+    }
+
+    /**
+     * Sets frames solved ahead of time, e.g. by {@link ConstraintPresolver}
+     * during RecyclerView prefetch. Next measure pass uses them instead of
+     * solving if the measure specs, the constraint graph structure and all
+     * solver inputs (child sizes, margins, visibility, padding) are the same
+     * as the ones the table was solved for, otherwise they are dropped. The
+     * table is used at most once.
+     */
+    public void setPresolvedFrames(FrameTable frames) {
+        mPresolvedFrames = frames;
+        if (frames != null) {
+            mDirtySize = true;
         }
     }
 
-    private void createViewMetrics(Stack<ViewConstraints> springMetrics) {
-        springMetrics.clear();
-        mIdToViewConstraints.clear();
+    /**
+     * Persists solved frames in the store under the key, usually the layout
+     * resource id, and uses them for the first measure pass of a layout with
+     * the same key, configuration, constraints and child sizes, e.g. after
+     * the process restarts. The snapshot is read on a background thread, a
+     * measure pass that comes first solves instead, see
+     * {@link LayoutSnapshotStore#preload(Context, int...)}. Only the first
+     * full solve after a hierarchy or configuration change is persisted.
+     * Virtualized layouts are not persisted. Null disables snapshots.
+     */
+    public void setSnapshotStore(LayoutSnapshotStore store, int key) {
+        mSnapshotStore = store;
+        mSnapshotKey = key;
+        if (store != null) {
+            preloadSnapshot();
+        }
+    }
 
-        if (mRootConstraints != null) {
-            mRootConstraints.release();
-            for (ViewConstraints mViewConstraint : mViewConstraints) {
-                mViewConstraint.release();
-            }
+    public LayoutSnapshotStore getSnapshotStore() {
+        return mSnapshotStore;
+    }
 
-            mRootConstraints.reset(this);
-            resizeViewConstraintsArray(getChildCount());
-        } else {
-            mRootConstraints = new ViewConstraints(this, mLayoutMath);
-            mViewConstraints = new ViewConstraints[getChildCount()];
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        if (mSnapshotStore != null) {
+            preloadSnapshot();
         }
+    }
 
-        mRootConstraints.left.setValueObject(mLayoutMath.variable(0));
-        mRootConstraints.top.setValueObject(mLayoutMath.variable(0));
+    private void preloadSnapshot() {
+        mSnapshotConfig = LayoutSnapshotStore.getConfiguration(getResources());
+        mSnapshotDue = true;
+        mSnapshotStore.preload(mSnapshotKey, mSnapshotConfig);
+    }
 
+    private ConstraintGraph createConstraintGraph() {
         final int count = getChildCount();
+        mIdToChildIndex.clear();
+        final int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = getChildAt(i).getId();
+            mIdToChildIndex.append(ids[i], i);
+        }
 
+        final int[] anchors = new int[count * ConstraintGraph.RELATION_SLOTS];
+        final int[] widthWeights = new int[count], heightWeights = new int[count];
+        final int[] relativeWidths = new int[count], relativeHeights = new int[count];
+        final int[] margins = new int[count * 4];
+        final boolean[] gone = new boolean[count];
         for (int i = 0; i < count; i++) {
             final View v = getChildAt(i);
-            mIdToViewConstraints.append(v.getId(), i);
-            if (mViewConstraints[i] == null) {
-                mViewConstraints[i] = new ViewConstraints(v, mLayoutMath);
-            } else {
-                mViewConstraints[i].reset(v);
+            final LayoutParams layoutParams = (LayoutParams) v.getLayoutParams();
+            widthWeights[i] = layoutParams.getWidthWeight();
+            heightWeights[i] = layoutParams.getHeightWeight();
+            relativeWidths[i] = layoutParams.relativeWidth;
+            relativeHeights[i] = layoutParams.relativeHeight;
+            margins[i * 4 + ConstraintGraph.MARGIN_LEFT] = layoutParams.leftMargin;
+            margins[i * 4 + ConstraintGraph.MARGIN_TOP] = layoutParams.topMargin;
+            margins[i * 4 + ConstraintGraph.MARGIN_RIGHT] = layoutParams.rightMargin;
+            margins[i * 4 + ConstraintGraph.MARGIN_BOTTOM] = layoutParams.bottomMargin;
+            gone[i] = v.getVisibility() == View.GONE;
+
+            final int[] childRules = layoutParams.getRelations();
+            for (int relation = 0; relation < ConstraintGraph.RELATION_SLOTS; relation++) {
+                anchors[i * ConstraintGraph.RELATION_SLOTS + relation] = ConstraintGraph.NO_ANCHOR;
+            }
+            for (int relation : VALID_RELATIONS) {
+                anchors[i * ConstraintGraph.RELATION_SLOTS + relation] = getAnchorIndex(childRules[relation]);
             }
         }
+        return new ConstraintGraph(count, ids, anchors, widthWeights, heightWeights, relativeWidths, relativeHeights, margins, gone,
+                mMinWidth, mMinHeight, getPaddingLeft(), getPaddingTop(), getPaddingRight(), getPaddingBottom());
+    }
 
+    /**
+     * @return Graph of the inflated children using the compiled structure,
+     *         null if there is none or it does not match the children.
+     */
+    private ConstraintGraph createCompiledConstraintGraph() {
+        final CompiledConstraintGraph compiled = mCompiledGraph;
+        // Later rebuilds come from relation changes the blob does not know.
+        mCompiledGraph = null;
+        final int count = getChildCount();
+        if (compiled == null || compiled.mChildCount != count) {
+            return null;
+        }
         for (int i = 0; i < count; i++) {
-            final ViewConstraints viewConstraints = mViewConstraints[i];
-            final LayoutParams layoutParams = (LayoutParams) viewConstraints.getView().getLayoutParams();
-
-            if (layoutParams.getWidthWeight() > 0) {
-                viewConstraints.markAsHorizontalSpring();
+            if (((LayoutParams) getChildAt(i).getLayoutParams()).dirty) {
+                return null;
             }
+        }
+        return createConstraintGraph(compiled);
+    }
 
-            if (layoutParams.getHeightWeight() > 0) {
-                viewConstraints.markAsVerticalSpring();
+    /**
+     * @return Graph of the current children using a structure compiled or
+     *         captured from children with the same signature. Weights are
+     *         the children's own, the signature only tells springs apart.
+     */
+    private ConstraintGraph createConstraintGraph(CompiledConstraintGraph compiled) {
+        final int count = compiled.mChildCount;
+        final int[] ids = new int[count];
+        final int[] widthWeights = new int[count], heightWeights = new int[count];
+        final int[] relativeWidths = new int[count], relativeHeights = new int[count];
+        final int[] margins = new int[count * 4];
+        final boolean[] gone = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            final View v = getChildAt(i);
+            final LayoutParams layoutParams = (LayoutParams) v.getLayoutParams();
+            if ((compiled.mFlags[i] & CompiledConstraintGraph.FLAG_MATCH_PARENT_WIDTH) != 0) {
+                layoutParams.width = LayoutParams.MATCH_PARENT;
             }
+            if ((compiled.mFlags[i] & CompiledConstraintGraph.FLAG_MATCH_PARENT_HEIGHT) != 0) {
+                layoutParams.height = LayoutParams.MATCH_PARENT;
+            }
+            ids[i] = v.getId();
+            widthWeights[i] = layoutParams.getWidthWeight();
+            heightWeights[i] = layoutParams.getHeightWeight();
+            relativeWidths[i] = layoutParams.relativeWidth;
+            relativeHeights[i] = layoutParams.relativeHeight;
+            margins[i * 4 + ConstraintGraph.MARGIN_LEFT] = layoutParams.leftMargin;
+            margins[i * 4 + ConstraintGraph.MARGIN_TOP] = layoutParams.topMargin;
+            margins[i * 4 + ConstraintGraph.MARGIN_RIGHT] = layoutParams.rightMargin;
+            margins[i * 4 + ConstraintGraph.MARGIN_BOTTOM] = layoutParams.bottomMargin;
+            gone[i] = v.getVisibility() == View.GONE;
+        }
+        return new ConstraintGraph(count, ids, compiled.mAnchors, widthWeights, heightWeights, relativeWidths,
+                relativeHeights, margins, gone, mMinWidth, mMinHeight, getPaddingLeft(), getPaddingTop(), getPaddingRight(),
+                getPaddingBottom());
+    }
 
-            int[] childRules = layoutParams.getRelations();
-            for (int relation : VALID_RELATIONS) {
-                final ViewConstraints metrics = getViewMetrics(childRules[relation]);
-                if (metrics != null) {
-                    metrics.updateRelation(viewConstraints, relation);
-                }
+    /**
+     * @return Everything the graph structure is derived from: per child the
+     *         id, kinds of width and height, whether it is a spring on each
+     *         axis and relations. Other weight values are solver inputs.
+     */
+    private int[] createStructureSignature() {
+        final int count = getChildCount();
+        final int stride = 5 + VERB_COUNT;
+        final int[] signature = new int[count * stride];
+        for (int i = 0; i < count; i++) {
+            final View v = getChildAt(i);
+            final LayoutParams layoutParams = (LayoutParams) v.getLayoutParams();
+            final int offset = i * stride;
+            signature[offset] = v.getId();
+            signature[offset + 1] = Math.min(layoutParams.width, 0);
+            signature[offset + 2] = Math.min(layoutParams.height, 0);
+            signature[offset + 3] = layoutParams.widthWeight > 0 ? 1 : 0;
+            signature[offset + 4] = layoutParams.heightWeight > 0 ? 1 : 0;
+            System.arraycopy(layoutParams.relations, 0, signature, offset + 5, VERB_COUNT);
+        }
+        return signature;
+    }
+
+    /**
+     * @return FLAG_MATCH_PARENT_* bits of the adapted layout parameters.
+     */
+    private byte[] getMatchParentFlags() {
+        final int count = getChildCount();
+        final byte[] flags = new byte[count];
+        for (int i = 0; i < count; i++) {
+            final LayoutParams layoutParams = (LayoutParams) getChildAt(i).getLayoutParams();
+            if (layoutParams.width == LayoutParams.MATCH_PARENT) {
+                flags[i] |= CompiledConstraintGraph.FLAG_MATCH_PARENT_WIDTH;
             }
-            if (viewConstraints.isHorizontalSpring() || viewConstraints.isVerticalSpring()) {
-                springMetrics.add(viewConstraints);
+            if (layoutParams.height == LayoutParams.MATCH_PARENT) {
+                flags[i] |= CompiledConstraintGraph.FLAG_MATCH_PARENT_HEIGHT;
             }
         }
+        return flags;
     }
 
-    private ViewConstraints getViewMetrics(int id) {
+    private int getAnchorIndex(int id) {
         if (id == PARENT) {
-            return mRootConstraints;
-        } else if (id > 0 && mIdToViewConstraints.indexOfKey(id) >= 0) {
-            return mViewConstraints[mIdToViewConstraints.get(id)];
+            return ConstraintGraph.PARENT_INDEX;
+        } else if (id > 0 && mIdToChildIndex.indexOfKey(id) >= 0) {
+            return mIdToChildIndex.get(id);
         }
-        return null;
+        return ConstraintGraph.NO_ANCHOR;
     }
 
     private void adaptLayoutParameters() {
@@ -279,383 +695,778 @@ public class SpringLayout extends ViewGroup {
                 throw new IllegalArgumentException("heightWeight > 0 not supported for layout_height != WRAP_CONTENT in View: " + child);
             }
 
-            // If view is aligned both to parent's top and bottom (left and
-            // right) then its height (width) is MATCH_PARENT and the other way
-            // around
-            if (relations[ALIGN_PARENT_TOP] != 0 && relations[ALIGN_PARENT_BOTTOM] != 0) {
-                childParams.height = LayoutParams.MATCH_PARENT;
-            } else if (childParams.height == LayoutParams.MATCH_PARENT) {
-                relations[ALIGN_PARENT_TOP] = relations[ALIGN_PARENT_BOTTOM] = TRUE;
+            childParams.height = adaptHeight(relations, childParams.height);
+            childParams.width = adaptWidth(relations, childParams.width);
+            adaptRelations(relations);
+        }
+    }
+
+    /**
+     * If view is aligned both to parent's top and bottom then its height is
+     * MATCH_PARENT and the other way around.
+     *
+     * @return Adapted height.
+     */
+    static int adaptHeight(int[] relations, int height) {
+        if (relations[ALIGN_PARENT_TOP] != 0 && relations[ALIGN_PARENT_BOTTOM] != 0) {
+            return LayoutParams.MATCH_PARENT;
+        } else if (height == LayoutParams.MATCH_PARENT) {
+            relations[ALIGN_PARENT_TOP] = relations[ALIGN_PARENT_BOTTOM] = TRUE;
+        }
+        return height;
+    }
+
+    /**
+     * If view is aligned both to parent's left and right then its width is
+     * MATCH_PARENT and the other way around.
+     *
+     * @return Adapted width.
+     */
+    static int adaptWidth(int[] relations, int width) {
+        if (relations[ALIGN_PARENT_LEFT] != 0 && relations[ALIGN_PARENT_RIGHT] != 0) {
+            return LayoutParams.MATCH_PARENT;
+        } else if (width == LayoutParams.MATCH_PARENT) {
+            relations[ALIGN_PARENT_LEFT] = relations[ALIGN_PARENT_RIGHT] = TRUE;
+        }
+        return width;
+    }
+
+    /**
+     * Turns parent and center relations into the basic relations and anchors
+     * views without any relation to the parent's top left corner.
+     */
+    static void adaptRelations(int[] relations) {
+        if (relations[ALIGN_PARENT_TOP] == TRUE) {
+            relations[ALIGN_TOP] = PARENT;
+        }
+
+        if (relations[ALIGN_PARENT_BOTTOM] == TRUE) {
+            relations[ALIGN_BOTTOM] = PARENT;
+        }
+
+        if (relations[ALIGN_PARENT_LEFT] == TRUE) {
+            relations[ALIGN_LEFT] = PARENT;
+        }
+
+        if (relations[ALIGN_PARENT_RIGHT] == TRUE) {
+            relations[ALIGN_RIGHT] = PARENT;
+        }
+
+        if (relations[ALIGN_CENTER] != 0) {
+            relations[ALIGN_CENTER_HORIZONTALLY] = relations[ALIGN_CENTER];
+            relations[ALIGN_CENTER_VERTICALLY] = relations[ALIGN_CENTER];
+        }
+
+        if (relations[CENTER_IN_PARENT] == TRUE) {
+            relations[CENTER_HORIZONTAL] = relations[CENTER_VERTICAL] = TRUE;
+        }
+
+        if (relations[CENTER_HORIZONTAL] == TRUE) {
+            relations[ALIGN_CENTER_HORIZONTALLY] = PARENT;
+        }
+
+        if (relations[CENTER_VERTICAL] == TRUE) {
+            relations[ALIGN_CENTER_VERTICALLY] = PARENT;
+        }
+
+        if (!hasHorizontalRelations(relations)) {
+            relations[ALIGN_LEFT] = PARENT;
+        }
+
+        if (!hasVerticalRelations(relations)) {
+            relations[ALIGN_TOP] = PARENT;
+        }
+    }
+
+    private static boolean hasHorizontalRelations(int[] relations) {
+        return relations[LEFT_OF] != 0 || relations[RIGHT_OF] != 0 || relations[ALIGN_LEFT] != 0 || relations[ALIGN_RIGHT] != 0
+                || relations[ALIGN_CENTER_HORIZONTALLY] != 0;
+    }
+
+    private static boolean hasVerticalRelations(int[] relations) {
+        return relations[BELOW] != 0 || relations[ABOVE] != 0 || relations[ALIGN_TOP] != 0 || relations[ALIGN_BOTTOM] != 0
+                || relations[ALIGN_CENTER_VERTICALLY] != 0;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final long start = mStatsEnabled ? System.nanoTime() : 0;
+        beginSection(TRACE_MEASURE);
+        try {
+            int myWidth = -1;
+            int myHeight = -1;
+            int width = 0;
+            int height = 0;
+
+            int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+            int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+            int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+            int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+
+            final boolean isWrapContentWidth = widthMode != MeasureSpec.EXACTLY;
+            final boolean isWrapContentHeight = heightMode != MeasureSpec.EXACTLY;
+
+            if (mDeferSolveWhenHidden && (mDirtySize || mDirtyHierarchy) && !isVisibleToUser()) {
+                // Report the last solved size, the solve happens once shown.
+                mSolveDeferred = true;
+                setMeasuredDimension(resolveSize(Math.max(mSolvedWidth, mMinWidth), widthMeasureSpec),
+                        resolveSize(Math.max(mSolvedHeight, mMinHeight), heightMeasureSpec));
+                return;
+            }
+            mSolveDeferred = false;
+            mLastWidthMeasureSpec = widthMeasureSpec;
+            mLastHeightMeasureSpec = heightMeasureSpec;
+
+            if (mDirtyHierarchy) {
+                rebuildHierarchy(isWrapContentWidth, isWrapContentHeight);
+                mFramesValid = false;
+                mSnapshotDue = true;
+            } else if (mPrebuilt && mSolver.needsBuild(mSolver.getGraph(), isWrapContentWidth, isWrapContentHeight)) {
+                mSolver.setTracer(mTracer);
+                mSolver.build(mSolver.getGraph(), isWrapContentWidth, isWrapContentHeight);
             }
+            mPrebuilt = false;
 
-            if (relations[ALIGN_PARENT_LEFT] != 0 && relations[ALIGN_PARENT_RIGHT] != 0) {
-                childParams.width = LayoutParams.MATCH_PARENT;
-            } else if (childParams.width == LayoutParams.MATCH_PARENT) {
-                relations[ALIGN_PARENT_LEFT] = relations[ALIGN_PARENT_RIGHT] = TRUE;
+            // Record our dimensions if they are known;
+            if (widthMode != MeasureSpec.UNSPECIFIED) {
+                myWidth = widthSize;
             }
 
-            if (relations[ALIGN_PARENT_TOP] == TRUE) {
-                relations[ALIGN_TOP] = PARENT;
+            if (heightMode != MeasureSpec.UNSPECIFIED) {
+                myHeight = heightSize;
             }
 
-            if (relations[ALIGN_PARENT_BOTTOM] == TRUE) {
-                relations[ALIGN_BOTTOM] = PARENT;
+            if (widthMode == MeasureSpec.EXACTLY) {
+                width = myWidth;
             }
 
-            if (relations[ALIGN_PARENT_LEFT] == TRUE) {
-                relations[ALIGN_LEFT] = PARENT;
+            if (heightMode == MeasureSpec.EXACTLY) {
+                height = myHeight;
             }
 
-            if (relations[ALIGN_PARENT_RIGHT] == TRUE) {
-                relations[ALIGN_RIGHT] = PARENT;
+            if (mProgressiveSolve != null && mProgressiveSolve.mPublishPending) {
+                // Requested by the finished solve, which did not mark the size dirty.
+                mProgressiveSolve.mPublishPending = false;
+                mDirtySize = true;
+            }
+            if (mDirtySize && mProgressiveSolve != null && mVirtualization == null && mFramesValid && mPresolvedFrames == null) {
+                mDirtySize = false;
+                if (!mProgressiveSolve.publish(widthMeasureSpec, heightMeasureSpec)) {
+                    mProgressiveSolve.start(widthMeasureSpec, heightMeasureSpec, width, height);
+                }
+            } else if (mDirtySize) {
+                mDirtySize = false;
+                if (mProgressiveSolve != null) {
+                    mProgressiveSolve.cancel();
+                }
+                mSolver.setTracer(mTracer);
+                mSolver.setPadding(getPaddingLeft(), getPaddingTop(), getPaddingRight(), getPaddingBottom());
+                mSolver.setMinimumSize(mMinWidth, mMinHeight);
+                if (mVirtualization != null) {
+                    mVirtualization.measureChildren(widthMeasureSpec, heightMeasureSpec, isWrapContentWidth, width,
+                            isWrapContentHeight, height);
+                } else {
+                    measureChildren(widthMeasureSpec, heightMeasureSpec);
+                }
+                FrameTable presolved = mPresolvedFrames;
+                mPresolvedFrames = null;
+                final boolean snapshot = mSnapshotStore != null && mVirtualization == null;
+                boolean fromSnapshot = false;
+                if (presolved == null && snapshot && !mFramesValid) {
+                    presolved = mSnapshotStore.get(mSnapshotKey, mSnapshotConfig);
+                    fromSnapshot = presolved != null;
+                }
+                if (presolved == null && mAnticipatedSolve != null) {
+                    presolved = mAnticipatedSolve.get(widthMeasureSpec, heightMeasureSpec);
+                }
+                if (presolved != null && presolved.mWidthMeasureSpec == widthMeasureSpec
+                        && presolved.mHeightMeasureSpec == heightMeasureSpec && mSolver.matchesInputs(presolved)) {
+                    System.arraycopy(presolved.mFrames, 0, mBackFrames, 0, presolved.mFrames.length);
+                    if (fromSnapshot) {
+                        // Stored already.
+                        mSnapshotDue = false;
+                    }
+                    mSolvedWidth = presolved.mMeasuredWidth;
+                    mSolvedHeight = presolved.mMeasuredHeight;
+                } else {
+                    mSolver.solve(isWrapContentWidth, width, isWrapContentHeight, height, mBackFrames);
+                    for (int i = 0; mVirtualization != null && i < MAX_VIRTUALIZATION_CORRECTIONS
+                            && mVirtualization.measureEstimatedInViewport(widthMeasureSpec, heightMeasureSpec); i++) {
+                        mSolver.solve(isWrapContentWidth, width, isWrapContentHeight, height, mBackFrames);
+                    }
+                    mSolvedWidth = mSolver.getMeasuredWidth();
+                    mSolvedHeight = mSolver.getMeasuredHeight();
+                    if (mAnticipatedSolve != null) {
+                        mAnticipatedSolve.schedule(true);
+                    }
+                    if (snapshot && mSnapshotDue) {
+                        mSnapshotDue = false;
+                        final int[] frames = Arrays.copyOf(mBackFrames, getChildCount() * ConstraintSolver.FRAME_STRIDE);
+                        mSnapshotStore.put(mSnapshotKey, mSnapshotConfig,
+                                mSolver.createFrameTable(widthMeasureSpec, heightMeasureSpec, frames));
+                    }
+                }
+                applyFrames();
             }
 
-            if (relations[ALIGN_CENTER] != 0) {
-                relations[ALIGN_CENTER_HORIZONTALLY] = relations[ALIGN_CENTER];
-                relations[ALIGN_CENTER_VERTICALLY] = relations[ALIGN_CENTER];
+            setMeasuredDimension(mSolvedWidth, mSolvedHeight);
+        } finally {
+            endSection();
+            // Also counts passes deferred while hidden, which return early.
+            if (mStatsEnabled) {
+                mMeasureTimeNanos += System.nanoTime() - start;
+                mMeasureCount++;
             }
+        }
+    }
 
-            if (relations[CENTER_IN_PARENT] == TRUE) {
-                relations[CENTER_HORIZONTAL] = relations[CENTER_VERTICAL] = TRUE;
+    private void rebuildHierarchy(boolean isWrapContentWidth, boolean isWrapContentHeight) {
+        final long rebuildStart = mStatsEnabled ? System.nanoTime() : 0;
+        beginSection(TRACE_REBUILD_HIERARCHY);
+        try {
+            mDirtyHierarchy = false;
+            mHierarchyGeneration++;
+            ConstraintGraph graph = createCompiledConstraintGraph();
+            int[] signature = null;
+            CompiledConstraintGraph template = null;
+            if (graph == null) {
+                // Signatures describe the parameters as set, before they are adapted.
+                signature = createStructureSignature();
+                template = ConstraintGraphTemplates.get(signature);
+            }
+            // Adapted on every path, so parameters read back look the same
+            // whether the graph was compiled, shared or built.
+            beginSection(TRACE_ADAPT_LAYOUT_PARAMETERS);
+            try {
+                adaptLayoutParameters();
+            } finally {
+                endSection();
+            }
+            if (template != null) {
+                graph = createConstraintGraph(template);
+            } else if (graph == null) {
+                graph = createConstraintGraph();
+                ConstraintGraphTemplates.put(signature, CompiledConstraintGraph.from(graph, getMatchParentFlags()));
             }
+            mSolver.setTracer(mTracer);
+            mSolver.build(graph, isWrapContentWidth, isWrapContentHeight);
+            if (mBackFrames.length < getChildCount() * ConstraintSolver.FRAME_STRIDE) {
+                mBackFrames = new int[getChildCount() * ConstraintSolver.FRAME_STRIDE];
+                mFrontFrames = Arrays.copyOf(mFrontFrames, mBackFrames.length);
+            }
+            // Parameters are consumed, requestLayout() must not rebuild again.
+            final int count = getChildCount();
+            for (int i = 0; i < count; i++) {
+                ((LayoutParams) getChildAt(i).getLayoutParams()).dirty = false;
+            }
+            SpringLayoutPrewarmer.record(mPoolProfileSlot, mLayoutMath);
+        } finally {
+            endSection();
+        }
+        if (mStatsEnabled) {
+            mHierarchyRebuildTimeNanos += System.nanoTime() - rebuildStart;
+            mHierarchyRebuildCount++;
+        }
+    }
 
-            if (relations[CENTER_HORIZONTAL] == TRUE) {
-                relations[ALIGN_CENTER_HORIZONTALLY] = PARENT;
+    private void measureChildren(final int widthMeasureSpec, final int heightMeasureSpec) {
+        beginSection(TRACE_MEASURE_CHILDREN);
+        try {
+            final int count = getChildCount();
+            for (int i = 0; i < count; i++) {
+                measureChild(i, widthMeasureSpec, heightMeasureSpec);
             }
+        } finally {
+            endSection();
+        }
+    }
+
+    private void measureChild(int index, final int widthMeasureSpec, final int heightMeasureSpec) {
+        final LayoutParams params = measureInput(getChildAt(index), widthMeasureSpec, heightMeasureSpec);
+        setChildInput(index, params.inputWidth, params.inputHeight);
+    }
+
+    /**
+     * Measures a child for the constraints, unless it did not request a
+     * layout and was last measured with the same specs. The child is
+     * measured to its frame afterwards, so View's own measure cache would
+     * miss on every pass. Fixed size children of a layout that only changed
+     * width are not measured again.
+     *
+     * @return Layout parameters of the child, holding its measured size.
+     */
+    private LayoutParams measureInput(View child, int widthMeasureSpec, int heightMeasureSpec) {
+        final LayoutParams params = (LayoutParams) child.getLayoutParams();
+        final int childWidthMeasureSpec = getChildMeasureSpec(widthMeasureSpec, getPaddingLeft() + getPaddingRight()
+                + params.leftMargin + params.rightMargin, params.width);
+        final int childHeightMeasureSpec = getChildMeasureSpec(heightMeasureSpec, getPaddingTop() + getPaddingBottom()
+                + params.topMargin + params.bottomMargin, params.height);
+        if (child.isLayoutRequested() || childWidthMeasureSpec != params.inputWidthMeasureSpec
+                || childHeightMeasureSpec != params.inputHeightMeasureSpec) {
+            child.measure(childWidthMeasureSpec, childHeightMeasureSpec);
+            params.inputWidthMeasureSpec = childWidthMeasureSpec;
+            params.inputHeightMeasureSpec = childHeightMeasureSpec;
+            params.inputWidth = child.getMeasuredWidth();
+            params.inputHeight = child.getMeasuredHeight();
+        }
+        return params;
+    }
+
+    private void setChildInput(int index, int width, int height) {
+        final View v = getChildAt(index);
+        final LayoutParams layoutParams = (LayoutParams) v.getLayoutParams();
+        mSolver.setChildInput(index, width, height, layoutParams.leftMargin, layoutParams.topMargin, layoutParams.rightMargin,
+                layoutParams.bottomMargin, layoutParams.relativeWidth, layoutParams.relativeHeight, layoutParams.widthWeight,
+                layoutParams.heightWeight, v.getVisibility() == View.GONE);
+    }
+
+    /**
+     * Sets the size of a child, e.g. on every frame of an animation. Unlike
+     * changing its layout parameters and requesting a layout, only this
+     * child is measured again, constraints are solved without rebuilding
+     * and only children whose frames changed are measured and laid out. A
+     * regular layout pass is requested instead when the kind of size
+     * changes (fixed, match_parent, wrap_content), when the size of this
+     * layout changes or when a layout is pending anyway.
+     *
+     * Frames changed this way bypass the bookkeeping of measure passes:
+     * they are not counted in {@link #getLayoutStats()} and not stored in
+     * the {@link LayoutSnapshotStore}, which keeps the last measured frames.
+     *
+     * @param width
+     *            layout_width of the child.
+     * @param height
+     *            layout_height of the child.
+     */
+    public void setChildSize(View child, int width, int height) {
+        final LayoutParams params = (LayoutParams) child.getLayoutParams();
+        params.setWidth(width);
+        params.setHeight(height);
+        if (canRelayoutChild(child)) {
+            measureInput(child, mLastWidthMeasureSpec, mLastHeightMeasureSpec);
+            relayoutChild(indexOfChild(child), params.inputWidth, params.inputHeight);
+        }
+    }
+
+    /**
+     * Sets the margins of a child, the same way as
+     * {@link #setChildSize(View, int, int)}. The child is not measured again.
+     */
+    public void setChildMargins(View child, int left, int top, int right, int bottom) {
+        final LayoutParams params = (LayoutParams) child.getLayoutParams();
+        params.setMargins(left, top, right, bottom);
+        if (canRelayoutChild(child)) {
+            final int index = indexOfChild(child);
+            relayoutChild(index, mSolver.getMeasuredWidthInput(index), mSolver.getMeasuredHeightInput(index));
+        }
+    }
+
+    /**
+     * Sets the spring weights of a child, the same way as
+     * {@link #setChildSize(View, int, int)}. Turning a child into a spring or
+     * back rebuilds the constraints.
+     */
+    public void setChildWeights(View child, int widthWeight, int heightWeight) {
+        final LayoutParams params = (LayoutParams) child.getLayoutParams();
+        params.setWidthWeight(widthWeight);
+        params.setHeightWeight(heightWeight);
+        if (canRelayoutChild(child)) {
+            final int index = indexOfChild(child);
+            relayoutChild(index, mSolver.getMeasuredWidthInput(index), mSolver.getMeasuredHeightInput(index));
+        }
+    }
+
+    /**
+     * Sets the size of a child in percents of this layout, 0 if not
+     * relative, the same way as {@link #setChildSize(View, int, int)}.
+     */
+    public void setChildRelativeSize(View child, int relativeWidth, int relativeHeight) {
+        final LayoutParams params = (LayoutParams) child.getLayoutParams();
+        params.setRelativeWidth(relativeWidth);
+        params.setRelativeHeight(relativeHeight);
+        if (canRelayoutChild(child)) {
+            final int index = indexOfChild(child);
+            relayoutChild(index, mSolver.getMeasuredWidthInput(index), mSolver.getMeasuredHeightInput(index));
+        }
+    }
+
+    /**
+     * @return True if the child's inputs may be changed in place, otherwise
+     *         a layout is requested.
+     */
+    private boolean canRelayoutChild(View child) {
+        final LayoutParams params = (LayoutParams) child.getLayoutParams();
+        if (params.dirty || !mFramesValid || mBackFramesPending || mDirtyHierarchy || mDirtySize || mSolveDeferred
+                || mVirtualization != null || (mProgressiveSolve != null && mProgressiveSolve.mRunning)
+                || isLayoutRequested() || indexOfChild(child) < 0) {
+            requestLayout();
+            return false;
+        }
+        return true;
+    }
 
-            if (relations[CENTER_VERTICAL] == TRUE) {
-                relations[ALIGN_CENTER_VERTICALLY] = PARENT;
+    /**
+     * Solves for a changed child and lays out the children whose frames
+     * changed, outside of measure: neither stats nor snapshots are updated.
+     */
+    private void relayoutChild(int index, int measuredWidth, int measuredHeight) {
+        beginSection(TRACE_RELAYOUT_CHILD);
+        try {
+            setChildInput(index, measuredWidth, measuredHeight);
+            try {
+                mSolver.solveForLastSize(mBackFrames);
+            } catch (IllegalStateException e) {
+                // Measure reports it.
+                requestLayout();
+                return;
+            }
+            if (mSolver.getMeasuredWidth() != mSolvedWidth || mSolver.getMeasuredHeight() != mSolvedHeight) {
+                // The parent has to measure this layout again.
+                requestLayout();
+                return;
+            }
+            final int[] frames = mBackFrames;
+            final int count = getChildCount();
+            for (int i = 0; i < count; i++) {
+                final int offset = i * ConstraintSolver.FRAME_STRIDE;
+                final View v = getChildAt(i);
+                // The changed child was measured for its layout parameters, not its frame.
+                if (v.getVisibility() == View.GONE || (i != index && frames[offset] == mFrontFrames[offset]
+                        && frames[offset + 1] == mFrontFrames[offset + 1] && frames[offset + 2] == mFrontFrames[offset + 2]
+                        && frames[offset + 3] == mFrontFrames[offset + 3])) {
+                    continue;
+                }
+                v.measure(MeasureSpec.makeMeasureSpec(frames[offset + 2] - frames[offset], MeasureSpec.EXACTLY),
+                        MeasureSpec.makeMeasureSpec(frames[offset + 3] - frames[offset + 1], MeasureSpec.EXACTLY));
+                v.layout(frames[offset], frames[offset + 1], frames[offset + 2], frames[offset + 3]);
             }
+            swapFrames();
+            invalidate();
+        } finally {
+            endSection();
+        }
+    }
+
+    private void applyFrames() {
+        beginSection(TRACE_APPLY_FRAMES);
+        try {
+            measureChildrenToFrames(mBackFrames);
+            // Only a fully solved and applied buffer is swapped in, a failed
+            // measure leaves the previous frames in place.
+            mBackFramesPending = true;
+            mFramesValid = true;
+        } finally {
+            endSection();
+        }
+    }
 
-            if (!hasHorizontalRelations(relations)) {
-                relations[ALIGN_LEFT] = PARENT;
+    private void measureChildrenToFrames(int[] frames) {
+        final int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            final View v = getChildAt(i);
+            final int offset = i * ConstraintSolver.FRAME_STRIDE;
+            if (mVirtualization != null && !mVirtualization.intersects(frames, i)) {
+                continue;
             }
+            v.measure(MeasureSpec.makeMeasureSpec(frames[offset + 2] - frames[offset], MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(frames[offset + 3] - frames[offset + 1], MeasureSpec.EXACTLY));
+        }
+    }
 
-            if (!hasVerticalRelations(relations)) {
-                relations[ALIGN_TOP] = PARENT;
+    private void swapFrames() {
+        final int length = getChildCount() * ConstraintSolver.FRAME_STRIDE;
+        mFramesChanged = false;
+        for (int i = 0; i < length; i++) {
+            if (mFrontFrames[i] != mBackFrames[i]) {
+                mFramesChanged = true;
+                break;
             }
         }
+        final int[] front = mFrontFrames;
+        mFrontFrames = mBackFrames;
+        mBackFrames = front;
+        mBackFramesPending = false;
     }
 
-    private boolean hasHorizontalRelations(int[] relations) {
-        return relations[LEFT_OF] != 0 || relations[RIGHT_OF] != 0 || relations[ALIGN_LEFT] != 0 || relations[ALIGN_RIGHT] != 0
-                || relations[ALIGN_CENTER_HORIZONTALLY] != 0;
+    /**
+     * @return True if the last layout pass moved or resized any child.
+     */
+    public boolean haveFramesChanged() {
+        return mFramesChanged;
+    }
+
+    /**
+     * @return Number of axes left unevaluated by the solver because their
+     *         inputs did not change.
+     */
+    int getSkippedAxisCount() {
+        return mSolver.getSkippedAxisCount();
+    }
+
+    /**
+     * Copies left, top, right and bottom of every child, as laid out by the
+     * last layout pass, 4 ints per child.
+     */
+    public void copyFrames(int[] frames) {
+        System.arraycopy(mFrontFrames, 0, frames, 0, getChildCount() * ConstraintSolver.FRAME_STRIDE);
+    }
+
+    /**
+     * Enables progressive solving for layouts too large to be solved within a
+     * frame. Once the layout was measured, a size change is solved in parts
+     * driven by {@link Choreographer}, at most
+     * {@link #setProgressiveFrameBudget(long)} per frame. Children inside the
+     * visible region go first. The layout keeps its previous size and frames
+     * until the new ones are complete. Hierarchy changes are still solved at
+     * once.
+     */
+    public void setProgressiveSolving(boolean enabled) {
+        if (enabled && mProgressiveSolve == null) {
+            mProgressiveSolve = new ProgressiveSolve();
+        } else if (!enabled && mProgressiveSolve != null) {
+            mProgressiveSolve.cancel();
+            mProgressiveSolve = null;
+            requestLayout();
+        }
     }
 
-    private boolean hasVerticalRelations(int[] relations) {
-        return relations[BELOW] != 0 || relations[ABOVE] != 0 || relations[ALIGN_TOP] != 0 || relations[ALIGN_BOTTOM] != 0
-                || relations[ALIGN_CENTER_VERTICALLY] != 0;
+    public boolean isProgressiveSolving() {
+        return mProgressiveSolve != null;
     }
 
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        int myWidth = -1;
-        int myHeight = -1;
-        int width = 0;
-        int height = 0;
-
-        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
-        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
-        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
-        int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+    /**
+     * @return True if a progressive solve is in progress and the layout
+     *         still shows previous frames.
+     */
+    public boolean isProgressiveSolvePending() {
+        return mProgressiveSolve != null && mProgressiveSolve.mRunning;
+    }
 
-        final boolean isWrapContentWidth = widthMode != MeasureSpec.EXACTLY;
-        final boolean isWrapContentHeight = heightMode != MeasureSpec.EXACTLY;
+    /**
+     * Sets UI thread time progressive solving may take per frame, 4ms by
+     * default.
+     */
+    public void setProgressiveFrameBudget(long nanos) {
+        mProgressiveFrameBudgetNanos = nanos;
+    }
 
-        if (mDirtyHierarchy) {
-            mDirtyHierarchy = false;
-            adaptLayoutParameters();
-            createViewMetrics(mSpringMetrics);
-            handleSprings(mSpringMetrics, isWrapContentWidth, isWrapContentHeight);
+    /**
+     * Enables virtualization for tall layouts inside vertically scrolling
+     * containers. Only children within the visible region extended by
+     * prefetchMargin pixels above and below are measured, laid out and
+     * drawn. Other children are solved with their last measured size, or an
+     * estimate if they were never measured, and get an empty frame until
+     * they are inside again. They are not drawn, hit by touch or found by
+     * focus search, their visibility is left alone. Children that move into the
+     * region with an estimated size are measured and the layout is solved
+     * again in the same pass. Scrolling past the prefetched region requests a
+     * new layout. Progressive solving is not used while virtualization is
+     * enabled.
+     */
+    public void setVirtualizationEnabled(boolean enabled, int prefetchMargin) {
+        if (mVirtualization != null) {
+            mVirtualization.detach();
+            mVirtualization = null;
         }
-
-        // Record our dimensions if they are known;
-        if (widthMode != MeasureSpec.UNSPECIFIED) {
-            myWidth = widthSize;
+        if (enabled) {
+            mVirtualization = new Virtualization(prefetchMargin);
+            if (getWindowToken() != null) {
+                mVirtualization.attach();
+            }
         }
+        requestLayout();
+    }
 
-        if (heightMode != MeasureSpec.UNSPECIFIED) {
-            myHeight = heightSize;
-        }
+    public boolean isVirtualizationEnabled() {
+        return mVirtualization != null;
+    }
 
-        if (widthMode == MeasureSpec.EXACTLY) {
-            width = myWidth;
+    /**
+     * Declares measure specs the layout is expected to be measured with
+     * later, e.g. the width after rotation or in half of a split screen.
+     * Once the layout has not been solved for a while, every anticipated
+     * spec is solved in an idle moment of the UI thread, one per idle moment:
+     * children whose measure specs differ for it are measured for it and
+     * then restored, and the frames are kept. A measure pass with an anticipated spec, unchanged constraints
+     * and the same child sizes uses the kept frames instead of solving.
+     */
+    public void addAnticipatedMeasureSpecs(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mAnticipatedSolve == null) {
+            mAnticipatedSolve = new AnticipatedSolve();
         }
-
-        if (heightMode == MeasureSpec.EXACTLY) {
-            height = myHeight;
+        mAnticipatedSolve.add(widthMeasureSpec, heightMeasureSpec);
+        if (mFramesValid) {
+            mAnticipatedSolve.schedule(false);
         }
+    }
 
-        if (mDirtySize) {
-            mDirtySize = false;
-            invalidateMathCache();
-            updateChildrenSize(widthMeasureSpec, heightMeasureSpec);
-            updateLayoutSize(isWrapContentWidth, width, isWrapContentHeight, height);
-            cacheLayoutPositions();
+    /**
+     * Solves every pending anticipated spec now instead of in idle moments.
+     */
+    void solveAnticipatedMeasureSpecs() {
+        if (mAnticipatedSolve != null) {
+            while (mAnticipatedSolve.queueIdle()) {
+                // One spec per call.
+            }
         }
-
-        setMeasuredDimension(mRootConstraints.right.getValue(), mRootConstraints.bottom.getValue());
     }
 
-    private void invalidateMathCache() {
-        mRootConstraints.invalidate();
-        for (int i = 0; i < getChildCount(); i++) {
-            final ViewConstraints viewConstraints = mViewConstraints[i];
-            viewConstraints.invalidate();
+    public void clearAnticipatedMeasureSpecs() {
+        if (mAnticipatedSolve != null) {
+            mAnticipatedSolve.cancel();
+            mAnticipatedSolve = null;
         }
     }
 
-    private void updateChildrenSize(final int widthMeasureSpec, final int heightMeasureSpec) {
-        for (int i = 0; i < getChildCount(); i++) {
-            final ViewConstraints viewConstraints = mViewConstraints[i];
-            final View v = viewConstraints.getView();
-            final LayoutParams layoutParams = (LayoutParams) v.getLayoutParams();
-            final int mL = layoutParams.leftMargin, mR = layoutParams.rightMargin, mT = layoutParams.topMargin, mB = layoutParams.bottomMargin;
-            measureChildWithMargins(v, widthMeasureSpec, 0, heightMeasureSpec, 0);
-
-            if (!viewConstraints.isHorizontalSpring()) {
-                Value childWidth;
-                if (v.getVisibility() == View.GONE) {
-                    childWidth = mLayoutMath.variable(0);
-                } else if (layoutParams.relativeWidth > 0) {
-                    childWidth = mRootConstraints.innerRight.subtract(mRootConstraints.innerLeft)
-                            .multiply(mLayoutMath.variable(layoutParams.relativeWidth))
-                            .divide(mLayoutMath.variable(RELATIVE_SIZE_DENOMINATOR));
-                } else {
-                    childWidth = mLayoutMath.variable(v.getMeasuredWidth());
-                }
-
-                viewConstraints.leftMargin.setValue(mL);
-                viewConstraints.rightMargin.setValue(mR);
-
-                Value outerWidth = childWidth.add(mLayoutMath.variable(mL + mR)).retain();
-                viewConstraints.setWidth(outerWidth);
-                outerWidth.release();
-            }
-
-            if (!viewConstraints.isVerticalSpring()) {
-                Value childHeight;
-                if (v.getVisibility() == View.GONE) {
-                    childHeight = mLayoutMath.variable(0);
-                } else if (layoutParams.relativeHeight > 0) {
-                    childHeight = mRootConstraints.innerBottom.subtract(mRootConstraints.innerTop)
-                            .multiply(mLayoutMath.variable(layoutParams.relativeHeight))
-                            .divide(mLayoutMath.variable(RELATIVE_SIZE_DENOMINATOR));
-                } else {
-                    childHeight = mLayoutMath.variable(v.getMeasuredHeight());
-                }
+    /**
+     * Defers rebuilding and solving while the layout is not visible to the
+     * user: detached, in a hidden window or with an ancestor that is not
+     * VISIBLE. Measure then reports the last solved size without measuring
+     * children and layout leaves children in place. The deferred solve runs
+     * once the layout becomes visible. Layouts that are visible but
+     * scrolled out of screen, e.g. ViewPager pages, are solved as usual.
+     */
+    public void setDeferSolveWhenHidden(boolean enabled) {
+        mDeferSolveWhenHidden = enabled;
+        if (!enabled && mSolveDeferred) {
+            requestLayout();
+        }
+    }
 
-                viewConstraints.topMargin.setValue(mT);
-                viewConstraints.bottomMargin.setValue(mB);
+    public boolean isDeferSolveWhenHidden() {
+        return mDeferSolveWhenHidden;
+    }
 
-                Value outerHeight = childHeight.add(mLayoutMath.variable(mT + mB)).retain();
-                viewConstraints.setHeight(outerHeight);
-                outerHeight.release();
-            }
-        }
+    /**
+     * @return True if the last measure was skipped because the layout was
+     *         hidden and children do not reflect current constraints yet.
+     */
+    public boolean isSolveDeferred() {
+        return mSolveDeferred;
     }
 
-    private void handleSprings(final Stack<ViewConstraints> springMetrics, final boolean isWrapContentWidth,
-            final boolean isWrapContentHeight) {
-        if (!springMetrics.isEmpty()) {
-            mHorizontalChains.clear();
-            mVerticalChains.clear();
-            while (!springMetrics.isEmpty()) {
-                final ViewConstraints spring = springMetrics.pop();
-                final ViewConstraints chainHeadX = getChainHorizontalHead(spring);
-                final ViewConstraints chainHeadY = getChainVerticalHead(spring);
-                if (chainHeadX != null) {
-                    if (isWrapContentWidth && mMinWidth <= 0) {
-                        throw new IllegalStateException("Horizontal springs not supported when layout width is wrap_content");
-                    }
-                    mHorizontalChains.add(chainHeadX);
-                }
-                if (chainHeadY != null) {
-                    if (isWrapContentHeight && mMinHeight <= 0) {
-                        throw new IllegalStateException(
-                                "Vertical springs not supported when layout height is wrap_content and minHeight is not defined");
-                    }
-                    mVerticalChains.add(chainHeadY);
-                }
-            }
+    private boolean isVisibleToUser() {
+        return getWindowToken() != null && getWindowVisibility() == View.VISIBLE && isShown();
+    }
 
-            for (int i = 0; i < mHorizontalChains.size(); i++) {
-                final ViewConstraints chainHead = mHorizontalChains.get(i);
-                int totalWeight = 0;
-                Value contentWidth = mLayoutMath.variable(0);
-                final ValueWrapper totalWeightWrapper = mLayoutMath.wrap();
-                final ValueWrapper chainWidthWrapper = mLayoutMath.wrap();
-                ViewConstraints chainElem = chainHead, prevElem = null;
-                Value start = chainElem.left, end;
-                while (chainElem != null) {
-                    if (chainElem.isHorizontalSpring()) {
-                        chainElem.markHorizontalSpringUsed();
-                        final int weight = ((LayoutParams) chainElem.getView().getLayoutParams()).widthWeight;
-                        totalWeight += weight;
-                        final Value width = chainWidthWrapper.multiply(mLayoutMath.variable(weight)).divide(totalWeightWrapper)
-                                .max(mLayoutMath.variable(0)).retain();
-                        chainElem.setWidth(width);
-                        width.release();
-                    } else {
-                        contentWidth = contentWidth.add(chainElem.getWidth());
-                    }
-                    prevElem = chainElem;
-                    chainElem = chainElem.nextX;
-                }
-                end = prevElem.right;
-                totalWeightWrapper.setValueObject(mLayoutMath.variable(totalWeight));
-                chainWidthWrapper.setValueObject(end.subtract(start).subtract(contentWidth));
-            }
-
-            for (int i = 0; i < mVerticalChains.size(); i++) {
-                final ViewConstraints chainHead = mVerticalChains.get(i);
-                int totalWeight = 0;
-                Value contentHeight = mLayoutMath.variable(0);
-                final ValueWrapper totalWeightWrapper = mLayoutMath.wrap();
-                final ValueWrapper chainWidthWrapper = mLayoutMath.wrap();
-                ViewConstraints chainElem = chainHead, prevElem = null;
-                Value start = chainElem.top, end;
-                while (chainElem != null) {
-                    if (chainElem.isVerticalSpring()) {
-                        chainElem.markVerticalSpringUsed();
-                        final int weight = ((LayoutParams) chainElem.getView().getLayoutParams()).heightWeight;
-                        totalWeight += weight;
-                        final Value height = chainWidthWrapper.multiply(mLayoutMath.variable(weight)).divide(totalWeightWrapper)
-                                .max(mLayoutMath.variable(0)).retain();
-                        chainElem.setHeight(height);
-                        height.release();
-                    } else {
-                        contentHeight = contentHeight.add(chainElem.getHeight());
-                    }
-                    prevElem = chainElem;
-                    chainElem = chainElem.nextY;
-                }
-                end = prevElem.bottom;
-                totalWeightWrapper.setValueObject(mLayoutMath.variable(totalWeight));
-                chainWidthWrapper.setValueObject(end.subtract(start).subtract(contentHeight));
-            }
+    private void resumeDeferredSolve() {
+        if (mSolveDeferred && isVisibleToUser()) {
+            requestLayout();
         }
     }
 
-    private void updateLayoutSize(final boolean isWrapContentWidth, int width, final boolean isWrapContentHeight, int height) {
-        final int pL = getPaddingLeft(), pR = getPaddingRight(), pT = getPaddingTop(), pB = getPaddingBottom();
-
-        mRootConstraints.leftMargin.setValue(pL);
-        mRootConstraints.rightMargin.setValue(pR);
-        mRootConstraints.topMargin.setValue(pT);
-        mRootConstraints.bottomMargin.setValue(pB);
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        resumeDeferredSolve();
+    }
 
-        Value widthValue, heightValue;
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        resumeDeferredSolve();
+    }
 
-        if (isWrapContentWidth) {
-            int maxSize = mMinWidth > 0 ? mMinWidth : -1;
-            for (int i = 0; i < getChildCount(); i++) {
-                final ViewConstraints viewConstraints = mViewConstraints[i];
-                try {
-                    maxSize = Math.max(maxSize, viewConstraints.right.getValue() + pR);
-                    viewConstraints.right.invalidate();
-                } catch (IllegalStateException e) {
-                }
-            }
-            if (maxSize < 0) {
-                throw new IllegalStateException(
-                        "Parent layout_width == wrap_content is not supported if width of all children depends on parent width.");
-            }
-            widthValue = mLayoutMath.variable(maxSize);
-        } else {
-            widthValue = mLayoutMath.variable(width);
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mVirtualization != null) {
+            mVirtualization.attach();
+        }
+        if (mAnticipatedSolve != null && mFramesValid) {
+            mAnticipatedSolve.schedule(false);
         }
-        mRootConstraints.right.setValueObject(widthValue);
+        resumeDeferredSolve();
+    }
 
-        if (isWrapContentHeight) {
-            int maxSize = mMinHeight > 0 ? mMinHeight : -1;
-            for (int i = 0; i < getChildCount(); i++) {
-                final ViewConstraints viewConstraints = mViewConstraints[i];
-                try {
-                    maxSize = Math.max(maxSize, viewConstraints.bottom.getValue() + pB);
-                    viewConstraints.bottom.invalidate();
-                } catch (IllegalStateException e) {
-                }
-            }
-            if (maxSize < 0) {
-                throw new IllegalStateException(
-                        "Parent layout_height == wrap_content is not supported if height of all children depends on parent height.");
-            }
-            heightValue = mLayoutMath.variable(maxSize);
-        } else {
-            heightValue = mLayoutMath.variable(height);
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mVirtualization != null) {
+            mVirtualization.detach();
+        }
+        if (mProgressiveSolve != null && mProgressiveSolve.mRunning) {
+            mProgressiveSolve.cancel();
+            // Start over once attached again.
+            mDirtySize = true;
+        }
+        if (mAnticipatedSolve != null) {
+            mAnticipatedSolve.cancel();
         }
-        mRootConstraints.bottom.setValueObject(heightValue);
     }
 
-    private void cacheLayoutPositions() {
-        for (int i = 0; i < getChildCount(); i++) {
-            final ViewConstraints viewConstraints = mViewConstraints[i];
-            final View v = viewConstraints.getView();
-            if (viewConstraints.isHorizontalSpring() && !viewConstraints.isHorizontalSpringUsed()) {
-                throw new IllegalStateException(
-                        "Horizontal weight defined but never used, please review your layout. Remember that the chain of views cannot divert when using springs: Problematic view (please also check other dependant views): "
-                                + v + ", problematic layout: " + this);
-            } else if (viewConstraints.isVerticalSpring() && !viewConstraints.isVerticalSpringUsed()) {
-                throw new IllegalStateException(
-                        "Vertical weight defined but never used, please review your layout. Remember that the chain of views cannot divert when using springs: Problematic view (please also check other dependant views): "
-                                + v + ", problematic layout: " + this);
-            } else {
-                int anchor = 0;
-                try {
-                    LayoutParams st = (LayoutParams) v.getLayoutParams();
-                    anchor = LEFT;
-                    st.left = viewConstraints.innerLeft.getValue();
-                    anchor = RIGHT;
-                    st.right = viewConstraints.innerRight.getValue();
-                    anchor = TOP;
-                    st.top = viewConstraints.innerTop.getValue();
-                    anchor = BOTTOM;
-                    st.bottom = viewConstraints.innerBottom.getValue();
-                    v.measure(MeasureSpec.makeMeasureSpec(st.right - st.left, MeasureSpec.EXACTLY),
-                            MeasureSpec.makeMeasureSpec(st.bottom - st.top, MeasureSpec.EXACTLY));
-                } catch (IllegalStateException e) {
-                    throw new IllegalStateException("View " + ANCHOR_NAMES[anchor] + " position could not be calculated, please review your layout. Remember that A.above = B and B.below = A are not equivalent in terms of calculation order, please refer to documentation. Problematic view (please also check other dependant views): "
-                                    + v + ", problematic layout: " + this, e);
-                } catch (StackOverflowError e) {
-                    throw new IllegalStateException(
-                            "Constraints of a view could not be resolved (circular dependency), please review your layout. Problematic view (please also check other dependant views): "
-                                    + v + ", problematic layout: " + this);
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        final long start = mStatsEnabled ? System.nanoTime() : 0;
+        beginSection(TRACE_LAYOUT);
+        try {
+            if (mBackFramesPending) {
+                swapFrames();
+            }
+            final int[] frames = mFrontFrames;
+            // Deferred frames may not even match the child count.
+            final int count = mSolveDeferred ? 0 : getChildCount();
+            for (int i = 0; i < count; i++) {
+                View child = getChildAt(i);
+                final boolean outsideViewport = mVirtualization != null && !mVirtualization.intersects(frames, i);
+                setOutsideViewport(child, outsideViewport);
+                if (child.getVisibility() != View.GONE) {
+                    final int offset = i * ConstraintSolver.FRAME_STRIDE;
+                    if (outsideViewport) {
+                        // Not measured for its frame, an empty one keeps it from being hit.
+                        child.layout(frames[offset], frames[offset + 1], frames[offset], frames[offset + 1]);
+                    } else {
+                        child.layout(frames[offset], frames[offset + 1], frames[offset + 2], frames[offset + 3]);
+                    }
                 }
             }
+        } finally {
+            endSection();
+        }
+        if (mStatsEnabled) {
+            mLayoutTimeNanos += System.nanoTime() - start;
+            mLayoutCount++;
         }
     }
 
-    private ViewConstraints getChainVerticalHead(ViewConstraints spring) {
-        if (spring.nextY == null && spring.prevY == null) {
-            return null;
-        } else {
-            while (spring.prevY != null) {
-                spring = spring.prevY;
-            }
-            return spring;
+    /**
+     * Marks a child outside the viewport, so that it is neither drawn nor
+     * found by focus search. Its empty frame keeps touch away.
+     */
+    private void setOutsideViewport(View child, boolean outsideViewport) {
+        final LayoutParams params = (LayoutParams) child.getLayoutParams();
+        if (params.outsideViewport != outsideViewport) {
+            params.outsideViewport = outsideViewport;
+            invalidate();
         }
     }
 
-    private ViewConstraints getChainHorizontalHead(ViewConstraints spring) {
-        if (spring.nextX == null && spring.prevX == null) {
-            return null;
-        } else {
-            while (spring.prevX != null) {
-                spring = spring.prevX;
-            }
-            return spring;
+    @Override
+    protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+        if (((LayoutParams) child.getLayoutParams()).outsideViewport) {
+            return false;
         }
+        return super.drawChild(canvas, child, drawingTime);
     }
 
     @Override
-    protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        final int count = getChildCount();
-        for (int i = 0; i < count; i++) {
-            View child = getChildAt(i);
-            if (child.getVisibility() != View.GONE) {
-                LayoutParams st = (LayoutParams) child.getLayoutParams();
-                child.layout(st.left, st.top, st.right, st.bottom);
+    public void addFocusables(ArrayList<View> views, int direction, int focusableMode) {
+        final int start = views.size();
+        super.addFocusables(views, direction, focusableMode);
+        if (mVirtualization == null) {
+            return;
+        }
+        for (int i = views.size() - 1; i >= start; i--) {
+            View view = views.get(i);
+            if (view == this) {
+                continue;
+            }
+            // Walks up to the child of this layout holding the focusable.
+            while (view.getParent() != this) {
+                view = (View) view.getParent();
+            }
+            if (((LayoutParams) view.getLayoutParams()).outsideViewport) {
+                views.remove(i);
             }
         }
     }
@@ -739,14 +1550,28 @@ public class SpringLayout extends ViewGroup {
                 @ViewDebug.IntToString(from = TRUE, to = "true"), @ViewDebug.IntToString(from = 0, to = "false/NO_ID"),
                 @ViewDebug.IntToString(from = PARENT, to = "parent") })
         int[] relations = new int[VERB_COUNT];
-        int left, top, right, bottom;
         int relativeHeight, relativeWidth;
         int heightWeight = 0, widthWeight = 0;
         boolean dirty = true;
+        // Outside the viewport of a virtualized layout, not drawn or focusable.
+        boolean outsideViewport;
+        // Specs the child was last measured with for the constraints, and its measured size.
+        int inputWidthMeasureSpec = -1, inputHeightMeasureSpec = -1;
+        int inputWidth, inputHeight;
 
         public LayoutParams(Context c, AttributeSet attrs) {
             super(c, attrs);
 
+            final String key = LayoutParamsCache.getKey(attrs);
+            if (key == null) {
+                readAttributes(c, attrs);
+            } else if (key.length() != 0 && !LayoutParamsCache.restore(key, this)) {
+                readAttributes(c, attrs);
+                LayoutParamsCache.store(key, this);
+            }
+        }
+
+        private void readAttributes(Context c, AttributeSet attrs) {
             TypedArray a = c.obtainStyledAttributes(attrs, R.styleable.SpringLayout_Layout);
 
             final int[] relations = this.relations;
@@ -874,7 +1699,6 @@ public class SpringLayout extends ViewGroup {
         }
 
         public void setRelativeWidth(int relativeWidth) {
-            dirty = true;
             this.relativeWidth = relativeWidth;
         }
 
@@ -883,7 +1707,10 @@ public class SpringLayout extends ViewGroup {
         }
 
         public void setWidthWeight(int widthWeight) {
-            dirty = true;
+            // Other weights are solver inputs, only springs are built in.
+            if ((widthWeight > 0) != (this.widthWeight > 0)) {
+                dirty = true;
+            }
             this.widthWeight = widthWeight;
         }
 
@@ -892,16 +1719,22 @@ public class SpringLayout extends ViewGroup {
         }
 
         public void setHeightWeight(int heightWeight) {
-            dirty = true;
+            if ((heightWeight > 0) != (this.heightWeight > 0)) {
+                dirty = true;
+            }
             this.heightWeight = heightWeight;
         }
 
+        /**
+         * Changing between two fixed widths needs no rebuild, any other change
+         * does.
+         */
         public void setWidth(int width) {
             if (this.width != width) {
-                if (width == MATCH_PARENT || this.width == MATCH_PARENT) {
+                if (width < 0 || this.width < 0) {
                     dirty = true;
                 }
-                if (width != WRAP_CONTENT || this.width == WRAP_CONTENT) {
+                if (width != WRAP_CONTENT && this.widthWeight > 0) {
                     this.widthWeight = 0;
                     dirty = true;
                 }
@@ -911,10 +1744,10 @@ public class SpringLayout extends ViewGroup {
 
         public void setHeight(int height) {
             if (this.height != height) {
-                if (height == MATCH_PARENT || this.height == MATCH_PARENT) {
+                if (height < 0 || this.height < 0) {
                     dirty = true;
                 }
-                if (height != WRAP_CONTENT) {
+                if (height != WRAP_CONTENT && this.heightWeight > 0) {
                     this.heightWeight = 0;
                     dirty = true;
                 }
@@ -922,4 +1755,487 @@ public class SpringLayout extends ViewGroup {
             }
         }
     }
+
+    /**
+     * Solve split into steps of one child each: measuring every child,
+     * preparing the solver, positioning every child and measuring it with
+     * its final size. Runs in frame callbacks until done, then requests a
+     * layout that publishes the result. Any other layout request starts it
+     * over, its inputs may have changed.
+     */
+    private final class ProgressiveSolve implements Choreographer.FrameCallback {
+        private static final int PHASE_MEASURE = 0;
+        private static final int PHASE_PREPARE = 1;
+        private static final int PHASE_POSITION = 2;
+        private static final int PHASE_APPLY = 3;
+        private static final int PHASE_DONE = 4;
+
+        private final Rect mVisibleRect = new Rect();
+        private int[] mOrder = new int[0];
+        private int mWidthMeasureSpec, mHeightMeasureSpec;
+        private int mWidth, mHeight;
+        private int mPhase;
+        private int mPosition;
+        boolean mRunning;
+        // Set while requesting the layout that publishes a finished solve.
+        boolean mPublishing;
+        // Finished solve waiting for the next measure pass.
+        boolean mPublishPending;
+
+        void start(int widthMeasureSpec, int heightMeasureSpec, int width, int height) {
+            if (mBackFramesPending) {
+                // Last complete result was not laid out yet, it is about to be overwritten.
+                swapFrames();
+            }
+            mWidthMeasureSpec = widthMeasureSpec;
+            mHeightMeasureSpec = heightMeasureSpec;
+            mWidth = width;
+            mHeight = height;
+            mPhase = PHASE_MEASURE;
+            mPosition = 0;
+            updateOrder();
+            if (!mRunning) {
+                mRunning = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        void cancel() {
+            if (mRunning) {
+                mRunning = false;
+                Choreographer.getInstance().removeFrameCallback(this);
+            }
+            mPhase = PHASE_MEASURE;
+            mPublishPending = false;
+        }
+
+        /**
+         * Forgets a finished solve that was not published yet.
+         */
+        void dropResult() {
+            if (mPhase == PHASE_DONE) {
+                mPhase = PHASE_MEASURE;
+            }
+            mPublishPending = false;
+        }
+
+        /**
+         * Hands a completed solve for given specs to the layout pass.
+         */
+        boolean publish(int widthMeasureSpec, int heightMeasureSpec) {
+            if (mPhase != PHASE_DONE || widthMeasureSpec != mWidthMeasureSpec || heightMeasureSpec != mHeightMeasureSpec) {
+                return false;
+            }
+            mPhase = PHASE_MEASURE;
+            mSolvedWidth = mSolver.getMeasuredWidth();
+            mSolvedHeight = mSolver.getMeasuredHeight();
+            mBackFramesPending = true;
+            return true;
+        }
+
+        /**
+         * Children whose current frame intersects the visible region first.
+         */
+        private void updateOrder() {
+            final int count = getChildCount();
+            if (mOrder.length < count) {
+                mOrder = new int[count];
+            }
+            final boolean visible = getLocalVisibleRect(mVisibleRect);
+            int first = 0, last = count - 1;
+            for (int i = 0; i < count; i++) {
+                final int offset = i * ConstraintSolver.FRAME_STRIDE;
+                if (visible && mVisibleRect.intersects(mFrontFrames[offset], mFrontFrames[offset + 1], mFrontFrames[offset + 2],
+                        mFrontFrames[offset + 3])) {
+                    mOrder[first++] = i;
+                } else {
+                    mOrder[last--] = i;
+                }
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!mRunning) {
+                return;
+            }
+            if (mDirtyHierarchy || getChildCount() != mSolver.getChildCount()) {
+                // Next measure pass rebuilds and solves at once.
+                mRunning = false;
+                mPhase = PHASE_MEASURE;
+                return;
+            }
+            beginSection(TRACE_PROGRESSIVE_SOLVE);
+            try {
+                final long deadline = System.nanoTime() + mProgressiveFrameBudgetNanos;
+                final int count = getChildCount();
+                mSolver.setTracer(mTracer);
+                do {
+                    step(count);
+                } while (mPhase != PHASE_DONE && System.nanoTime() < deadline);
+            } finally {
+                endSection();
+            }
+            if (mPhase == PHASE_DONE) {
+                mRunning = false;
+                mPublishPending = true;
+                mPublishing = true;
+                requestLayout();
+                mPublishing = false;
+            } else {
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        private void step(int count) {
+            if (mPhase != PHASE_PREPARE && count == 0) {
+                nextPhase();
+                return;
+            }
+            switch (mPhase) {
+                case PHASE_MEASURE:
+                    measureChild(mOrder[mPosition], mWidthMeasureSpec, mHeightMeasureSpec);
+                    break;
+                case PHASE_PREPARE:
+                    mSolver.setPadding(getPaddingLeft(), getPaddingTop(), getPaddingRight(), getPaddingBottom());
+                    mSolver.setMinimumSize(mMinWidth, mMinHeight);
+                    mSolver.prepareSolve(MeasureSpec.getMode(mWidthMeasureSpec) != MeasureSpec.EXACTLY, mWidth,
+                            MeasureSpec.getMode(mHeightMeasureSpec) != MeasureSpec.EXACTLY, mHeight);
+                    break;
+                case PHASE_POSITION:
+                    mSolver.solveChild(mOrder[mPosition], mBackFrames);
+                    break;
+                case PHASE_APPLY: {
+                    final int offset = mOrder[mPosition] * ConstraintSolver.FRAME_STRIDE;
+                    getChildAt(mOrder[mPosition]).measure(
+                            MeasureSpec.makeMeasureSpec(mBackFrames[offset + 2] - mBackFrames[offset], MeasureSpec.EXACTLY),
+                            MeasureSpec.makeMeasureSpec(mBackFrames[offset + 3] - mBackFrames[offset + 1], MeasureSpec.EXACTLY));
+                    break;
+                }
+                default:
+                    return;
+            }
+            if (mPhase == PHASE_PREPARE || ++mPosition >= count) {
+                nextPhase();
+            }
+        }
+
+        private void nextPhase() {
+            mPosition = 0;
+            mPhase++;
+            if (mPhase == PHASE_DONE) {
+                mSolver.finishSolve();
+            }
+        }
+    }
+
+    /**
+     * Solves anticipated measure specs in idle moments of the UI thread, once
+     * the layout has not been solved for {@link #ANTICIPATION_DELAY_MILLIS},
+     * so animations are not slowed down.
+     */
+    private final class AnticipatedSolve implements Runnable, MessageQueue.IdleHandler {
+        // Width and height spec of every anticipated spec.
+        private int[] mSpecs = new int[0];
+        private FrameTable[] mTables = new FrameTable[0];
+        private boolean[] mSolved = new boolean[0];
+        private int[] mSizes = new int[0];
+        private long mDueMillis;
+        private boolean mPosted;
+        private boolean mIdleHandlerAdded;
+
+        void add(int widthMeasureSpec, int heightMeasureSpec) {
+            final int count = mTables.length;
+            mSpecs = Arrays.copyOf(mSpecs, 2 * count + 2);
+            mSpecs[2 * count] = widthMeasureSpec;
+            mSpecs[2 * count + 1] = heightMeasureSpec;
+            mTables = Arrays.copyOf(mTables, count + 1);
+            mSolved = Arrays.copyOf(mSolved, count + 1);
+        }
+
+        /**
+         * @return Frames kept for the specs, null if there are none.
+         */
+        FrameTable get(int widthMeasureSpec, int heightMeasureSpec) {
+            for (int i = 0; i < mTables.length; i++) {
+                if (mSpecs[2 * i] == widthMeasureSpec && mSpecs[2 * i + 1] == heightMeasureSpec) {
+                    return mTables[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Solves the unsolved specs once the layout was not solved for a
+         * while. Called on every solve, only pushes the deadline back.
+         *
+         * @param stale
+         *            True if the layout was solved, every spec is solved
+         *            again. Kept frames stay usable until then, measure
+         *            checks that their inputs still match.
+         */
+        void schedule(boolean stale) {
+            if (stale) {
+                Arrays.fill(mSolved, false);
+            }
+            mDueMillis = SystemClock.uptimeMillis() + ANTICIPATION_DELAY_MILLIS;
+            if (!mPosted) {
+                mPosted = true;
+                postDelayed(this, ANTICIPATION_DELAY_MILLIS);
+            }
+        }
+
+        void cancel() {
+            removeCallbacks(this);
+            mPosted = false;
+            if (mIdleHandlerAdded) {
+                Looper.myQueue().removeIdleHandler(this);
+                mIdleHandlerAdded = false;
+            }
+        }
+
+        @Override
+        public void run() {
+            final long delay = mDueMillis - SystemClock.uptimeMillis();
+            if (delay > 0) {
+                // Solved since posted.
+                postDelayed(this, delay);
+                return;
+            }
+            mPosted = false;
+            if (!mIdleHandlerAdded) {
+                Looper.myQueue().addIdleHandler(this);
+                mIdleHandlerAdded = true;
+            }
+        }
+
+        @Override
+        public boolean queueIdle() {
+            // Children are measured in between layout passes only, a pending
+            // pass would be disturbed. The next solve schedules again.
+            if (!mFramesValid || mBackFramesPending || mDirtyHierarchy || mDirtySize || mVirtualization != null
+                    || isLayoutRequested()) {
+                mIdleHandlerAdded = false;
+                return false;
+            }
+            for (int i = 0; i < mTables.length; i++) {
+                if (!mSolved[i]) {
+                    mSolved[i] = true;
+                    mTables[i] = solve(mSpecs[2 * i], mSpecs[2 * i + 1]);
+                    break;
+                }
+            }
+            for (boolean solved : mSolved) {
+                if (!solved) {
+                    return true;
+                }
+            }
+            mIdleHandlerAdded = false;
+            return false;
+        }
+
+        /**
+         * Measures only children whose measure specs differ for these specs,
+         * the others keep the size they were measured with for the
+         * constraints. Measured children are measured to their frame again.
+         */
+        private FrameTable solve(int widthMeasureSpec, int heightMeasureSpec) {
+            beginSection(TRACE_ANTICIPATED_SOLVE);
+            try {
+                final int count = getChildCount();
+                if (mSizes.length < count * 2) {
+                    mSizes = new int[count * 2];
+                }
+                final int horizontalPadding = getPaddingLeft() + getPaddingRight();
+                final int verticalPadding = getPaddingTop() + getPaddingBottom();
+                for (int i = 0; i < count; i++) {
+                    final View v = getChildAt(i);
+                    final LayoutParams params = (LayoutParams) v.getLayoutParams();
+                    final int childWidthMeasureSpec = getChildMeasureSpec(widthMeasureSpec, horizontalPadding
+                            + params.leftMargin + params.rightMargin, params.width);
+                    final int childHeightMeasureSpec = getChildMeasureSpec(heightMeasureSpec, verticalPadding
+                            + params.topMargin + params.bottomMargin, params.height);
+                    if (childWidthMeasureSpec == params.inputWidthMeasureSpec
+                            && childHeightMeasureSpec == params.inputHeightMeasureSpec) {
+                        mSizes[2 * i] = params.inputWidth;
+                        mSizes[2 * i + 1] = params.inputHeight;
+                        continue;
+                    }
+                    v.measure(childWidthMeasureSpec, childHeightMeasureSpec);
+                    mSizes[2 * i] = v.getMeasuredWidth();
+                    mSizes[2 * i + 1] = v.getMeasuredHeight();
+                    final int offset = i * ConstraintSolver.FRAME_STRIDE;
+                    v.measure(MeasureSpec.makeMeasureSpec(mFrontFrames[offset + 2] - mFrontFrames[offset], MeasureSpec.EXACTLY),
+                            MeasureSpec.makeMeasureSpec(mFrontFrames[offset + 3] - mFrontFrames[offset + 1],
+                                    MeasureSpec.EXACTLY));
+                }
+                return ConstraintPresolver.solve(mSolver, mSizes, widthMeasureSpec, heightMeasureSpec);
+            } catch (IllegalStateException e) {
+                // Not solvable with these specs, measure will report it if they arrive.
+                return null;
+            } finally {
+                endSection();
+            }
+        }
+    }
+
+    /**
+     * Vertical viewport tracking and size cache of a virtualized layout.
+     */
+    private final class Virtualization implements ViewTreeObserver.OnScrollChangedListener {
+        private final int mPrefetchMargin;
+        private final Rect mVisibleRect = new Rect();
+        private int mViewportTop, mViewportBottom;
+        private final ChildSizeCache mSizeCache = new ChildSizeCache();
+        private boolean[] mMeasured = new boolean[0];
+        private ViewTreeObserver mObserver;
+
+        Virtualization(int prefetchMargin) {
+            mPrefetchMargin = prefetchMargin;
+        }
+
+        void attach() {
+            if (mObserver == null) {
+                mObserver = getViewTreeObserver();
+                mObserver.addOnScrollChangedListener(this);
+            }
+        }
+
+        void detach() {
+            if (mObserver != null) {
+                if (mObserver.isAlive()) {
+                    mObserver.removeOnScrollChangedListener(this);
+                }
+                mObserver = null;
+            }
+        }
+
+        @Override
+        public void onScrollChanged() {
+            if (getLocalVisibleRect(mVisibleRect)
+                    && (mVisibleRect.top < mViewportTop || mVisibleRect.bottom > mViewportBottom)) {
+                requestLayout();
+            }
+        }
+
+        private void updateViewport() {
+            if (getLocalVisibleRect(mVisibleRect)) {
+                mViewportTop = mVisibleRect.top - mPrefetchMargin;
+                mViewportBottom = mVisibleRect.bottom + mPrefetchMargin;
+            } else {
+                // Not shown yet, assume the layout starts at the top of the screen.
+                mViewportTop = -mPrefetchMargin;
+                mViewportBottom = getResources().getDisplayMetrics().heightPixels + mPrefetchMargin;
+            }
+        }
+
+        boolean intersects(int[] frames, int index) {
+            final int offset = index * ConstraintSolver.FRAME_STRIDE;
+            return frames[offset + 1] < mViewportBottom && frames[offset + 3] > mViewportTop;
+        }
+
+        /**
+         * Measures children that were inside the viewport in the previous
+         * frames, the others get a cached or estimated size. Without previous
+         * frames, children are measured from the top until the viewport is
+         * filled. Solve arguments are the ones of the following solve.
+         */
+        void measureChildren(int widthMeasureSpec, int heightMeasureSpec, boolean isWrapContentWidth, int width,
+                boolean isWrapContentHeight, int height) {
+            beginSection(TRACE_MEASURE_CHILDREN);
+            try {
+                final int count = getChildCount();
+                if (mMeasured.length < count) {
+                    mMeasured = new boolean[count];
+                }
+                mSizeCache.ensureCapacity(count);
+                updateViewport();
+                if (!mFramesValid) {
+                    // Hierarchy changed, cached sizes no longer match child indices.
+                    mSizeCache.clear();
+                    measureFirstViewport(widthMeasureSpec, heightMeasureSpec, isWrapContentWidth, width,
+                            isWrapContentHeight, height);
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    mMeasured[i] = intersects(mFrontFrames, i);
+                    if (mMeasured[i]) {
+                        measure(i, widthMeasureSpec, heightMeasureSpec);
+                    } else {
+                        setChildInput(i, getSize(i, true), getSize(i, false));
+                    }
+                }
+            } finally {
+                endSection();
+            }
+        }
+
+        /**
+         * With nothing measured every child would be estimated zero high and
+         * solved into the viewport. The estimates are solved once for the
+         * vertical order instead, then children are measured from the top
+         * until they fill the viewport and the rest get the average size.
+         */
+        private void measureFirstViewport(int widthMeasureSpec, int heightMeasureSpec, boolean isWrapContentWidth,
+                int width, boolean isWrapContentHeight, int height) {
+            final int count = getChildCount();
+            for (int i = 0; i < count; i++) {
+                mMeasured[i] = false;
+                setChildInput(i, getSize(i, true), getSize(i, false));
+            }
+            mSolver.solve(isWrapContentWidth, width, isWrapContentHeight, height, mBackFrames);
+            final int[] order = mSizeCache.sortByTop(mBackFrames, count);
+            // How far children measured so far push down the ones below them.
+            int shift = 0;
+            for (int i = 0; i < count; i++) {
+                final int index = order[i];
+                if (mBackFrames[index * ConstraintSolver.FRAME_STRIDE + 1] + shift >= mViewportBottom) {
+                    break;
+                }
+                if (getChildAt(index).getVisibility() == View.GONE) {
+                    continue;
+                }
+                final int estimatedHeight = getSize(index, false);
+                mMeasured[index] = true;
+                measure(index, widthMeasureSpec, heightMeasureSpec);
+                shift += getSize(index, false) - estimatedHeight;
+            }
+            for (int i = 0; i < count; i++) {
+                if (!mMeasured[i]) {
+                    setChildInput(i, getSize(i, true), getSize(i, false));
+                }
+            }
+        }
+
+        /**
+         * @return True if any child solved into the viewport had an estimated
+         *         size and was measured now, the layout has to be solved again.
+         */
+        boolean measureEstimatedInViewport(int widthMeasureSpec, int heightMeasureSpec) {
+            boolean measured = false;
+            for (int i = 0; i < getChildCount(); i++) {
+                if (!mMeasured[i] && intersects(mBackFrames, i)) {
+                    mMeasured[i] = true;
+                    measure(i, widthMeasureSpec, heightMeasureSpec);
+                    measured = true;
+                }
+            }
+            return measured;
+        }
+
+        private void measure(int index, int widthMeasureSpec, int heightMeasureSpec) {
+            measureChild(index, widthMeasureSpec, heightMeasureSpec);
+            final LayoutParams layoutParams = (LayoutParams) getChildAt(index).getLayoutParams();
+            mSizeCache.put(index, layoutParams.inputWidth, layoutParams.inputHeight);
+        }
+
+        /**
+         * @return Last measured size, fixed size from layout params or
+         *         average of measured children.
+         */
+        private int getSize(int index, boolean horizontal) {
+            final LayoutParams layoutParams = (LayoutParams) getChildAt(index).getLayoutParams();
+            return mSizeCache.get(index, horizontal, horizontal ? layoutParams.width : layoutParams.height);
+        }
+    }
 }
@@ -0,0 +1,397 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+/**
+ * Vertically scrolling RecyclerView.LayoutManager that positions adapter
+ * items with SpringLayout relations.
+ *
+ * Every item is a child of one constraint graph: relations, horizontal
+ * springs and relative widths work like in {@link SpringLayout}, anchors are
+ * the ids returned by {@link ConstraintSource#getConstraintId(int)}. The
+ * adapter has to implement {@link ConstraintSource}, so that the graph is
+ * built without binding views. Only items intersecting the viewport are
+ * bound, measured and laid out, the others are solved with their last
+ * measured size, fixed layout size or the average measured size. Views are
+ * recycled, so memory used by views does not grow with the item count.
+ *
+ * The graph is solved against the RecyclerView width with wrap_content
+ * height, which is the scrollable content. It has no bottom, so constraints
+ * on the vertical extent of the parent are rejected: matching its height,
+ * aligning to its bottom or vertical center, vertical springs and relative
+ * heights.
+ *
+ * The graph is solved when the data set or the width changes, or when an
+ * item is measured with another size than it was solved with. Scrolling
+ * only moves the laid out items and binds the ones scrolled in.
+ *
+ * @author sulewicz
+ */
+public class SpringLayoutManager extends RecyclerView.LayoutManager {
+    // Items solved into the viewport with an estimated size are measured and
+    // the graph solved again, at most this many times per layout.
+    private static final int MAX_CORRECTIONS = 4;
+
+    /**
+     * Describes item constraints without binding views. Implemented by the
+     * adapter.
+     */
+    public interface ConstraintSource {
+        /**
+         * @return Id other items use in relations to point at this item, has
+         *         to be positive and unique.
+         */
+        int getConstraintId(int position);
+
+        /**
+         * Fills size, margins, relations, weights and relative size of the
+         * item, exactly like layout params of a SpringLayout child.
+         */
+        void getConstraints(int position, SpringLayout.LayoutParams outParams);
+    }
+
+    private final ConstraintSolver mSolver = new ConstraintSolver(new LayoutMath(), null);
+    // Attached item views by position.
+    private final SparseArray<View> mAttachedViews = new SparseArray<>();
+    // Attached by the current fill, not laid out yet.
+    private final SparseArray<View> mAddedViews = new SparseArray<>();
+    private ConstraintSource mConstraintSource;
+    private ConstraintGraph mGraph;
+    private final ChildSizeCache mSizeCache = new ChildSizeCache();
+    // Width and height from layout params, negative if not fixed.
+    private int[] mFixedSizes = new int[0];
+    // Width and height every item was solved with.
+    private int[] mSolveSizes = new int[0];
+    private int[] mFrames = new int[0];
+    private boolean mSolved;
+    private int mSolvedWidth;
+    private int mSolveCount;
+    private int mContentHeight;
+    private int mScrollOffset;
+    private int mPendingScrollPosition = -1;
+
+    @Override
+    public RecyclerView.LayoutParams generateDefaultLayoutParams() {
+        return new RecyclerView.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    public boolean canScrollVertically() {
+        return true;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             If the adapter does not implement {@link ConstraintSource}.
+     */
+    @Override
+    public void onAdapterChanged(RecyclerView.Adapter oldAdapter, RecyclerView.Adapter newAdapter) {
+        if (newAdapter != null && !(newAdapter instanceof ConstraintSource)) {
+            throw new IllegalArgumentException("SpringLayoutManager needs an adapter implementing ConstraintSource");
+        }
+        mConstraintSource = (ConstraintSource) newAdapter;
+        invalidateGraph();
+    }
+
+    @Override
+    public void onItemsChanged(RecyclerView recyclerView) {
+        invalidateGraph();
+    }
+
+    @Override
+    public void onItemsAdded(RecyclerView recyclerView, int positionStart, int itemCount) {
+        invalidateGraph();
+    }
+
+    @Override
+    public void onItemsRemoved(RecyclerView recyclerView, int positionStart, int itemCount) {
+        invalidateGraph();
+    }
+
+    @Override
+    public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
+        invalidateGraph();
+    }
+
+    @Override
+    public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount) {
+        invalidateGraph();
+    }
+
+    private void invalidateGraph() {
+        mGraph = null;
+    }
+
+    /**
+     * @return Number of times the graph was solved, for tests.
+     */
+    int getSolveCount() {
+        return mSolveCount;
+    }
+
+    @Override
+    public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        final int count = state.getItemCount();
+        if (count == 0 || mConstraintSource == null) {
+            removeAndRecycleAllViews(recycler);
+            mAttachedViews.clear();
+            mGraph = null;
+            mContentHeight = 0;
+            mScrollOffset = 0;
+            return;
+        }
+        if (state.isPreLayout()) {
+            return;
+        }
+        if (mGraph == null || mGraph.getChildCount() != count) {
+            buildGraph(count);
+        }
+        if (getWidth() != mSolvedWidth) {
+            mSolved = false;
+        }
+        // Attached items are measured again, any of them may have changed.
+        detachAndScrapAttachedViews(recycler);
+        mAttachedViews.clear();
+        fill(recycler);
+    }
+
+    @Override
+    public int scrollVerticallyBy(int dy, RecyclerView.Recycler recycler, RecyclerView.State state) {
+        if (mGraph == null || getChildCount() == 0) {
+            return 0;
+        }
+        final int offset = Math.max(0, Math.min(mScrollOffset + dy, getMaxScrollOffset()));
+        final int consumed = offset - mScrollOffset;
+        if (consumed != 0) {
+            mScrollOffset = offset;
+            offsetChildrenVertical(-consumed);
+            fill(recycler);
+        }
+        return consumed;
+    }
+
+    @Override
+    public void scrollToPosition(int position) {
+        mPendingScrollPosition = position;
+        requestLayout();
+    }
+
+    @Override
+    public int computeVerticalScrollOffset(RecyclerView.State state) {
+        return mScrollOffset;
+    }
+
+    @Override
+    public int computeVerticalScrollExtent(RecyclerView.State state) {
+        return getHeight();
+    }
+
+    @Override
+    public int computeVerticalScrollRange(RecyclerView.State state) {
+        return Math.max(mContentHeight, getHeight());
+    }
+
+    private int getMaxScrollOffset() {
+        return Math.max(0, mContentHeight - getHeight());
+    }
+
+    private void buildGraph(int count) {
+        mSizeCache.ensureCapacity(count);
+        if (mFixedSizes.length < count * 2) {
+            mFixedSizes = new int[count * 2];
+            mSolveSizes = new int[count * 2];
+            mFrames = new int[count * ConstraintSolver.FRAME_STRIDE];
+        }
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        for (int i = 0; i < count; i++) {
+            final SpringLayout.LayoutParams params = new SpringLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT);
+            mConstraintSource.getConstraints(i, params);
+            checkConstraints(i, params);
+            final int child = builder.addChild(mConstraintSource.getConstraintId(i), params.width, params.height);
+            mFixedSizes[2 * child] = params.width;
+            mFixedSizes[2 * child + 1] = params.height;
+            final int[] relations = params.getRelations();
+            for (int relation = 0; relation < relations.length; relation++) {
+                builder.addRelation(child, relation, relations[relation]);
+            }
+            builder.setWeights(child, params.getWidthWeight(), params.getHeightWeight());
+            builder.setRelativeSize(child, params.getRelativeWidth(), params.getRelativeHeight());
+            builder.setMargins(child, params.leftMargin, params.topMargin, params.rightMargin, params.bottomMargin);
+        }
+        builder.setPadding(getPaddingLeft(), getPaddingTop(), getPaddingRight(), getPaddingBottom());
+        mGraph = builder.build();
+        mSolved = false;
+        // Positions may have shifted, sizes are measured again.
+        mSizeCache.clear();
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             If the item is constrained to the vertical extent of the
+     *             parent, which has none.
+     */
+    static void checkConstraints(int position, SpringLayout.LayoutParams params) {
+        final int[] relations = params.getRelations();
+        if (params.height == ViewGroup.LayoutParams.MATCH_PARENT || relations[SpringLayout.ALIGN_PARENT_BOTTOM] != 0
+                || relations[SpringLayout.CENTER_VERTICAL] != 0 || relations[SpringLayout.CENTER_IN_PARENT] != 0
+                || relations[SpringLayout.ALIGN_BOTTOM] == SpringLayout.PARENT
+                || relations[SpringLayout.ALIGN_CENTER] == SpringLayout.PARENT
+                || relations[SpringLayout.ALIGN_CENTER_VERTICALLY] == SpringLayout.PARENT) {
+            throw new IllegalArgumentException("Item " + position
+                    + " is aligned to the parent's bottom or vertical center, SpringLayoutManager content has no height");
+        }
+        if (params.getHeightWeight() > 0 || params.getRelativeHeight() > 0) {
+            throw new IllegalArgumentException("Item " + position
+                    + " has a height weight or relative height, SpringLayoutManager content has no height");
+        }
+    }
+
+    /**
+     * Solves the graph if needed, recycles items that left the viewport and
+     * binds, measures and lays out items that entered it.
+     */
+    private void fill(RecyclerView.Recycler recycler) {
+        boolean relayout = false;
+        if (!mSolved || mPendingScrollPosition >= 0) {
+            if (mSizeCache.isEmpty()) {
+                measureFirstViewport(recycler);
+            }
+            solve();
+            relayout = true;
+        }
+        for (int i = mAttachedViews.size() - 1; i >= 0; i--) {
+            if (!intersectsViewport(mAttachedViews.keyAt(i))) {
+                removeAndRecycleView(mAttachedViews.valueAt(i), recycler);
+                mAttachedViews.removeAt(i);
+            }
+        }
+        for (int i = 0; i <= MAX_CORRECTIONS; i++) {
+            if (!measureInViewport(recycler) || i == MAX_CORRECTIONS) {
+                break;
+            }
+            solve();
+            relayout = true;
+        }
+
+        // Without a new solve, attached items only moved by the scroll.
+        final SparseArray<View> views = relayout ? mAttachedViews : mAddedViews;
+        final int[] frames = mFrames;
+        for (int i = views.size() - 1; i >= 0; i--) {
+            final int position = views.keyAt(i);
+            final View v = views.valueAt(i);
+            if (relayout && !intersectsViewport(position)) {
+                removeAndRecycleView(v, recycler);
+                mAttachedViews.removeAt(i);
+                continue;
+            }
+            final int offset = position * ConstraintSolver.FRAME_STRIDE;
+            final int width = frames[offset + 2] - frames[offset];
+            final int height = frames[offset + 3] - frames[offset + 1];
+            // Solved frames include item decorations.
+            v.measure(MeasureSpec.makeMeasureSpec(width - (getDecoratedMeasuredWidth(v) - v.getMeasuredWidth()), MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(height - (getDecoratedMeasuredHeight(v) - v.getMeasuredHeight()),
+                            MeasureSpec.EXACTLY));
+            layoutDecorated(v, frames[offset], frames[offset + 1] - mScrollOffset, frames[offset + 2], frames[offset + 3]
+                    - mScrollOffset);
+        }
+        mAddedViews.clear();
+    }
+
+    private void solve() {
+        final int count = mGraph.getChildCount();
+        solveFrames();
+        mSolved = true;
+        mSolvedWidth = getWidth();
+        mContentHeight = mSolver.getMeasuredHeight();
+        if (mPendingScrollPosition >= 0 && mPendingScrollPosition < count) {
+            mScrollOffset = mFrames[mPendingScrollPosition * ConstraintSolver.FRAME_STRIDE + 1];
+        }
+        mPendingScrollPosition = -1;
+        mScrollOffset = Math.max(0, Math.min(mScrollOffset, getMaxScrollOffset()));
+    }
+
+    private void solveFrames() {
+        final int count = mGraph.getChildCount();
+        for (int i = 0; i < count; i++) {
+            mSolveSizes[2 * i] = getSize(i, true);
+            mSolveSizes[2 * i + 1] = getSize(i, false);
+        }
+        mSolver.solve(mGraph, mSolveSizes, MeasureSpec.makeMeasureSpec(getWidth(), MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED), mFrames);
+        mSolveCount++;
+    }
+
+    /**
+     * With nothing measured every item would be estimated zero high and
+     * solved into the viewport. The estimates are solved once for the
+     * vertical order instead, then items are bound and measured from the top
+     * until they fill the viewport, the rest get the average size.
+     */
+    private void measureFirstViewport(RecyclerView.Recycler recycler) {
+        solveFrames();
+        final int count = mGraph.getChildCount();
+        final int[] order = mSizeCache.sortByTop(mFrames, count);
+        final int viewportBottom = mScrollOffset + getHeight();
+        // How far items measured so far push down the ones below them.
+        int shift = 0;
+        for (int i = 0; i < count; i++) {
+            final int position = order[i];
+            if (mFrames[position * ConstraintSolver.FRAME_STRIDE + 1] + shift >= viewportBottom) {
+                break;
+            }
+            if (mAttachedViews.indexOfKey(position) < 0) {
+                measureItem(recycler, position);
+                shift += getSize(position, false) - mSolveSizes[2 * position + 1];
+            }
+        }
+    }
+
+    /**
+     * Binds and measures items solved into the viewport that are not
+     * attached yet.
+     *
+     * @return True if any item was measured with another size than it was
+     *         solved with, the graph has to be solved again.
+     */
+    private boolean measureInViewport(RecyclerView.Recycler recycler) {
+        boolean changed = false;
+        final int count = mGraph.getChildCount();
+        for (int i = 0; i < count; i++) {
+            if (mAttachedViews.indexOfKey(i) >= 0 || !intersectsViewport(i)) {
+                continue;
+            }
+            measureItem(recycler, i);
+            if (getSize(i, true) != mSolveSizes[2 * i] || getSize(i, false) != mSolveSizes[2 * i + 1]) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void measureItem(RecyclerView.Recycler recycler, int position) {
+        final View v = recycler.getViewForPosition(position);
+        addView(v);
+        measureChildWithMargins(v, 0, 0);
+        mAttachedViews.put(position, v);
+        mAddedViews.put(position, v);
+        mSizeCache.put(position, getDecoratedMeasuredWidth(v), getDecoratedMeasuredHeight(v));
+    }
+
+    private boolean intersectsViewport(int position) {
+        final int offset = position * ConstraintSolver.FRAME_STRIDE;
+        return mFrames[offset + 1] < mScrollOffset + getHeight() && mFrames[offset + 3] > mScrollOffset;
+    }
+
+    /**
+     * @return Last measured size, fixed size from the graph or average of
+     *         measured items.
+     */
+    private int getSize(int position, boolean horizontal) {
+        return mSizeCache.get(position, horizontal, mFixedSizes[2 * position + (horizontal ? 0 : 1)]);
+    }
+}
@@ -0,0 +1,314 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backs {@link SpringLayout#prewarm(android.content.Context)}.
+ *
+ * Once prewarming ran, the first {@link #MAX_PROFILED_LAYOUTS} SpringLayouts
+ * created get a profile slot in creation order, layouts of apps that never
+ * prewarm are not profiled at all. Every slot records how many objects of
+ * every kind the layout's {@link LayoutMath} allocated, and the profile is
+ * written to a file once it stops changing. The next session preallocates a
+ * LayoutMath for every slot of that profile on a background thread, and
+ * hands it to the layout created in that slot. Startup usually creates the
+ * same layouts in the same order, the pools then never miss.
+ *
+ * @author sulewicz
+ */
+final class SpringLayoutPrewarmer {
+    static final int MAX_PROFILED_LAYOUTS = 16;
+    static final int MAGIC = 0x53504c50;
+    static final int FORMAT_VERSION = 1;
+    // Variables, value wrappers and binary operations of every slot.
+    static final int SLOT_STRIDE = 3;
+    static final long WRITE_DELAY_MILLIS = 5000;
+    // Guards against allocating for corrupted profiles.
+    private static final int MAX_OBJECTS = 1 << 16;
+    static final int WARMUP_SOLVES = 1000;
+    private static final int EXACTLY = 1 << 30;
+    private static final int AT_MOST = 2 << 30;
+
+    private static final Object sLock = new Object();
+    private static final int[] sProfile = new int[MAX_PROFILED_LAYOUTS * SLOT_STRIDE];
+    private static final LayoutMath[] sPrewarmed = new LayoutMath[MAX_PROFILED_LAYOUTS];
+    private static int sLayoutCount;
+    private static File sProfileFile;
+    private static boolean sWriteScheduled;
+    // Read without the lock, so that layouts of apps not prewarming never take it.
+    private static volatile boolean sProfiling;
+    private static ScheduledExecutorService sExecutor;
+
+    private SpringLayoutPrewarmer() {
+    }
+
+    /**
+     * @return Profile slot of a new layout, -1 if prewarming did not run or
+     *         all slots are taken.
+     */
+    static int claimSlot() {
+        if (!sProfiling) {
+            return -1;
+        }
+        synchronized (sLock) {
+            return sLayoutCount < MAX_PROFILED_LAYOUTS ? sLayoutCount++ : -1;
+        }
+    }
+
+    /**
+     * @return LayoutMath preallocated for the slot, a new one if there is
+     *         none (yet).
+     */
+    static LayoutMath obtainLayoutMath(int slot) {
+        if (slot >= 0) {
+            synchronized (sLock) {
+                final LayoutMath math = sPrewarmed[slot];
+                if (math != null) {
+                    sPrewarmed[slot] = null;
+                    return math;
+                }
+            }
+        }
+        return new LayoutMath();
+    }
+
+    /**
+     * Records the objects allocated by the LayoutMath of the slot, called
+     * after every hierarchy rebuild.
+     */
+    static void record(int slot, LayoutMath math) {
+        if (slot < 0) {
+            return;
+        }
+        final int offset = slot * SLOT_STRIDE;
+        synchronized (sLock) {
+            if (math.getVariableCount() <= sProfile[offset] && math.getValueWrapperCount() <= sProfile[offset + 1]
+                    && math.getBinaryOperationCount() <= sProfile[offset + 2]) {
+                return;
+            }
+            sProfile[offset] = Math.max(sProfile[offset], math.getVariableCount());
+            sProfile[offset + 1] = Math.max(sProfile[offset + 1], math.getValueWrapperCount());
+            sProfile[offset + 2] = Math.max(sProfile[offset + 2], math.getBinaryOperationCount());
+            if (sProfileFile != null && !sWriteScheduled) {
+                sWriteScheduled = true;
+                getExecutor().schedule(sWriteTask, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Reads the profile of the last session from the file, records the
+     * profile of this session into it from now on and, on a background
+     * thread, preallocates LayoutMath pools for every slot not created yet
+     * and runs synthetic solves.
+     *
+     * @return Number of preallocated objects, fails if a synthetic solve
+     *         does.
+     */
+    static Future<Integer> prewarm(final File profileFile) {
+        synchronized (sLock) {
+            sProfileFile = profileFile;
+            sProfiling = true;
+        }
+        return getExecutor().submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                int[] profile;
+                try {
+                    profile = read(profileFile);
+                } catch (IOException e) {
+                    profile = null;
+                }
+                final int preallocated = profile != null ? preallocate(profile) : 0;
+                runSyntheticSolves();
+                return preallocated;
+            }
+        });
+    }
+
+    static int preallocate(int[] profile) {
+        int preallocated = 0;
+        final int slots = Math.min(profile.length / SLOT_STRIDE, MAX_PROFILED_LAYOUTS);
+        for (int slot = 0; slot < slots; slot++) {
+            final int offset = slot * SLOT_STRIDE;
+            synchronized (sLock) {
+                // The layout of the slot is created already, too late.
+                if (slot < sLayoutCount || sPrewarmed[slot] != null) {
+                    continue;
+                }
+            }
+            final LayoutMath math = new LayoutMath();
+            final int count = math.preallocate(Math.min(profile[offset], MAX_OBJECTS),
+                    Math.min(profile[offset + 1], MAX_OBJECTS), Math.min(profile[offset + 2], MAX_OBJECTS));
+            synchronized (sLock) {
+                if (slot >= sLayoutCount && sPrewarmed[slot] == null) {
+                    sPrewarmed[slot] = math;
+                    preallocated += count;
+                }
+            }
+        }
+        return preallocated;
+    }
+
+    /**
+     * Solves form-like graphs with varying sizes and specs, so that the
+     * solver's hot methods are compiled before the first real frame.
+     *
+     * @return Number of solves run.
+     */
+    static int runSyntheticSolves() {
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        final ConstraintGraph[] graphs = new ConstraintGraph[] { createFormGraph(4), createFormGraph(12) };
+        final int[] sizes = new int[graphs[1].getChildCount() * 2];
+        final int[] frames = new int[graphs[1].getChildCount() * ConstraintSolver.FRAME_STRIDE];
+        for (int i = 0; i < WARMUP_SOLVES; i++) {
+            for (int j = 0; j < sizes.length; j++) {
+                sizes[j] = 40 + (i + j * 37) % 120;
+            }
+            // Switching graphs now and then covers rebuilding as well.
+            final ConstraintGraph graph = graphs[(i / 100) & 1];
+            final int heightMeasureSpec = (i & 1) == 0 ? EXACTLY | 1920 : AT_MOST | 1920;
+            solver.solve(graph, sizes, EXACTLY | 1080, heightMeasureSpec, frames);
+        }
+        return WARMUP_SOLVES;
+    }
+
+    /**
+     * Creates a form-like graph: a centered title with relative width
+     * followed by rows of label, spring, value and a trailing spring that
+     * ends at the parent's right edge, and a footer matching its width. Also
+     * the graph of the solver benchmarks.
+     */
+    static ConstraintGraph createFormGraph(int rows) {
+        final int wrapContent = SpringLayout.LayoutParams.WRAP_CONTENT;
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        final int title = builder.addChild(1, wrapContent, wrapContent);
+        builder.addRelation(title, SpringLayout.CENTER_HORIZONTAL, SpringLayout.TRUE);
+        builder.setRelativeSize(title, 50, 0);
+        int previousId = 1;
+        for (int row = 0; row < rows; row++) {
+            final int labelId = 10 + row * 4, springId = labelId + 1, valueId = labelId + 2, endId = labelId + 3;
+            final int label = builder.addChild(labelId, wrapContent, wrapContent);
+            builder.addRelation(label, SpringLayout.BELOW, previousId);
+            builder.addRelation(label, SpringLayout.ALIGN_LEFT, SpringLayout.PARENT);
+            builder.setMargins(label, 8, 4, 8, 4);
+            final int spring = builder.addChild(springId, wrapContent, wrapContent);
+            builder.addRelation(spring, SpringLayout.RIGHT_OF, labelId);
+            builder.addRelation(spring, SpringLayout.ALIGN_TOP, labelId);
+            builder.setWeights(spring, 1, 0);
+            final int value = builder.addChild(valueId, wrapContent, wrapContent);
+            builder.addRelation(value, SpringLayout.RIGHT_OF, springId);
+            builder.addRelation(value, SpringLayout.ALIGN_TOP, labelId);
+            // Value is right of one spring, the other one ends at the parent's edge.
+            final int end = builder.addChild(endId, wrapContent, wrapContent);
+            builder.addRelation(end, SpringLayout.RIGHT_OF, valueId);
+            builder.addRelation(end, SpringLayout.ALIGN_TOP, labelId);
+            builder.addRelation(end, SpringLayout.ALIGN_RIGHT, SpringLayout.PARENT);
+            builder.setWeights(end, 1, 0);
+            previousId = labelId;
+        }
+        final int footer = builder.addChild(2, SpringLayout.LayoutParams.MATCH_PARENT, wrapContent);
+        builder.addRelation(footer, SpringLayout.BELOW, previousId);
+        return builder.build();
+    }
+
+    private static final Runnable sWriteTask = new Runnable() {
+        @Override
+        public void run() {
+            final File file;
+            final int[] profile;
+            synchronized (sLock) {
+                sWriteScheduled = false;
+                file = sProfileFile;
+                profile = sProfile.clone();
+            }
+            try {
+                write(file, profile);
+            } catch (IOException e) {
+                // Next session allocates on demand instead.
+            }
+        }
+    };
+
+    private static ScheduledExecutorService getExecutor() {
+        synchronized (sLock) {
+            if (sExecutor == null) {
+                sExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "SpringLayoutPrewarm");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return sExecutor;
+        }
+    }
+
+    static void write(File file, int[] profile) throws IOException {
+        final File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        final File temporary = new File(file.getPath() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(profile.length);
+            for (int value : profile) {
+                out.writeInt(value);
+            }
+        } finally {
+            out.close();
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Cannot rename " + temporary);
+        }
+    }
+
+    /**
+     * @return Profile, null if there is none or it was written by another
+     *         format version.
+     */
+    static int[] read(File file) throws IOException {
+        final DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            final int length = in.readInt();
+            if (length < 0 || length > MAX_PROFILED_LAYOUTS * SLOT_STRIDE) {
+                throw new IOException("Corrupted profile");
+            }
+            final int[] profile = new int[length];
+            for (int i = 0; i < length; i++) {
+                profile[i] = in.readInt();
+            }
+            return profile;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * LayoutTracer that forwards sections to {@link Trace}, so they show up in
+ * systrace and Perfetto captures. Does nothing below API 18.
+ */
+public class SystemLayoutTracer implements LayoutTracer {
+    private static final boolean TRACE_SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @Override
+    public void beginSection(String name) {
+        if (TRACE_SUPPORTED) {
+            Trace.beginSection(name);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @Override
+    public void endSection() {
+        if (TRACE_SUPPORTED) {
+            Trace.endSection();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * LayoutTracer that writes sections as Chrome trace-event JSON, which can be
+ * opened in chrome://tracing or ui.perfetto.dev.
+ *
+ * Events are buffered and the file is only valid after {@link #close()}.
+ * Methods are synchronized so one tracer can be shared between layouts
+ * running on different threads.
+ */
+@SuppressWarnings("unused")
+public class TraceEventFileTracer implements LayoutTracer {
+    private final Writer mWriter;
+    private final long mStartNanos = System.nanoTime();
+    private boolean mFirstEvent = true;
+    private boolean mClosed;
+    private IOException mError;
+
+    public TraceEventFileTracer(File file) throws IOException {
+        mWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        mWriter.write("{\"traceEvents\":[\n");
+    }
+
+    @Override
+    public synchronized void beginSection(String name) {
+        writeEvent(name, 'B');
+    }
+
+    @Override
+    public synchronized void endSection() {
+        writeEvent(null, 'E');
+    }
+
+    private void writeEvent(String name, char phase) {
+        if (mClosed || mError != null) {
+            return;
+        }
+        final long micros = (System.nanoTime() - mStartNanos) / 1000;
+        try {
+            if (!mFirstEvent) {
+                mWriter.write(",\n");
+            }
+            mFirstEvent = false;
+            mWriter.write("{\"ph\":\"");
+            mWriter.write(phase);
+            mWriter.write("\",\"ts\":");
+            mWriter.write(Long.toString(micros));
+            mWriter.write(",\"pid\":0,\"tid\":");
+            mWriter.write(Long.toString(Thread.currentThread().getId()));
+            if (name != null) {
+                mWriter.write(",\"name\":\"");
+                mWriter.write(escape(name));
+                mWriter.write('"');
+            }
+            mWriter.write('}');
+        } catch (IOException e) {
+            mError = e;
+        }
+    }
+
+    /**
+     * Terminates the JSON document and closes the file.
+     *
+     * @throws IOException
+     *             if writing any of the events or closing the file failed.
+     */
+    public synchronized void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            if (mError == null) {
+                mWriter.write("\n]}\n");
+            }
+        } finally {
+            mWriter.close();
+        }
+        if (mError != null) {
+            throw mError;
+        }
+    }
+
+    private static String escape(String name) {
+        if (name.indexOf('"') < 0 && name.indexOf('\\') < 0) {
+            return name;
+        }
+        return name.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
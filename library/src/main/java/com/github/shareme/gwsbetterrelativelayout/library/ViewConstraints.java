@@ -41,12 +41,18 @@ public class ViewConstraints {
 
     private byte mRelationFlags;
     private View mView;
+    private int mIndex;
     private byte mSpring;
     private final LayoutMath mLayoutMath;
     private boolean mActive;
 
     ValueWrapper left, right, top, bottom;
     Variable topMargin, bottomMargin, leftMargin, rightMargin;
+    // Measured size or relative size in percents, updated in place on every
+    // pass so that size expressions are only built once.
+    Variable contentWidth, contentHeight;
+    // Spring weights, only used by springs.
+    Variable widthWeight, heightWeight;
     ValueWrapper width, height;
 
     Value innerLeft, innerRight, innerTop, innerBottom;
@@ -57,15 +63,26 @@ public class ViewConstraints {
     private Value mCenterHorizontalAlignment, mCenterVerticalAlignment;
 
     public ViewConstraints(View view, LayoutMath layoutMath) {
+        this(view, ConstraintGraph.PARENT_INDEX, layoutMath);
+    }
+
+    ViewConstraints(View view, int index, LayoutMath layoutMath) {
         mLayoutMath = layoutMath;
 
-        reset(view);
+        reset(view, index);
     }
 
     void reset(View view) {
+        reset(view, mIndex);
+    }
+
+    void reset(View view, int index) {
         mRelationFlags = 0;
         mView = view;
+        mIndex = index;
         mSpring = 0;
+        prevX = nextX = prevY = nextY = null;
+        mCenterHorizontalAlignment = mCenterVerticalAlignment = null;
         left = mLayoutMath.wrap().retain();
         right = mLayoutMath.wrap().retain();
         top = mLayoutMath.wrap().retain();
@@ -74,6 +91,10 @@ public class ViewConstraints {
         bottomMargin = mLayoutMath.variable().retain();
         leftMargin = mLayoutMath.variable().retain();
         rightMargin = mLayoutMath.variable().retain();
+        contentWidth = mLayoutMath.variable().retain();
+        contentHeight = mLayoutMath.variable().retain();
+        widthWeight = mLayoutMath.variable().retain();
+        heightWeight = mLayoutMath.variable().retain();
         width = mLayoutMath.wrap().retain();
         height = mLayoutMath.wrap().retain();
 
@@ -95,6 +116,10 @@ public class ViewConstraints {
             bottomMargin.release();
             leftMargin.release();
             rightMargin.release();
+            contentWidth.release();
+            contentHeight.release();
+            widthWeight.release();
+            heightWeight.release();
             width.release();
             height.release();
 
@@ -175,6 +200,14 @@ public class ViewConstraints {
         return mView;
     }
 
+    /**
+     * @return Index of the child in its ConstraintGraph, PARENT_INDEX for the
+     *         root constraints.
+     */
+    int getIndex() {
+        return mIndex;
+    }
+
     void setWidth(Value width) {
         setDimension(width, true);
     }
@@ -258,16 +291,24 @@ public class ViewConstraints {
     }
 
     void invalidate() {
+        invalidateHorizontal();
+        invalidateVertical();
+    }
+
+    void invalidateHorizontal() {
         width.invalidate();
+        innerLeft.invalidate();
+        innerRight.invalidate();
+        left.invalidate();
+        right.invalidate();
+    }
+
+    void invalidateVertical() {
         height.invalidate();
         innerTop.invalidate();
         innerBottom.invalidate();
-        innerLeft.invalidate();
-        innerRight.invalidate();
         top.invalidate();
         bottom.invalidate();
-        left.invalidate();
-        right.invalidate();
     }
 
     Value getHorizontalCenter() {
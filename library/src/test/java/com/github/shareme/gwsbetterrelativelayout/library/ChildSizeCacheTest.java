@@ -0,0 +1,56 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the size estimates of children that were not measured and their
+ * order from top to bottom.
+ */
+public class ChildSizeCacheTest {
+    @Test
+    public void unmeasuredChildrenGetFixedOrAverageSize() {
+        final ChildSizeCache cache = new ChildSizeCache();
+        cache.ensureCapacity(4);
+        assertEquals(0, cache.get(0, false, -1));
+        assertEquals(30, cache.get(0, false, 30));
+
+        cache.put(0, 100, 40);
+        cache.put(1, 200, 60);
+        assertEquals(100, cache.get(0, true, -1));
+        assertEquals(60, cache.get(1, false, 30));
+        assertEquals(150, cache.get(2, true, -1));
+        assertEquals(50, cache.get(2, false, -1));
+        assertEquals(30, cache.get(2, false, 30));
+
+        // Measured again, the old size leaves the average.
+        cache.put(1, 200, 100);
+        assertEquals(70, cache.get(3, false, -1));
+    }
+
+    @Test
+    public void addedAndClearedChildrenAreNotMeasured() {
+        final ChildSizeCache cache = new ChildSizeCache();
+        cache.ensureCapacity(1);
+        cache.put(0, 100, 40);
+        cache.ensureCapacity(2);
+        assertEquals(100, cache.get(0, true, -1));
+        assertEquals(40, cache.get(1, false, -1));
+
+        cache.clear();
+        assertEquals(0, cache.get(0, true, -1));
+    }
+
+    @Test
+    public void childrenAreSortedByTop() {
+        final int[] tops = new int[] { 40, -10, 40, 0 };
+        final int[] frames = new int[tops.length * ConstraintSolver.FRAME_STRIDE];
+        for (int i = 0; i < tops.length; i++) {
+            frames[i * ConstraintSolver.FRAME_STRIDE + 1] = tops[i];
+        }
+        final int[] order = new ChildSizeCache().sortByTop(frames, tops.length);
+        assertArrayEquals(new int[] { 1, 3, 0, 2 }, order);
+    }
+}
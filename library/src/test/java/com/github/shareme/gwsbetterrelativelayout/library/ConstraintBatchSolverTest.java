@@ -0,0 +1,119 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that parallel batch solving gives the same frames as solving jobs
+ * one by one.
+ */
+public class ConstraintBatchSolverTest {
+    private static final int EXACTLY = 1 << 30;
+    private static final int AT_MOST = 1 << 31;
+    private static final int WRAP_CONTENT = SpringLayout.LayoutParams.WRAP_CONTENT;
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(3);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdown();
+    }
+
+    @Test
+    public void batchMatchesSequentialSolve() {
+        final ConstraintGraph[] graphs = new ConstraintGraph[] { createGridGraph(2, 2), createGridGraph(8, 3) };
+        final List<ConstraintBatchSolver.Job> jobs = new ArrayList<>();
+        for (ConstraintGraph graph : graphs) {
+            for (int i = 0; i < 100; i++) {
+                final int[] sizes = new int[graph.getChildCount() * 2];
+                Arrays.fill(sizes, 40);
+                sizes[2 * (i % graph.getChildCount())] += i;
+                jobs.add(new ConstraintBatchSolver.Job(graph, sizes, EXACTLY | (720 + i), AT_MOST | 1920));
+            }
+        }
+
+        final FrameTable[] results = new ConstraintBatchSolver(mExecutor, 4).solveAll(jobs);
+
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        for (int i = 0; i < jobs.size(); i++) {
+            final ConstraintBatchSolver.Job job = jobs.get(i);
+            final int[] frames = new int[job.mGraph.getChildCount() * ConstraintSolver.FRAME_STRIDE];
+            solver.solve(job.mGraph, job.mChildSizes, job.mWidthMeasureSpec, job.mHeightMeasureSpec, frames);
+            assertArrayEquals("Job " + i, frames, results[i].mFrames);
+            assertEquals("Job " + i, solver.getMeasuredHeight(), results[i].getMeasuredHeight());
+        }
+    }
+
+    @Test
+    public void failedJobIsReportedAndOthersSolved() {
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        final int spring = builder.addChild(1, WRAP_CONTENT, WRAP_CONTENT);
+        builder.addRelation(spring, SpringLayout.ALIGN_LEFT, SpringLayout.PARENT);
+        builder.addRelation(spring, SpringLayout.ALIGN_RIGHT, SpringLayout.PARENT);
+        builder.setWeights(spring, 1, 0);
+        final ConstraintGraph springGraph = builder.build();
+        final ConstraintGraph grid = createGridGraph(2, 2);
+
+        final List<ConstraintBatchSolver.Job> jobs = new ArrayList<>();
+        jobs.add(new ConstraintBatchSolver.Job(springGraph, new int[] { 10, 10 }, AT_MOST | 100, AT_MOST | 100));
+        jobs.add(new ConstraintBatchSolver.Job(grid, new int[] { 20, 10, 20, 10, 20, 10, 20, 10 }, EXACTLY | 100,
+                EXACTLY | 100));
+        final FrameTable[] solved = new FrameTable[2];
+        final RuntimeException[] failed = new RuntimeException[2];
+        // Both jobs in the range solved by the calling thread.
+        new ConstraintBatchSolver(mExecutor, 1).solve(jobs, new ConstraintBatchSolver.Listener() {
+            @Override
+            public void onSolved(int jobIndex, FrameTable frames) {
+                solved[jobIndex] = frames;
+            }
+
+            @Override
+            public void onFailed(int jobIndex, RuntimeException e) {
+                failed[jobIndex] = e;
+            }
+        });
+        assertTrue(failed[0] instanceof IllegalStateException);
+        assertNull(solved[0]);
+        assertNull(failed[1]);
+        assertEquals(grid.getChildCount(), solved[1].getChildCount());
+    }
+
+    /**
+     * @return Grid of cells, each right of the previous one in its row and
+     *         below the cell above it.
+     */
+    private static ConstraintGraph createGridGraph(int rows, int columns) {
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                final int id = row * columns + column + 1;
+                final int cell = builder.addChild(id, WRAP_CONTENT, WRAP_CONTENT);
+                if (column > 0) {
+                    builder.addRelation(cell, SpringLayout.RIGHT_OF, id - 1);
+                }
+                if (row > 0) {
+                    builder.addRelation(cell, SpringLayout.BELOW, id - columns);
+                }
+                builder.setMargins(cell, 2, 2, 2, 2);
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_BOTTOM;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_LEFT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_RIGHT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_TOP;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.BELOW;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.LEFT_OF;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.RIGHT_OF;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ConstraintGraphCompilerTest {
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private static final String LAYOUT = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+            + "<com.github.shareme.gwsbetterrelativelayout.library.SpringLayout"
+            + " xmlns:android=\"http://schemas.android.com/apk/res/android\""
+            + " xmlns:app=\"http://schemas.android.com/apk/res-auto\""
+            + " android:layout_width=\"match_parent\" android:layout_height=\"wrap_content\""
+            + " app:compiledGraph=\"graphs/test.graph\">\n"
+            + "  <TextView android:id=\"@+id/left\" android:layout_width=\"wrap_content\" android:layout_height=\"20dp\""
+            + " app:layout_alignParentLeft=\"true\" />\n"
+            + "  <TextView android:id=\"@+id/middle\" android:layout_width=\"wrap_content\" android:layout_height=\"match_parent\""
+            + " app:layout_toRightOf=\"@id/left\" app:layout_toLeftOf=\"@+id/right\" app:layout_widthWeight=\"2\" />\n"
+            + "  <TextView android:id=\"@id/right\" android:layout_width=\"wrap_content\" android:layout_height=\"wrap_content\""
+            + " app:layout_alignParentRight=\"true\" />\n"
+            + "  <View android:layout_width=\"match_parent\" android:layout_height=\"1dp\" app:layout_below=\"@id/middle\" />\n"
+            + "</com.github.shareme.gwsbetterrelativelayout.library.SpringLayout>\n";
+
+    @Test
+    public void compiledGraphMatchesBuilderGraph() throws Exception {
+        final CompiledConstraintGraph compiled = compile(LAYOUT);
+
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        final int left = builder.addChild(1, SpringLayout.LayoutParams.WRAP_CONTENT, 20);
+        builder.addRelation(left, 11 /* ALIGN_PARENT_LEFT */, SpringLayout.TRUE);
+        final int middle = builder.addChild(2, SpringLayout.LayoutParams.WRAP_CONTENT, SpringLayout.LayoutParams.MATCH_PARENT);
+        builder.addRelation(middle, RIGHT_OF, 1);
+        builder.addRelation(middle, LEFT_OF, 3);
+        builder.setWeights(middle, 2, 0);
+        final int right = builder.addChild(3, SpringLayout.LayoutParams.WRAP_CONTENT, SpringLayout.LayoutParams.WRAP_CONTENT);
+        builder.addRelation(right, 13 /* ALIGN_PARENT_RIGHT */, SpringLayout.TRUE);
+        final int divider = builder.addChild(-1, SpringLayout.LayoutParams.MATCH_PARENT, 1);
+        builder.addRelation(divider, BELOW, 2);
+        final ConstraintGraph expected = builder.build();
+
+        assertEquals(4, compiled.mChildCount);
+        assertArrayEquals(expected.mAnchors, compiled.mAnchors);
+        assertArrayEquals(expected.mWidthWeights, compiled.mWidthWeights);
+        assertArrayEquals(expected.mHeightWeights, compiled.mHeightWeights);
+        assertEquals(ConstraintGraph.PARENT_INDEX, compiled.mAnchors[middle * ConstraintGraph.RELATION_SLOTS + ALIGN_TOP]);
+        assertEquals(ConstraintGraph.PARENT_INDEX, compiled.mAnchors[middle * ConstraintGraph.RELATION_SLOTS + ALIGN_BOTTOM]);
+        assertEquals(ConstraintGraph.PARENT_INDEX, compiled.mAnchors[divider * ConstraintGraph.RELATION_SLOTS + ALIGN_LEFT]);
+        assertEquals(ConstraintGraph.PARENT_INDEX, compiled.mAnchors[divider * ConstraintGraph.RELATION_SLOTS + ALIGN_RIGHT]);
+        assertArrayEquals(new byte[] { 0, CompiledConstraintGraph.FLAG_MATCH_PARENT_HEIGHT, 0,
+                CompiledConstraintGraph.FLAG_MATCH_PARENT_WIDTH }, compiled.mFlags);
+    }
+
+    @Test
+    public void anchorOutsideLayoutSuppressesDefaultAnchor() throws Exception {
+        final CompiledConstraintGraph compiled = compile(LAYOUT.replace("app:layout_alignParentLeft=\"true\"",
+                "app:layout_toRightOf=\"@id/elsewhere\""));
+        assertEquals(ConstraintGraph.NO_ANCHOR, compiled.mAnchors[RIGHT_OF]);
+        assertEquals(ConstraintGraph.NO_ANCHOR, compiled.mAnchors[ALIGN_LEFT]);
+        assertEquals(ConstraintGraph.PARENT_INDEX, compiled.mAnchors[ALIGN_TOP]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void resourceReferenceInBooleanRelationIsRejected() throws Exception {
+        compile(LAYOUT.replace("app:layout_alignParentLeft=\"true\"", "app:layout_alignParentLeft=\"@bool/left\""));
+    }
+
+    @Test
+    public void attributesOutsideResAutoAreIgnored() throws Exception {
+        final CompiledConstraintGraph compiled = compile(LAYOUT
+                .replace(" xmlns:app=", " xmlns:tools=\"http://schemas.android.com/tools\" xmlns:app=")
+                .replace("app:layout_alignParentLeft=\"true\"", "tools:layout_toRightOf=\"@id/right\""));
+        assertEquals(ConstraintGraph.NO_ANCHOR, compiled.mAnchors[RIGHT_OF]);
+        assertEquals(ConstraintGraph.PARENT_INDEX, compiled.mAnchors[ALIGN_LEFT]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void styledChildIsRejected() throws Exception {
+        compile(LAYOUT.replace("<View ", "<View style=\"@style/Divider\" "));
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptedBlobIsRejected() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledConstraintGraph.write(new ConstraintGraph.Builder().build(), new byte[0], out);
+        final byte[] bytes = out.toByteArray();
+        bytes[0] = 0;
+        CompiledConstraintGraph.read(ByteBuffer.wrap(bytes));
+    }
+
+    private CompiledConstraintGraph compile(String layout) throws Exception {
+        final File layoutDir = mTemporaryFolder.newFolder("layout");
+        final File assetsDir = new File(mTemporaryFolder.getRoot(), "assets");
+        final FileWriter writer = new FileWriter(new File(layoutDir, "test.xml"));
+        try {
+            writer.write(layout);
+        } finally {
+            writer.close();
+        }
+        ConstraintGraphCompiler.main(new String[] { assetsDir.getPath(), layoutDir.getPath() });
+        final RandomAccessFile file = new RandomAccessFile(new File(assetsDir, "graphs/test.graph"), "r");
+        try {
+            final byte[] bytes = new byte[(int) file.length()];
+            file.readFully(bytes);
+            return CompiledConstraintGraph.read(ByteBuffer.wrap(bytes));
+        } finally {
+            file.close();
+        }
+    }
+}
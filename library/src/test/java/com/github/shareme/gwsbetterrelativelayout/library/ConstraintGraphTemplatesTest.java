@@ -0,0 +1,47 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ConstraintGraphTemplatesTest {
+    @Before
+    public void setUp() {
+        ConstraintGraphTemplates.clear();
+    }
+
+    @Test
+    public void equalSignatureReturnsSharedStructure() {
+        final CompiledConstraintGraph template = createTemplate();
+        ConstraintGraphTemplates.put(new int[] { 1, -2, -2, 0, 0, 3 }, template);
+        assertSame(template, ConstraintGraphTemplates.get(new int[] { 1, -2, -2, 0, 0, 3 }));
+        assertNull(ConstraintGraphTemplates.get(new int[] { 1, -2, -2, 0, 0, 4 }));
+    }
+
+    @Test
+    public void leastRecentlyUsedTemplateIsEvicted() {
+        final CompiledConstraintGraph template = createTemplate();
+        for (int i = 0; i < ConstraintGraphTemplates.MAX_TEMPLATES; i++) {
+            ConstraintGraphTemplates.put(new int[] { i }, template);
+        }
+        // Touch the oldest one so that the second oldest goes first.
+        ConstraintGraphTemplates.get(new int[] { 0 });
+        ConstraintGraphTemplates.put(new int[] { -1 }, template);
+
+        assertEquals(ConstraintGraphTemplates.MAX_TEMPLATES, ConstraintGraphTemplates.size());
+        assertSame(template, ConstraintGraphTemplates.get(new int[] { 0 }));
+        assertNull(ConstraintGraphTemplates.get(new int[] { 1 }));
+    }
+
+    /**
+     * @return Template of a single child, the cache never looks inside.
+     */
+    private static CompiledConstraintGraph createTemplate() {
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        builder.addChild(1, 100, 40);
+        return CompiledConstraintGraph.from(builder.build(), new byte[1]);
+    }
+}
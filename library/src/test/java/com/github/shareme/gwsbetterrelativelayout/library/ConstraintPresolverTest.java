@@ -0,0 +1,141 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that frames solved by {@link ConstraintPresolver} on a worker thread
+ * match a regular solve and are only reused for identical inputs.
+ */
+public class ConstraintPresolverTest {
+    private static final int EXACTLY = 1 << 30;
+    private static final int AT_MOST = 1 << 31;
+    private static final int WRAP_CONTENT = SpringLayout.LayoutParams.WRAP_CONTENT;
+
+    @Test
+    public void presolvedFramesMatchSolve() throws Exception {
+        final ConstraintGraph graph = createColumnGraph(4);
+        final int[] sizes = createSizes(4);
+        final int widthMeasureSpec = EXACTLY | 1080, heightMeasureSpec = AT_MOST | 1920;
+
+        final FrameTable[] presolved = new FrameTable[1];
+        final Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                presolved[0] = ConstraintPresolver.solve(graph, sizes, widthMeasureSpec, heightMeasureSpec);
+            }
+        });
+        worker.start();
+        worker.join();
+
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        final int[] frames = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE];
+        solver.solve(graph, sizes, widthMeasureSpec, heightMeasureSpec, frames);
+
+        final FrameTable table = presolved[0];
+        assertArrayEquals(frames, table.mFrames);
+        assertEquals(solver.getMeasuredWidth(), table.getMeasuredWidth());
+        assertEquals(solver.getMeasuredHeight(), table.getMeasuredHeight());
+        assertEquals(frames[4], table.getLeft(1));
+        assertEquals(frames[7], table.getBottom(1));
+        assertTrue(solver.matchesInputs(table));
+    }
+
+    @Test
+    public void changedInputsDoNotMatch() {
+        final ConstraintGraph graph = createColumnGraph(4);
+        final int[] sizes = createSizes(4);
+        final FrameTable table = ConstraintPresolver.solve(graph, sizes, EXACTLY | 1080, EXACTLY | 1920);
+
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        final int[] frames = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE];
+        sizes[0]++;
+        solver.solve(graph, sizes, EXACTLY | 1080, EXACTLY | 1920, frames);
+        assertFalse(solver.matchesInputs(table));
+
+        sizes[0]--;
+        solver.solve(graph, sizes, EXACTLY | 1080, EXACTLY | 1920, frames);
+        assertTrue(solver.matchesInputs(table));
+
+        final ConstraintGraph other = createColumnGraph(5);
+        solver.solve(other, createSizes(5), EXACTLY | 1080, EXACTLY | 1920,
+                new int[other.getChildCount() * ConstraintSolver.FRAME_STRIDE]);
+        assertFalse(solver.matchesInputs(table));
+    }
+
+    @Test
+    public void solverInputsOverrideCapturedGraph() {
+        final ConstraintGraph graph = createColumnGraph(4);
+        final int[] sizes = createSizes(4);
+        final ConstraintSolver source = new ConstraintSolver(new LayoutMath(), null);
+        final int[] frames = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE];
+        source.solve(graph, sizes, EXACTLY | 1080, AT_MOST | 1920, frames);
+        source.setChildInput(1, sizes[2], sizes[3], 4, 30, 4, 2, 0, 0, 0, 0, false);
+        source.setPadding(8, 8, 8, 8);
+        source.solveForLastSize(frames);
+
+        assertFalse(source.matchesInputs(ConstraintPresolver.solve(graph, sizes, EXACTLY | 1080, AT_MOST | 1920)));
+        final FrameTable table = ConstraintPresolver.solve(source, sizes, EXACTLY | 1080, AT_MOST | 1920);
+        assertTrue(source.matchesInputs(table));
+        assertArrayEquals(frames, table.mFrames);
+        assertEquals(source.getMeasuredHeight(), table.getMeasuredHeight());
+
+        // The thread's solver goes back to the captured values for the graph.
+        final int[] expected = new int[frames.length];
+        new ConstraintSolver(new LayoutMath(), null).solve(graph, sizes, EXACTLY | 1080, AT_MOST | 1920, expected);
+        assertArrayEquals(expected, ConstraintPresolver.solve(graph, sizes, EXACTLY | 1080, AT_MOST | 1920).mFrames);
+    }
+
+    @Test
+    public void sameStructureIgnoresInputs() {
+        final ConstraintGraph.Builder first = new ConstraintGraph.Builder();
+        first.addChild(1, 10, 10);
+        final ConstraintGraph.Builder second = new ConstraintGraph.Builder();
+        second.setMargins(second.addChild(1, 20, 20), 1, 2, 3, 4);
+        assertTrue(first.build().hasSameStructure(second.build()));
+
+        final ConstraintGraph.Builder third = new ConstraintGraph.Builder();
+        third.addChild(2, 10, 10);
+        assertFalse(first.build().hasSameStructure(third.build()));
+
+        // Weights are inputs, only a child turning into a spring changes the structure.
+        final ConstraintGraph.Builder spring = new ConstraintGraph.Builder();
+        spring.setWeights(spring.addChild(1, WRAP_CONTENT, 10), 1, 0);
+        final ConstraintGraph.Builder heavierSpring = new ConstraintGraph.Builder();
+        heavierSpring.setWeights(heavierSpring.addChild(1, WRAP_CONTENT, 10), 3, 0);
+        assertTrue(spring.build().hasSameStructure(heavierSpring.build()));
+        assertFalse(first.build().hasSameStructure(spring.build()));
+    }
+
+    /**
+     * @return Children stacked below each other, every other one aligned to
+     *         the parent's right edge.
+     */
+    private static ConstraintGraph createColumnGraph(int children) {
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        for (int i = 0; i < children; i++) {
+            final int child = builder.addChild(i + 1, WRAP_CONTENT, WRAP_CONTENT);
+            if (i > 0) {
+                builder.addRelation(child, SpringLayout.BELOW, i);
+            }
+            if ((i & 1) != 0) {
+                builder.addRelation(child, SpringLayout.ALIGN_RIGHT, SpringLayout.PARENT);
+            }
+            builder.setMargins(child, 4, 2, 4, 2);
+        }
+        return builder.build();
+    }
+
+    private static int[] createSizes(int children) {
+        final int[] sizes = new int[children * 2];
+        for (int i = 0; i < children; i++) {
+            sizes[2 * i] = 100 + 10 * i;
+            sizes[2 * i + 1] = 40;
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_BOTTOM;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_LEFT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_RIGHT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.BELOW;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.CENTER_HORIZONTAL;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.PARENT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.RIGHT_OF;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.TRUE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that a compiled program evaluated over a batch gives the same frames
+ * as solving every instance separately.
+ */
+public class ConstraintProgramTest {
+    private static final int EXACTLY = 1 << 30;
+    private static final int AT_MOST = 1 << 31;
+    private static final int WRAP_CONTENT = SpringLayout.LayoutParams.WRAP_CONTENT;
+
+    @Test
+    public void springsMatchSolver() {
+        assertMatchesSolver(createSpringGraph(), EXACTLY | 1080, AT_MOST | 1920);
+        assertMatchesSolver(createSpringGraph(), EXACTLY | 720, EXACTLY | 1280);
+    }
+
+    @Test
+    public void wrapContentMatchesSolver() {
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        final int first = builder.addChild(1, WRAP_CONTENT, WRAP_CONTENT);
+        builder.setMargins(first, 4, 4, 4, 4);
+        final int second = builder.addChild(2, WRAP_CONTENT, WRAP_CONTENT);
+        builder.addRelation(second, RIGHT_OF, 1);
+        builder.addRelation(second, BELOW, 1);
+        final int corner = builder.addChild(3, WRAP_CONTENT, WRAP_CONTENT);
+        builder.addRelation(corner, ALIGN_RIGHT, PARENT);
+        builder.addRelation(corner, ALIGN_BOTTOM, PARENT);
+        final int centered = builder.addChild(4, WRAP_CONTENT, WRAP_CONTENT);
+        builder.addRelation(centered, CENTER_HORIZONTAL, TRUE);
+        builder.addRelation(centered, BELOW, 2);
+        final int relative = builder.addChild(5, WRAP_CONTENT, WRAP_CONTENT);
+        builder.addRelation(relative, BELOW, 4);
+        builder.setRelativeSize(relative, 30, 0);
+        final int gone = builder.addChild(6, WRAP_CONTENT, WRAP_CONTENT);
+        builder.addRelation(gone, BELOW, 5);
+        builder.setGone(gone, true);
+        builder.setPadding(3, 5, 7, 9);
+        assertMatchesSolver(builder.build(), AT_MOST | 1080, AT_MOST | 1920);
+    }
+
+    @Test
+    public void axesEvaluateConcurrently() throws Exception {
+        final ConstraintGraph graph = createSpringGraph();
+        final ConstraintProgram program = ConstraintProgram.compile(graph, EXACTLY | 1080, AT_MOST | 1920);
+        final int instances = 64;
+        final int[] sizes = new int[graph.getChildCount() * 2 * instances];
+        for (int k = 0; k < sizes.length; k++) {
+            sizes[k] = 20 + k % 97;
+        }
+        final int[] expected = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE * instances];
+        program.evaluate(sizes, expected, null, instances);
+
+        final int[] frames = new int[expected.length];
+        final Thread vertical = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                program.evaluateAxis(false, sizes, frames, null, instances);
+            }
+        });
+        vertical.start();
+        program.evaluateAxis(true, sizes, frames, null, instances);
+        vertical.join();
+        assertArrayEquals(expected, frames);
+    }
+
+    /**
+     * @return A centered title with relative width above a row of a label,
+     *         two springs of different weights around a value, the second
+     *         ending at the parent's right edge.
+     */
+    private static ConstraintGraph createSpringGraph() {
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        final int title = builder.addChild(1, WRAP_CONTENT, WRAP_CONTENT);
+        builder.addRelation(title, CENTER_HORIZONTAL, TRUE);
+        builder.setRelativeSize(title, 50, 0);
+        final int label = builder.addChild(2, WRAP_CONTENT, WRAP_CONTENT);
+        builder.addRelation(label, BELOW, 1);
+        builder.addRelation(label, ALIGN_LEFT, PARENT);
+        builder.setMargins(label, 8, 4, 8, 4);
+        final int first = builder.addChild(3, WRAP_CONTENT, WRAP_CONTENT);
+        builder.addRelation(first, RIGHT_OF, 2);
+        builder.addRelation(first, BELOW, 1);
+        builder.setWeights(first, 1, 0);
+        final int value = builder.addChild(4, WRAP_CONTENT, WRAP_CONTENT);
+        builder.addRelation(value, RIGHT_OF, 3);
+        builder.addRelation(value, BELOW, 1);
+        final int second = builder.addChild(5, WRAP_CONTENT, WRAP_CONTENT);
+        builder.addRelation(second, RIGHT_OF, 4);
+        builder.addRelation(second, BELOW, 1);
+        builder.addRelation(second, ALIGN_RIGHT, PARENT);
+        builder.setWeights(second, 2, 0);
+        final int footer = builder.addChild(6, SpringLayout.LayoutParams.MATCH_PARENT, WRAP_CONTENT);
+        builder.addRelation(footer, BELOW, 2);
+        return builder.build();
+    }
+
+    private static void assertMatchesSolver(ConstraintGraph graph, int widthMeasureSpec, int heightMeasureSpec) {
+        final int count = graph.getChildCount();
+        final int instances = 37;
+        final Random random = new Random(count);
+        final int[][] sizes = new int[instances][count * 2];
+        final int[] columns = new int[count * 2 * instances];
+        for (int j = 0; j < instances; j++) {
+            for (int k = 0; k < count * 2; k++) {
+                sizes[j][k] = random.nextInt(200);
+                columns[k * instances + j] = sizes[j][k];
+            }
+        }
+
+        final ConstraintProgram program = ConstraintProgram.compile(graph, widthMeasureSpec, heightMeasureSpec);
+        final int[] frames = new int[count * ConstraintSolver.FRAME_STRIDE * instances];
+        final int[] measuredSizes = new int[2 * instances];
+        program.evaluate(columns, frames, measuredSizes, instances);
+
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        final int[] expected = new int[count * ConstraintSolver.FRAME_STRIDE];
+        for (int j = 0; j < instances; j++) {
+            solver.solve(graph, sizes[j], widthMeasureSpec, heightMeasureSpec, expected);
+            for (int k = 0; k < expected.length; k++) {
+                assertEquals("Instance " + j + ", frame value " + k, expected[k], frames[k * instances + j]);
+            }
+            assertEquals(solver.getMeasuredWidth(), measuredSizes[j]);
+            assertEquals(solver.getMeasuredHeight(), measuredSizes[instances + j]);
+        }
+    }
+}
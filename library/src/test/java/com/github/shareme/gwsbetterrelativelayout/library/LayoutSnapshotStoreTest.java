@@ -0,0 +1,105 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_LEFT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_RIGHT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.BELOW;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.PARENT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.RIGHT_OF;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that snapshots written by {@link LayoutSnapshotStore} are read back
+ * by another store, only for the same version and configuration and, on the
+ * UI thread, only once preloaded.
+ */
+public class LayoutSnapshotStoreTest {
+    private static final int EXACTLY = 1 << 30;
+    private static final int KEY = 0x7f030001;
+    private static final int[] CONFIG = new int[] { 1080, 1920, 420, Float.floatToIntBits(1f) };
+    private static final int[] SIZES = new int[] { 120, 40, 0, 40, 0, 30 };
+
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void snapshotSurvivesRestart() throws Exception {
+        final File directory = mTemporaryFolder.getRoot();
+        final ConstraintGraph graph = createGraph();
+        final FrameTable table = ConstraintPresolver.solve(graph, SIZES, EXACTLY | 1080, EXACTLY | 1920);
+        final LayoutSnapshotStore store = new LayoutSnapshotStore(directory, 1);
+        store.put(KEY, CONFIG, table);
+        store.flush();
+
+        final FrameTable restored = new LayoutSnapshotStore(directory, 1).load(KEY, CONFIG);
+        assertArrayEquals(table.mFrames, restored.mFrames);
+        assertEquals(table.getMeasuredWidth(), restored.getMeasuredWidth());
+        assertEquals(table.getMeasuredHeight(), restored.getMeasuredHeight());
+        assertTrue(graph.hasSameStructure(restored.getGraph()));
+
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        solver.solve(graph, SIZES, EXACTLY | 1080, EXACTLY | 1920, new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE]);
+        assertTrue(solver.matchesInputs(restored));
+    }
+
+    @Test
+    public void otherVersionOrConfigurationIsDiscarded() throws Exception {
+        final File directory = mTemporaryFolder.getRoot();
+        final FrameTable table = ConstraintPresolver.solve(createGraph(), SIZES, EXACTLY | 1080, EXACTLY | 1920);
+        final LayoutSnapshotStore store = new LayoutSnapshotStore(directory, 1);
+        store.put(KEY, CONFIG, table);
+        store.flush();
+
+        assertNull(new LayoutSnapshotStore(directory, 2).load(KEY, CONFIG));
+        final int[] rotated = new int[] { 1920, 1080, 420, Float.floatToIntBits(1f) };
+        assertNull(new LayoutSnapshotStore(directory, 1).load(KEY, rotated));
+        assertNull(new LayoutSnapshotStore(directory, 1).load(KEY + 1, CONFIG));
+
+        store.clear();
+        assertNull(new LayoutSnapshotStore(directory, 1).load(KEY, CONFIG));
+    }
+
+    @Test
+    public void getUsesPreloadedSnapshotsOnly() throws Exception {
+        final File directory = mTemporaryFolder.getRoot();
+        final FrameTable table = ConstraintPresolver.solve(createGraph(), SIZES, EXACTLY | 1080, EXACTLY | 1920);
+        final LayoutSnapshotStore store = new LayoutSnapshotStore(directory, 1);
+        store.put(KEY, CONFIG, table);
+        store.flush();
+
+        final LayoutSnapshotStore restarted = new LayoutSnapshotStore(directory, 1);
+        assertNull(restarted.get(KEY, CONFIG));
+        restarted.preload(KEY, CONFIG).get();
+        assertArrayEquals(table.mFrames, restarted.get(KEY, CONFIG).mFrames);
+        final int[] rotated = new int[] { 1920, 1080, 420, Float.floatToIntBits(1f) };
+        assertNull(restarted.get(KEY, rotated));
+    }
+
+    /**
+     * @return A title, a spring ending at the parent's right edge and a
+     *         full-width footer below, so that relations, margins and weights
+     *         all go through the snapshot.
+     */
+    private static ConstraintGraph createGraph() {
+        final int wrapContent = SpringLayout.LayoutParams.WRAP_CONTENT;
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        final int title = builder.addChild(1, wrapContent, wrapContent);
+        builder.addRelation(title, ALIGN_LEFT, PARENT);
+        builder.setMargins(title, 8, 4, 8, 4);
+        final int spring = builder.addChild(2, wrapContent, wrapContent);
+        builder.addRelation(spring, RIGHT_OF, 1);
+        builder.addRelation(spring, ALIGN_RIGHT, PARENT);
+        builder.setWeights(spring, 1, 0);
+        final int footer = builder.addChild(3, SpringLayout.LayoutParams.MATCH_PARENT, wrapContent);
+        builder.addRelation(footer, BELOW, 1);
+        return builder.build();
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that an axis is skipped when only the other axis changed, and that
+ * skipping never gives different frames than solving from scratch.
+ */
+public class PerAxisSolveTest {
+    private static final int EXACTLY = 1 << 30;
+    private static final int AT_MOST = 1 << 31;
+
+    @Test
+    public void widthChangeSkipsVerticalAxis() {
+        final ConstraintGraph graph = createSpringGraph(1, 1);
+        final int[] sizes = new int[] { 100, 40, 0, 0, 200, 40, 0, 0 };
+        final int[] frames = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE];
+        final LayoutMath layoutMath = new LayoutMath();
+        final ConstraintSolver solver = new ConstraintSolver(layoutMath, null);
+        solver.solve(graph, sizes, EXACTLY | 1080, AT_MOST | 1920, frames);
+        assertEquals(0, layoutMath.getEvaluationCount());
+        layoutMath.setCountersEnabled(true);
+        solver.solve(graph, sizes, EXACTLY | 1080, AT_MOST | 1920, frames);
+        final int unchangedEvaluations = layoutMath.getEvaluationCount();
+        assertEquals(2, solver.getSkippedAxisCount());
+
+        sizes[0] += 10;
+        layoutMath.resetCounters();
+        solver.solve(graph, sizes, EXACTLY | 1080, AT_MOST | 1920, frames);
+        final int widthEvaluations = layoutMath.getEvaluationCount();
+        assertEquals(3, solver.getSkippedAxisCount());
+        assertTrue(widthEvaluations > unchangedEvaluations);
+
+        sizes[1] += 10;
+        layoutMath.resetCounters();
+        solver.solve(graph, sizes, EXACTLY | 1080, AT_MOST | 1920, frames);
+        assertEquals(4, solver.getSkippedAxisCount());
+
+        solver.solve(graph, sizes, EXACTLY | 720, AT_MOST | 1920, frames);
+        assertEquals(5, solver.getSkippedAxisCount());
+    }
+
+    @Test
+    public void incrementalSolveMatchesFreshSolve() {
+        assertIncrementalMatchesFresh(createSpringGraph(1, 2), EXACTLY | 1080, AT_MOST | 1920);
+        assertIncrementalMatchesFresh(createSpringGraph(1, 2), EXACTLY | 1080, EXACTLY | 1920);
+        assertIncrementalMatchesFresh(createColumnGraph(), AT_MOST | 1080, AT_MOST | 1920);
+    }
+
+    @Test
+    public void weightChangeMatchesRebuiltGraph() {
+        final int[] sizes = new int[] { 100, 40, 0, 0, 200, 40, 0, 0 };
+        final int[] frames = new int[4 * ConstraintSolver.FRAME_STRIDE];
+        final int[] expected = new int[frames.length];
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        solver.solve(createSpringGraph(1, 1), sizes, EXACTLY | 1080, AT_MOST | 1920, frames);
+        final int skipped = solver.getSkippedAxisCount();
+        for (int weight = 2; weight < 6; weight++) {
+            solver.setChildInput(3, sizes[6], sizes[7], 0, 0, 0, 0, 0, 0, weight, 0, false);
+            solver.solveForLastSize(frames);
+            new ConstraintSolver(new LayoutMath(), null).solve(createSpringGraph(1, weight), sizes, EXACTLY | 1080,
+                    AT_MOST | 1920, expected);
+            assertArrayEquals("Weight " + weight, expected, frames);
+        }
+        assertEquals(skipped + 4, solver.getSkippedAxisCount());
+    }
+
+    /**
+     * @return Row of a label, a spring, a label and a spring ending at the
+     *         parent's right edge.
+     */
+    private static ConstraintGraph createSpringGraph(int firstWeight, int secondWeight) {
+        final int wrapContent = SpringLayout.LayoutParams.WRAP_CONTENT;
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        builder.addRelation(builder.addChild(1, wrapContent, wrapContent), SpringLayout.ALIGN_LEFT, SpringLayout.PARENT);
+        final int first = builder.addChild(2, wrapContent, wrapContent);
+        builder.addRelation(first, SpringLayout.RIGHT_OF, 1);
+        builder.setWeights(first, firstWeight, 0);
+        builder.addRelation(builder.addChild(3, wrapContent, wrapContent), SpringLayout.RIGHT_OF, 2);
+        final int second = builder.addChild(4, wrapContent, wrapContent);
+        builder.addRelation(second, SpringLayout.RIGHT_OF, 3);
+        builder.addRelation(second, SpringLayout.ALIGN_RIGHT, SpringLayout.PARENT);
+        builder.setWeights(second, secondWeight, 0);
+        return builder.build();
+    }
+
+    /**
+     * @return Children stacked below each other, one centered and one in the
+     *         parent's bottom right corner.
+     */
+    private static ConstraintGraph createColumnGraph() {
+        final int wrapContent = SpringLayout.LayoutParams.WRAP_CONTENT;
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        builder.setMargins(builder.addChild(1, wrapContent, wrapContent), 4, 4, 4, 4);
+        final int second = builder.addChild(2, wrapContent, wrapContent);
+        builder.addRelation(second, SpringLayout.RIGHT_OF, 1);
+        builder.addRelation(second, SpringLayout.BELOW, 1);
+        final int centered = builder.addChild(3, wrapContent, wrapContent);
+        builder.addRelation(centered, SpringLayout.CENTER_HORIZONTAL, SpringLayout.TRUE);
+        builder.addRelation(centered, SpringLayout.BELOW, 2);
+        final int corner = builder.addChild(4, wrapContent, wrapContent);
+        builder.addRelation(corner, SpringLayout.ALIGN_RIGHT, SpringLayout.PARENT);
+        builder.addRelation(corner, SpringLayout.ALIGN_BOTTOM, SpringLayout.PARENT);
+        return builder.build();
+    }
+
+    private static void assertIncrementalMatchesFresh(ConstraintGraph graph, int widthMeasureSpec, int heightMeasureSpec) {
+        final Random random = new Random(42);
+        final int[] sizes = new int[graph.getChildCount() * 2];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = random.nextInt(150);
+        }
+        final int[] frames = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE];
+        final int[] expected = new int[frames.length];
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        for (int step = 0; step < 300; step++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    sizes[2 * random.nextInt(graph.getChildCount())] = random.nextInt(150);
+                    break;
+                case 1:
+                    sizes[2 * random.nextInt(graph.getChildCount()) + 1] = random.nextInt(150);
+                    break;
+                case 2:
+                    widthMeasureSpec = (widthMeasureSpec & (EXACTLY | AT_MOST)) | (600 + random.nextInt(600));
+                    break;
+                default:
+                    break;
+            }
+            solver.solve(graph, sizes, widthMeasureSpec, heightMeasureSpec, frames);
+            new ConstraintSolver(new LayoutMath(), null).solve(graph, sizes, widthMeasureSpec, heightMeasureSpec, expected);
+            assertArrayEquals("Step " + step, expected, frames);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * JVM benchmarks of the SpringLayout solver, run by the library's
+ * runBenchmarks Gradle task. Writes nanoseconds per operation of every
+ * benchmark as JSON to the file given as the first argument, together with
+ * the time of a calibration benchmark run in the same JVM. The gate divides
+ * by the latter, so that results of different machines compare.
+ */
+public class SolverBenchmarks {
+    private static final int EXACTLY = 1 << 30;
+    private static final int WIDTH_SPEC = EXACTLY | 1080;
+    private static final int HEIGHT_SPEC = EXACTLY | 1920;
+
+    private static final int[] ROW_COUNTS = new int[] { 10, 100 };
+    private static final int BATCH_SIZE = 1024;
+    private static final int WARMUP_NANOS = 500000000;
+    private static final int ROUNDS = 15;
+    private static final int ROUND_NANOS = 50000000;
+    private static final int CALIBRATION_NODES = 4096;
+
+    interface Benchmark {
+        void run(int iteration);
+    }
+
+    public static void main(String[] args) throws IOException {
+        final Map<String, Double> results = new LinkedHashMap<>();
+        // Before and after, the less disturbed run counts.
+        double calibration = measure(calibration());
+        for (int rows : ROW_COUNTS) {
+            final ConstraintGraph graph = SpringLayoutPrewarmer.createFormGraph(rows);
+            results.put("fullSolve.rows" + rows, measure(fullSolve(graph)));
+            results.put("incrementalResolve.rows" + rows, measure(incrementalResolve(graph)));
+            results.put("hierarchyRebuild.rows" + rows, measure(hierarchyRebuild(graph)));
+        }
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads - 1));
+        try {
+            results.put("batchSolvePerJob.rows10", measure(batchSolve(SpringLayoutPrewarmer.createFormGraph(10), executor, threads)) / BATCH_SIZE);
+        } finally {
+            executor.shutdown();
+        }
+        results.put("programEvaluatePerInstance.rows10", measure(programEvaluate(SpringLayoutPrewarmer.createFormGraph(10))) / BATCH_SIZE);
+        calibration = Math.min(calibration, measure(calibration()));
+        System.out.println(String.format(Locale.US, "%-32s %12.1f ns/op", "calibration", calibration));
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            System.out.println(String.format(Locale.US, "%-32s %12.1f ns/op", result.getKey(), result.getValue()));
+        }
+        if (args.length > 0) {
+            writeResults(new File(args[0]), calibration, results);
+        }
+    }
+
+    static int[] createChildSizes(ConstraintGraph graph) {
+        final int[] sizes = new int[graph.getChildCount() * 2];
+        for (int i = 0; i < graph.getChildCount(); i++) {
+            sizes[2 * i] = 80 + (i * 37) % 120;
+            sizes[2 * i + 1] = 40 + (i * 13) % 20;
+        }
+        return sizes;
+    }
+
+    private static Benchmark fullSolve(final ConstraintGraph graph) {
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        final int[] sizes = createChildSizes(graph);
+        final int[] frames = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE];
+        return new Benchmark() {
+            @Override
+            public void run(int iteration) {
+                final int delta = (iteration & 1) == 0 ? 1 : -1;
+                for (int i = 0; i < sizes.length; i++) {
+                    sizes[i] += delta;
+                }
+                solver.solve(graph, sizes, WIDTH_SPEC, HEIGHT_SPEC, frames);
+            }
+        };
+    }
+
+    /**
+     * Changes the height of the footer only, so that the solver re-evaluates
+     * the vertical axis and keeps the horizontal one, compare with fullSolve.
+     */
+    private static Benchmark incrementalResolve(final ConstraintGraph graph) {
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        final int[] sizes = createChildSizes(graph);
+        final int[] frames = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE];
+        final int footerHeight = sizes.length - 1;
+        solver.solve(graph, sizes, WIDTH_SPEC, HEIGHT_SPEC, frames);
+        final Benchmark benchmark = new Benchmark() {
+            @Override
+            public void run(int iteration) {
+                sizes[footerHeight] += (iteration & 1) == 0 ? 1 : -1;
+                solver.solve(graph, sizes, WIDTH_SPEC, HEIGHT_SPEC, frames);
+            }
+        };
+        final int skipped = solver.getSkippedAxisCount();
+        benchmark.run(0);
+        if (solver.getSkippedAxisCount() != skipped + 1) {
+            throw new IllegalStateException("incrementalResolve does not skip the horizontal axis");
+        }
+        return benchmark;
+    }
+
+    private static Benchmark hierarchyRebuild(final ConstraintGraph graph) {
+        final ConstraintSolver solver = new ConstraintSolver(new LayoutMath(), null);
+        return new Benchmark() {
+            @Override
+            public void run(int iteration) {
+                solver.build(graph, false, false);
+            }
+        };
+    }
+
+    /**
+     * Solves a batch of size variants of the graph on all cores, compare per
+     * job time with fullSolve to see the scaling.
+     */
+    private static Benchmark batchSolve(ConstraintGraph graph, ExecutorService executor, int parallelism) {
+        final ConstraintBatchSolver batchSolver = new ConstraintBatchSolver(executor, parallelism);
+        final List<ConstraintBatchSolver.Job> jobs = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final int[] sizes = createChildSizes(graph);
+            sizes[0] += i % 64;
+            jobs.add(new ConstraintBatchSolver.Job(graph, sizes, WIDTH_SPEC, HEIGHT_SPEC));
+        }
+        return new Benchmark() {
+            @Override
+            public void run(int iteration) {
+                batchSolver.solveAll(jobs);
+            }
+        };
+    }
+
+    /**
+     * Evaluates a compiled program over a batch of size variants, compare per
+     * instance time with fullSolve.
+     */
+    private static Benchmark programEvaluate(ConstraintGraph graph) {
+        final ConstraintProgram program = ConstraintProgram.compile(graph, WIDTH_SPEC, HEIGHT_SPEC);
+        final int[] sizes = new int[graph.getChildCount() * 2 * BATCH_SIZE];
+        final int[] variant = createChildSizes(graph);
+        for (int k = 0; k < variant.length; k++) {
+            for (int j = 0; j < BATCH_SIZE; j++) {
+                sizes[k * BATCH_SIZE + j] = variant[k] + j % 64;
+            }
+        }
+        final int[] frames = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE * BATCH_SIZE];
+        return new Benchmark() {
+            @Override
+            public void run(int iteration) {
+                program.evaluate(sizes, frames, null, BATCH_SIZE);
+            }
+        };
+    }
+
+    /**
+     * Walks a fixed random cycle of array slots mixing their values, memory
+     * and integer work like the solver's but independent of its code, so
+     * that a solver change never moves the calibration.
+     */
+    private static Benchmark calibration() {
+        final int[] values = new int[CALIBRATION_NODES];
+        final int[] next = new int[CALIBRATION_NODES];
+        final int[] order = new int[CALIBRATION_NODES];
+        int seed = 1;
+        for (int i = 0; i < CALIBRATION_NODES; i++) {
+            order[i] = i;
+        }
+        for (int i = CALIBRATION_NODES - 1; i > 0; i--) {
+            seed = seed * 1103515245 + 12345;
+            final int j = (seed >>> 1) % (i + 1);
+            final int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        for (int i = 0; i < CALIBRATION_NODES; i++) {
+            next[order[i]] = order[(i + 1) % CALIBRATION_NODES];
+            values[i] = seed = seed * 1103515245 + 12345;
+        }
+        return new Benchmark() {
+            int mSink;
+
+            @Override
+            public void run(int iteration) {
+                int sum = iteration, index = 0;
+                for (int i = 0; i < CALIBRATION_NODES; i++) {
+                    sum += (values[index] ^ sum) >>> 3;
+                    index = next[index];
+                }
+                mSink = sum;
+            }
+        };
+    }
+
+    /**
+     * @return Median time of a single run in nanoseconds.
+     */
+    static double measure(Benchmark benchmark) {
+        int iteration = 0;
+        final long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            benchmark.run(iteration++);
+        }
+        final double[] rounds = new double[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            int ops = 0;
+            final long start = System.nanoTime();
+            long now;
+            do {
+                benchmark.run(iteration++);
+                ops++;
+                now = System.nanoTime();
+            } while (now - start < ROUND_NANOS);
+            rounds[round] = (double) (now - start) / ops;
+        }
+        Arrays.sort(rounds);
+        return rounds[ROUNDS / 2];
+    }
+
+    private static void writeResults(File file, double calibration, Map<String, Double> results) throws IOException {
+        final StringBuilder json = new StringBuilder("{\n  \"calibrationNanosPerOp\": ")
+                .append(String.format(Locale.US, "%.1f", calibration)).append(",\n  \"benchmarks\": {\n");
+        boolean first = true;
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            if (!first) {
+                json.append(",\n");
+            }
+            first = false;
+            json.append("    \"").append(result.getKey()).append("\": ").append(String.format(Locale.US, "%.1f", result.getValue()));
+        }
+        json.append("\n  }\n}\n");
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(json.toString());
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpringLayoutBuilderGeneratorTest {
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private static final String LAYOUT = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+            + "<com.github.shareme.gwsbetterrelativelayout.library.SpringLayout"
+            + " xmlns:android=\"http://schemas.android.com/apk/res/android\""
+            + " xmlns:app=\"http://schemas.android.com/apk/res-auto\""
+            + " android:layout_width=\"match_parent\" android:layout_height=\"wrap_content\" android:padding=\"4dp\""
+            + " android:paddingLeft=\"8dp\">\n"
+            + "  <TextView android:id=\"@+id/title\" android:layout_width=\"wrap_content\" android:layout_height=\"@dimen/row\""
+            + " android:text=\"@string/title\" android:gravity=\"center_vertical|left\" android:layout_marginTop=\"2dp\""
+            + " app:layout_alignParentLeft=\"true\" app:layout_relativeWidth=\"50%\" />\n"
+            + "  <View android:id=\"@+id/spring\" android:layout_width=\"wrap_content\" android:layout_height=\"1px\""
+            + " android:background=\"#f00\" app:layout_toRightOf=\"@id/title\" app:layout_widthWeight=\"2\" />\n"
+            + "</com.github.shareme.gwsbetterrelativelayout.library.SpringLayout>\n";
+
+    @Test
+    public void builderSetsAttributesAndConstraints() throws Exception {
+        final String source = generate("row_item", LAYOUT);
+        assertTrue(source.contains("public final class RowItemLayout"));
+        assertTrue(source.contains("v0.setPadding(SpringLayouts.dimension(res, TypedValue.COMPLEX_UNIT_DIP, 4f), "
+                + "SpringLayouts.dimension(res, TypedValue.COMPLEX_UNIT_DIP, 4f)"));
+        assertTrue(source.contains("final TextView v1 = new TextView(context);"));
+        assertTrue(source.contains("v1.setId(R.id.title);"));
+        assertTrue(source.contains("v1.setText(R.string.title);"));
+        assertTrue(source.contains("v1.setGravity(Gravity.CENTER_VERTICAL | Gravity.LEFT);"));
+        assertTrue(source.contains("new SpringLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, "
+                + "res.getDimensionPixelSize(R.dimen.row));"));
+        assertTrue(source.contains("p1.topMargin = SpringLayouts.dimension(res, TypedValue.COMPLEX_UNIT_DIP, 2f);"));
+        assertFalse(source.contains("p1.leftMargin"));
+        assertTrue(source.contains("p1.addRelation(SpringLayout.ALIGN_LEFT, SpringLayout.PARENT);"));
+        assertTrue(source.contains("p1.setRelativeWidth(50);"));
+        assertTrue(source.contains("v2.setBackgroundColor(0xffff0000);"));
+        assertTrue(source.contains("p2.addRelation(SpringLayout.RIGHT_OF, R.id.title);"));
+        assertTrue(source.contains("p2.setWidthWeight(2);"));
+        assertTrue(source.indexOf("v0.setCompiledConstraintGraph(GRAPH_0);") > source.indexOf("v0.addView(v2, p2);"));
+    }
+
+    @Test
+    public void alignmentToBothParentEdgesMatchesParent() throws Exception {
+        final String source = generate("row_item", LAYOUT.replace("android:background=",
+                "app:layout_alignParentTop=\"true\" app:layout_alignParentBottom=\"true\" android:background="));
+        assertTrue(source.contains("new SpringLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, "
+                + "ViewGroup.LayoutParams.MATCH_PARENT);"));
+        assertTrue(source.contains("p2.addRelation(SpringLayout.ALIGN_TOP, SpringLayout.PARENT);"));
+        assertTrue(source.contains("p2.addRelation(SpringLayout.ALIGN_BOTTOM, SpringLayout.PARENT);"));
+    }
+
+    @Test
+    public void layoutWithUnsupportedAttributeIsSkipped() throws Exception {
+        assertEquals(null, generate("row_item", LAYOUT.replace("android:text=", "android:hint=")));
+    }
+
+    @Test
+    public void classNamesAreCamelCasedLayoutNames() {
+        assertEquals("RowItemLayout", SpringLayoutBuilderGenerator.toClassName("row_item"));
+        assertEquals("ActivityMain2Layout", SpringLayoutBuilderGenerator.toClassName("activity_main_2"));
+    }
+
+    /**
+     * @return Source of the generated builder, null if none was generated.
+     */
+    private String generate(String name, String layout) throws Exception {
+        final File layoutDir = mTemporaryFolder.newFolder("layout");
+        final File sourceDir = new File(mTemporaryFolder.getRoot(), "java");
+        final FileWriter writer = new FileWriter(new File(layoutDir, name + ".xml"));
+        try {
+            writer.write(layout);
+        } finally {
+            writer.close();
+        }
+        SpringLayoutBuilderGenerator.main(new String[] { sourceDir.getPath(), "com.example", layoutDir.getPath() });
+        final File packageDir = new File(sourceDir, "com/example/springlayouts");
+        assertTrue(new File(packageDir, "SpringLayouts.java").isFile());
+        final File builder = new File(packageDir, SpringLayoutBuilderGenerator.toClassName(name) + ".java");
+        return builder.isFile() ? read(builder) : null;
+    }
+
+    private static String read(File file) throws IOException {
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return new String(bytes, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_RIGHT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.BELOW;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.CENTER_HORIZONTAL;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.PARENT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.RIGHT_OF;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.TRUE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that LayoutMath pools preallocated to recorded sizes do not miss,
+ * that recorded sizes survive a restart and that the warm-up solves run.
+ */
+public class SpringLayoutPrewarmerTest {
+    private static final int EXACTLY = 1 << 30;
+
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void preallocatedPoolsDoNotMiss() {
+        final ConstraintGraph graph = createGraph();
+        final int[] sizes = new int[] { 0, 40, 100, 40, 0, 40, 100, 40, 0, 40 };
+        final int[] frames = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE];
+        final LayoutMath recorded = new LayoutMath();
+        new ConstraintSolver(recorded, null).solve(graph, sizes, EXACTLY | 1080, EXACTLY | 1920, frames);
+
+        final LayoutMath math = new LayoutMath();
+        final int count = recorded.getVariableCount() + recorded.getValueWrapperCount()
+                + recorded.getBinaryOperationCount();
+        assertEquals(count, math.preallocate(recorded.getVariableCount(), recorded.getValueWrapperCount(),
+                recorded.getBinaryOperationCount()));
+        math.setCountersEnabled(true);
+        new ConstraintSolver(math, null).solve(graph, sizes, EXACTLY | 1080, EXACTLY | 1920, frames);
+        assertEquals(0, math.getPoolMissCount());
+        assertEquals(0, math.preallocate(recorded.getVariableCount(), 0, 0));
+    }
+
+    @Test
+    public void syntheticSolvesComplete() {
+        assertEquals(SpringLayoutPrewarmer.WARMUP_SOLVES, SpringLayoutPrewarmer.runSyntheticSolves());
+    }
+
+    @Test
+    public void profileSurvivesRestart() throws Exception {
+        final File file = mTemporaryFolder.newFile("pools");
+        assertNull(SpringLayoutPrewarmer.read(new File(mTemporaryFolder.getRoot(), "pools.missing")));
+        final int[] profile = new int[] { 120, 80, 240, 12, 8, 24 };
+        SpringLayoutPrewarmer.write(file, profile);
+        assertArrayEquals(profile, SpringLayoutPrewarmer.read(file));
+    }
+
+    /**
+     * @return A centered title with relative width above a row of a label,
+     *         a spring, a value and a spring ending at the parent's right
+     *         edge, so that every kind of pooled object is needed.
+     */
+    private static ConstraintGraph createGraph() {
+        final int wrapContent = SpringLayout.LayoutParams.WRAP_CONTENT;
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        final int title = builder.addChild(1, wrapContent, wrapContent);
+        builder.addRelation(title, CENTER_HORIZONTAL, TRUE);
+        builder.setRelativeSize(title, 50, 0);
+        final int label = builder.addChild(2, wrapContent, wrapContent);
+        builder.addRelation(label, BELOW, 1);
+        builder.setMargins(label, 8, 4, 8, 4);
+        final int spring = builder.addChild(3, wrapContent, wrapContent);
+        builder.addRelation(spring, RIGHT_OF, 2);
+        builder.addRelation(spring, BELOW, 1);
+        builder.setWeights(spring, 1, 0);
+        final int value = builder.addChild(4, wrapContent, wrapContent);
+        builder.addRelation(value, RIGHT_OF, 3);
+        builder.addRelation(value, BELOW, 1);
+        final int end = builder.addChild(5, wrapContent, wrapContent);
+        builder.addRelation(end, RIGHT_OF, 4);
+        builder.addRelation(end, BELOW, 1);
+        builder.addRelation(end, ALIGN_RIGHT, PARENT);
+        builder.setWeights(end, 1, 0);
+        return builder.build();
+    }
+}
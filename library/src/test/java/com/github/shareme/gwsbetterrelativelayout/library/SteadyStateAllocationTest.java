@@ -0,0 +1,173 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_BOTTOM;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_LEFT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_RIGHT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.ALIGN_TOP;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.BELOW;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.CENTER_HORIZONTAL;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.PARENT;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.RIGHT_OF;
+import static com.github.shareme.gwsbetterrelativelayout.library.SpringLayout.TRUE;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies that solving a built graph again, the work SpringLayout does on
+ * every measure pass without hierarchy change, allocates nothing.
+ *
+ * Pool misses are always checked. Heap allocations are counted with
+ * HotSpot's per-thread allocation counter when the JVM provides it. A
+ * steady-state allocation shows up in every window of passes, so one
+ * window without allocations out of a few is enough. Deoptimization while
+ * the JIT settles re-materializes scalar-replaced objects once, which would
+ * otherwise fail the test at random.
+ */
+public class SteadyStateAllocationTest {
+    private static final int EXACTLY = 1 << 30;
+    private static final int AT_MOST = 1 << 31;
+    private static final int WARMUP_PASSES = 2000;
+    private static final int PASSES = 2000;
+    private static final int WINDOWS = 3;
+
+    @Test
+    public void exactSizeSolveDoesNotAllocate() {
+        assertNoAllocations(createSpringRowsGraph(20), EXACTLY | 1080, EXACTLY | 1920);
+    }
+
+    @Test
+    public void wrapContentSolveDoesNotAllocate() {
+        assertNoAllocations(createWrapContentGraph(), AT_MOST | 1080, AT_MOST | 1920);
+    }
+
+    @Test
+    public void goneChildrenDoNotAllocate() {
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        int previousId = PARENT;
+        for (int i = 0; i < 20; i++) {
+            final int child = builder.addChild(i + 1, SpringLayout.LayoutParams.WRAP_CONTENT,
+                    SpringLayout.LayoutParams.WRAP_CONTENT);
+            if (previousId != PARENT) {
+                builder.addRelation(child, BELOW, previousId);
+            }
+            builder.setGone(child, (i & 1) == 0);
+            previousId = i + 1;
+        }
+        assertNoAllocations(builder.build(), EXACTLY | 1080, AT_MOST | 1920);
+    }
+
+    /**
+     * @return A centered title with relative width above rows of a label and
+     *         a spring, the parts only an exact size resolves.
+     */
+    private static ConstraintGraph createSpringRowsGraph(int rows) {
+        final int wrapContent = SpringLayout.LayoutParams.WRAP_CONTENT;
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        final int title = builder.addChild(1, wrapContent, wrapContent);
+        builder.addRelation(title, CENTER_HORIZONTAL, TRUE);
+        builder.setRelativeSize(title, 50, 0);
+        int previousId = 1;
+        for (int row = 0; row < rows; row++) {
+            final int labelId = 10 + 2 * row;
+            final int label = builder.addChild(labelId, wrapContent, wrapContent);
+            builder.addRelation(label, BELOW, previousId);
+            builder.addRelation(label, ALIGN_LEFT, PARENT);
+            builder.setMargins(label, 8, 4, 8, 4);
+            final int spring = builder.addChild(labelId + 1, wrapContent, wrapContent);
+            builder.addRelation(spring, RIGHT_OF, labelId);
+            builder.addRelation(spring, ALIGN_TOP, labelId);
+            builder.addRelation(spring, ALIGN_RIGHT, PARENT);
+            builder.setWeights(spring, 1, 0);
+            previousId = labelId;
+        }
+        return builder.build();
+    }
+
+    private static ConstraintGraph createWrapContentGraph() {
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        final int first = builder.addChild(1, SpringLayout.LayoutParams.WRAP_CONTENT, SpringLayout.LayoutParams.WRAP_CONTENT);
+        builder.setMargins(first, 4, 4, 4, 4);
+        final int second = builder.addChild(2, SpringLayout.LayoutParams.WRAP_CONTENT, SpringLayout.LayoutParams.WRAP_CONTENT);
+        builder.addRelation(second, RIGHT_OF, 1);
+        builder.addRelation(second, BELOW, 1);
+        final int corner = builder.addChild(3, SpringLayout.LayoutParams.WRAP_CONTENT, SpringLayout.LayoutParams.WRAP_CONTENT);
+        builder.addRelation(corner, ALIGN_RIGHT, PARENT);
+        builder.addRelation(corner, ALIGN_BOTTOM, PARENT);
+        final int centered = builder.addChild(4, SpringLayout.LayoutParams.WRAP_CONTENT, SpringLayout.LayoutParams.WRAP_CONTENT);
+        builder.addRelation(centered, CENTER_HORIZONTAL, TRUE);
+        builder.addRelation(centered, BELOW, 2);
+        return builder.build();
+    }
+
+    private static void assertNoAllocations(ConstraintGraph graph, int widthMeasureSpec, int heightMeasureSpec) {
+        final LayoutMath layoutMath = new LayoutMath();
+        final ConstraintSolver solver = new ConstraintSolver(layoutMath, null);
+        final int[] sizes = new int[graph.getChildCount() * 2];
+        Arrays.fill(sizes, 50);
+        final int[] frames = new int[graph.getChildCount() * ConstraintSolver.FRAME_STRIDE];
+        for (int i = 0; i < WARMUP_PASSES; i++) {
+            solvePass(solver, graph, sizes, widthMeasureSpec, heightMeasureSpec, frames, i);
+        }
+
+        final AllocationCounter counter = new AllocationCounter();
+        layoutMath.setCountersEnabled(true);
+        long allocatedBytes = -1;
+        for (int window = 0; window < WINDOWS && allocatedBytes != 0; window++) {
+            counter.start();
+            for (int i = 0; i < PASSES; i++) {
+                solvePass(solver, graph, sizes, widthMeasureSpec, heightMeasureSpec, frames, i);
+            }
+            allocatedBytes = counter.stop();
+        }
+
+        assertEquals("LayoutMath pool misses", 0, layoutMath.getPoolMissCount());
+        assertEquals("LayoutMath pool hits", 0, layoutMath.getPoolHitCount());
+        if (allocatedBytes >= 0) {
+            assertEquals("Bytes allocated in " + PASSES + " passes", 0, allocatedBytes);
+        }
+    }
+
+    private static void solvePass(ConstraintSolver solver, ConstraintGraph graph, int[] sizes, int widthMeasureSpec,
+            int heightMeasureSpec, int[] frames, int pass) {
+        final int delta = (pass & 1) == 0 ? 1 : -1;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] += delta;
+        }
+        solver.solve(graph, sizes, widthMeasureSpec, heightMeasureSpec, frames);
+    }
+
+    /**
+     * Counts bytes allocated by the current thread, -1 if the JVM cannot tell.
+     */
+    private static class AllocationCounter {
+        private final com.sun.management.ThreadMXBean mThreadBean;
+        private final long mThreadId = Thread.currentThread().getId();
+        private long mStart;
+
+        AllocationCounter() {
+            final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            if (threadBean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+                mThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+                mThreadBean.setThreadAllocatedMemoryEnabled(true);
+                // First call may allocate while initializing.
+                mThreadBean.getThreadAllocatedBytes(mThreadId);
+            } else {
+                mThreadBean = null;
+            }
+        }
+
+        void start() {
+            mStart = mThreadBean != null ? mThreadBean.getThreadAllocatedBytes(mThreadId) : -1;
+        }
+
+        long stop() {
+            return mThreadBean != null ? mThreadBean.getThreadAllocatedBytes(mThreadId) - mStart : -1;
+        }
+    }
+}
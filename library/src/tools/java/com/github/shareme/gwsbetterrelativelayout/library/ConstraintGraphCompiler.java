@@ -0,0 +1,259 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Build time tool compiling SpringLayouts of layout resources into
+ * {@link CompiledConstraintGraph} assets. Runs on the JVM, see
+ * constraint-graphs.gradle.
+ *
+ * Only SpringLayouts declaring the compiledGraph attribute are compiled, the
+ * attribute value is the asset path. Relations have to be literal ids or
+ * booleans in the res-auto namespace and weights literal integers, resource
+ * references and styles cannot be resolved at build time.
+ *
+ * Usage: ConstraintGraphCompiler assetsDir layoutDir...
+ *
+ * @author sulewicz
+ */
+public final class ConstraintGraphCompiler {
+    static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+    static final String RES_AUTO_NS = "http://schemas.android.com/apk/res-auto";
+    static final String SPRING_LAYOUT = "com.github.shareme.gwsbetterrelativelayout.library.SpringLayout";
+    // Indexed by relation verb.
+    static final String[] RELATION_ATTRIBUTES = new String[] { "layout_toLeftOf", "layout_toRightOf", "layout_above",
+            "layout_below", "layout_alignLeft", "layout_alignTop", "layout_alignRight", "layout_alignBottom", "layout_alignCenter",
+            "layout_alignCenterHorizontally", "layout_alignCenterVertically", "layout_alignParentLeft", "layout_alignParentTop",
+            "layout_alignParentRight", "layout_alignParentBottom", "layout_centerInParent", "layout_centerHorizontal",
+            "layout_centerVertical" };
+    static final List<String> NON_VIEW_TAGS = Arrays.asList("requestFocus", "tag");
+
+    private final HashMap<String, byte[]> mGraphs = new HashMap<>();
+
+    private ConstraintGraphCompiler() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: ConstraintGraphCompiler assetsDir layoutDir...");
+        }
+        final ConstraintGraphCompiler compiler = new ConstraintGraphCompiler();
+        for (int i = 1; i < args.length; i++) {
+            final File[] files = new File(args[i]).listFiles();
+            if (files == null) {
+                continue;
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.getName().endsWith(".xml")) {
+                    compiler.compileLayout(file);
+                }
+            }
+        }
+        compiler.writeAssets(new File(args[0]));
+    }
+
+    private void compileLayout(File file) throws Exception {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final Element root = factory.newDocumentBuilder().parse(file).getDocumentElement();
+        final ArrayList<Element> layouts = new ArrayList<>();
+        collectCompiledLayouts(root, layouts);
+        for (Element layout : layouts) {
+            final String path = getAttribute(layout, RES_AUTO_NS, "compiledGraph");
+            final byte[] graph;
+            try {
+                graph = compile(layout);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(file + ": " + e.getMessage(), e);
+            }
+            final byte[] previous = mGraphs.put(path, graph);
+            if (previous != null && !Arrays.equals(previous, graph)) {
+                throw new IllegalArgumentException(file + ": layouts with different structure compile to the same asset " + path);
+            }
+        }
+    }
+
+    private static void collectCompiledLayouts(Element element, List<Element> out) {
+        if (SPRING_LAYOUT.equals(element.getTagName()) && getAttribute(element, RES_AUTO_NS, "compiledGraph") != null) {
+            out.add(element);
+        }
+        for (Element child : getChildViews(element)) {
+            collectCompiledLayouts(child, out);
+        }
+    }
+
+    static List<Element> getChildViews(Element element) {
+        final ArrayList<Element> children = new ArrayList<>();
+        final NodeList nodes = element.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            final Node node = nodes.item(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE && !NON_VIEW_TAGS.contains(node.getNodeName())) {
+                children.add((Element) node);
+            }
+        }
+        return children;
+    }
+
+    static byte[] compile(Element layout) throws IOException {
+        final List<Element> children = getChildViews(layout);
+        if (children.size() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many children to compile: " + children.size());
+        }
+        // Child index + 1 serves as the view id, ids are unknown at build time.
+        final HashMap<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < children.size(); i++) {
+            final String id = getIdName(getAttribute(children.get(i), ANDROID_NS, "id"));
+            if (id != null) {
+                ids.put(id, i + 1);
+            }
+        }
+
+        final ConstraintGraph.Builder builder = new ConstraintGraph.Builder();
+        final byte[] flags = new byte[children.size()];
+        for (int i = 0; i < children.size(); i++) {
+            final Element child = children.get(i);
+            final String style = getAttribute(child, null, "style");
+            if (style != null) {
+                // The runtime only checks the child count, relations of the style would be lost.
+                throw new IllegalArgumentException("Children with a style cannot be compiled, relations in " + style
+                        + " are unknown at build time");
+            }
+            final int width = parseLayoutDimension(getAttribute(child, ANDROID_NS, "layout_width"));
+            final int height = parseLayoutDimension(getAttribute(child, ANDROID_NS, "layout_height"));
+            final String id = getIdName(getAttribute(child, ANDROID_NS, "id"));
+            builder.addChild(id != null ? i + 1 : -1, width, height);
+            final int[] relations = new int[SpringLayout.VERB_COUNT];
+            for (int relation = 0; relation < RELATION_ATTRIBUTES.length; relation++) {
+                final String value = getAttribute(child, RES_AUTO_NS, RELATION_ATTRIBUTES[relation]);
+                if (value == null) {
+                    continue;
+                }
+                if (relation > SpringLayout.ALIGN_CENTER_VERTICALLY) {
+                    relations[relation] = parseBoolean(value) ? SpringLayout.TRUE : 0;
+                } else {
+                    // Anchors outside the layout are ignored at runtime, but
+                    // still count as relations when defaults are applied.
+                    final Integer anchor = ids.get(getIdName(value));
+                    relations[relation] = anchor != null ? anchor : Integer.MAX_VALUE;
+                }
+                builder.addRelation(i, relation, relations[relation]);
+            }
+            builder.setWeights(i, parseWeight(getAttribute(child, RES_AUTO_NS, "layout_widthWeight")),
+                    parseWeight(getAttribute(child, RES_AUTO_NS, "layout_heightWeight")));
+
+            if (SpringLayout.adaptHeight(relations, height) == SpringLayout.LayoutParams.MATCH_PARENT) {
+                flags[i] |= CompiledConstraintGraph.FLAG_MATCH_PARENT_HEIGHT;
+            }
+            if (SpringLayout.adaptWidth(relations, width) == SpringLayout.LayoutParams.MATCH_PARENT) {
+                flags[i] |= CompiledConstraintGraph.FLAG_MATCH_PARENT_WIDTH;
+            }
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledConstraintGraph.write(builder.build(), flags, out);
+        return out.toByteArray();
+    }
+
+    private void writeAssets(File assetsDir) throws IOException {
+        for (String path : mGraphs.keySet()) {
+            final File file = new File(assetsDir, path);
+            if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                throw new IOException("Cannot create " + file.getParentFile());
+            }
+            final FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(mGraphs.get(path));
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * @param namespace
+     *            Namespace URI, {@link #RES_AUTO_NS} for SpringLayout
+     *            attributes, null for attributes without a namespace like
+     *            style.
+     */
+    static String getAttribute(Element element, String namespace, String name) {
+        final NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            final Attr attribute = (Attr) attributes.item(i);
+            final String localName = attribute.getLocalName() != null ? attribute.getLocalName() : attribute.getName();
+            final String attributeNamespace = attribute.getNamespaceURI();
+            if (name.equals(localName)
+                    && (namespace != null ? namespace.equals(attributeNamespace) : attributeNamespace == null)) {
+                return attribute.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Id name of an id reference, with "android:" prefix for
+     *         framework ids, null if value is not an id reference.
+     */
+    static String getIdName(String value) {
+        if (value == null) {
+            return null;
+        } else if (value.startsWith("@+id/")) {
+            return value.substring(5);
+        } else if (value.startsWith("@id/")) {
+            return value.substring(4);
+        } else if (value.startsWith("@android:id/")) {
+            return "android:" + value.substring(12);
+        } else if (value.startsWith("@+android:id/")) {
+            return "android:" + value.substring(13);
+        }
+        return null;
+    }
+
+    private static int parseLayoutDimension(String value) {
+        if ("match_parent".equals(value) || "fill_parent".equals(value)) {
+            return SpringLayout.LayoutParams.MATCH_PARENT;
+        } else if ("wrap_content".equals(value)) {
+            return SpringLayout.LayoutParams.WRAP_CONTENT;
+        }
+        // Fixed size, only the kind of size matters for the structure.
+        return 0;
+    }
+
+    static boolean parseBoolean(String value) {
+        if ("true".equals(value)) {
+            return true;
+        } else if ("false".equals(value)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Boolean relations have to be literal: " + value);
+    }
+
+    static int parseWeight(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            final int weight = Integer.parseInt(value);
+            if (weight >= 0 && weight <= Short.MAX_VALUE) {
+                return weight;
+            }
+        } catch (NumberFormatException e) {
+        }
+        throw new IllegalArgumentException("Weights have to be literal integers between 0 and " + Short.MAX_VALUE + ": " + value);
+    }
+}
@@ -0,0 +1,637 @@
+package com.github.shareme.gwsbetterrelativelayout.library;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Build time tool generating Java builders for layout resources whose root
+ * is a SpringLayout. A builder constructs the views with their constructors,
+ * sets the attributes and layout parameters with setters and passes the
+ * constraint graph compiled by {@link ConstraintGraphCompiler} to every
+ * SpringLayout, so inflation needs no reflection, no AttributeSet parsing and
+ * no id to child index resolution. Runs on the JVM, see
+ * spring-layout-builders.gradle.
+ *
+ * For every layout x a class XLayout is generated, and a SpringLayouts class
+ * whose inflate(Context, int, ViewGroup, boolean) calls the builder of the
+ * layout or falls back to LayoutInflater. Only layouts without configuration
+ * qualified variants made of View, TextView and SpringLayout elements with
+ * literal or resource attribute values listed in this class are generated,
+ * the others are reported and skipped.
+ *
+ * Usage: SpringLayoutBuilderGenerator sourceDir package layoutDir...
+ *
+ * @author sulewicz
+ */
+public final class SpringLayoutBuilderGenerator {
+    private static final String TOOLS_NS = "http://schemas.android.com/tools";
+    private static final String XMLNS_NS = "http://www.w3.org/2000/xmlns/";
+    private static final String GENERATED_PACKAGE = "springlayouts";
+    private static final String DISPATCHER_CLASS = "SpringLayouts";
+    // Indexed by relation verb, same as ConstraintGraphCompiler.RELATION_ATTRIBUTES. The ALIGN_PARENT_* verbs are not
+    // public, they are written as the match_parent sizes and parent alignments SpringLayout adapts them to.
+    private static final String[] RELATION_CONSTANTS = new String[] {
+            "SpringLayout.LEFT_OF", "SpringLayout.RIGHT_OF", "SpringLayout.ABOVE", "SpringLayout.BELOW",
+            "SpringLayout.ALIGN_LEFT", "SpringLayout.ALIGN_TOP", "SpringLayout.ALIGN_RIGHT", "SpringLayout.ALIGN_BOTTOM",
+            "SpringLayout.ALIGN_CENTER", "SpringLayout.ALIGN_CENTER_HORIZONTALLY", "SpringLayout.ALIGN_CENTER_VERTICALLY",
+            "SpringLayout.ALIGN_LEFT", "SpringLayout.ALIGN_TOP", "SpringLayout.ALIGN_RIGHT", "SpringLayout.ALIGN_BOTTOM",
+            "SpringLayout.CENTER_IN_PARENT", "SpringLayout.CENTER_HORIZONTAL", "SpringLayout.CENTER_VERTICAL" };
+    private static final Map<String, String> VIEW_CLASSES = new HashMap<>();
+    private static final Map<String, String> DIMENSION_UNITS = new HashMap<>();
+    private static final List<String> GRAVITIES = Arrays.asList("top", "bottom", "left", "right", "center_vertical",
+            "fill_vertical", "center_horizontal", "fill_horizontal", "center", "fill", "clip_vertical", "clip_horizontal", "start",
+            "end");
+    private static final List<String> ELLIPSIZE_MODES = Arrays.asList("start", "middle", "end", "marquee");
+    private static final List<String> VISIBILITIES = Arrays.asList("visible", "invisible", "gone");
+    private static final Pattern DIMENSION = Pattern.compile("(-?\\d+(?:\\.\\d+)?)(dp|dip|sp|px|pt|in|mm)");
+    private static final Pattern PERCENT = Pattern.compile("(\\d+(?:\\.\\d+)?)%");
+    private static final Pattern RESOURCE = Pattern.compile("@(android:)?([a-z]+)/([A-Za-z0-9_.]+)");
+    private static final Pattern COLOR = Pattern.compile("#([0-9a-fA-F]{3,4}|[0-9a-fA-F]{6}|[0-9a-fA-F]{8})");
+
+    static {
+        VIEW_CLASSES.put("View", "View");
+        VIEW_CLASSES.put("TextView", "TextView");
+        VIEW_CLASSES.put(ConstraintGraphCompiler.SPRING_LAYOUT, "SpringLayout");
+        DIMENSION_UNITS.put("dp", "COMPLEX_UNIT_DIP");
+        DIMENSION_UNITS.put("dip", "COMPLEX_UNIT_DIP");
+        DIMENSION_UNITS.put("sp", "COMPLEX_UNIT_SP");
+        DIMENSION_UNITS.put("px", "COMPLEX_UNIT_PX");
+        DIMENSION_UNITS.put("pt", "COMPLEX_UNIT_PT");
+        DIMENSION_UNITS.put("in", "COMPLEX_UNIT_IN");
+        DIMENSION_UNITS.put("mm", "COMPLEX_UNIT_MM");
+    }
+
+    private final String mPackage;
+    // Layout name to generated class name.
+    private final TreeMap<String, String> mBuilders = new TreeMap<>();
+    private final TreeMap<String, String> mSources = new TreeMap<>();
+
+    private SpringLayoutBuilderGenerator(String packageName) {
+        mPackage = packageName;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: SpringLayoutBuilderGenerator sourceDir package layoutDir...");
+        }
+        final SpringLayoutBuilderGenerator generator = new SpringLayoutBuilderGenerator(args[1]);
+        final ArrayList<File> layouts = new ArrayList<>();
+        final Set<String> qualified = new HashSet<>();
+        for (int i = 2; i < args.length; i++) {
+            final File dir = new File(args[i]);
+            final File[] files = dir.listFiles();
+            if (files == null) {
+                continue;
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (!file.getName().endsWith(".xml")) {
+                    continue;
+                }
+                if ("layout".equals(dir.getName())) {
+                    layouts.add(file);
+                } else {
+                    qualified.add(file.getName());
+                }
+            }
+        }
+        for (File file : layouts) {
+            if (qualified.contains(file.getName())) {
+                System.out.println("Skipping " + file + ": has configuration qualified variants");
+                continue;
+            }
+            try {
+                generator.generateBuilder(file);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Skipping " + file + ": " + e.getMessage());
+            }
+        }
+        generator.writeSources(new File(args[0]));
+    }
+
+    private void generateBuilder(File file) throws Exception {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final Element root = factory.newDocumentBuilder().parse(file).getDocumentElement();
+        if (!ConstraintGraphCompiler.SPRING_LAYOUT.equals(root.getTagName())) {
+            return;
+        }
+        final String layoutName = file.getName().substring(0, file.getName().length() - 4);
+        final String className = toClassName(layoutName);
+        mSources.put(className, new BuilderWriter(mPackage, className, layoutName).write(root));
+        mBuilders.put(layoutName, className);
+    }
+
+    private void writeSources(File sourceDir) throws IOException {
+        final File dir = new File(sourceDir, (mPackage + "." + GENERATED_PACKAGE).replace('.', File.separatorChar));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        mSources.put(DISPATCHER_CLASS, writeDispatcher());
+        for (Map.Entry<String, String> source : mSources.entrySet()) {
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, source.getKey() + ".java")), "UTF-8");
+            try {
+                writer.write(source.getValue());
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    private String writeDispatcher() {
+        final StringBuilder out = new StringBuilder();
+        out.append("// Generated by SpringLayoutBuilderGenerator, do not edit.\n");
+        out.append("package ").append(mPackage).append('.').append(GENERATED_PACKAGE).append(";\n\n");
+        out.append("import android.content.Context;\n");
+        out.append("import android.content.res.Resources;\n");
+        out.append("import android.util.TypedValue;\n");
+        out.append("import android.view.LayoutInflater;\n");
+        out.append("import android.view.View;\n");
+        out.append("import android.view.ViewGroup;\n\n");
+        out.append("import ").append(mPackage).append(".R;\n\n");
+        out.append("/**\n");
+        out.append(" * Drop-in replacement of LayoutInflater for layouts with generated builders.\n");
+        out.append(" */\n");
+        out.append("public final class ").append(DISPATCHER_CLASS).append(" {\n");
+        out.append("    private ").append(DISPATCHER_CLASS).append("() {\n");
+        out.append("    }\n\n");
+        out.append("    public static View inflate(Context context, int layoutResId, ViewGroup root) {\n");
+        out.append("        return inflate(context, layoutResId, root, root != null);\n");
+        out.append("    }\n\n");
+        out.append("    /**\n");
+        out.append("     * Same as LayoutInflater#inflate(int, ViewGroup, boolean), using the\n");
+        out.append("     * generated builder of the layout if there is one.\n");
+        out.append("     */\n");
+        out.append("    public static View inflate(Context context, int layoutResId, ViewGroup root, boolean attachToRoot) {\n");
+        for (Map.Entry<String, String> builder : mBuilders.entrySet()) {
+            out.append("        if (layoutResId == R.layout.").append(builder.getKey()).append(") {\n");
+            out.append("            return ").append(builder.getValue()).append(".inflate(context, root, attachToRoot);\n");
+            out.append("        }\n");
+        }
+        out.append("        return LayoutInflater.from(context).inflate(layoutResId, root, attachToRoot);\n");
+        out.append("    }\n\n");
+        out.append("    /**\n");
+        out.append("     * @return Size in pixels, rounded like dimension attributes are.\n");
+        out.append("     */\n");
+        out.append("    static int dimension(Resources res, int unit, float value) {\n");
+        out.append("        final float size = TypedValue.applyDimension(unit, value, res.getDisplayMetrics());\n");
+        out.append("        final int pixels = (int) (size >= 0 ? size + 0.5f : size - 0.5f);\n");
+        out.append("        if (pixels != 0 || value == 0) {\n");
+        out.append("            return pixels;\n");
+        out.append("        }\n");
+        out.append("        return value > 0 ? 1 : -1;\n");
+        out.append("    }\n");
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private static String getAppAttribute(Element element, String name) {
+        return ConstraintGraphCompiler.getAttribute(element, ConstraintGraphCompiler.RES_AUTO_NS, name);
+    }
+
+    static String toClassName(String layoutName) {
+        final StringBuilder name = new StringBuilder();
+        for (String part : layoutName.split("_")) {
+            if (!part.isEmpty()) {
+                name.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1));
+            }
+        }
+        return name.append("Layout").toString();
+    }
+
+    /**
+     * Writes the builder of one layout: a local variable per view, assigned
+     * in document order, children added before their parent is.
+     */
+    private static final class BuilderWriter {
+        private final String mPackage;
+        private final String mClassName;
+        private final String mLayoutName;
+        private final StringBuilder mGraphs = new StringBuilder();
+        private final StringBuilder mBody = new StringBuilder();
+        private final Set<String> mImports = new HashSet<>();
+        private int mViewCount;
+        private int mGraphCount;
+
+        BuilderWriter(String packageName, String className, String layoutName) {
+            mPackage = packageName;
+            mClassName = className;
+            mLayoutName = layoutName;
+        }
+
+        String write(Element root) throws IOException {
+            mImports.add("android.content.Context");
+            mImports.add("android.content.res.Resources");
+            mImports.add("android.view.View");
+            mImports.add("android.view.ViewGroup");
+            mImports.add("com.github.shareme.gwsbetterrelativelayout.library.SpringLayout");
+            final String view = writeView(root, null);
+            final String width = layoutDimension(ConstraintGraphCompiler.getAttribute(root, ConstraintGraphCompiler.ANDROID_NS,
+                    "layout_width"));
+            final String height = layoutDimension(ConstraintGraphCompiler.getAttribute(root, ConstraintGraphCompiler.ANDROID_NS,
+                    "layout_height"));
+            // Like LayoutInflater, the root only gets layout params when there is a parent.
+            line("if (root == null) {");
+            line("    return " + view + ";");
+            line("}");
+            line("final ViewGroup.MarginLayoutParams params = new ViewGroup.MarginLayoutParams(" + width + ", " + height + ");");
+            writeMargins(root, "params");
+            line("if (attachToRoot) {");
+            line("    root.addView(" + view + ", params);");
+            line("    return root;");
+            line("}");
+            line(view + ".setLayoutParams(params);");
+            line("return " + view + ";");
+
+            final StringBuilder out = new StringBuilder();
+            out.append("// Generated by SpringLayoutBuilderGenerator from layout/").append(mLayoutName).append(".xml, do not edit.\n");
+            out.append("package ").append(mPackage).append('.').append(GENERATED_PACKAGE).append(";\n\n");
+            final ArrayList<String> imports = new ArrayList<>(mImports);
+            imports.add(mPackage + ".R");
+            Collections.sort(imports);
+            String group = null;
+            for (String name : imports) {
+                final String prefix = name.substring(0, name.indexOf('.'));
+                if (group != null && !group.equals(prefix)) {
+                    out.append('\n');
+                }
+                group = prefix;
+                out.append("import ").append(name).append(";\n");
+            }
+            out.append('\n');
+            out.append("/**\n");
+            out.append(" * Builds layout/").append(mLayoutName).append(".xml without LayoutInflater.\n");
+            out.append(" */\n");
+            out.append("public final class ").append(mClassName).append(" {\n");
+            out.append(mGraphs);
+            if (mGraphs.length() > 0) {
+                out.append('\n');
+            }
+            out.append("    private ").append(mClassName).append("() {\n");
+            out.append("    }\n\n");
+            out.append("    public static View inflate(Context context, ViewGroup root, boolean attachToRoot) {\n");
+            out.append("        final Resources res = context.getResources();\n");
+            out.append(mBody);
+            out.append("    }\n");
+            out.append("}\n");
+            return out.toString();
+        }
+
+        /**
+         * @return Name of the variable holding the view.
+         */
+        private String writeView(Element element, String parent) throws IOException {
+            final String tag = element.getTagName();
+            final String type = VIEW_CLASSES.get(tag);
+            if (type == null) {
+                throw new IllegalArgumentException("Unsupported element " + tag);
+            }
+            if (type.equals("TextView")) {
+                mImports.add("android.widget.TextView");
+            }
+            final boolean isTextView = type.equals("TextView");
+            final boolean isSpringLayout = type.equals("SpringLayout");
+            final boolean inSpringLayout = parent != null;
+            final String view = "v" + mViewCount++;
+            line("final " + type + " " + view + " = new " + type + "(context);");
+
+            String[] padding = null;
+            final NamedNodeMap attributes = element.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final Attr attribute = (Attr) attributes.item(i);
+                final String namespace = attribute.getNamespaceURI();
+                final String name = attribute.getLocalName() != null ? attribute.getLocalName() : attribute.getName();
+                final String value = attribute.getValue();
+                if (XMLNS_NS.equals(namespace) || TOOLS_NS.equals(namespace) || "xmlns".equals(name)) {
+                    continue;
+                }
+                if (ConstraintGraphCompiler.RES_AUTO_NS.equals(namespace)) {
+                    if (isSpringLayout && name.equals("minWidth")) {
+                        line(view + ".setMinimumWidth(" + dimension(value) + ");");
+                    } else if (isSpringLayout && name.equals("minHeight")) {
+                        line(view + ".setMinimumHeight(" + dimension(value) + ");");
+                    } else if (isSpringLayout && (name.equals("prebuildGraph") || name.equals("compiledGraph"))) {
+                        // Handled once children are added.
+                    } else if (!inSpringLayout || !isSpringLayoutParam(name)) {
+                        throw new IllegalArgumentException("Unsupported attribute " + attribute.getName() + " of " + tag);
+                    }
+                    continue;
+                }
+                if (!ConstraintGraphCompiler.ANDROID_NS.equals(namespace)) {
+                    // Styles among others, relations they set would be lost.
+                    throw new IllegalArgumentException("Unsupported attribute " + attribute.getName() + " of " + tag);
+                }
+                if (name.equals("id")) {
+                    line(view + ".setId(" + resource(value, "id") + ");");
+                } else if (name.equals("background")) {
+                    if (value.startsWith("#")) {
+                        line(view + ".setBackgroundColor(" + color(value) + ");");
+                    } else {
+                        final String drawable = resource(value, "drawable", "color");
+                        line(view + ".setBackgroundResource(" + drawable + ");");
+                    }
+                } else if (name.equals("visibility")) {
+                    if (!VISIBILITIES.contains(value)) {
+                        throw new IllegalArgumentException("Unsupported visibility " + value);
+                    }
+                    line(view + ".setVisibility(View." + value.toUpperCase(Locale.US) + ");");
+                } else if (name.startsWith("padding")) {
+                    if (padding == null) {
+                        padding = new String[5];
+                    }
+                    setSide(padding, name.substring(7), dimension(value), attribute);
+                } else if (isTextView && name.equals("text")) {
+                    line(view + ".setText(" + text(value) + ");");
+                } else if (isTextView && name.equals("textSize")) {
+                    mImports.add("android.util.TypedValue");
+                    line(view + ".setTextSize(TypedValue.COMPLEX_UNIT_PX, " + dimension(value) + ");");
+                } else if (isTextView && name.equals("textColor")) {
+                    line(view + ".setTextColor(" + color(value) + ");");
+                } else if (isTextView && name.equals("gravity")) {
+                    line(view + ".setGravity(" + gravity(value) + ");");
+                } else if (isTextView && name.equals("singleLine")) {
+                    line(view + ".setSingleLine(" + ConstraintGraphCompiler.parseBoolean(value) + ");");
+                } else if (isTextView && name.equals("ellipsize")) {
+                    if (!ELLIPSIZE_MODES.contains(value)) {
+                        throw new IllegalArgumentException("Unsupported ellipsize " + value);
+                    }
+                    mImports.add("android.text.TextUtils");
+                    line(view + ".setEllipsize(TextUtils.TruncateAt." + value.toUpperCase(Locale.US) + ");");
+                } else if (!name.startsWith("layout_")) {
+                    throw new IllegalArgumentException("Unsupported attribute " + attribute.getName() + " of " + tag);
+                } else if (!name.equals("layout_width") && !name.equals("layout_height") && !isMargin(name)) {
+                    throw new IllegalArgumentException("Unsupported attribute " + attribute.getName() + " of " + tag);
+                }
+            }
+            if (padding != null) {
+                final String[] getters = new String[] { "getPaddingLeft()", "getPaddingTop()", "getPaddingRight()",
+                        "getPaddingBottom()" };
+                for (int side = 0; side < 4; side++) {
+                    if (padding[side] == null) {
+                        padding[side] = view + "." + getters[side];
+                    }
+                }
+                line(view + ".setPadding(" + padding[0] + ", " + padding[1] + ", " + padding[2] + ", " + padding[3] + ");");
+            }
+
+            final List<Element> children = ConstraintGraphCompiler.getChildViews(element);
+            if (children.size() != element.getChildNodes().getLength() - countNonElements(element)) {
+                throw new IllegalArgumentException("Unsupported child element of " + tag);
+            } else if (!isSpringLayout && !children.isEmpty()) {
+                throw new IllegalArgumentException("Unsupported children of " + tag);
+            }
+            for (Element child : children) {
+                writeView(child, view);
+            }
+            if (isSpringLayout) {
+                writeGraph(element, view);
+            }
+            if (parent != null) {
+                writeLayoutParams(element, view, parent);
+            }
+            final String prebuildGraph = getAppAttribute(element, "prebuildGraph");
+            if (isSpringLayout && prebuildGraph != null && ConstraintGraphCompiler.parseBoolean(prebuildGraph)) {
+                line(view + ".prebuildConstraintGraph();");
+            }
+            return view;
+        }
+
+        private static int countNonElements(Element element) {
+            int count = 0;
+            for (int i = 0; i < element.getChildNodes().getLength(); i++) {
+                if (element.getChildNodes().item(i).getNodeType() != Node.ELEMENT_NODE) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private void writeGraph(Element layout, String view) throws IOException {
+            final byte[] graph = ConstraintGraphCompiler.compile(layout);
+            final String name = "GRAPH_" + mGraphCount++;
+            mGraphs.append("    private static final byte[] ").append(name).append(" = new byte[] {");
+            for (int i = 0; i < graph.length; i++) {
+                mGraphs.append(i % 16 == 0 ? "\n            " : " ").append(graph[i]).append(i + 1 < graph.length ? "," : "");
+            }
+            mGraphs.append(" };\n");
+            line(view + ".setCompiledConstraintGraph(" + name + ");");
+        }
+
+        private void writeLayoutParams(Element element, String view, String parent) {
+            final String params = "p" + view.substring(1);
+            // Aligned to both parent edges is match_parent, see SpringLayout.adaptWidth.
+            final String width = isAlignedToParent(element, SpringLayout.ALIGN_PARENT_LEFT)
+                    && isAlignedToParent(element, SpringLayout.ALIGN_PARENT_RIGHT) ? "ViewGroup.LayoutParams.MATCH_PARENT"
+                    : layoutDimension(ConstraintGraphCompiler.getAttribute(element, ConstraintGraphCompiler.ANDROID_NS,
+                            "layout_width"));
+            final String height = isAlignedToParent(element, SpringLayout.ALIGN_PARENT_TOP)
+                    && isAlignedToParent(element, SpringLayout.ALIGN_PARENT_BOTTOM) ? "ViewGroup.LayoutParams.MATCH_PARENT"
+                    : layoutDimension(ConstraintGraphCompiler.getAttribute(element, ConstraintGraphCompiler.ANDROID_NS,
+                            "layout_height"));
+            line("final SpringLayout.LayoutParams " + params + " = new SpringLayout.LayoutParams(" + width + ", " + height + ");");
+            writeMargins(element, params);
+            for (int relation = 0; relation < ConstraintGraphCompiler.RELATION_ATTRIBUTES.length; relation++) {
+                final String value = getAppAttribute(element, ConstraintGraphCompiler.RELATION_ATTRIBUTES[relation]);
+                if (value == null) {
+                    continue;
+                }
+                final String anchor;
+                if (relation >= SpringLayout.ALIGN_PARENT_LEFT && relation <= SpringLayout.ALIGN_PARENT_BOTTOM) {
+                    if (!ConstraintGraphCompiler.parseBoolean(value)) {
+                        continue;
+                    }
+                    anchor = "SpringLayout.PARENT";
+                } else if (relation > SpringLayout.ALIGN_CENTER_VERTICALLY) {
+                    if (!ConstraintGraphCompiler.parseBoolean(value)) {
+                        continue;
+                    }
+                    anchor = "SpringLayout.TRUE";
+                } else {
+                    anchor = resource(value, "id");
+                }
+                line(params + ".addRelation(" + RELATION_CONSTANTS[relation] + ", " + anchor + ");");
+            }
+            final String relativeWidth = getAppAttribute(element, "layout_relativeWidth");
+            if (relativeWidth != null) {
+                line(params + ".setRelativeWidth(" + percent(relativeWidth) + ");");
+            }
+            final String relativeHeight = getAppAttribute(element, "layout_relativeHeight");
+            if (relativeHeight != null) {
+                line(params + ".setRelativeHeight(" + percent(relativeHeight) + ");");
+            }
+            final String widthWeight = getAppAttribute(element, "layout_widthWeight");
+            if (widthWeight != null) {
+                line(params + ".setWidthWeight(" + ConstraintGraphCompiler.parseWeight(widthWeight) + ");");
+            }
+            final String heightWeight = getAppAttribute(element, "layout_heightWeight");
+            if (heightWeight != null) {
+                line(params + ".setHeightWeight(" + ConstraintGraphCompiler.parseWeight(heightWeight) + ");");
+            }
+            line(parent + ".addView(" + view + ", " + params + ");");
+        }
+
+        private static boolean isAlignedToParent(Element element, int relation) {
+            final String value = getAppAttribute(element, ConstraintGraphCompiler.RELATION_ATTRIBUTES[relation]);
+            return value != null && ConstraintGraphCompiler.parseBoolean(value);
+        }
+
+        private void writeMargins(Element element, String params) {
+            final String[] margins = new String[5];
+            boolean any = false;
+            final NamedNodeMap attributes = element.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final Attr attribute = (Attr) attributes.item(i);
+                final String name = attribute.getLocalName() != null ? attribute.getLocalName() : attribute.getName();
+                if (ConstraintGraphCompiler.ANDROID_NS.equals(attribute.getNamespaceURI()) && isMargin(name)) {
+                    setSide(margins, name.substring(13), dimension(attribute.getValue()), attribute);
+                    any = true;
+                }
+            }
+            if (!any) {
+                return;
+            }
+            final String[] fields = new String[] { "leftMargin", "topMargin", "rightMargin", "bottomMargin" };
+            for (int side = 0; side < 4; side++) {
+                if (margins[side] != null) {
+                    line(params + "." + fields[side] + " = " + margins[side] + ";");
+                }
+            }
+        }
+
+        private static boolean isMargin(String name) {
+            return name.equals("layout_margin") || name.equals("layout_marginLeft") || name.equals("layout_marginTop")
+                    || name.equals("layout_marginRight") || name.equals("layout_marginBottom");
+        }
+
+        private static boolean isSpringLayoutParam(String name) {
+            return Arrays.asList(ConstraintGraphCompiler.RELATION_ATTRIBUTES).contains(name) || name.equals("layout_relativeWidth")
+                    || name.equals("layout_relativeHeight") || name.equals("layout_widthWeight")
+                    || name.equals("layout_heightWeight");
+        }
+
+        /**
+         * Sets the side named by suffix, an empty suffix sets all sides and
+         * takes precedence over single sides like it does in views.
+         *
+         * @param sides
+         *            Left, top, right and bottom values, one more slot is
+         *            used while attributes are collected.
+         */
+        private static void setSide(String[] sides, String suffix, String value, Attr attribute) {
+            final int side = Arrays.asList("", "Left", "Top", "Right", "Bottom").indexOf(suffix) - 1;
+            if (side == -2) {
+                throw new IllegalArgumentException("Unsupported attribute " + attribute.getName());
+            } else if (side == -1) {
+                Arrays.fill(sides, value);
+            } else if (sides[4] == null) {
+                sides[side] = value;
+            }
+        }
+
+        private void line(String code) {
+            mBody.append("        ").append(code).append('\n');
+        }
+
+        private String layoutDimension(String value) {
+            if (value == null) {
+                throw new IllegalArgumentException("Missing layout size");
+            } else if (value.equals("match_parent") || value.equals("fill_parent")) {
+                return "ViewGroup.LayoutParams.MATCH_PARENT";
+            } else if (value.equals("wrap_content")) {
+                return "ViewGroup.LayoutParams.WRAP_CONTENT";
+            }
+            return dimension(value);
+        }
+
+        private String dimension(String value) {
+            final Matcher matcher = DIMENSION.matcher(value);
+            if (matcher.matches()) {
+                mImports.add("android.util.TypedValue");
+                return "SpringLayouts.dimension(res, TypedValue." + DIMENSION_UNITS.get(matcher.group(2)) + ", " + matcher.group(1)
+                        + "f)";
+            }
+            return "res.getDimensionPixelSize(" + resource(value, "dimen") + ")";
+        }
+
+        private String text(String value) {
+            if (value.startsWith("@")) {
+                return resource(value, "string");
+            } else if (value.startsWith("?") || value.contains("\\") || value.contains("\"")) {
+                throw new IllegalArgumentException("Unsupported text " + value);
+            }
+            return "\"" + value + "\"";
+        }
+
+        private String resource(String value, String... types) {
+            final Matcher matcher = RESOURCE.matcher(value.replace("@+", "@"));
+            if (!matcher.matches() || !Arrays.asList(types).contains(matcher.group(2))) {
+                throw new IllegalArgumentException("Unsupported value " + value + ", expected " + Arrays.toString(types)
+                        + " resource");
+            }
+            final String name = matcher.group(3).replace('.', '_');
+            return (matcher.group(1) != null ? "android.R." : "R.") + matcher.group(2) + "." + name;
+        }
+
+        private static String color(String value) {
+            final Matcher matcher = COLOR.matcher(value);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Unsupported color " + value);
+            }
+            String hex = matcher.group(1);
+            if (hex.length() <= 4) {
+                final StringBuilder expanded = new StringBuilder();
+                for (char digit : hex.toCharArray()) {
+                    expanded.append(digit).append(digit);
+                }
+                hex = expanded.toString();
+            }
+            if (hex.length() == 6) {
+                hex = "ff" + hex;
+            }
+            return "0x" + hex.toLowerCase(Locale.US);
+        }
+
+        private String gravity(String value) {
+            final StringBuilder gravity = new StringBuilder();
+            for (String flag : value.split("\\|")) {
+                if (!GRAVITIES.contains(flag.trim())) {
+                    throw new IllegalArgumentException("Unsupported gravity " + value);
+                }
+                gravity.append(gravity.length() > 0 ? " | " : "").append("Gravity.").append(flag.trim().toUpperCase(Locale.US));
+            }
+            mImports.add("android.view.Gravity");
+            return gravity.toString();
+        }
+
+        private static int percent(String value) {
+            final Matcher matcher = PERCENT.matcher(value);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Relative sizes have to be literal percents: " + value);
+            }
+            // Same as TypedArray#getFraction with the relative size denominator as base.
+            return (int) (Float.parseFloat(matcher.group(1)) / 100 * ConstraintSolver.RELATIVE_SIZE_DENOMINATOR);
+        }
+    }
+}